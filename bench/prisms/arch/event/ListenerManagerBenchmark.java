@@ -0,0 +1,116 @@
+/*
+ * ListenerManagerBenchmark.java Created Oct 16, 2026 by Andrew Butler, PSL
+ */
+package prisms.arch.event;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the event firing path of {@link ListenerManager}: getting the listeners for an event
+ * and notifying each of them, as PrismsSession.fireEvent does. Run with -prof gc to see the
+ * allocation per fire.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ListenerManagerBenchmark
+{
+	/** A listener that does nothing */
+	public static class NoOpListener
+	{
+		int theCount;
+
+		void fired()
+		{
+			theCount++;
+		}
+	}
+
+	/** The number of listeners registered for each event */
+	@Param({"2", "20"})
+	public int listeners;
+
+	/** The number of listeners registered for all events */
+	@Param({"0", "3"})
+	public int general;
+
+	ListenerManager<NoOpListener> theManager;
+
+	String [] theEvents;
+
+	int theIndex;
+
+	/** Registers the listeners */
+	@Setup
+	public void setup()
+	{
+		theManager = new ListenerManager<NoOpListener>(NoOpListener.class);
+		theEvents = new String [16];
+		for(int e = 0; e < theEvents.length; e++)
+		{
+			theEvents[e] = "event" + e;
+			for(int i = 0; i < listeners; i++)
+				theManager.addListener(theEvents[e], new NoOpListener());
+		}
+		for(int i = 0; i < general; i++)
+			theManager.addListener(new NoOpListener());
+	}
+
+	/**
+	 * Fires an event with registered listeners
+	 * 
+	 * @param bh The black hole to consume the listeners
+	 */
+	@Benchmark
+	public void fire(Blackhole bh)
+	{
+		theIndex = (theIndex + 1) % theEvents.length;
+		for(NoOpListener l : theManager.getListeners(theEvents[theIndex]))
+		{
+			l.fired();
+			bh.consume(l);
+		}
+	}
+
+	/**
+	 * Fires an event with no specific listeners
+	 * 
+	 * @param bh The black hole to consume the listeners
+	 */
+	@Benchmark
+	public void fireUnregistered(Blackhole bh)
+	{
+		for(NoOpListener l : theManager.getListeners("unregistered"))
+			bh.consume(l);
+	}
+
+	/**
+	 * Fires events from several threads while another registers and removes a listener
+	 * 
+	 * @param bh The black hole to consume the listeners
+	 */
+	@Benchmark
+	@Group("contended")
+	@GroupThreads(3)
+	public void contendedFire(Blackhole bh)
+	{
+		fire(bh);
+	}
+
+	/** Registers and removes a listener while other threads fire events */
+	@Benchmark
+	@Group("contended")
+	@GroupThreads(1)
+	public void contendedRegister()
+	{
+		NoOpListener l = new NoOpListener();
+		theManager.addListener("event0", l);
+		theManager.removeListener("event0", l);
+	}
+}
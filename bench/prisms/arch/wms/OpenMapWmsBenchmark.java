@@ -0,0 +1,173 @@
+/*
+ * OpenMapWmsBenchmark.java Created Oct 16, 2026 by Andrew Butler, PSL
+ */
+package prisms.arch.wms;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures {@link OpenMapWMS#drawMapOverlay(PrismsWmsRequest, org.json.simple.JSONObject,
+ * java.io.OutputStream)} rendering a graticule over many bounding boxes, serially and from several
+ * threads sharing one plugin. Before measuring, every box is rendered serially and then
+ * concurrently, and the setup fails unless each concurrent image matches its serial image byte for
+ * byte.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Benchmark)
+public class OpenMapWmsBenchmark
+{
+	/** The number of threads that render at once */
+	static final int RENDER_THREADS = 4;
+
+	/** A WMS plugin that only draws images */
+	static class GraticuleWMS extends OpenMapWMS
+	{
+		GraticuleWMS()
+		{
+			super(createProperties());
+		}
+
+		static java.util.Properties createProperties()
+		{
+			java.util.Properties ret = new java.util.Properties();
+			ret.setProperty("layers", "graticule");
+			ret.setProperty("graticule.class", "com.bbn.openmap.layer.GraticuleLayer");
+			ret.setProperty("graticule.prettyName", "Graticule");
+			return ret;
+		}
+
+		public String getCapabilities(PrismsWmsRequest request, org.json.simple.JSONObject event)
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		public String getList(PrismsWmsRequest request, org.json.simple.JSONObject event)
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		public String getFeatureInfo(PrismsWmsRequest request, org.json.simple.JSONObject event)
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		public String respond(PrismsWmsRequest request, org.json.simple.JSONObject event)
+		{
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	/** A request index for each thread */
+	@State(Scope.Thread)
+	public static class Cursor
+	{
+		int index;
+	}
+
+	GraticuleWMS theWMS;
+
+	PrismsWmsRequest [] theRequests;
+
+	/**
+	 * Creates the plugin and the requests and checks that concurrent rendering matches serial
+	 * rendering
+	 *
+	 * @throws Exception If an image cannot be rendered or a concurrent image does not match
+	 */
+	@Setup
+	public void setup() throws Exception
+	{
+		theWMS = new GraticuleWMS();
+		theWMS.setRenderLimits(RENDER_THREADS, 256, OpenMapWMS.DEFAULT_RENDER_TIMEOUT);
+		java.util.ArrayList<PrismsWmsRequest> requests = new java.util.ArrayList<PrismsWmsRequest>();
+		String [] formats = new String [] {"image/png", "image/gif"};
+		for(int lat = -80; lat < 80; lat += 20)
+			for(int lon = -180; lon < 180; lon += 45)
+				requests.add(createRequest(lat, lon, lat + 20 + (lon & 7), lon + 45,
+					formats[requests.size() % formats.length]));
+		theRequests = requests.toArray(new PrismsWmsRequest [requests.size()]);
+
+		final byte [][] serial = new byte [theRequests.length] [];
+		for(int i = 0; i < theRequests.length; i++)
+			serial[i] = render(theRequests[i]);
+		java.util.concurrent.ExecutorService exec = java.util.concurrent.Executors
+			.newFixedThreadPool(RENDER_THREADS * 2);
+		try
+		{
+			java.util.ArrayList<java.util.concurrent.Future<byte []>> images;
+			images = new java.util.ArrayList<java.util.concurrent.Future<byte []>>();
+			for(int pass = 0; pass < 4; pass++)
+				for(final PrismsWmsRequest request : theRequests)
+					images.add(exec.submit(new java.util.concurrent.Callable<byte []>()
+					{
+						public byte [] call() throws java.io.IOException
+						{
+							return render(request);
+						}
+					}));
+			for(int i = 0; i < images.size(); i++)
+			{
+				int r = i % theRequests.length;
+				if(!java.util.Arrays.equals(serial[r], images.get(i).get()))
+					throw new IllegalStateException("Concurrent image for " + theRequests[r]
+						+ " does not match serial image");
+			}
+		} finally
+		{
+			exec.shutdown();
+		}
+	}
+
+	static PrismsWmsRequest createRequest(int minLat, int minLon, int maxLat, int maxLon,
+		String format)
+	{
+		java.util.HashMap<String, String []> params = new java.util.HashMap<String, String []>();
+		params.put("version", new String [] {"1.1.1"});
+		params.put("request", new String [] {"GetMap"});
+		params.put("format", new String [] {format});
+		params.put("layers", new String [] {"Graticule"});
+		params.put("srs", new String [] {PrismsWmsRequest.EPSG_LATLON});
+		params.put("bbox", new String [] {minLon + "," + minLat + "," + maxLon + "," + maxLat});
+		params.put("width", new String [] {"256"});
+		params.put("height", new String [] {"256"});
+		return PrismsWmsRequest.parseWMS(params);
+	}
+
+	byte [] render(PrismsWmsRequest request) throws java.io.IOException
+	{
+		java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+		theWMS.drawMapOverlay(request, null, out);
+		return out.toByteArray();
+	}
+
+	/**
+	 * @param cursor The request index for this thread
+	 * @return The rendered image
+	 * @throws java.io.IOException If the image cannot be rendered
+	 */
+	@Benchmark
+	public byte [] renderSerially(Cursor cursor) throws java.io.IOException
+	{
+		cursor.index = (cursor.index + 1) % theRequests.length;
+		return render(theRequests[cursor.index]);
+	}
+
+	/**
+	 * @param cursor The request index for this thread
+	 * @return The rendered image
+	 * @throws java.io.IOException If the image cannot be rendered
+	 */
+	@Benchmark
+	@Threads(RENDER_THREADS)
+	public byte [] renderConcurrently(Cursor cursor) throws java.io.IOException
+	{
+		cursor.index = (cursor.index + 1) % theRequests.length;
+		return render(theRequests[cursor.index]);
+	}
+}
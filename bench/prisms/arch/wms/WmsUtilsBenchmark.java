@@ -0,0 +1,217 @@
+/*
+ * WmsUtilsBenchmark.java Created Oct 16, 2026 by Andrew Butler, PSL
+ */
+package prisms.arch.wms;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures {@link WmsUtils#getWMSLayers(String, prisms.ui.UI.DefaultProgressInformer)} served
+ * from the cache by several threads, using the capabilities document in capabilities.xml next to
+ * this class. Before measuring, the setup checks the cache's loading behavior against the same
+ * document: concurrent requests share a single load, stale capabilities are served while they are
+ * refreshed, and failed loads are not cached.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WmsUtilsBenchmark
+{
+	/** The number of layers in the fixture document */
+	static final int FIXTURE_LAYERS = 2;
+
+	/** A WmsUtils that counts its loads and can hold them or make them fail */
+	static class FixtureWmsUtils extends WmsUtils
+	{
+		final java.util.concurrent.atomic.AtomicInteger theOpens;
+
+		/** If set, loads wait for this latch before reading the document */
+		volatile java.util.concurrent.CountDownLatch theGate;
+
+		volatile boolean isFailing;
+
+		FixtureWmsUtils()
+		{
+			super(8);
+			theOpens = new java.util.concurrent.atomic.AtomicInteger();
+		}
+
+		@Override
+		protected java.io.InputStream openCapabilities(String wmsURL) throws java.io.IOException
+		{
+			theOpens.incrementAndGet();
+			java.util.concurrent.CountDownLatch gate = theGate;
+			if(gate != null)
+			{
+				try
+				{
+					gate.await();
+				} catch(InterruptedException e)
+				{
+					throw new java.io.InterruptedIOException("Interrupted waiting on gate");
+				}
+			}
+			if(isFailing)
+				throw new java.io.IOException("Simulated failure to connect to " + wmsURL);
+			// The fixture is a class path resource, which the default implementation will not open
+			return new java.net.URL(wmsURL).openStream();
+		}
+	}
+
+	String theURL;
+
+	FixtureWmsUtils theUtils;
+
+	/**
+	 * Checks the cache's loading behavior and fills the cache for the benchmark
+	 *
+	 * @throws Exception If the fixture cannot be loaded or a check fails
+	 */
+	@Setup
+	public void setup() throws Exception
+	{
+		java.net.URL fixture = WmsUtilsBenchmark.class.getResource("capabilities.xml");
+		if(fixture == null)
+			throw new IllegalStateException("capabilities.xml is not on the class path");
+		theURL = fixture.toString();
+		checkSingleFlight();
+		checkStaleWhileRefresh();
+		checkFailureEviction();
+		theUtils = new FixtureWmsUtils();
+		checkLayers(theUtils.getWMSLayers(theURL, null));
+	}
+
+	/** Checks that concurrent requests for uncached capabilities share one load */
+	void checkSingleFlight() throws Exception
+	{
+		final FixtureWmsUtils utils = new FixtureWmsUtils();
+		utils.theGate = new java.util.concurrent.CountDownLatch(1);
+		final WmsUtils.WmsLayer [][] results = new WmsUtils.WmsLayer [8] [];
+		final Exception [] errors = new Exception [results.length];
+		Thread [] threads = new Thread [results.length];
+		for(int i = 0; i < threads.length; i++)
+		{
+			final int index = i;
+			threads[i] = new Thread(new Runnable()
+			{
+				public void run()
+				{
+					try
+					{
+						results[index] = utils.getWMSLayers(theURL, null);
+					} catch(Exception e)
+					{
+						errors[index] = e;
+					}
+				}
+			});
+			threads[i].start();
+		}
+		Thread.sleep(250);
+		utils.theGate.countDown();
+		for(int i = 0; i < threads.length; i++)
+		{
+			threads[i].join();
+			if(errors[i] != null)
+				throw errors[i];
+			checkLayers(results[i]);
+		}
+		check(utils.theOpens.get() == 1, "Concurrent requests made " + utils.theOpens.get()
+			+ " loads instead of 1");
+	}
+
+	/** Checks that stale capabilities are served while they are refreshed */
+	void checkStaleWhileRefresh() throws Exception
+	{
+		FixtureWmsUtils utils = new FixtureWmsUtils();
+		WmsUtils.WmsLayer [] loaded = utils.getWMSLayers(theURL, null);
+		checkLayers(loaded);
+		utils.setMaxAge(0);
+		utils.theGate = new java.util.concurrent.CountDownLatch(1);
+		Thread.sleep(5);
+		// The refresh is held by the gate, so these must be served from the cache
+		check(utils.getWMSLayers(theURL, null) == loaded, "Stale layers were not served");
+		check(utils.getWMSLayers(theURL, null) == loaded, "Stale layers were not served");
+		waitForOpens(utils, 2);
+		check(utils.theOpens.get() == 2, "Refreshing stale layers made "
+			+ (utils.theOpens.get() - 1) + " loads instead of 1");
+		// A failed refresh must keep serving the stale capabilities
+		utils.isFailing = true;
+		utils.theGate.countDown();
+		utils.theGate = null;
+		Thread.sleep(100);
+		check(utils.getWMSLayers(theURL, null) == loaded, "Failed refresh discarded stale layers");
+		// That request started another refresh, which also fails
+		waitForOpens(utils, 3);
+		Thread.sleep(100);
+		utils.isFailing = false;
+		check(utils.getWMSLayers(theURL, null) == loaded, "Failed refresh discarded stale layers");
+		waitForOpens(utils, 4);
+		utils.setMaxAge(WmsUtils.DEFAULT_MAX_AGE);
+		long end = System.currentTimeMillis() + 5000;
+		WmsUtils.WmsLayer [] refreshed = loaded;
+		while(refreshed == loaded && System.currentTimeMillis() < end)
+		{
+			Thread.sleep(10);
+			refreshed = utils.getWMSLayers(theURL, null);
+		}
+		check(refreshed != loaded, "Successful refresh did not replace stale layers");
+		checkLayers(refreshed);
+	}
+
+	/** Checks that a failed load is not cached */
+	void checkFailureEviction() throws Exception
+	{
+		FixtureWmsUtils utils = new FixtureWmsUtils();
+		utils.isFailing = true;
+		try
+		{
+			utils.getWMSLayers(theURL, null);
+			throw new IllegalStateException("Failed load did not throw an exception");
+		} catch(prisms.arch.PrismsException e)
+		{
+			// Expected
+		}
+		utils.isFailing = false;
+		checkLayers(utils.getWMSLayers(theURL, null));
+		check(utils.theOpens.get() == 2, "Failed load was cached");
+	}
+
+	static void waitForOpens(FixtureWmsUtils utils, int opens) throws InterruptedException
+	{
+		long end = System.currentTimeMillis() + 5000;
+		while(utils.theOpens.get() < opens && System.currentTimeMillis() < end)
+			Thread.sleep(5);
+		check(utils.theOpens.get() >= opens, "Expected load " + opens + " did not start");
+	}
+
+	static void checkLayers(WmsUtils.WmsLayer [] layers)
+	{
+		check(layers != null && layers.length == FIXTURE_LAYERS, "Expected " + FIXTURE_LAYERS
+			+ " layers from capabilities.xml");
+		check("roads".equals(layers[0].name) && "All roads".equals(layers[0].descrip),
+			"Unexpected first layer from capabilities.xml");
+	}
+
+	static void check(boolean condition, String message)
+	{
+		if(!condition)
+			throw new IllegalStateException(message);
+	}
+
+	/**
+	 * @return The cached layers
+	 * @throws prisms.arch.PrismsException If the layers cannot be retrieved
+	 */
+	@Benchmark
+	@Threads(4)
+	public WmsUtils.WmsLayer [] getCachedLayers() throws prisms.arch.PrismsException
+	{
+		return theUtils.getWMSLayers(theURL, null);
+	}
+}
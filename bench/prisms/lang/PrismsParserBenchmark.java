@@ -0,0 +1,115 @@
+/*
+ * PrismsParserBenchmark.java Created Oct 16, 2026 by Andrew Butler, PSL
+ */
+package prisms.lang;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures {@link PrismsParser#parseMatches(String)} with the standard grammar (Grammar.xml) on the
+ * statements in the parser's unit test file, singly and concatenated into one large script. Run
+ * with <code>-Djmh.args="PrismsParser -prof gc"</code> to report allocation alongside throughput.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PrismsParserBenchmark
+{
+	PrismsParser theParser;
+
+	String [] theStatements;
+
+	/** All the statements, concatenated {@link #SCRIPT_REPEAT} times */
+	String theScript;
+
+	/** The number of times the unit test statements are repeated in the large script */
+	static final int SCRIPT_REPEAT = 4;
+
+	/**
+	 * Configures the parser and reads the statements to parse
+	 * 
+	 * @throws java.io.IOException If the grammar or the statements cannot be read
+	 */
+	@Setup
+	public void setup() throws java.io.IOException
+	{
+		theParser = new PrismsParser();
+		theParser.configure(prisms.arch.PrismsConfig.fromXml(null, prisms.arch.PrismsConfig
+			.getRootElement("Grammar.xml", prisms.arch.PrismsConfig.getLocation(PrismsParser.class))));
+		theParser.validateConfig();
+
+		/* Statements in UnitTest.txt are separated by blank lines */
+		java.util.ArrayList<String> statements = new java.util.ArrayList<String>();
+		java.io.BufferedReader reader = new java.io.BufferedReader(new java.io.InputStreamReader(
+			PrismsParser.class.getResourceAsStream("UnitTest.txt")));
+		try
+		{
+			StringBuilder statement = new StringBuilder();
+			String line = reader.readLine();
+			while(line != null)
+			{
+				if(line.trim().length() == 0)
+				{
+					if(statement.length() > 0)
+						statements.add(statement.toString());
+					statement.setLength(0);
+				}
+				else
+					statement.append(line).append('\n');
+				line = reader.readLine();
+			}
+			if(statement.length() > 0)
+				statements.add(statement.toString());
+		} finally
+		{
+			reader.close();
+		}
+		theStatements = statements.toArray(new String [statements.size()]);
+		StringBuilder script = new StringBuilder();
+		for(int i = 0; i < SCRIPT_REPEAT; i++)
+			for(String statement : theStatements)
+				script.append(statement);
+		theScript = script.toString();
+	}
+
+	/**
+	 * @return The number of matches parsed from all the statements
+	 * @throws ParseException If a statement cannot be parsed
+	 */
+	@Benchmark
+	public int parseMatches() throws ParseException
+	{
+		int ret = 0;
+		for(String statement : theStatements)
+			ret += theParser.parseMatches(statement).length;
+		return ret;
+	}
+
+	/**
+	 * @return The number of matches parsed from the large script
+	 * @throws ParseException If the script cannot be parsed
+	 */
+	@Benchmark
+	public int parseLargeScript() throws ParseException
+	{
+		return theParser.parseMatches(theScript).length;
+	}
+
+	/**
+	 * Parses the large script from several threads sharing one parser
+	 * 
+	 * @return The number of matches parsed from the large script
+	 * @throws ParseException If the script cannot be parsed
+	 */
+	@Benchmark
+	@Threads(4)
+	public int parseLargeScriptConcurrently() throws ParseException
+	{
+		return theParser.parseMatches(theScript).length;
+	}
+}
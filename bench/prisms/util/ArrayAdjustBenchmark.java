@@ -0,0 +1,108 @@
+/*
+ * ArrayAdjustBenchmark.java Created Oct 16, 2026 by Andrew Butler, PSL
+ */
+package prisms.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Compares {@link ArrayUtils#adjust(Object[], Object[], ArrayUtils.DifferenceListenerE)} with a plain
+ * {@link ArrayUtils.DifferenceListener} against the same adjustment with a
+ * {@link ArrayUtils.HashedDifferenceListener}. The arrays mimic re-ordering the results of a query
+ * by the IDs that were asked for, with a few IDs missing from the results.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ArrayAdjustBenchmark
+{
+	static class Item
+	{
+		final long id;
+
+		Item(long anID)
+		{
+			id = anID;
+		}
+	}
+
+	static class ItemListener implements ArrayUtils.DifferenceListener<Item, Long>
+	{
+		public boolean identity(Item o1, Long o2)
+		{
+			return o1.id == o2.longValue();
+		}
+
+		public Item added(Long o, int mIdx, int retIdx)
+		{
+			return null;
+		}
+
+		public Item removed(Item o, int oIdx, int incMod, int retIdx)
+		{
+			return o;
+		}
+
+		public Item set(Item o1, int idx1, int incMod, Long o2, int idx2, int retIdx)
+		{
+			return o1;
+		}
+	}
+
+	static class HashedItemListener extends ItemListener implements
+		ArrayUtils.HashedDifferenceListener<Item, Long>
+	{
+		public Object getOriginalKey(Item o)
+		{
+			return Long.valueOf(o.id);
+		}
+
+		public Object getModifierKey(Long o)
+		{
+			return o;
+		}
+	}
+
+	/** The number of elements in each array */
+	@Param({"100", "1000", "10000"})
+	public int size;
+
+	Item [] theItems;
+
+	Long [] theIDs;
+
+	/** Creates the arrays to adjust */
+	@Setup
+	public void setup()
+	{
+		java.util.Random random = new java.util.Random(size);
+		theIDs = new Long [size];
+		for(int i = 0; i < size; i++)
+			theIDs[i] = Long.valueOf(i * 7L);
+		java.util.ArrayList<Item> items = new java.util.ArrayList<Item>();
+		for(int i = 0; i < size; i++)
+			if(random.nextInt(50) != 0)
+				items.add(new Item(i * 7L));
+		java.util.Collections.shuffle(items, random);
+		theItems = items.toArray(new Item [items.size()]);
+	}
+
+	/** @return The adjusted array using pairwise identity matching */
+	@Benchmark
+	public Item [] identity()
+	{
+		return ArrayUtils.adjust(theItems, theIDs, new ItemListener());
+	}
+
+	/** @return The adjusted array using key matching */
+	@Benchmark
+	public Item [] hashed()
+	{
+		return ArrayUtils.adjust(theItems, theIDs, new HashedItemListener());
+	}
+}
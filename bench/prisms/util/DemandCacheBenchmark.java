@@ -0,0 +1,101 @@
+/*
+ * DemandCacheBenchmark.java Created Oct 16, 2026 by Andrew Butler, PSL
+ */
+package prisms.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures the get, put and purge operations of a {@link DemandCache} holding a given number of
+ * entries, with a qualitizer and preferred size like those of the message cache
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DemandCacheBenchmark
+{
+	/** The number of entries in the cache */
+	@Param({"1000", "100000"})
+	public int entries;
+
+	DemandCache<Integer, float []> theCache;
+
+	Integer [] theKeys;
+
+	/** A key index for each thread */
+	@State(Scope.Thread)
+	public static class Cursor
+	{
+		int index;
+
+		java.util.Random random = new java.util.Random();
+	}
+
+	/** Fills the cache */
+	@Setup
+	public void setup()
+	{
+		theCache = new DemandCache<Integer, float []>(new DemandCache.Qualitizer<Integer, float []>()
+		{
+			public float quality(Integer key, float [] value)
+			{
+				return value[1];
+			}
+
+			public float size(Integer key, float [] value)
+			{
+				return value[0];
+			}
+		}, entries * 5, 60000);
+		java.util.Random random = new java.util.Random(entries);
+		theKeys = new Integer [entries * 2];
+		for(int i = 0; i < theKeys.length; i++)
+			theKeys[i] = Integer.valueOf(i);
+		for(int i = 0; i < entries; i++)
+			theCache.put(theKeys[i], new float [] {2 + random.nextFloat() * 8, random.nextFloat()});
+	}
+
+	/** Stops the cache from purging in the background after the trial */
+	@TearDown
+	public void tearDown()
+	{
+		theCache.setAsyncPurge(false);
+	}
+
+	/**
+	 * @param cursor The key index for this thread
+	 * @return The cached value
+	 */
+	@Benchmark
+	@Threads(4)
+	public float [] get(Cursor cursor)
+	{
+		cursor.index = (cursor.index + 1) % entries;
+		return theCache.get(theKeys[cursor.index]);
+	}
+
+	/**
+	 * @param cursor The key index for this thread
+	 * @return The previous value
+	 */
+	@Benchmark
+	@Threads(4)
+	public float [] put(Cursor cursor)
+	{
+		cursor.index = (cursor.index + 1) % theKeys.length;
+		return theCache.put(theKeys[cursor.index],
+			new float [] {2 + cursor.random.nextFloat() * 8, cursor.random.nextFloat()});
+	}
+
+	/** Measures a forced purge of the cache */
+	@Benchmark
+	public void purge()
+	{
+		theCache.purge(true);
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ * KeySetBenchmark.java Created Oct 16, 2026 by Andrew Butler, PSL
+ */
+package prisms.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures {@link DBUtils#simplifyKeySet(long[], int)} and querying an embedded HSQLDB table with
+ * the resulting expression. The IDs are mostly in runs, as IDs of items created together tend to be.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KeySetBenchmark
+{
+	/** The number of IDs to query for */
+	@Param({"100", "5000"})
+	public int ids;
+
+	/** The maximum complexity of each expression */
+	@Param({"100"})
+	public int complexity;
+
+	long [] theIDs;
+
+	java.sql.Connection theConn;
+
+	java.sql.Statement theStmt;
+
+	/**
+	 * Creates the IDs and the database table
+	 * 
+	 * @throws Exception If the database cannot be created
+	 */
+	@Setup
+	public void setup() throws Exception
+	{
+		java.util.Random random = new java.util.Random(ids);
+		theIDs = new long [ids];
+		long id = 1;
+		for(int i = 0; i < ids; i++)
+		{
+			if(random.nextInt(8) == 0)
+				id += 2 + random.nextInt(50);
+			else
+				id++;
+			theIDs[i] = id;
+		}
+		for(int i = theIDs.length - 1; i > 0; i--)
+		{
+			int j = random.nextInt(i + 1);
+			long temp = theIDs[i];
+			theIDs[i] = theIDs[j];
+			theIDs[j] = temp;
+		}
+
+		Class.forName("org.hsqldb.jdbc.JDBCDriver");
+		theConn = java.sql.DriverManager.getConnection("jdbc:hsqldb:mem:keyset" + ids, "SA", "");
+		theStmt = theConn.createStatement();
+		theStmt.execute("DROP TABLE bench_item IF EXISTS");
+		theStmt.execute("CREATE TABLE bench_item (id BIGINT PRIMARY KEY, name VARCHAR(32))");
+		java.sql.PreparedStatement insert = theConn
+			.prepareStatement("INSERT INTO bench_item (id, name) VALUES (?, ?)");
+		for(long i = 1; i <= id; i++)
+		{
+			insert.setLong(1, i);
+			insert.setString(2, "Item " + i);
+			insert.addBatch();
+			if(i % 1000 == 0)
+				insert.executeBatch();
+		}
+		insert.executeBatch();
+		insert.close();
+	}
+
+	/**
+	 * Closes the database
+	 * 
+	 * @throws java.sql.SQLException If the database cannot be shut down
+	 */
+	@TearDown
+	public void tearDown() throws java.sql.SQLException
+	{
+		theStmt.execute("SHUTDOWN");
+		theStmt.close();
+		theConn.close();
+	}
+
+	/** @return The simplified key expression */
+	@Benchmark
+	public DBUtils.KeyExpression simplify()
+	{
+		return DBUtils.simplifyKeySet(theIDs.clone(), complexity);
+	}
+
+	/**
+	 * @return The number of rows matched by the simplified key expression
+	 * @throws java.sql.SQLException If the query fails
+	 */
+	@Benchmark
+	public int query() throws java.sql.SQLException
+	{
+		DBUtils.KeyExpression expr = DBUtils.simplifyKeySet(theIDs.clone(), complexity);
+		java.sql.ResultSet rs = DBUtils.executeQuery(theStmt, "SELECT id FROM bench_item WHERE ",
+			expr, "", "id", complexity);
+		int ret = 0;
+		try
+		{
+			while(rs.next())
+				ret++;
+		} finally
+		{
+			rs.close();
+		}
+		return ret;
+	}
+}
@@ -0,0 +1,153 @@
+/*
+ * ListBenchmark.java Created Oct 16, 2026 by Andrew Butler, PSL
+ */
+package prisms.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/** Measures the common operations of {@link IntList} and {@link LongList} */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ListBenchmark
+{
+	/** The number of values in each list */
+	@Param({"100", "10000"})
+	public int size;
+
+	int [] theInts;
+
+	long [] theLongs;
+
+	IntList theSortedInts;
+
+	LongList theSortedLongs;
+
+	IntList theOtherInts;
+
+	/** Creates the values and lists */
+	@Setup
+	public void setup()
+	{
+		java.util.Random random = new java.util.Random(size);
+		theInts = new int [size];
+		theLongs = new long [size];
+		for(int i = 0; i < size; i++)
+		{
+			theInts[i] = random.nextInt(size * 4);
+			theLongs[i] = random.nextLong();
+		}
+		theSortedInts = new IntList(true, true);
+		theSortedInts.addAll(theInts);
+		theSortedLongs = new LongList(true, true);
+		theSortedLongs.addAll(theLongs);
+		theOtherInts = new IntList(true, true);
+		for(int i = 0; i < size; i++)
+			theOtherInts.add(random.nextInt(size * 4));
+	}
+
+	/** @return A list with all the values appended */
+	@Benchmark
+	public IntList intAppend()
+	{
+		IntList ret = new IntList();
+		for(int value : theInts)
+			ret.add(value);
+		return ret;
+	}
+
+	/** @return A sorted, unique list with all the values inserted */
+	@Benchmark
+	public IntList intSortedInsert()
+	{
+		IntList ret = new IntList(true, true);
+		for(int value : theInts)
+			ret.add(value);
+		return ret;
+	}
+
+	/** @return The number of values found in the sorted list */
+	@Benchmark
+	public int intContains()
+	{
+		int ret = 0;
+		for(int value : theInts)
+			if(theSortedInts.contains(value))
+				ret++;
+		return ret;
+	}
+
+	/** @return The union of two sorted lists */
+	@Benchmark
+	public IntList intOr()
+	{
+		IntList ret = theSortedInts.clone();
+		ret.or(theOtherInts);
+		return ret;
+	}
+
+	/** @return The intersection of two sorted lists */
+	@Benchmark
+	public IntList intAnd()
+	{
+		IntList ret = theSortedInts.clone();
+		ret.and(theOtherInts);
+		return ret;
+	}
+
+	/** @return The list after every value has been removed */
+	@Benchmark
+	public IntList intRemoveValue()
+	{
+		IntList ret = theSortedInts.clone();
+		for(int value : theInts)
+			ret.removeValue(value);
+		return ret;
+	}
+
+	/** @return A list with all the values appended */
+	@Benchmark
+	public LongList longAppend()
+	{
+		LongList ret = new LongList();
+		for(long value : theLongs)
+			ret.add(value);
+		return ret;
+	}
+
+	/** @return A sorted, unique list with all the values inserted */
+	@Benchmark
+	public LongList longSortedInsert()
+	{
+		LongList ret = new LongList(true, true);
+		for(long value : theLongs)
+			ret.add(value);
+		return ret;
+	}
+
+	/** @return The number of values found in the sorted list */
+	@Benchmark
+	public int longContains()
+	{
+		int ret = 0;
+		for(long value : theLongs)
+			if(theSortedLongs.contains(value))
+				ret++;
+		return ret;
+	}
+
+	/** @return The list after every value has been removed */
+	@Benchmark
+	public LongList longRemoveValue()
+	{
+		LongList ret = theSortedLongs.clone();
+		for(long value : theLongs)
+			ret.removeValue(value);
+		return ret;
+	}
+}
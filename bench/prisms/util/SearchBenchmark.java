@@ -0,0 +1,187 @@
+/*
+ * SearchBenchmark.java Created Oct 16, 2026 by Andrew Butler, PSL
+ */
+package prisms.util;
+
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import prisms.logging.LogEntry;
+import prisms.logging.LogEntrySearch;
+import prisms.logging.PrismsLogger.LogField;
+
+/**
+ * Measures parsing search strings with a {@link Search.SearchBuilder} and matching the parsed
+ * searches against items in memory with a {@link MemPreparedSearch}. Log entry searches are used
+ * because their builder needs no database.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SearchBenchmark
+{
+	static final String [] SEARCHES = new String [] {"level:>=WARN",
+		"!content:timeout and level:>=INFO and (logger:prisms.arch or logger:prisms.util)",
+		"(app:Manager or app:\"Log Viewer\") and level:<ERROR or content:\"connection refused\""};
+
+	static final String [] LOGGERS = new String [] {"prisms.arch.PrismsServer",
+		"prisms.util.DBUtils", "prisms.impl.DBUserSource", "log4j.app.Log4jApp"};
+
+	static final String [] APPS = new String [] {"Manager", "Log Viewer", "Demo", null};
+
+	static final org.apache.log4j.Level [] LEVELS = new org.apache.log4j.Level [] {
+		org.apache.log4j.Level.DEBUG, org.apache.log4j.Level.INFO, org.apache.log4j.Level.WARN,
+		org.apache.log4j.Level.ERROR};
+
+	/** Matches log entries in memory */
+	static class MemLogSearch extends MemPreparedSearch<LogEntry, LogEntrySearch, LogField>
+	{
+		static class State implements MatchState
+		{
+			@Override
+			public State clone()
+			{
+				return this;
+			}
+		}
+
+		MemLogSearch(Search search)
+		{
+			super(search, new Sorter<LogField>(), LogEntrySearch.class);
+		}
+
+		@Override
+		protected void addParamTypes(LogEntrySearch search, java.util.Collection<Class<?>> types)
+		{
+		}
+
+		@Override
+		protected MatchState createState()
+		{
+			return new State();
+		}
+
+		@Override
+		protected BitSet matches(LogEntry [] items, BitSet filter, LogEntrySearch search,
+			MatchState state, Object [] params)
+		{
+			BitSet ret = new BitSet();
+			for(int i = filter.nextSetBit(0); i >= 0; i = filter.nextSetBit(i + 1))
+				ret.set(i, matches(items[i], search));
+			return ret;
+		}
+
+		private static boolean matches(LogEntry entry, LogEntrySearch search)
+		{
+			switch(search.getType())
+			{
+			case level:
+				LogEntrySearch.LogLevelSearch ls = (LogEntrySearch.LogLevelSearch) search;
+				int comp = entry.getLevel().toInt() - ls.level.toInt();
+				switch(ls.operator)
+				{
+				case EQ:
+					return comp == 0;
+				case NEQ:
+					return comp != 0;
+				case GT:
+					return comp > 0;
+				case GTE:
+					return comp >= 0;
+				case LT:
+					return comp < 0;
+				case LTE:
+					return comp <= 0;
+				}
+				return false;
+			case loggerName:
+				return entry.getLoggerName().startsWith(
+					((LogEntrySearch.LoggerNameSearch) search).search);
+			case content:
+				return entry.getMessage().contains(((LogEntrySearch.LogContentSearch) search).search);
+			case stackTrace:
+				return entry.getStackTrace() != null
+					&& entry.getStackTrace().contains(((LogEntrySearch.LogStackTraceSearch) search).search);
+			case app:
+				String app = ((LogEntrySearch.LogAppSearch) search).search;
+				return app == null ? entry.getApp() == null : app.equals(entry.getApp());
+			default:
+				throw new IllegalArgumentException("Unsupported search type " + search.getType());
+			}
+		}
+
+		@Override
+		public int compare(LogEntry o1, LogEntry o2, LogField field)
+		{
+			return 0;
+		}
+	}
+
+	/** The number of log entries to search */
+	@Param({"1000", "100000"})
+	public int entries;
+
+	LogEntrySearch.LogEntrySearchBuilder theBuilder;
+
+	MemLogSearch [] theSearches;
+
+	LogEntry [] theEntries;
+
+	/** Creates the log entries and prepares the searches */
+	@Setup
+	public void setup()
+	{
+		theBuilder = new LogEntrySearch.LogEntrySearchBuilder(null);
+		theSearches = new MemLogSearch [SEARCHES.length];
+		for(int i = 0; i < SEARCHES.length; i++)
+			theSearches[i] = new MemLogSearch(theBuilder.createSearch(SEARCHES[i]));
+		java.util.Random random = new java.util.Random(entries);
+		theEntries = new LogEntry [entries];
+		for(int i = 0; i < entries; i++)
+		{
+			LogEntry entry = new LogEntry();
+			entry.setID(i);
+			entry.setLevel(LEVELS[random.nextInt(LEVELS.length)]);
+			entry.setLoggerName(LOGGERS[random.nextInt(LOGGERS.length)]);
+			entry.setApp(APPS[random.nextInt(APPS.length)]);
+			switch(random.nextInt(4))
+			{
+			case 0:
+				entry.setMessage("Request timeout after " + random.nextInt(1000) + "ms");
+				break;
+			case 1:
+				entry.setMessage("Could not connect: connection refused");
+				break;
+			default:
+				entry.setMessage("Processed event " + i);
+			}
+			theEntries[i] = entry;
+		}
+	}
+
+	/** @return The number of nodes in the parsed searches */
+	@Benchmark
+	public int parse()
+	{
+		int ret = 0;
+		for(String search : SEARCHES)
+			if(theBuilder.createSearch(search) != null)
+				ret++;
+		return ret;
+	}
+
+	/** @return The number of log entries matched by all the searches */
+	@Benchmark
+	public int match()
+	{
+		int ret = 0;
+		for(MemLogSearch search : theSearches)
+			ret += search.execute(theEntries).length;
+		return ret;
+	}
+}
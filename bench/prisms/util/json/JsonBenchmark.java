@@ -0,0 +1,144 @@
+/*
+ * JsonBenchmark.java Created Oct 16, 2026 by Andrew Butler, PSL
+ */
+package prisms.util.json;
+
+import java.util.concurrent.TimeUnit;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures parsing and writing JSON with {@link SAJParser}, {@link JsonStreamWriter} and
+ * {@link prisms.arch.JsonSerializer}. The documents mimic a batch of events sent between a PRISMS
+ * server and its client.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonBenchmark
+{
+	/** The number of events in the document */
+	@Param({"10", "100", "1000"})
+	public int events;
+
+	JSONArray theEvents;
+
+	String theEventsString;
+
+	String theEventString;
+
+	prisms.arch.JsonSerializer theSerializer;
+
+	/** Creates the documents to parse and write */
+	@Setup
+	public void setup()
+	{
+		java.util.Random random = new java.util.Random(events);
+		theEvents = new JSONArray();
+		for(int i = 0; i < events; i++)
+		{
+			JSONObject evt = new JSONObject();
+			evt.put("plugin", "Plugin" + (i % 7));
+			evt.put("method", "setValue");
+			evt.put("id", Long.valueOf(random.nextLong()));
+			evt.put("enabled", Boolean.valueOf(random.nextBoolean()));
+			evt.put("ratio", Double.valueOf(random.nextDouble()));
+			evt.put("text", "Line \"" + i + "\"\twith\\escapes and unicode \u00e9\n");
+			JSONArray children = new JSONArray();
+			for(int c = 0; c < 5; c++)
+			{
+				JSONObject child = new JSONObject();
+				child.put("name", "Child " + c);
+				child.put("index", Integer.valueOf(c));
+				child.put("value", null);
+				children.add(child);
+			}
+			evt.put("children", children);
+			theEvents.add(evt);
+		}
+		theEventsString = theEvents.toString();
+		JSONObject evt = new JSONObject();
+		evt.put("method", "processEvent");
+		evt.put("events", theEvents);
+		theEventString = evt.toString();
+		theSerializer = new prisms.arch.JsonSerializer();
+	}
+
+	/**
+	 * @return The parsed document
+	 * @throws SAJParser.ParseException If the document cannot be parsed
+	 */
+	@Benchmark
+	public Object sajParse() throws SAJParser.ParseException
+	{
+		return SAJParser.parse(theEventsString);
+	}
+
+	/**
+	 * @return The written document
+	 * @throws java.io.IOException Not thrown--the writer is in memory
+	 */
+	@Benchmark
+	public String streamWrite() throws java.io.IOException
+	{
+		java.io.StringWriter str = new java.io.StringWriter();
+		JsonStreamWriter writer = new JsonStreamWriter(str);
+		write(writer, theEvents);
+		writer.close();
+		return str.toString();
+	}
+
+	private static void write(JsonStreamWriter writer, Object value) throws java.io.IOException
+	{
+		if(value == null)
+			writer.writeNull();
+		else if(value instanceof JSONObject)
+		{
+			writer.startObject();
+			for(Object entry : ((JSONObject) value).entrySet())
+			{
+				writer.startProperty((String) ((java.util.Map.Entry<?, ?>) entry).getKey());
+				write(writer, ((java.util.Map.Entry<?, ?>) entry).getValue());
+			}
+			writer.endObject();
+		}
+		else if(value instanceof JSONArray)
+		{
+			writer.startArray();
+			for(Object item : (JSONArray) value)
+				write(writer, item);
+			writer.endArray();
+		}
+		else if(value instanceof String)
+			writer.writeString((String) value);
+		else if(value instanceof Number)
+			writer.writeNumber((Number) value);
+		else
+			writer.writeBoolean(((Boolean) value).booleanValue());
+	}
+
+	/**
+	 * @return The serialized events
+	 * @throws java.io.NotSerializableException If the events cannot be serialized
+	 */
+	@Benchmark
+	public String serialize() throws java.io.NotSerializableException
+	{
+		return theSerializer.serialize(theEvents);
+	}
+
+	/**
+	 * @return The deserialized event
+	 * @throws java.io.InvalidObjectException If the event cannot be deserialized
+	 */
+	@Benchmark
+	public JSONObject deserialize() throws java.io.InvalidObjectException
+	{
+		return theSerializer.deserialize(theEventString);
+	}
+}
@@ -130,9 +130,12 @@ __dojo.declare("prisms.PrismsLink", null, {
 		}
 		if(event.method=="getEvents")
 		{
-			window.setTimeout(function(){
-				self.callApp(null, "getEvents", {"taskID": event.taskID});
-			}, 500);
+			if(event.wait)
+				self.callApp(null, "getEvents", {"taskID": event.taskID, "wait": event.wait});
+			else
+				window.setTimeout(function(){
+					self.callApp(null, "getEvents", {"taskID": event.taskID});
+				}, 500);
 		}
 		else if(event.method=="setVersion")
 		{
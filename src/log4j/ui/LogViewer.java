@@ -521,7 +521,7 @@ public class LogViewer implements prisms.arch.DownloadPlugin
 					sendEntriesProgressive(ids);
 				}
 			};
-			theSession.getApp().getEnvironment().getWorker()
+			theSession.getApp().getWorker()
 				.run(getter, new prisms.arch.Worker.ErrorListener()
 				{
 					public void error(Error error)
@@ -629,32 +629,29 @@ public class LogViewer implements prisms.arch.DownloadPlugin
 		try
 		{
 			prisms.logging.PrismsLogger logger = theSession.getApp().getEnvironment().getLogger();
-			long [] subIDs = new long [100];
-			for(int i = 0; i < ids.length; i += subIDs.length)
+			prisms.util.SearchableAPI.ItemIterator<LogEntry, PrismsException> entries;
+			entries = logger.getItems(new prisms.util.LongList(ids), 0, -1);
+			while(entries.hasNext())
 			{
-				if(!isRunning)
-					return;
-				if(subIDs.length > ids.length - i)
-					subIDs = new long [ids.length - i];
-				System.arraycopy(ids, i, subIDs, 0, subIDs.length);
-				LogEntry [] entries;
-				try
-				{
-					entries = logger.getItems(subIDs);
-				} catch(PrismsException e)
-				{
-					log.error("Could not get log entries", e);
-					return;
-				}
 				if(!isRunning)
 					return;
 				JSONArray jsonEntries = new JSONArray();
-				for(LogEntry entry : entries)
+				for(int i = 0; i < 100 && entries.hasNext(); i++)
 				{
-					JSONObject jsonEntry = toJson(entry);
+					JSONObject jsonEntry;
+					try
+					{
+						jsonEntry = toJson(entries.next());
+					} catch(PrismsException e)
+					{
+						log.error("Could not get log entries", e);
+						return;
+					}
 					if(jsonEntry != null)
 						jsonEntries.add(jsonEntry);
 				}
+				if(!isRunning)
+					return;
 				JSONObject evt = new JSONObject();
 				evt.put("plugin", theName);
 				evt.put("method", "addEntries");
@@ -11,6 +11,9 @@ import prisms.arch.ds.UserGroup;
 /** Manages the full set of users available in PRISMS between applications */
 public class PrismsUserManager extends prisms.util.persisters.PersistingPropertyManager<User []>
 {
+	static final org.apache.log4j.Logger log = org.apache.log4j.Logger
+		.getLogger(PrismsUserManager.class);
+
 	private User [] theUsers;
 
 	PrismsApplication theManager;
@@ -27,7 +30,7 @@ public class PrismsUserManager extends prisms.util.persisters.PersistingProperty
 			&& app.getEnvironment().getUserSource() instanceof ManageableUserSource)
 		{
 			ManageableUserSource us = (ManageableUserSource) app.getEnvironment().getUserSource();
-			theListener = new ManageableUserSource.UserSetListener()
+			theListener = new ManageableUserSource.UserSetDeltaListener()
 			{
 				public void userSetChanged(User [] users)
 				{
@@ -35,6 +38,22 @@ public class PrismsUserManager extends prisms.util.persisters.PersistingProperty
 					globalAdjustValues("prismsPersisted", Boolean.TRUE);
 				}
 
+				public void userAdded(User user)
+				{
+					if(prisms.util.ArrayUtils.contains(theUsers, user))
+						return;
+					setValue(prisms.util.ArrayUtils.add(theUsers, user));
+					globalAdjustValues("prismsPersisted", Boolean.TRUE);
+				}
+
+				public void userRemoved(User user)
+				{
+					if(!prisms.util.ArrayUtils.contains(theUsers, user))
+						return;
+					setValue(prisms.util.ArrayUtils.remove(theUsers, user));
+					globalAdjustValues("prismsPersisted", Boolean.TRUE);
+				}
+
 				public void userChanged(User user)
 				{
 					fireGlobalEvent(null, "prismsUserChanged", "user", user, "prismsPersisted",
@@ -55,6 +74,33 @@ public class PrismsUserManager extends prisms.util.persisters.PersistingProperty
 							Boolean.TRUE));
 				}
 
+				public void groupAdded(UserGroup group)
+				{
+					fireGroupSet(group.getApp());
+				}
+
+				public void groupRemoved(UserGroup group)
+				{
+					fireGroupSet(group.getApp());
+				}
+
+				private void fireGroupSet(PrismsApplication _app)
+				{
+					if(theManager == null)
+						return;
+					UserGroup [] groups;
+					try
+					{
+						groups = ((ManageableUserSource) app.getEnvironment().getUserSource())
+							.getGroups(_app);
+					} catch(prisms.arch.PrismsException e)
+					{
+						log.error("Could not get groups for application " + _app, e);
+						return;
+					}
+					groupSetChanged(_app, groups);
+				}
+
 				public void groupChanged(UserGroup group)
 				{
 					if(theManager != null)
@@ -145,6 +145,7 @@ public class AppConfig
 	public void configureTracking(PrismsApplication app,
 		prisms.util.TrackerSet.TrackConfig[] trackConfigs)
 	{
+		app.getTrackSet().setMergeInterval(app.getEnvironment().getTrackMergeInterval());
 		app.getTrackSet().addTrackConfigs(trackConfigs);
 	}
 
@@ -3,6 +3,7 @@
  */
 package prisms.arch;
 
+import java.io.IOException;
 import java.io.NotSerializableException;
 
 import org.apache.log4j.Logger;
@@ -15,7 +16,7 @@ import org.json.simple.JSONObject;
  * {@link prisms.util.PrismsUtils#decodeUnicode(String)}) and safely-encoded characters (same as
  * unicode-encoded, but using "__XENC" as a prefix instead of "\\u".
  */
-public class JsonSerializer implements RemoteEventSerializer
+public class JsonSerializer implements StreamingEventSerializer
 {
 	private static final Logger log = Logger.getLogger(JsonSerializer.class);
 
@@ -56,6 +57,136 @@ public class JsonSerializer implements RemoteEventSerializer
 		return ret;
 	}
 
+	/**
+	 * Writes the events with the same content as {@link #serialize(JSONArray)} followed by
+	 * {@link prisms.util.PrismsUtils#encodeUnicode(String)}, but without building the string
+	 */
+	public void serialize(JSONArray events, java.io.Writer writer, boolean encodeUnicode)
+		throws IOException
+	{
+		prisms.util.json.JsonStreamWriter json = new prisms.util.json.JsonStreamWriter(writer);
+		json.setFormal(true);
+		json.setUnicodeEncoded(encodeUnicode);
+		write(events, json, writer, encodeUnicode);
+	}
+
+	private static void write(Object o, prisms.util.json.JsonStreamWriter json,
+		java.io.Writer writer, boolean encodeUnicode) throws IOException
+	{
+		if(o == null)
+			json.writeNull();
+		else if(o instanceof String)
+		{
+			json.writeCustomValue();
+			writeString((String) o, writer, encodeUnicode);
+		}
+		else if(o instanceof Boolean)
+			json.writeBoolean(((Boolean) o).booleanValue());
+		else if(o instanceof Byte || o instanceof Short || o instanceof Integer
+			|| o instanceof Long)
+			json.writeNumber((Number) o);
+		else if(o instanceof Float || o instanceof Double)
+		{
+			Object sub = validate(o);
+			if(sub != null)
+			{
+				json.writeCustomValue();
+				writeString((String) sub, writer, encodeUnicode);
+			}
+			else
+				json.writeNumber((Number) o);
+		}
+		else if(o instanceof JSONArray)
+		{
+			json.startArray();
+			for(Object item : (JSONArray) o)
+				write(item, json, writer, encodeUnicode);
+			json.endArray();
+		}
+		else if(o instanceof JSONObject)
+		{
+			json.startObject();
+			for(java.util.Map.Entry<Object, Object> entry : ((java.util.Map<Object, Object>) o)
+				.entrySet())
+			{
+				if(!(entry.getKey() instanceof String))
+					throw new NotSerializableException("All keys in a JSONObject must be strings");
+				json.startProperty((String) entry.getKey());
+				write(entry.getValue(), json, writer, encodeUnicode);
+			}
+			json.endObject();
+		}
+		else
+			throw new NotSerializableException("All JSON-serializable objects must be primitive or"
+				+ " of type string, JSONObject, or JSONArray--not " + o.getClass().getName());
+	}
+
+	/**
+	 * Writes a quoted string with the same escapes as {@link JSONObject#escape(String)}, writing
+	 * unescaped runs of characters straight from the string
+	 */
+	private static void writeString(String str, java.io.Writer writer, boolean encodeUnicode)
+		throws IOException
+	{
+		writer.write('"');
+		int start = 0;
+		for(int c = 0; c < str.length(); c++)
+		{
+			char ch = str.charAt(c);
+			String esc;
+			switch(ch)
+			{
+			case '"':
+				esc = "\\\"";
+				break;
+			case '\\':
+				esc = "\\\\";
+				break;
+			case '/':
+				esc = "\\/";
+				break;
+			case '\b':
+				esc = "\\b";
+				break;
+			case '\f':
+				esc = "\\f";
+				break;
+			case '\n':
+				esc = "\\n";
+				break;
+			case '\r':
+				esc = "\\r";
+				break;
+			case '\t':
+				esc = "\\t";
+				break;
+			default:
+				if(ch >= 0x20 && (ch <= 0x7f || !encodeUnicode))
+					continue;
+				esc = null;
+			}
+			if(c > start)
+				writer.write(str, start, c - start);
+			start = c + 1;
+			if(esc != null)
+				writer.write(esc);
+			else
+			{
+				String hex = Integer.toHexString(ch);
+				/* Control characters are escaped as JSONObject does, others as encodeUnicode does */
+				if(ch < 0x20)
+					hex = hex.toUpperCase();
+				writer.write("\\u");
+				for(int i = hex.length(); i < 4; i++)
+					writer.write('0');
+				writer.write(hex);
+			}
+		}
+		if(start < str.length())
+			writer.write(str, start, str.length() - start);
+		writer.write('"');
+	}
+
 	/**
 	 * Validates a JSON-serializable object to ensure that it can be serialized and deserialized by
 	 * either the server or the client correctly.
@@ -34,6 +34,60 @@ public class PrismsApplication
 		void run(PrismsSession session);
 	}
 
+	/**
+	 * A session task whose later instances supersede earlier ones. When such a task is run for all
+	 * sessions and a session still has a task with the same key waiting to run, the waiting task is
+	 * replaced instead of the session running both.
+	 */
+	public static interface CoalescingSessionTask extends SessionTask
+	{
+		/** @return The key identifying the kind of this task, or null if this task must not be coalesced */
+		Object getCoalesceKey();
+	}
+
+	/** Wraps a session task to patch the stack trace of the submitting code into its errors */
+	private class TracedSessionTask implements CoalescingSessionTask
+	{
+		private final SessionTask theTask;
+
+		private final StackTraceElement [] theTrace;
+
+		TracedSessionTask(SessionTask task, StackTraceElement [] trace)
+		{
+			theTask = task;
+			theTrace = trace;
+		}
+
+		public Object getCoalesceKey()
+		{
+			if(theTask instanceof CoalescingSessionTask)
+				return ((CoalescingSessionTask) theTask).getCoalesceKey();
+			return null;
+		}
+
+		public void run(PrismsSession session)
+		{
+			try
+			{
+				theTask.run(session);
+			} catch(RuntimeException e)
+			{
+				e.setStackTrace(prisms.util.PrismsUtils.patchStackTraces(e.getStackTrace(), theTrace,
+					getClass().getName(), "run"));
+				throw e;
+			}
+		}
+
+		@Override
+		public String toString()
+		{
+			return prisms.util.PrismsUtils.taskToString(theTask);
+		}
+	}
+
+	/** The default maximum number of session tasks that may wait to run in a single session */
+	public static final int DEFAULT_MAX_PENDING_SESSION_TASKS = 1000;
+
 	/**
 	 * Represents a lock on an application. No sessions or services may access an application while
 	 * it is locked.
@@ -207,6 +261,16 @@ public class PrismsApplication
 
 	private long theCpuTime;
 
+	private Worker theWorker;
+
+	private int theMaxPendingSessionTasks;
+
+	private long theIdleSessionTaskTime;
+
+	private boolean isTracingSessionTasks;
+
+	private final java.util.concurrent.atomic.AtomicLong theDroppedSessionTasks;
+
 	/**
 	 * Creates a PluginApplication
 	 * 
@@ -243,6 +307,8 @@ public class PrismsApplication
 		thePropertyStack = new ConcurrentHashMap<PrismsProperty<?>, PrismsApplication>();
 		thePSAQueue = new PropertySetActionQueue();
 		theTrackSet = new prisms.util.TrackerSet("App: " + name, null);
+		theMaxPendingSessionTasks = DEFAULT_MAX_PENDING_SESSION_TASKS;
+		theDroppedSessionTasks = new java.util.concurrent.atomic.AtomicLong();
 	}
 
 	/** @return The environment that this application is used in */
@@ -251,6 +317,77 @@ public class PrismsApplication
 		return theEnv;
 	}
 
+	/**
+	 * @return The worker that performs background tasks for this application's sessions. This is
+	 *         the environment's worker unless the application has been given its own.
+	 */
+	public Worker getWorker()
+	{
+		Worker ret = theWorker;
+		if(ret == null)
+			ret = theEnv.getWorker();
+		return ret;
+	}
+
+	/**
+	 * @param worker The worker to isolate this application's background tasks from other
+	 *        applications'
+	 */
+	void setWorker(Worker worker)
+	{
+		theWorker = worker;
+	}
+
+	/**
+	 * @return The maximum number of tasks from {@link #runSessionTask(PrismsSession, SessionTask, boolean)}
+	 *         that may wait to run in a single session. Tasks beyond this are dropped for that session
+	 *         and the session's user is told that updates were missed. &lt;=0 means no limit.
+	 */
+	public int getMaxPendingSessionTasks()
+	{
+		return theMaxPendingSessionTasks;
+	}
+
+	/**
+	 * @return The time after which a session that has not been accessed has session tasks run for it
+	 *         in the background on this application's worker, instead of waiting for its next request.
+	 *         &lt;=0 means tasks are always left for the session's next request.
+	 */
+	public long getIdleSessionTaskTime()
+	{
+		return theIdleSessionTaskTime;
+	}
+
+	/**
+	 * @return Whether the stack trace of code calling
+	 *         {@link #runSessionTask(PrismsSession, SessionTask, boolean)} is captured so that it can
+	 *         be added to errors thrown by the task in other sessions
+	 */
+	public boolean isTracingSessionTasks()
+	{
+		return isTracingSessionTasks;
+	}
+
+	/** @return The number of session tasks that have been dropped because a session's backlog was full */
+	public long getDroppedSessionTaskCount()
+	{
+		return theDroppedSessionTasks.get();
+	}
+
+	/**
+	 * Configures how tasks are run for all of this application's sessions
+	 * 
+	 * @param maxPending The maximum number of tasks that may wait to run in a single session
+	 * @param idleTime The time after which tasks are run for an unaccessed session in the background
+	 * @param trace Whether to capture the caller's stack trace for errors in session tasks
+	 */
+	void setSessionTaskConfig(int maxPending, long idleTime, boolean trace)
+	{
+		theMaxPendingSessionTasks = maxPending;
+		theIdleSessionTaskTime = idleTime;
+		isTracingSessionTasks = trace;
+	}
+
 	/** @return Whether this application has been fully configured */
 	public boolean isConfigured()
 	{
@@ -854,7 +991,10 @@ public class PrismsApplication
 	 * @param session The session requesting the task be run. This session is treated differently in
 	 *        that the task will not be run in that session if <code>excludeSession</code> is true,
 	 *        and the task will be run in the current thread otherwise. The task will be run on
-	 *        other sessions upon the next start or finish of a request on that session.
+	 *        other sessions upon the next start or finish of a request on that session, or in the
+	 *        background if the session has been {@link #getIdleSessionTaskTime() idle} for a while.
+	 *        If the task is a {@link CoalescingSessionTask}, it replaces any task of the same kind
+	 *        still waiting in a session.
 	 * @param task The task to run
 	 * @param excludeSession Whether the given session should be excluded from the task
 	 */
@@ -868,9 +1008,10 @@ public class PrismsApplication
 			if(trans != null)
 			{
 				ct = trans.getThread();
-				event = trans.getTracker().start(
-					"PRISMS: Running session task " + prisms.util.PrismsUtils.taskToString(task)
-						+ " synchronously");
+				if(trans.getTracker().isOn())
+					event = trans.getTracker().start(
+						"PRISMS: Running session task " + prisms.util.PrismsUtils.taskToString(task)
+							+ " synchronously");
 			}
 			try
 			{
@@ -881,46 +1022,56 @@ public class PrismsApplication
 					trans.getTracker().end(event);
 			}
 		}
-		for(PrismsSession session_i : getSessions())
+		SessionTask toQueue = task;
+		if(isTracingSessionTasks)
+			toQueue = new TracedSessionTask(task, (ct != null ? ct : Thread.currentThread())
+				.getStackTrace());
+		long idleTime = theIdleSessionTaskTime;
+		long now = idleTime > 0 ? System.currentTimeMillis() : 0;
+		int dropped = 0;
+		/* The same task object is queued in every session, so this loop allocates nothing per session */
+		for(PrismsSession s : theSessions)
 		{
-			if(session_i != session)
+			if(s == session)
+				continue;
+			if(!s.queueSessionTask(toQueue, theMaxPendingSessionTasks))
 			{
-				final PrismsSession s = session_i;
-				final StackTraceElement [] trace = (ct != null ? ct : Thread.currentThread())
-					.getStackTrace();
-				s.runEventually(new Runnable()
-				{
-					public void run()
-					{
-						TrackNode event = null;
-						PrismsTransaction trans = getEnvironment().getTransaction();
-						if(trans != null)
-							event = trans.getTracker().start(
-								"PRISMS: Running session task "
-									+ prisms.util.PrismsUtils.taskToString(task)
-									+ " asynchronously");
-						try
-						{
-							task.run(s);
-						} catch(RuntimeException e)
-						{
-							e.setStackTrace(prisms.util.PrismsUtils.patchStackTraces(
-								e.getStackTrace(), trace, getClass().getName(), "run"));
-							throw e;
-						} finally
-						{
-							if(event != null)
-								trans.getTracker().end(event);
-						}
-					}
-
-					@Override
-					public String toString()
-					{
-						return "Session Task Runner";
-					}
-				});
+				dropped++;
+				continue;
 			}
+			if(idleTime > 0 && now - s.getLastAccess() >= idleTime)
+				s.runTasksInBackground();
+		}
+		if(dropped > 0)
+		{
+			theDroppedSessionTasks.addAndGet(dropped);
+			log.warn("Session task " + prisms.util.PrismsUtils.taskToString(task) + " dropped for "
+				+ dropped + " sessions with full task backlogs");
+		}
+	}
+
+	/**
+	 * Runs a task queued with {@link #runSessionTask(PrismsSession, SessionTask, boolean)} in a
+	 * session other than the one that queued it
+	 * 
+	 * @param task The task to run
+	 * @param session The session to run the task in
+	 */
+	void runQueuedSessionTask(SessionTask task, PrismsSession session)
+	{
+		TrackNode event = null;
+		PrismsTransaction trans = getEnvironment().getTransaction();
+		if(trans != null && trans.getTracker().isOn())
+			event = trans.getTracker().start(
+				"PRISMS: Running session task " + prisms.util.PrismsUtils.taskToString(task)
+					+ " asynchronously");
+		try
+		{
+			task.run(session);
+		} finally
+		{
+			if(event != null)
+				trans.getTracker().end(event);
 		}
 	}
 
@@ -1167,8 +1318,13 @@ public class PrismsApplication
 					continue;
 				ppm.getPersister().reload();
 				ppm.setValue(ppm.getPersister().getValue());
-				runSessionTask(null, new SessionTask()
+				runSessionTask(null, new CoalescingSessionTask()
 				{
+					public Object getCoalesceKey()
+					{
+						return ppm.getProperty();
+					}
+
 					public void run(PrismsSession session)
 					{
 						session.setProperty(ppm.getProperty(), ppm.getCorrectValue(session));
@@ -1499,6 +1655,8 @@ public class PrismsApplication
 				}
 			}
 		}
+		if(theWorker != null)
+			theWorker.close();
 	}
 
 	private static class ScheduledTask
@@ -190,6 +190,12 @@ public class PrismsEnv implements prisms.util.Sealable
 
 	private TrackerSet.TrackConfig[] theTrackConfigs;
 
+	private int theTrackSampleRate;
+
+	private final java.util.concurrent.atomic.AtomicInteger theTrackSampleCount;
+
+	private long theTrackMergeInterval;
+
 	private GlobalPrintConfig theDefaultPrintConfig;
 
 	private boolean isSealed;
@@ -218,6 +224,9 @@ public class PrismsEnv implements prisms.util.Sealable
 			}, Integer.MAX_VALUE);
 		theActiveTransactions = new java.util.concurrent.ConcurrentHashMap<Thread, PrismsTransaction>();
 		theUserCPU = new java.util.concurrent.ConcurrentHashMap<Long, long []>();
+		theTrackSampleRate = 1;
+		theTrackSampleCount = new java.util.concurrent.atomic.AtomicInteger();
+		theTrackMergeInterval = TrackerSet.DEFAULT_MERGE_INTERVAL;
 		theDefaultPrintConfig = new GlobalPrintConfig();
 		theDefaultPrintConfig.setPrintThreshold(1500);
 		theDefaultPrintConfig.setTaskDisplayThreshold(100);
@@ -268,6 +277,24 @@ public class PrismsEnv implements prisms.util.Sealable
 		theTrackConfigs = trackConfigs;
 	}
 
+	void setTrackSampleRate(int rate)
+	{
+		if(isSealed)
+			throw new IllegalStateException("Cannot set the tracking sample rate after the"
+				+ " environment has been configured");
+		if(rate < 1)
+			throw new IllegalArgumentException("Tracking sample rate must be at least 1: " + rate);
+		theTrackSampleRate = rate;
+	}
+
+	void setTrackMergeInterval(long interval)
+	{
+		if(isSealed)
+			throw new IllegalStateException("Cannot set the tracking merge interval after the"
+				+ " environment has been configured");
+		theTrackMergeInterval = interval;
+	}
+
 	void setVariable(String name, String value)
 	{
 		if(isSealed)
@@ -324,6 +351,17 @@ public class PrismsEnv implements prisms.util.Sealable
 		return theConnectionFactory;
 	}
 
+	/**
+	 * @return Usage statistics for all pooled database connections in this environment. Will be
+	 *         empty if the connection factory does not pool connections.
+	 */
+	public prisms.arch.ds.ConnectionPoolStats[] getConnectionPoolStats()
+	{
+		if(theConnectionFactory instanceof prisms.impl.DefaultConnectionFactory)
+			return ((prisms.impl.DefaultConnectionFactory) theConnectionFactory).getPoolStats();
+		return new prisms.arch.ds.ConnectionPoolStats [0];
+	}
+
 	/** @return The worker that this PRISMS environment will use for asynchronous processing */
 	public Worker getWorker()
 	{
@@ -336,6 +374,33 @@ public class PrismsEnv implements prisms.util.Sealable
 		return theTrackConfigs == null ? null : theTrackConfigs.clone();
 	}
 
+	/**
+	 * @return N, where one in every N transactions in this environment is tracked. Untracked
+	 *         transactions contribute no tracking data and are not printed.
+	 */
+	public int getTrackSampleRate()
+	{
+		return theTrackSampleRate;
+	}
+
+	/**
+	 * @return The interval at which tracking data accumulated by each thread is merged into the
+	 *         applications' and sessions' tracker sets
+	 * @see TrackerSet#getMergeInterval()
+	 */
+	public long getTrackMergeInterval()
+	{
+		return theTrackMergeInterval;
+	}
+
+	/** @return Whether the next transaction should be tracked, according to the sample rate */
+	boolean shouldTrack()
+	{
+		if(theTrackSampleRate <= 1)
+			return true;
+		return theTrackSampleCount.incrementAndGet() % theTrackSampleRate == 0;
+	}
+
 	/** @return The default print configuration that PRISMS will use to print tracking data */
 	public GlobalPrintConfig getDefaultPrintConfig()
 	{
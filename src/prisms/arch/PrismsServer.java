@@ -862,6 +862,15 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 			RemoteEventSerializer serializer = request.client.getSerializer();
 			if(serializer == null)
 				serializer = getSerializer();
+			boolean encodeUnicode = !request.client.isService()
+				|| compareVersions(request.version, "2.1.3") >= 0;
+			/* Encrypted responses must be buffered to be encrypted as a whole */
+			if(serializer instanceof StreamingEventSerializer
+				&& !(response.shouldEncrypt && request.client.isService()))
+			{
+				streamReturn(request, response, (StreamingEventSerializer) serializer, encodeUnicode);
+				return;
+			}
 			String str;
 			try
 			{
@@ -879,7 +888,7 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 					throw new IllegalStateException("Could not serialize return events", e);
 				}
 			}
-			if(!request.client.isService() || compareVersions(request.version, "2.1.3") >= 0)
+			if(encodeUnicode)
 				str = PrismsUtils.encodeUnicode(str);
 			if(response.shouldEncrypt)
 				str = encrypt(reqAuth, request, str);
@@ -902,6 +911,50 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 			}
 		}
 
+		/**
+		 * Writes the return events directly to the response stream, compressing them if the client
+		 * accepts it
+		 */
+		private void streamReturn(PrismsRequest request, PrismsResponse response,
+			StreamingEventSerializer serializer, boolean encodeUnicode) throws IOException
+		{
+			request.theResponse.setContentType(serializer.getContentType(response.toReturn));
+			String acceptEncoding = request.httpRequest.getHeader("accept-encoding");
+			boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+			if(gzip)
+				request.theResponse.setHeader("Content-Encoding", "gzip");
+			try
+			{
+				streamEvents(request, serializer, response.toReturn, gzip, encodeUnicode);
+			} catch(java.io.NotSerializableException e)
+			{
+				/* Validation happens during the write, so part of the response may have been written.
+				 * If none of it has been sent yet, it can be replaced with an error. */
+				if(request.theResponse.isCommitted())
+				{
+					log.error("Could not serialize return events after the response was committed", e);
+					throw e;
+				}
+				request.theResponse.resetBuffer();
+				JSONArray send = new JSONArray();
+				send.add(prisms.util.PrismsUtils.rEventProps("method", "error", "message",
+					"Could not serialize return events"));
+				streamEvents(request, serializer, send, gzip, encodeUnicode);
+			}
+		}
+
+		private void streamEvents(PrismsRequest request, StreamingEventSerializer serializer,
+			JSONArray events, boolean gzip, boolean encodeUnicode) throws IOException
+		{
+			java.io.OutputStream os = request.theResponse.getOutputStream();
+			if(gzip)
+				os = new java.util.zip.GZIPOutputStream(os, 8192);
+			java.io.Writer out = new java.io.BufferedWriter(new java.io.OutputStreamWriter(os,
+				request.theResponse.getCharacterEncoding()), 8192);
+			serializer.serialize(events, out, encodeUnicode);
+			out.close();
+		}
+
 		private String encrypt(PrismsAuthenticator.RequestAuthenticator reqAuth, PrismsRequest request, String text)
 			throws PrismsException
 		{
@@ -1543,6 +1596,12 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 
 		private ClientGovernor theGovernor;
 
+		/** The keys under which this session is stored in the server's session map */
+		String [] theKeys;
+
+		/** The time at which the session reaper will next check this session */
+		long theNextCheck;
+
 		HttpSession(String id, ClientGovernor gov)
 		{
 			theID = id;
@@ -1731,6 +1790,36 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 				&& System.currentTimeMillis() - theLastUsed > getSecurityTimeout() * 2;
 		}
 
+		/**
+		 * @return The amount of time until {@link #check()} may have something to do for this session. This may be
+		 *         negative.
+		 */
+		long untilCheck()
+		{
+			long ret = Long.MAX_VALUE;
+			SecuritySession [] securities = theSecurities;
+			PrismsSessionHolder [] holders = theSessionHolders;
+			for(SecuritySession sec : securities)
+			{
+				long exp = sec.untilExpires();
+				if(exp < ret)
+					ret = exp;
+			}
+			for(PrismsSessionHolder holder : holders)
+			{
+				long exp = holder.untilExpires();
+				if(exp < ret)
+					ret = exp;
+			}
+			if(securities.length == 0 && holders.length == 0)
+			{
+				long exp = getSecurityTimeout() * 2 - (System.currentTimeMillis() - theLastUsed);
+				if(exp < ret)
+					ret = exp;
+			}
+			return ret;
+		}
+
 		void destroy()
 		{
 			SecuritySession [] securities = theSecurities;
@@ -1844,6 +1933,70 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 		}
 	}
 
+	/** Statistics on the background thread that disposes of expired sessions */
+	public static class SessionReaperStats
+	{
+		volatile long sweepCount;
+
+		volatile long lastSweepTime;
+
+		volatile long totalSweepTime;
+
+		volatile long maxSweepTime;
+
+		volatile int lastChecked;
+
+		volatile int lastReaped;
+
+		volatile long totalReaped;
+
+		SessionReaperStats()
+		{
+		}
+
+		/** @return The number of sweeps the reaper has performed */
+		public long getSweepCount()
+		{
+			return sweepCount;
+		}
+
+		/** @return The duration of the most recent sweep, in nanoseconds */
+		public long getLastSweepTime()
+		{
+			return lastSweepTime;
+		}
+
+		/** @return The total duration of all sweeps, in nanoseconds */
+		public long getTotalSweepTime()
+		{
+			return totalSweepTime;
+		}
+
+		/** @return The duration of the longest sweep, in nanoseconds */
+		public long getMaxSweepTime()
+		{
+			return maxSweepTime;
+		}
+
+		/** @return The number of sessions checked by the most recent sweep */
+		public int getLastChecked()
+		{
+			return lastChecked;
+		}
+
+		/** @return The number of sessions disposed of by the most recent sweep */
+		public int getLastReaped()
+		{
+			return lastReaped;
+		}
+
+		/** @return The total number of sessions disposed of by the reaper */
+		public long getTotalReaped()
+		{
+			return totalReaped;
+		}
+	}
+
 	/** Represents the activity of the client */
 	public class ClientGovernor
 	{
@@ -1996,10 +2149,18 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 
 	private RemoteEventSerializer theSerializer;
 
-	private long theCleanTimer;
-
 	private long theCleanInterval;
 
+	/** The maximum time between checks on a session, so that killed sessions are disposed of promptly */
+	private long theMaxCheckInterval;
+
+	/** Sessions ordered by the time they next need to be checked */
+	private final java.util.PriorityQueue<HttpSession> theReapIndex;
+
+	private final java.util.concurrent.ScheduledExecutorService theReaper;
+
+	private final SessionReaperStats theReaperStats;
+
 	private long theSecurityTimeout;
 
 	private long theSecurityRefresh;
@@ -2057,8 +2218,39 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 				}
 			}, 0, 15L * 60 * 1000);
 		theSerializer = new JsonSerializer();
-		theCleanTimer = System.currentTimeMillis();
 		theCleanInterval = 1000;
+		theMaxCheckInterval = 30000;
+		theReapIndex = new java.util.PriorityQueue<HttpSession>(32, new java.util.Comparator<HttpSession>()
+		{
+			public int compare(HttpSession o1, HttpSession o2)
+			{
+				return o1.theNextCheck < o2.theNextCheck ? -1 : (o1.theNextCheck > o2.theNextCheck ? 1 : 0);
+			}
+		});
+		theReaperStats = new SessionReaperStats();
+		theReaper = java.util.concurrent.Executors
+			.newSingleThreadScheduledExecutor(new java.util.concurrent.ThreadFactory()
+			{
+				public Thread newThread(Runnable r)
+				{
+					Thread ret = new Thread(r, "PRISMS Session Reaper");
+					ret.setDaemon(true);
+					return ret;
+				}
+			});
+		theReaper.scheduleWithFixedDelay(new Runnable()
+		{
+			public void run()
+			{
+				try
+				{
+					clean();
+				} catch(Throwable e)
+				{
+					log.error("Session reaper failed", e);
+				}
+			}
+		}, theCleanInterval, theCleanInterval, java.util.concurrent.TimeUnit.MILLISECONDS);
 		if(initDefaultLogging)
 			initLog4j(getClass().getResource("log4j.xml"));
 		theApps = new java.util.LinkedHashMap<String, PrismsApplication>();
@@ -2148,6 +2340,12 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 		return theActivityConstraints.clone();
 	}
 
+	/** @return Statistics on the background thread that disposes of expired sessions */
+	public SessionReaperStats getSessionReaperStats()
+	{
+		return theReaperStats;
+	}
+
 	/**
 	 * @return Whether this server checks for running transactions that are taking a long time to finish
 	 */
@@ -2465,24 +2663,18 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 
 		if(theConfigProgress.theStage.compareTo(ConfigStage.LOGGING) <= 0)
 		{
-			Worker worker;
-			PrismsConfig workerEl = pConfig.subConfig("worker");
-			if(workerEl == null || "threadpool".equals(workerEl.get("type")))
-			{
-				if(workerEl == null || workerEl.get("threads") == null)
-					worker = new prisms.impl.ThreadPoolWorker("PRISMS Worker");
-				else
-					worker = new prisms.impl.ThreadPoolWorker("PRISMS Worker", workerEl.getInt("threads", 0));
-			}
-			else
-				throw new IllegalArgumentException("Unrecognized worker type in worker element " + workerEl
-					+ "\nCannot configure application without worker");
-			theEnv.setWorker(worker);
+			theEnv.setWorker(createWorker(pConfig.subConfig("worker"), "PRISMS Worker"));
 
 			PrismsConfig tracking = pConfig.subConfig("tracking");
+			PrismsConfig displayThresh = null;
 			if(tracking != null)
+			{
 				theEnv.setTrackConfigs(prisms.util.TrackerSet.parseTrackConfigs(tracking));
-			PrismsConfig displayThresh = tracking.subConfig("display-thresholds");
+				theEnv.setTrackSampleRate(tracking.getInt("sample-rate", 1));
+				theEnv.setTrackMergeInterval(tracking.getTime("merge-interval",
+					prisms.util.TrackerSet.DEFAULT_MERGE_INTERVAL));
+				displayThresh = tracking.subConfig("display-thresholds");
+			}
 			if(displayThresh != null)
 			{
 				prisms.arch.PrismsEnv.GlobalPrintConfig gpc = theEnv.getDefaultPrintConfig();
@@ -2570,6 +2762,16 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 				log.warn("No custom applications found in " + getClass().getResource("PRISMSConfig.xml"));
 			else
 				loadApps(defAppConfig, configXmlRef);
+			PrismsConfig workerEl = pConfig.subConfig("worker");
+			if(workerEl != null && workerEl.is("isolate", false))
+				for(PrismsApplication app : theApps.values())
+					app.setWorker(createWorker(workerEl, "PRISMS Worker: " + app.getName()));
+			PrismsConfig sessionTaskEl = pConfig.subConfig("session-tasks");
+			if(sessionTaskEl != null)
+				for(PrismsApplication app : theApps.values())
+					app.setSessionTaskConfig(sessionTaskEl.getInt("max-pending",
+						PrismsApplication.DEFAULT_MAX_PENDING_SESSION_TASKS), sessionTaskEl.getTime(
+						"idle-time", 0), sessionTaskEl.is("trace", false));
 			theEnv.seal();
 			theConfigProgress.theStage = theConfigProgress.theStage.next();
 		}
@@ -2730,6 +2932,43 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 		return null;
 	}
 
+	/**
+	 * Creates a worker from its configuration
+	 * 
+	 * @param workerEl The worker configuration. May be null for a default worker.
+	 * @param name The name for the worker
+	 * @return The new worker
+	 */
+	static Worker createWorker(PrismsConfig workerEl, String name)
+	{
+		if(workerEl == null || "threadpool".equals(workerEl.get("type")))
+		{
+			if(workerEl == null || workerEl.get("threads") == null)
+				return new prisms.impl.ThreadPoolWorker(name);
+			else
+				return new prisms.impl.ThreadPoolWorker(name, workerEl.getInt("threads", 0));
+		}
+		else if("executor".equals(workerEl.get("type")))
+		{
+			int threads = workerEl.getInt("threads", Runtime.getRuntime().availableProcessors() * 2);
+			int queue = workerEl.getInt("queue", threads * 64);
+			prisms.impl.ExecutorWorker.RejectionPolicy policy;
+			if(workerEl.get("rejection") == null)
+				policy = prisms.impl.ExecutorWorker.RejectionPolicy.CALLER_RUNS;
+			else
+			{
+				policy = prisms.impl.ExecutorWorker.RejectionPolicy.byName(workerEl.get("rejection"));
+				if(policy == null)
+					throw new IllegalArgumentException("Unrecognized rejection policy in worker element "
+						+ workerEl + "\nCannot configure application without worker");
+			}
+			return new prisms.impl.ExecutorWorker(name, threads, queue, policy, workerEl.is("virtual", false));
+		}
+		else
+			throw new IllegalArgumentException("Unrecognized worker type in worker element " + workerEl
+				+ "\nCannot configure application without worker");
+	}
+
 	private void loadApps(PrismsConfig appsConfig, String path)
 	{
 		for(PrismsConfig appEl : appsConfig.subConfigs("application"))
@@ -3178,7 +3417,6 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 			return;
 		}
 
-		clean();
 		PrismsRequest pReq = new PrismsRequest(req, resp, getSerializer());
 		if(pReq.isWMS)
 		{
@@ -3287,8 +3525,10 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 					if(httpSession == null)
 					{
 						httpSession = new HttpSession(sessionIDs[0], clientGovernor);
+						httpSession.theKeys = sessionIDs;
 						for(String sessionID : sessionIDs)
 							theSessions.put(sessionID, httpSession);
+						scheduleCheck(httpSession, System.currentTimeMillis());
 					}
 				}
 			}
@@ -3391,7 +3631,6 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 			else
 				pResp.toReturn.addAll(preRet);
 		}
-		clean();
 		if(pResp.toReturn != null)
 		{
 			events.addAll(pResp.toReturn);
@@ -3517,19 +3756,40 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 		theSessions.remove(id);
 	}
 
-	/** Disposes of application sessions that are expired */
+	/**
+	 * Disposes of application sessions that are expired. This is called periodically by a background thread, but
+	 * may be called to perform a sweep immediately. Only sessions that are due to be checked are examined.
+	 */
 	public void clean()
 	{
+		long start = System.nanoTime();
 		long time = System.currentTimeMillis();
-		if(time - theCleanTimer < theCleanInterval)
-			return;
-		theCleanTimer = Long.MAX_VALUE;
-		java.util.Iterator<HttpSession> sessionIter = theSessions.values().iterator();
-		while(sessionIter.hasNext())
+		java.util.ArrayList<HttpSession> due = new java.util.ArrayList<HttpSession>();
+		synchronized(theReapIndex)
 		{
-			HttpSession session = sessionIter.next();
-			if(session != null && session.check())
-				sessionIter.remove();
+			while(!theReapIndex.isEmpty() && theReapIndex.peek().theNextCheck <= time)
+				due.add(theReapIndex.poll());
+		}
+		int reaped = 0;
+		for(HttpSession session : due)
+		{
+			boolean mapped = false;
+			for(String key : session.theKeys)
+				if(theSessions.get(key) == session)
+				{
+					mapped = true;
+					break;
+				}
+			if(!mapped)
+				continue; // Removed by other means
+			if(session.check())
+			{
+				for(String key : session.theKeys)
+					theSessions.remove(key, session);
+				reaped++;
+			}
+			else
+				scheduleCheck(session, time);
 		}
 		java.util.Iterator<SessionEpitaph> epitaphs = theEpitaphs.values().iterator();
 		while(epitaphs.hasNext())
@@ -3538,8 +3798,29 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 			if(time - ep.time > WARN_EXPIRE_THRESHOLD)
 				epitaphs.remove();
 		}
-		theCleanTimer = time;
-		System.gc();
+		long sweepTime = System.nanoTime() - start;
+		theReaperStats.sweepCount++;
+		theReaperStats.lastSweepTime = sweepTime;
+		theReaperStats.totalSweepTime += sweepTime;
+		if(sweepTime > theReaperStats.maxSweepTime)
+			theReaperStats.maxSweepTime = sweepTime;
+		theReaperStats.lastChecked = due.size();
+		theReaperStats.lastReaped = reaped;
+		theReaperStats.totalReaped += reaped;
+	}
+
+	private void scheduleCheck(HttpSession session, long time)
+	{
+		long until = session.untilCheck();
+		if(until < theCleanInterval)
+			until = theCleanInterval;
+		else if(until > theMaxCheckInterval)
+			until = theMaxCheckInterval;
+		synchronized(theReapIndex)
+		{
+			session.theNextCheck = time + until;
+			theReapIndex.add(session);
+		}
 	}
 
 	private long runawayCheckFreq;
@@ -3816,6 +4097,11 @@ public class PrismsServer extends javax.servlet.http.HttpServlet
 	public void destroy()
 	{
 		log.info("PRISMS is shutting down");
+		theReaper.shutdownNow();
+		synchronized(theReapIndex)
+		{
+			theReapIndex.clear();
+		}
 		HttpSession [] sessions = theSessions.values().toArray(new HttpSession [0]);
 		theSessions.clear();
 		for(HttpSession session : sessions)
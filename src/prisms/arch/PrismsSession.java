@@ -118,6 +118,40 @@ public class PrismsSession
 
 	static final Logger log = Logger.getLogger(PrismsSession.class);
 
+	/**
+	 * The default amount of time, in milliseconds, that a client's getEvents request for a running
+	 * task will be held open waiting for events to be posted
+	 */
+	public static final long DEFAULT_LONG_POLL = 10000;
+
+	/** The maximum amount of time that a client may ask for a getEvents request to be held open */
+	public static final long MAX_LONG_POLL = 30000;
+
+	/** Tracks the completion of an event being processed asynchronously */
+	private static class AsyncTask
+	{
+		final boolean [] theFinished;
+
+		final java.util.concurrent.CountDownLatch theLatch;
+
+		AsyncTask(boolean [] finished)
+		{
+			theFinished = finished;
+			theLatch = new java.util.concurrent.CountDownLatch(1);
+		}
+
+		boolean isFinished()
+		{
+			return theLatch.getCount() == 0;
+		}
+
+		void finish()
+		{
+			theFinished[0] = true;
+			theLatch.countDown();
+		}
+	}
+
 	private final PrismsApplication theApp;
 
 	private final ClientConfig theClient;
@@ -159,16 +193,51 @@ public class PrismsSession
 
 	private final ListenerManager<PrismsEventListener> theELs;
 
-	private final java.util.concurrent.ConcurrentLinkedQueue<Runnable> theTaskList;
+	/** Marks the place of a coalesced session task in the task queue */
+	private static class CoalescedTask
+	{
+		final Object theKey;
+
+		CoalescedTask(Object key)
+		{
+			theKey = key;
+		}
+	}
+
+	/**
+	 * Tasks from {@link #runEventually(Runnable)} and session tasks from
+	 * {@link PrismsApplication#runSessionTask(PrismsSession, PrismsApplication.SessionTask, boolean)},
+	 * in the order they were queued
+	 */
+	private final java.util.concurrent.ConcurrentLinkedQueue<Object> theTaskList;
+
+	/** The latest waiting session task of each coalesced kind */
+	private final ConcurrentHashMap<Object, PrismsApplication.SessionTask> theCoalescedTasks;
+
+	private final java.util.concurrent.atomic.AtomicInteger theQueuedSessionTasks;
+
+	private final java.util.concurrent.atomic.AtomicBoolean isBackgroundRunScheduled;
+
+	/** Held while this session's tasks are being run so that only one thread runs them at a time */
+	private final java.util.concurrent.locks.ReentrantLock theTaskRunLock;
+
+	/** The number of session tasks dropped since the user was last told about it */
+	private final java.util.concurrent.atomic.AtomicInteger theDroppedTasks;
 
 	private EventListener theListener;
 
-	private java.util.concurrent.ConcurrentHashMap<String, boolean []> theRunningTasks;
+	private java.util.concurrent.ConcurrentHashMap<String, AsyncTask> theRunningTasks;
+
+	private final Object theEventLock;
+
+	private final java.util.concurrent.atomic.AtomicInteger theEventWaiters;
 
 	private final prisms.util.TrackerSet theTrackSet;
 
 	private long theAsyncWait;
 
+	private long theLongPollWait;
+
 	/**
 	 * Creates a PluginAppSession
 	 * 
@@ -195,10 +264,18 @@ public class PrismsSession
 		thePSAQueue = new PropertySetActionQueue();
 		thePCLs = new ListenerManager<PrismsPCL>(PrismsPCL.class);
 		theELs = new ListenerManager<PrismsEventListener>(PrismsEventListener.class);
-		theTaskList = new java.util.concurrent.ConcurrentLinkedQueue<Runnable>();
-		theRunningTasks = new ConcurrentHashMap<String, boolean []>();
+		theTaskList = new java.util.concurrent.ConcurrentLinkedQueue<Object>();
+		theCoalescedTasks = new ConcurrentHashMap<Object, PrismsApplication.SessionTask>();
+		theQueuedSessionTasks = new java.util.concurrent.atomic.AtomicInteger();
+		isBackgroundRunScheduled = new java.util.concurrent.atomic.AtomicBoolean();
+		theTaskRunLock = new java.util.concurrent.locks.ReentrantLock();
+		theDroppedTasks = new java.util.concurrent.atomic.AtomicInteger();
+		theRunningTasks = new ConcurrentHashMap<String, AsyncTask>();
+		theEventLock = new Object();
+		theEventWaiters = new java.util.concurrent.atomic.AtomicInteger();
 		theTrackSet = new prisms.util.TrackerSet("Session: " + client + "/" + user, app
 			.getTrackSet().getConfigs());
+		theTrackSet.setMergeInterval(app.getTrackSet().getMergeInterval());
 		theTrackSet.setConfigured();
 
 		if(client.isService())
@@ -214,6 +291,7 @@ public class PrismsSession
 		theStandardPlugins.put("Status", theStatus);
 
 		theAsyncWait = 100;
+		theLongPollWait = DEFAULT_LONG_POLL;
 	}
 
 	/**
@@ -366,6 +444,26 @@ public class PrismsSession
 		theLastCheckedTime = System.currentTimeMillis();
 	}
 
+	/**
+	 * @return The amount of time, in milliseconds, that a client's poll for the results of a running
+	 *         task will be held open waiting for events. 0 means clients will poll without waiting.
+	 */
+	public long getLongPollWait()
+	{
+		return theLongPollWait;
+	}
+
+	/**
+	 * @param wait The amount of time, in milliseconds, that a client's poll for the results of a
+	 *        running task should be held open waiting for events. 0 disables long polling.
+	 */
+	public void setLongPollWait(long wait)
+	{
+		if(wait > MAX_LONG_POLL)
+			wait = MAX_LONG_POLL;
+		theLongPollWait = wait < 0 ? 0 : wait;
+	}
+
 	/**
 	 * Processes an event synchronously. If this method is used instead of
 	 * {@link #processAsync(JSONObject, boolean [])}, events posted from this thread will go into
@@ -403,7 +501,7 @@ public class PrismsSession
 	{
 		if(finished == null)
 			finished = new boolean [1];
-		final boolean [] fFinished = finished;
+		final AsyncTask task = new AsyncTask(finished);
 		PrismsTransaction trans = getTransaction();
 		if(event.get("plugin") == null && "getEvents".equals(event.get("method"))
 			&& event.containsKey("taskID"))
@@ -412,28 +510,41 @@ public class PrismsSession
 				"Check Running Tasks");
 			try
 			{
-				java.util.Iterator<boolean []> values = theRunningTasks.values().iterator();
+				java.util.Iterator<AsyncTask> values = theRunningTasks.values().iterator();
 				while(values.hasNext())
 				{
-					if(values.next()[0])
+					if(values.next().isFinished())
 						values.remove();
 				}
 
 				String taskID = (String) event.get("taskID");
-				finished = theRunningTasks.get(taskID);
-				JSONArray ret = getEvents();
-				if(finished != null && !finished[0] && !getUI().isProgressShowing())
+				AsyncTask running = theRunningTasks.get(taskID);
+				if(running != null && event.get("wait") instanceof Number)
 				{
-					JSONObject getEvents = new JSONObject();
-					getEvents.put("method", "getEvents");
-					getEvents.put("taskID", taskID);
-					ret.add(getEvents);
+					long wait = ((Number) event.get("wait")).longValue();
+					if(wait > MAX_LONG_POLL)
+						wait = MAX_LONG_POLL;
+					if(wait > 0)
+					{
+						TrackNode waitTrack = prisms.util.PrismsUtils.track(trans,
+							"Long Poll For Events");
+						try
+						{
+							awaitEvents(running, wait);
+						} finally
+						{
+							prisms.util.PrismsUtils.end(trans, waitTrack);
+						}
+					}
 				}
+				JSONArray ret = getEvents();
+				if(running != null && !running.isFinished() && !getUI().isProgressShowing())
+					ret.add(createTaskPoll(taskID));
 				return ret;
 			} finally
 			{
 				prisms.util.PrismsUtils.end(trans, track);
-				fFinished[0] = true;
+				task.finish();
 			}
 		}
 		Runnable toRun = new Runnable()
@@ -447,12 +558,13 @@ public class PrismsSession
 					process(event);
 				} finally
 				{
-					fFinished[0] = true;
 					getApp().getEnvironment().finish(trans2);
+					task.finish();
+					signalEvents();
 				}
 			}
 		};
-		theApp.getEnvironment().getWorker().run(toRun, new Worker.ErrorListener()
+		theApp.getWorker().run(toRun, new Worker.ErrorListener()
 		{
 			public void error(Error e)
 			{
@@ -462,54 +574,100 @@ public class PrismsSession
 			public void runtime(RuntimeException e)
 			{
 				postOutgoingEvent(wrapError("Background task runtime exception", e));
+				/* The worker may have discarded the task without running it */
+				task.finish();
+				signalEvents();
 			}
 		});
 		if(theAsyncWait > 0)
 		{
 			/*
-			 * This code checks often to see if the event has been processed. If the processing
-			 * isn't finished after theAsyncWait, this method returns, leaving the final results of
-			 * the event on the queue to be retrieved at the next client poll or user action. This
-			 * allows progress bars to be shown to the user quickly while a long operation
-			 * progresses, as well as releasing the server thread to be reused by other requests.
+			 * Waits for the event to be processed. If the processing isn't finished after
+			 * theAsyncWait, this method returns, leaving the final results of the event on the queue
+			 * to be retrieved at the next client poll or user action. This allows progress bars to be
+			 * shown to the user quickly while a long operation progresses, as well as releasing the
+			 * server thread to be reused by other requests.
 			 */
 			prisms.util.ProgramTracker.TrackNode track = prisms.util.PrismsUtils.track(trans,
 				"Wait For Async Results");
-			long waitInc = theAsyncWait / 5;
-			if(waitInc < 50)
+			try
 			{
-				waitInc = 50;
-				if(waitInc > theAsyncWait)
-					waitInc = theAsyncWait;
-			}
-			long now = System.currentTimeMillis();
-			do
+				task.theLatch.await(theAsyncWait, java.util.concurrent.TimeUnit.MILLISECONDS);
+			} catch(InterruptedException e)
 			{
-				try
-				{
-					Thread.sleep(waitInc);
-				} catch(InterruptedException e)
-				{}
-			} while(!finished[0] && System.currentTimeMillis() - now < theAsyncWait);
-			prisms.util.PrismsUtils.end(trans, track);
+				Thread.currentThread().interrupt();
+			} finally
+			{
+				prisms.util.PrismsUtils.end(trans, track);
+			}
 		}
-		if(!finished[0])
+		if(!task.isFinished())
 		{
 			String taskID = Integer.toHexString(toRun.hashCode());
-			JSONObject getEvents = new JSONObject();
-			getEvents.put("method", "getEvents");
-			getEvents.put("taskID", taskID);
-			if(!finished[0] && (!getUI().isProgressShowing() || "UI".equals(event.get("plugin"))))
+			if(!getUI().isProgressShowing() || "UI".equals(event.get("plugin")))
 			{
-				theRunningTasks.put(taskID, finished);
+				theRunningTasks.put(taskID, task);
 				JSONArray ret = getEvents();
-				ret.add(getEvents);
+				ret.add(createTaskPoll(taskID));
 				return ret;
 			}
 		}
 		return getEvents();
 	}
 
+	private JSONObject createTaskPoll(String taskID)
+	{
+		JSONObject ret = new JSONObject();
+		ret.put("method", "getEvents");
+		ret.put("taskID", taskID);
+		if(theLongPollWait > 0)
+			ret.put("wait", Long.valueOf(theLongPollWait));
+		return ret;
+	}
+
+	/**
+	 * Blocks until an event is posted to this session, the given task finishes, or the timeout
+	 * elapses
+	 * 
+	 * @param task The running task to wait on
+	 * @param timeout The maximum time to wait, in milliseconds
+	 */
+	private void awaitEvents(AsyncTask task, long timeout)
+	{
+		long end = System.currentTimeMillis() + timeout;
+		theEventWaiters.incrementAndGet();
+		try
+		{
+			synchronized(theEventLock)
+			{
+				long remaining = timeout;
+				while(remaining > 0 && theOutgoingQueue.isEmpty() && !task.isFinished()
+					&& !isKilled)
+				{
+					theEventLock.wait(remaining);
+					remaining = end - System.currentTimeMillis();
+				}
+			}
+		} catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		} finally
+		{
+			theEventWaiters.decrementAndGet();
+		}
+	}
+
+	/** Wakes up any client requests that are waiting for events to be posted to this session */
+	private void signalEvents()
+	{
+		if(theEventWaiters.get() == 0)
+			return;
+		synchronized(theEventLock)
+		{
+			theEventLock.notifyAll();
+		}
+	}
+
 	void process(JSONObject event)
 	{
 		try
@@ -560,12 +718,17 @@ public class PrismsSession
 		runTasks();
 	}
 
-	/** Runs all tasks added with {@link #runEventually(Runnable)} */
+	/**
+	 * Runs all tasks added with {@link #runEventually(Runnable)}. Only one thread runs a session's
+	 * tasks at a time, so a thread calling this while another is running them waits for it to
+	 * finish.
+	 */
 	public void runTasks()
 	{
 		PrismsTransaction trans = getTransaction();
 		boolean hasTasks;
 		TrackNode outerTrack = prisms.util.PrismsUtils.track(trans, "Run Tasks");
+		theTaskRunLock.lock();
 		try
 		{
 			do
@@ -573,8 +736,8 @@ public class PrismsSession
 				hasTasks = false;
 				if(!theTaskList.isEmpty())
 				{
-					Runnable [] tasks = new Runnable [theTaskList.size()];
-					java.util.Iterator<Runnable> iter = theTaskList.iterator();
+					Object [] tasks = new Object [theTaskList.size()];
+					java.util.Iterator<Object> iter = theTaskList.iterator();
 					for(int i = 0; i < tasks.length && iter.hasNext(); i++)
 					{
 						tasks[i] = iter.next();
@@ -587,17 +750,22 @@ public class PrismsSession
 							.track(trans, "Session Tasks");
 						try
 						{
-							for(Runnable task : tasks)
+							for(Object task : tasks)
 							{
 								/* If a task was removed between the time when the tasks array was created and when
 								 * the item would have been reached in the iteration, the tasks array may not be
 								 * full. */
 								if(task == null)
 									break;
+								if(!(task instanceof Runnable))
+								{
+									runSessionTask(task);
+									continue;
+								}
 								TrackNode track = prisms.util.PrismsUtils.track(trans, task);
 								try
 								{
-									task.run();
+									((Runnable) task).run();
 								} catch(Throwable e)
 								{
 									log.error("Error Processing Task " + task, e);
@@ -633,8 +801,21 @@ public class PrismsSession
 				hasTasks |= theApp.runScheduledTasks();
 				hasTasks |= theApp.runPropertySetActions();
 			} while(hasTasks);
+			int dropped = theDroppedTasks.getAndSet(0);
+			if(dropped > 0)
+			{
+				JSONObject evt = new JSONObject();
+				evt.put("method", "error");
+				evt.put("code", PrismsServer.ErrorCode.ApplicationError.description);
+				evt.put("title", "Updates Missed");
+				evt.put("message", dropped + " update" + (dropped == 1 ? " was" : "s were")
+					+ " missed while this session was busy. Data shown may be out of date"
+					+ "--refresh to see the latest.");
+				postOutgoingEvent(evt);
+			}
 		} finally
 		{
+			theTaskRunLock.unlock();
 			prisms.util.PrismsUtils.end(trans, outerTrack);
 		}
 	}
@@ -801,6 +982,7 @@ public class PrismsSession
 			return;
 		}
 		theOutgoingQueue.add(evt);
+		signalEvents();
 		if(theListener != null)
 			theListener.eventPosted(evt);
 	}
@@ -815,6 +997,109 @@ public class PrismsSession
 		theTaskList.add(task);
 	}
 
+	/**
+	 * Queues a task from another session to be run in this session at the next opportunity
+	 * 
+	 * @param task The task to run
+	 * @param maxPending The maximum number of such tasks that may be waiting in this session, or
+	 *        &lt;=0 for no limit
+	 * @return Whether the task was queued, false if this session's backlog is full. A dropped task
+	 *         is reported to the user the next time this session's tasks are run.
+	 */
+	boolean queueSessionTask(PrismsApplication.SessionTask task, int maxPending)
+	{
+		Object key = null;
+		if(task instanceof PrismsApplication.CoalescingSessionTask)
+			key = ((PrismsApplication.CoalescingSessionTask) task).getCoalesceKey();
+		if(key != null)
+		{
+			/* If a task of the same kind is still waiting, it is simply replaced by this one */
+			if(theCoalescedTasks.put(key, task) == null)
+				theTaskList.add(new CoalescedTask(key));
+			return true;
+		}
+		if(maxPending > 0 && theQueuedSessionTasks.get() >= maxPending)
+		{
+			theDroppedTasks.incrementAndGet();
+			return false;
+		}
+		theQueuedSessionTasks.incrementAndGet();
+		theTaskList.add(task);
+		return true;
+	}
+
+	private void runSessionTask(Object queued)
+	{
+		PrismsApplication.SessionTask task;
+		if(queued instanceof CoalescedTask)
+		{
+			task = theCoalescedTasks.remove(((CoalescedTask) queued).theKey);
+			if(task == null)
+				return;
+		}
+		else
+		{
+			theQueuedSessionTasks.decrementAndGet();
+			task = (PrismsApplication.SessionTask) queued;
+		}
+		try
+		{
+			theApp.runQueuedSessionTask(task, this);
+		} catch(Throwable e)
+		{
+			log.error("Error Processing Task " + task, e);
+			postOutgoingEvent(wrapError("Error Processing Task " + task, e));
+		}
+	}
+
+	/**
+	 * Runs this session's waiting tasks on the application's worker instead of waiting for the
+	 * session's next request. Does nothing if such a run is already scheduled.
+	 */
+	void runTasksInBackground()
+	{
+		if(isKilled || !isBackgroundRunScheduled.compareAndSet(false, true))
+			return;
+		theApp.getWorker().run(new Runnable()
+		{
+			public void run()
+			{
+				/* Clear the flag first so that tasks queued while these are running get another run */
+				isBackgroundRunScheduled.set(false);
+				if(isKilled)
+					return;
+				PrismsTransaction trans = theApp.getEnvironment().transact(PrismsSession.this,
+					PrismsTransaction.Stage.external);
+				try
+				{
+					runTasks();
+				} finally
+				{
+					theApp.getEnvironment().finish(trans);
+				}
+			}
+
+			@Override
+			public String toString()
+			{
+				return "Background session tasks for " + PrismsSession.this;
+			}
+		}, new Worker.ErrorListener()
+		{
+			public void error(Error e)
+			{
+				log.error("Background session tasks failed", e);
+			}
+
+			public void runtime(RuntimeException e)
+			{
+				log.error("Background session tasks failed", e);
+				/* The worker may have discarded the run, so allow another to be scheduled */
+				isBackgroundRunScheduled.set(false);
+			}
+		});
+	}
+
 	/**
 	 * Registers a plugin with this session so that it can receive remote events from the client
 	 * 
@@ -1155,6 +1440,7 @@ public class PrismsSession
 		if(!theApp.getEnvironment().isManager(manager))
 			throw new IllegalArgumentException("Only the manager application may kill sessions");
 		isKilled = true;
+		signalEvents();
 	}
 
 	/** @return Whether this session has been killed */
@@ -1167,7 +1453,9 @@ public class PrismsSession
 	public void destroy()
 	{
 		getApp().removeSession(this);
+		theTrackSet.close();
 		fireEvent("destroy");
+		signalEvents();
 	}
 
 	@Override
@@ -229,6 +229,7 @@ public class PrismsTransaction
 			}
 		isFinished = false;
 		isStarted = true;
+		theTracker.setOn(app == null || app.getEnvironment().shouldTrack());
 		theID = prisms.util.PrismsUtils.getRandomString(16);
 		theApp = app;
 		theThread = Thread.currentThread();
@@ -281,10 +282,13 @@ public class PrismsTransaction
 
 			while(theRoutines.size() > 0)
 				theTracker.end(theRoutines.remove(theRoutines.size() - 1));
-			if(theSession != null)
-				theSession.getTrackSet().addTrackData(theTracker);
-			if(theApp != null)
-				theApp.getTrackSet().addTrackData(theTracker);
+			if(theTracker.isOn())
+			{
+				if(theSession != null)
+					theSession.getTrackSet().addTrackData(theTracker);
+				if(theApp != null)
+					theApp.getTrackSet().addTrackData(theTracker);
+			}
 
 			if(theThreadBean != null && useJMX && theApp != null)
 			{
@@ -295,8 +299,9 @@ public class PrismsTransaction
 				theApp.addCpuTime(cpuTime);
 			}
 
-			long runTime = theTracker.getData()[0].getLength();
-			if(thePrintConfig != null && runTime >= thePrintConfig.getTaskDisplayThreshold())
+			long runTime = theTracker.isOn() ? theTracker.getData()[0].getLength() : 0;
+			if(thePrintConfig != null && theTracker.isOn()
+				&& runTime >= thePrintConfig.getTaskDisplayThreshold())
 			{
 				StringBuilder data = new StringBuilder();
 				theTracker.printData(data, thePrintConfig);
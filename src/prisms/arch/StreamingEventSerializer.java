@@ -0,0 +1,25 @@
+/*
+ * StreamingEventSerializer.java Created Oct 16, 2026 by Andrew Butler, PSL
+ */
+package prisms.arch;
+
+/**
+ * A serializer that can write events directly to the response stream instead of building the whole
+ * response as a string first
+ */
+public interface StreamingEventSerializer extends RemoteEventSerializer
+{
+	/**
+	 * Serializes a set of server events to a writer, validating them as they are written
+	 * 
+	 * @param events The events to serialize
+	 * @param writer The writer to write the serialized events to
+	 * @param encodeUnicode Whether non-ASCII characters should be written as unicode escapes (see
+	 *        {@link prisms.util.PrismsUtils#encodeUnicode(String)})
+	 * @throws java.io.NotSerializableException If the events cannot be serialized. Part of the
+	 *         events may have been written to the writer already.
+	 * @throws java.io.IOException If an error occurs writing to the writer
+	 */
+	void serialize(org.json.simple.JSONArray events, java.io.Writer writer, boolean encodeUnicode)
+		throws java.io.IOException;
+}
@@ -0,0 +1,138 @@
+/*
+ * ConnectionPoolStats.java Created Oct 16, 2026 by Andrew Butler, PSL
+ */
+package prisms.arch.ds;
+
+/** A snapshot of the usage statistics of a pooled transactor's connections */
+public class ConnectionPoolStats
+{
+	private final String theName;
+
+	private final int theSize;
+
+	private final int theOpen;
+
+	private final int theInUse;
+
+	private final int theWaiting;
+
+	private final long theBorrowCount;
+
+	private final long theWaitCount;
+
+	private final long theTotalWaitTime;
+
+	private final long theTimeoutCount;
+
+	private final long theRejectCount;
+
+	private final long theReconnectCount;
+
+	/**
+	 * @param name The name of the connection configuration that the pool is for
+	 * @param size The maximum number of connections in the pool
+	 * @param open The number of connections currently open in the pool
+	 * @param inUse The number of connections currently being used by transactions
+	 * @param waiting The number of threads currently waiting for a connection
+	 * @param borrows The total number of times a connection has been taken from the pool
+	 * @param waits The number of times a thread has had to wait for a connection
+	 * @param waitTime The total time, in milliseconds, that threads have waited for connections
+	 * @param timeouts The number of times a thread gave up waiting for a connection
+	 * @param rejects The number of times a thread was refused because the wait queue was full
+	 * @param reconnects The number of times a pooled connection failed its health check
+	 */
+	public ConnectionPoolStats(String name, int size, int open, int inUse, int waiting,
+		long borrows, long waits, long waitTime, long timeouts, long rejects, long reconnects)
+	{
+		theName = name;
+		theSize = size;
+		theOpen = open;
+		theInUse = inUse;
+		theWaiting = waiting;
+		theBorrowCount = borrows;
+		theWaitCount = waits;
+		theTotalWaitTime = waitTime;
+		theTimeoutCount = timeouts;
+		theRejectCount = rejects;
+		theReconnectCount = reconnects;
+	}
+
+	/** @return The name of the connection configuration that the pool is for */
+	public String getName()
+	{
+		return theName;
+	}
+
+	/** @return The maximum number of connections in the pool */
+	public int getSize()
+	{
+		return theSize;
+	}
+
+	/** @return The number of connections currently open in the pool */
+	public int getOpenCount()
+	{
+		return theOpen;
+	}
+
+	/** @return The number of connections currently being used by transactions */
+	public int getInUseCount()
+	{
+		return theInUse;
+	}
+
+	/** @return The number of threads currently waiting for a connection */
+	public int getWaitingCount()
+	{
+		return theWaiting;
+	}
+
+	/** @return The total number of times a connection has been taken from the pool */
+	public long getBorrowCount()
+	{
+		return theBorrowCount;
+	}
+
+	/** @return The number of times a thread has had to wait for a connection */
+	public long getWaitCount()
+	{
+		return theWaitCount;
+	}
+
+	/** @return The total time, in milliseconds, that threads have waited for connections */
+	public long getTotalWaitTime()
+	{
+		return theTotalWaitTime;
+	}
+
+	/** @return The number of times a thread gave up waiting for a connection */
+	public long getTimeoutCount()
+	{
+		return theTimeoutCount;
+	}
+
+	/** @return The number of times a thread was refused because the wait queue was full */
+	public long getRejectCount()
+	{
+		return theRejectCount;
+	}
+
+	/** @return The number of times a pooled connection failed its health check and was replaced */
+	public long getReconnectCount()
+	{
+		return theReconnectCount;
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder ret = new StringBuilder(theName);
+		ret.append(": ").append(theInUse).append('/').append(theOpen).append('/').append(theSize);
+		ret.append(" in use/open/size, ").append(theWaiting).append(" waiting, ");
+		ret.append(theBorrowCount).append(" borrows, ").append(theWaitCount).append(" waits (");
+		ret.append(prisms.util.PrismsUtils.printTimeLength(theTotalWaitTime)).append("), ");
+		ret.append(theTimeoutCount).append(" timeouts, ").append(theRejectCount).append(" rejects, ");
+		ret.append(theReconnectCount).append(" reconnects");
+		return ret.toString();
+	}
+}
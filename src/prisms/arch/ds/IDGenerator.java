@@ -37,6 +37,49 @@ public class IDGenerator
 {
 	static final Logger log = Logger.getLogger(IDGenerator.class);
 
+	/**
+	 * A block of IDs reserved in the database for a table and where clause that are handed out from
+	 * memory
+	 */
+	static class IDBlock
+	{
+		final String theTable;
+
+		final String theWhere;
+
+		/** The first ID in this block */
+		final long theStart;
+
+		/** The first ID after this block */
+		final long theEnd;
+
+		final java.util.concurrent.atomic.AtomicLong theNext;
+
+		IDBlock(String table, String where, long start, long end)
+		{
+			theTable = table;
+			theWhere = where;
+			theStart = start;
+			theEnd = end;
+			theNext = new java.util.concurrent.atomic.AtomicLong(start);
+		}
+
+		/** @return The next ID in this block, or -1 if this block has been used up */
+		long next()
+		{
+			if(theNext.get() >= theEnd)
+				return -1;
+			long ret = theNext.getAndIncrement();
+			return ret < theEnd ? ret : -1;
+		}
+
+		/** Stops this block from handing out any more IDs */
+		void discard()
+		{
+			theNext.set(theEnd);
+		}
+	}
+
 	/**
 	 * Represents an instance of PRISMS that uses a common data source with the local PRISMS
 	 * instance, i.e. that is in a common enterprise with this instance
@@ -213,6 +256,13 @@ public class IDGenerator
 
 	private PreparedStatement theAIUpdater;
 
+	private final int theBlockSize;
+
+	private final java.util.concurrent.ConcurrentHashMap<String, IDBlock> theBlocks;
+
+	/** Locks for claiming new IDs, one for each table and where clause */
+	private final java.util.concurrent.ConcurrentHashMap<String, Object> theBlockLocks;
+
 	/**
 	 * Creates an ID generator for a given connection
 	 * 
@@ -248,6 +298,9 @@ public class IDGenerator
 			}
 		});
 		isShared = theTransactor.getConnectionConfig().is("shared", false);
+		theBlockSize = theTransactor.getConnectionConfig().getInt("id-block-size", 1);
+		theBlocks = new java.util.concurrent.ConcurrentHashMap<String, IDBlock>();
+		theBlockLocks = new java.util.concurrent.ConcurrentHashMap<String, Object>();
 		theCenterID = -1;
 	}
 
@@ -645,6 +698,18 @@ public class IDGenerator
 	{
 		if(!isShared)
 			return;
+		/* The sync statements are only held for each attempt so that waiting for one table's lock
+		 * does not hold up ID generation for other tables */
+		while(!tryLock(table, where))
+			try
+			{
+				Thread.sleep(100);
+			} catch(InterruptedException e)
+			{}
+	}
+
+	private synchronized boolean tryLock(String table, String where)
+	{
 		long now = System.currentTimeMillis();
 		if(now - theLastSyncPurge > 10000)
 		{
@@ -670,28 +735,15 @@ public class IDGenerator
 			throw new IllegalStateException("Synchronization statement is messed up", e);
 		}
 		boolean locked = false;
-		do
+		try
 		{
-			try
-			{
-				try
-				{
-					theSyncStatement.executeUpdate();
-					locked = true;
-				} catch(SQLException e)
-				{
-					log.warn("Normal sync error: table=" + table + ", where=" + where, e);
-					// This is normal and means that the item has already been synchronized on
-				}
-			} finally
-			{}
-			if(!locked)
-				try
-				{
-					Thread.sleep(100);
-				} catch(InterruptedException e)
-				{}
-		} while(!locked);
+			theSyncStatement.executeUpdate();
+			locked = true;
+		} catch(SQLException e)
+		{
+			log.warn("Normal sync error: table=" + table + ", where=" + where, e);
+			// This is normal and means that the item has already been synchronized on
+		}
 		try
 		{
 			theSyncStatement.clearParameters();
@@ -699,9 +751,10 @@ public class IDGenerator
 		{
 			throw new IllegalStateException("Could not reset sync statement", e);
 		}
+		return locked;
 	}
 
-	private void unlock(String table, String where)
+	private synchronized void unlock(String table, String where)
 	{
 		if(!isShared)
 			return;
@@ -718,8 +771,26 @@ public class IDGenerator
 		}
 	}
 
+	/** @return The number of IDs that this generator reserves at a time for each table */
+	public int getBlockSize()
+	{
+		return theBlockSize;
+	}
+
 	/**
-	 * Gets the next ID for the given table within this center and namespace
+	 * Gets the next ID for the given table within this center and namespace.
+	 * 
+	 * <p>
+	 * If this generator's connection is configured with an <code>id-block-size</code> greater than
+	 * 1, IDs are reserved in the database that many at a time for each table and where clause and
+	 * handed out from memory. Only when a block is used up does this method go to the database. If
+	 * a block is reserved inside a transaction on this generator's connection and that transaction
+	 * is rolled back, the reservation is undone, so the block is dropped.
+	 * </p>
+	 * <p>
+	 * Callers only wait for each other while claiming IDs for the same table and where clause.
+	 * Claims for different tables only share this generator's statements briefly.
+	 * </p>
 	 * 
 	 * @param table The name of the table to get the next ID for (including any applicable prefix)
 	 * @param column The ID column of the table
@@ -731,8 +802,82 @@ public class IDGenerator
 	 * @return The next ID that should be used for an entry in the table
 	 * @throws PrismsException If an error occurs deriving the data
 	 */
-	public synchronized long getNextID(String table, String column, Statement extStmt,
-		String extPrefix, String where) throws PrismsException
+	public long getNextID(String table, String column, Statement extStmt, String extPrefix,
+		String where) throws PrismsException
+	{
+		String key = where == null ? table : table + " WHERE " + where;
+		if(theBlockSize <= 1)
+		{
+			synchronized(getBlockLock(key))
+			{
+				return claimIDs(table, column, extStmt, extPrefix, where, 1).theStart;
+			}
+		}
+		IDBlock block = theBlocks.get(key);
+		long ret = block == null ? -1 : block.next();
+		if(ret >= 0)
+			return ret;
+		synchronized(getBlockLock(key))
+		{
+			// Another thread may have claimed a new block while we were waiting
+			block = theBlocks.get(key);
+			ret = block == null ? -1 : block.next();
+			while(ret < 0)
+			{
+				block = claimIDs(table, column, extStmt, extPrefix, where, theBlockSize);
+				theBlocks.put(key, block);
+				discardOnRollback(key, block);
+				ret = block.next();
+			}
+			return ret;
+		}
+	}
+
+	/**
+	 * Drops a newly reserved block if the current transaction is rolled back. The database would no
+	 * longer show the block's IDs as reserved, so another instance could claim them.
+	 */
+	private void discardOnRollback(final String key, final IDBlock block)
+	{
+		theTransactor.runAfterRollback(new Runnable()
+		{
+			public void run()
+			{
+				block.discard();
+				theBlocks.remove(key, block);
+			}
+		});
+	}
+
+	private Object getBlockLock(String key)
+	{
+		Object ret = theBlockLocks.get(key);
+		if(ret == null)
+		{
+			ret = new Object();
+			Object old = theBlockLocks.putIfAbsent(key, ret);
+			if(old != null)
+				ret = old;
+		}
+		return ret;
+	}
+
+	/**
+	 * Reserves a contiguous range of unused IDs for a table in the database. The caller must hold
+	 * the {@link #getBlockLock(String) lock} for the table and where clause.
+	 * 
+	 * @param table The name of the table to get IDs for (including any applicable prefix)
+	 * @param column The ID column of the table
+	 * @param extStmt The active statement pointing to the database where the table resides
+	 * @param extPrefix The prefix that should be used to access tables in the external database
+	 * @param where The where clause that should be used to get the IDs
+	 * @param count The maximum number of IDs to reserve. Fewer may be reserved if the range runs
+	 *        into an ID that is already used.
+	 * @return The block of IDs reserved
+	 * @throws PrismsException If an error occurs deriving the data
+	 */
+	private IDBlock claimIDs(String table, String column, Statement extStmt,
+		String extPrefix, String where, int count) throws PrismsException
 	{
 		if(theTransactor == null)
 			throw new IllegalStateException("This ID generator has been closed");
@@ -745,19 +890,24 @@ public class IDGenerator
 			final long centerMin = getMinID(theCenterID);
 			final long centerMax = getMaxID(theCenterID);
 
-			theAISelector.setString(1, table);
-			theAISelector.setString(2, where == null ? "none" : where);
-			rs = theAISelector.executeQuery();
-
-			boolean update = rs.next();
+			boolean update;
 			long ret;
-			if(update)
-				ret = rs.getLong(1);
-			else
-				ret = -1;
-			rs.close();
-			rs = null;
-			theAISelector.clearParameters();
+			long end;
+			synchronized(this)
+			{
+				theAISelector.setString(1, table);
+				theAISelector.setString(2, where == null ? "none" : where);
+				rs = theAISelector.executeQuery();
+
+				update = rs.next();
+				if(update)
+					ret = rs.getLong(1);
+				else
+					ret = -1;
+				rs.close();
+				rs = null;
+				theAISelector.clearParameters();
+			}
 			if(ret < centerMin || ret > centerMax)
 				ret = -1;
 			if(ret < 0)
@@ -810,22 +960,26 @@ public class IDGenerator
 						ret = next + 1;
 				}
 				sql = null;
+				end = getBlockEnd(extStmt, extPrefix + table, column, where, ret, count, centerMax);
 				// update the db
-				if(update)
+				synchronized(this)
 				{
-					theAIUpdater.setLong(1, ret);
-					theAIUpdater.setString(2, table);
-					theAIUpdater.setString(3, where == null ? "none" : where);
-					theAIUpdater.executeUpdate();
-					theAIUpdater.clearParameters();
-				}
-				else
-				{
-					theAIInserter.setString(1, table);
-					theAIInserter.setString(2, where == null ? "none" : where);
-					theAIInserter.setLong(3, ret);
-					theAIInserter.executeUpdate();
-					theAIInserter.clearParameters();
+					if(update)
+					{
+						theAIUpdater.setLong(1, end - 1);
+						theAIUpdater.setString(2, table);
+						theAIUpdater.setString(3, where == null ? "none" : where);
+						theAIUpdater.executeUpdate();
+						theAIUpdater.clearParameters();
+					}
+					else
+					{
+						theAIInserter.setString(1, table);
+						theAIInserter.setString(2, where == null ? "none" : where);
+						theAIInserter.setLong(3, end - 1);
+						theAIInserter.executeUpdate();
+						theAIInserter.clearParameters();
+					}
 				}
 			}
 			else
@@ -837,13 +991,17 @@ public class IDGenerator
 					throw new PrismsException("All " + table + " ids are used!");
 
 				ret = nextTry;
-				theAIUpdater.setLong(1, nextTry);
-				theAIUpdater.setString(2, table);
-				theAIUpdater.setString(3, where == null ? "none" : where);
-				theAIUpdater.executeUpdate();
-				theAIUpdater.clearParameters();
+				end = getBlockEnd(extStmt, extPrefix + table, column, where, ret, count, centerMax);
+				synchronized(this)
+				{
+					theAIUpdater.setLong(1, end - 1);
+					theAIUpdater.setString(2, table);
+					theAIUpdater.setString(3, where == null ? "none" : where);
+					theAIUpdater.executeUpdate();
+					theAIUpdater.clearParameters();
+				}
 			}
-			return ret;
+			return new IDBlock(table, where, ret, end);
 		} catch(SQLException e)
 		{
 			throw new PrismsException("Could not get next ID: SQL=" + sql, e);
@@ -861,6 +1019,96 @@ public class IDGenerator
 		}
 	}
 
+	/**
+	 * Determines the end of a block of IDs that may be reserved starting at a given unused ID
+	 * 
+	 * @param stmt The statement to use to query the table
+	 * @param table The table name (with prefix if applicable) to reserve IDs in
+	 * @param column The ID column of the table
+	 * @param where The where clause that should be used to get the IDs
+	 * @param start The first ID of the block, known to be unused
+	 * @param count The maximum number of IDs to reserve
+	 * @param centerMax The maximum ID that may be reserved
+	 * @return The first ID after the reserved block
+	 * @throws SQLException If an error occurs querying the table
+	 */
+	private static long getBlockEnd(Statement stmt, String table, String column, String where,
+		long start, int count, long centerMax) throws SQLException
+	{
+		long end = start + count;
+		if(end > centerMax + 1)
+			end = centerMax + 1;
+		if(end - start <= 1)
+			return end;
+		String sql = "SELECT MIN(" + column + ") FROM " + table + " WHERE " + column + ">" + start
+			+ " AND " + column + "<" + end;
+		if(where != null)
+			sql += " AND " + where;
+		ResultSet rs = stmt.executeQuery(sql);
+		try
+		{
+			if(rs.next())
+			{
+				long used = rs.getLong(1);
+				if(!rs.wasNull())
+					end = used;
+			}
+		} finally
+		{
+			rs.close();
+		}
+		return end;
+	}
+
+	/**
+	 * Gives the unused IDs in this generator's reserved blocks back to the database so that they
+	 * may be used after this instance shuts down. IDs are only given back if no other instance has
+	 * reserved IDs for the table since this instance's block was reserved.
+	 */
+	private void releaseBlocks()
+	{
+		if(theBlocks.isEmpty() || theAIUpdater == null)
+			return;
+		Statement stmt = null;
+		try
+		{
+			stmt = theTransactor.getConnection().createStatement();
+			for(IDBlock block : theBlocks.values())
+			{
+				long next = block.theNext.get();
+				if(next >= block.theEnd)
+					continue;
+				String sql = "UPDATE " + theTransactor.getTablePrefix()
+					+ "prisms_auto_increment SET nextID=" + (next - 1) + " WHERE tableName="
+					+ DBUtils.toSQL(block.theTable) + " AND whereClause="
+					+ DBUtils.toSQL(block.theWhere == null ? "none" : block.theWhere)
+					+ " AND nextID=" + (block.theEnd - 1);
+				try
+				{
+					stmt.executeUpdate(sql);
+				} catch(SQLException e)
+				{
+					log.warn("Could not release unused IDs " + next + " to " + (block.theEnd - 1)
+						+ " for " + block.theTable, e);
+				}
+			}
+		} catch(Exception e)
+		{
+			log.warn("Could not release unused IDs", e);
+		} finally
+		{
+			theBlocks.clear();
+			if(stmt != null)
+				try
+				{
+					stmt.close();
+				} catch(SQLException e)
+				{
+					log.error("Connection error", e);
+				}
+		}
+	}
+
 	/**
 	 * Gets the next available ID in a table
 	 * 
@@ -1197,6 +1445,7 @@ public class IDGenerator
 	/** Performs steps to shut down this PRISMS database connection */
 	public synchronized void destroy()
 	{
+		releaseBlocks();
 		dropInstance();
 		closePreparedCalls();
 		theTransactor.release();
@@ -53,6 +53,44 @@ public interface ManageableUserSource extends UserSource
 		void groupChanged(UserGroup group);
 	}
 
+	/**
+	 * A {@link UserSetListener} that is notified of the individual users and groups that are
+	 * created or deleted. User sources notify listeners of this type with these methods instead of
+	 * {@link UserSetListener#userSetChanged(User[])} and
+	 * {@link UserSetListener#groupSetChanged(prisms.arch.PrismsApplication, UserGroup[])}, so the
+	 * full set does not need to be copied for every change.
+	 */
+	public static interface UserSetDeltaListener extends UserSetListener
+	{
+		/**
+		 * Called when a user is created or re-created
+		 * 
+		 * @param user The user that is now available to the user source
+		 */
+		void userAdded(User user);
+
+		/**
+		 * Called when a user is deleted
+		 * 
+		 * @param user The user that is no longer available to the user source
+		 */
+		void userRemoved(User user);
+
+		/**
+		 * Called when a group is created or re-created
+		 * 
+		 * @param group The group that is now available to the user source
+		 */
+		void groupAdded(UserGroup group);
+
+		/**
+		 * Called when a group is deleted
+		 * 
+		 * @param group The group that is no longer available to the user source
+		 */
+		void groupRemoved(UserGroup group);
+	}
+
 	/** @param listener The listener to listen for changes to this user source's user set */
 	void addListener(UserSetListener listener);
 
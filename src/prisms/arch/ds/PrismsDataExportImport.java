@@ -326,23 +326,17 @@ public class PrismsDataExportImport
 				pi.setProgressText("Exporting " + namespace + " metadata");
 				jsw.startProperty("latestChanges");
 				jsw.startArray();
-				prisms.util.IntList allCenterIDs = new prisms.util.IntList(keeper.getAllCenterIDs());
-				for(int i = 0; i < allCenterIDs.size(); i++)
-					for(int j = 0; j < allCenterIDs.size(); j++)
-					{
-						long changeTime = keeper.getLatestChange(allCenterIDs.get(i), allCenterIDs.get(j));
-						if(changeTime > 0)
-						{
-							jsw.startObject();
-							jsw.startProperty("center");
-							jsw.writeNumber(Integer.valueOf(allCenterIDs.get(i)));
-							jsw.startProperty("subjectCenter");
-							jsw.writeNumber(Integer.valueOf(allCenterIDs.get(i)));
-							jsw.startProperty("latestChange");
-							jsw.writeNumber(Long.valueOf(changeTime));
-							jsw.endObject();
-						}
-					}
+				for(prisms.records.LatestCenterChange change : keeper.getLatestChanges())
+				{
+					jsw.startObject();
+					jsw.startProperty("center");
+					jsw.writeNumber(Integer.valueOf(change.getCenterID()));
+					jsw.startProperty("subjectCenter");
+					jsw.writeNumber(Integer.valueOf(change.getSubjectCenter()));
+					jsw.startProperty("latestChange");
+					jsw.writeNumber(Long.valueOf(change.getLatestChange()));
+					jsw.endObject();
+				}
 				jsw.endArray();
 			}
 			jsw.endObject();
@@ -771,6 +765,7 @@ public class PrismsDataExportImport
 				changeReader.readChange(obj);
 				obj = jsr.parseObject();
 			}
+			changeReader.flush();
 			jsr.endArray(null);
 			message.append(", ").append(changes).append(" changes");
 			changeReader = null;
@@ -33,6 +33,42 @@ public interface Transactor<T extends Throwable> extends Cloneable
 		Object run(java.sql.Statement stmt) throws T;
 	}
 
+	/**
+	 * A transaction operation that may run concurrently with other pooled operations on one of a
+	 * pooled transactor's connections instead of waiting for exclusive use of the transactor's
+	 * connection. Ordinary operations still run one at a time and exclude pooled operations while
+	 * they run. An operation implementing this interface must:
+	 * <ul>
+	 * <li>use only the statement it is given and statements it prepares on that statement's
+	 * connection, not {@link Transactor#getConnection()} or statements prepared elsewhere,</li>
+	 * <li>not perform another transaction on the same transactor except another pooled operation,
+	 * and</li>
+	 * <li>not depend on being serialized with other transactions.</li>
+	 * </ul>
+	 * On a transactor that is not pooled, a pooled operation is performed like any other. When
+	 * performed inside an ordinary transaction on the same thread, it joins that transaction and is
+	 * committed or rolled back with it.
+	 * 
+	 * @param <T> The type of exception that this operation can throw
+	 */
+	public interface PooledOperation<T extends Throwable> extends TransactionOperation<T>
+	{
+	}
+
+	/**
+	 * A {@link PooledOperation pooled operation} that only reads data. No transaction is begun for a
+	 * read-only operation and no lock is held while it runs. On a pooled transactor it reads from
+	 * one of the pooled connections, so reads run concurrently with each other and with ordinary
+	 * transactions. On a transactor that is not pooled, or when performed inside an ordinary
+	 * transaction on the same thread, it reads from the transactor's own connection, just as a
+	 * statement created from {@link Transactor#getConnection()} would.
+	 * 
+	 * @param <T> The type of exception that this operation can throw
+	 */
+	public interface ReadOnlyOperation<T extends Throwable> extends PooledOperation<T>
+	{
+	}
+
 	/** Allows calling code to be notified when a JDBC connection must be remade */
 	public interface ReconnectListener
 	{
@@ -107,6 +143,12 @@ public interface Transactor<T extends Throwable> extends Cloneable
 	/** @return This transactor's synchronization lock */
 	java.util.concurrent.locks.ReentrantReadWriteLock getLock();
 
+	/**
+	 * @return Usage statistics for this transactor's connection pool, or null if this transactor is
+	 *         not pooled
+	 */
+	ConnectionPoolStats getPoolStats();
+
 	/** @return The Thrower used to create this Transactor */
 	Thrower<T> getThrower();
 
@@ -152,6 +194,26 @@ public interface Transactor<T extends Throwable> extends Cloneable
 	 */
 	<T2 extends T> Object performTransaction(TransactionOperation<T2> op, String ifError) throws T;
 
+	/**
+	 * Runs a task once the data written by the current thread's transaction on this transactor is
+	 * committed. If the current thread is performing a transaction on this transactor, the task is
+	 * run when the outermost transaction finishes if the data was committed by then, and is
+	 * discarded if the data was rolled back first. Otherwise the task is run immediately.
+	 * 
+	 * @param task The task to run after the current transaction commits
+	 */
+	void runAfterCommit(Runnable task);
+
+	/**
+	 * Runs a task if the data written by the current thread's transaction on this transactor is
+	 * rolled back. If the current thread is not performing a transaction on this transactor, the
+	 * task is discarded. A task that is already waiting for the current transaction is not added
+	 * again.
+	 * 
+	 * @param task The task to run if the current transaction is rolled back
+	 */
+	void runAfterRollback(Runnable task);
+
 	/**
 	 * Retrieves values from a single row of the database.
 	 * 
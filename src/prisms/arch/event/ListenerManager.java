@@ -17,8 +17,20 @@ public class ListenerManager<L>
 
 	private Class<L> theType;
 
+	private final L [] EMPTY;
+
+	/** The registered listeners, by property. The arrays are never modified once stored. */
 	private java.util.concurrent.ConcurrentHashMap<Object, L []> theListeners;
 
+	/**
+	 * Cached concatenations of the specific and general listeners for properties that have both.
+	 * Entries are removed whenever the listeners they were made from change.
+	 */
+	private java.util.concurrent.ConcurrentHashMap<Object, L []> theMerged;
+
+	/** Guards all modifications to {@link #theListeners} and {@link #theMerged} */
+	private final Object theLock;
+
 	/**
 	 * Creates a ListenerManager for a given type of listener
 	 * 
@@ -27,13 +39,16 @@ public class ListenerManager<L>
 	public ListenerManager(Class<L> type)
 	{
 		theType = type;
+		EMPTY = (L []) Array.newInstance(theType, 0);
 		theListeners = new java.util.concurrent.ConcurrentHashMap<Object, L []>();
+		theMerged = new java.util.concurrent.ConcurrentHashMap<Object, L []>();
+		theLock = new Object();
 	}
 
 	/** @return All properties for which this listener has registered listeners */
 	public Object [] getAllProperties()
 	{
-		java.util.ArrayList<Object> ret = new java.util.ArrayList<>();
+		java.util.ArrayList<Object> ret = new java.util.ArrayList<Object>();
 		for(Object prop : theListeners.keySet())
 			if(prop != ALL_KEY)
 				ret.add(prop);
@@ -41,37 +56,47 @@ public class ListenerManager<L>
 	}
 
 	/**
+	 * Gets the listeners to notify for a property. The returned array is shared between calls
+	 * until the listeners for the property change and so must not be modified by the caller.
+	 * 
 	 * @param property The name of the listeners to get
-	 * @return All listeners registered with the given name
+	 * @return All listeners registered with the given name, followed by all general listeners
 	 */
 	public L [] getListeners(Object property)
 	{
-		L [] specificLs;
-		L [] generalLs;
-		specificLs = theListeners.get(property);
-		generalLs = theListeners.get(ALL_KEY);
-		L [] ret;
-		if(specificLs == null && generalLs == null)
-			ret = (L []) Array.newInstance(theType, 0);
-		else if(specificLs == null)
-			ret = generalLs.clone();
+		L [] ret = theMerged.get(property);
+		if(ret != null)
+			return ret;
+		L [] specificLs = theListeners.get(property);
+		L [] generalLs = theListeners.get(ALL_KEY);
+		if(specificLs == null)
+			return generalLs == null ? EMPTY : generalLs;
 		else if(generalLs == null)
-			ret = specificLs.clone();
-		else
+			return specificLs;
+		synchronized(theLock)
 		{
+			/* Merge under the lock so a concurrent modification cannot leave a stale view cached */
+			ret = theMerged.get(property);
+			if(ret != null)
+				return ret;
+			specificLs = theListeners.get(property);
+			generalLs = theListeners.get(ALL_KEY);
+			if(specificLs == null)
+				return generalLs == null ? EMPTY : generalLs;
+			else if(generalLs == null)
+				return specificLs;
 			ret = (L []) Array.newInstance(theType, specificLs.length + generalLs.length);
 			System.arraycopy(specificLs, 0, ret, 0, specificLs.length);
 			System.arraycopy(generalLs, 0, ret, specificLs.length, generalLs.length);
+			theMerged.put(property, ret);
 		}
-		if(ret == null)
-			ret = (L []) Array.newInstance(theType, 0);
 		return ret;
 	}
 
 	/**
 	 * @param property The property to get registered listeners for (not including general listeners) or null to get all
 	 *        registered general listeners
-	 * @return All registered listeners for the given property
+	 * @return All registered listeners for the given property. This array must not be modified.
 	 */
 	public L [] getRegisteredListeners(Object property)
 	{
@@ -81,7 +106,7 @@ public class ListenerManager<L>
 		else
 			ret = theListeners.get(property);
 		if(ret == null)
-			ret = (L []) Array.newInstance(theType, 0);
+			ret = EMPTY;
 		return ret;
 	}
 
@@ -107,20 +132,24 @@ public class ListenerManager<L>
 			throw new IllegalArgumentException("Property cannot be null");
 		if(lstnr == null)
 			return;
-		L [] lstnrs = theListeners.get(property);
-		if(lstnrs == null)
-		{
-			lstnrs = (L []) Array.newInstance(theType, 1);
-			lstnrs[0] = lstnr;
-		}
-		else
+		synchronized(theLock)
 		{
-			L [] newLs = (L []) Array.newInstance(theType, lstnrs.length + 1);
-			System.arraycopy(lstnrs, 0, newLs, 0, lstnrs.length);
-			newLs[lstnrs.length] = lstnr;
-			lstnrs = newLs;
+			L [] lstnrs = theListeners.get(property);
+			if(lstnrs == null)
+			{
+				lstnrs = (L []) Array.newInstance(theType, 1);
+				lstnrs[0] = lstnr;
+			}
+			else
+			{
+				L [] newLs = (L []) Array.newInstance(theType, lstnrs.length + 1);
+				System.arraycopy(lstnrs, 0, newLs, 0, lstnrs.length);
+				newLs[lstnrs.length] = lstnr;
+				lstnrs = newLs;
+			}
+			theListeners.put(property, lstnrs);
+			invalidate(property);
 		}
-		theListeners.put(property, lstnrs);
 	}
 
 	/**
@@ -132,31 +161,10 @@ public class ListenerManager<L>
 	{
 		if(lstnr == null)
 			return;
-		java.util.Map.Entry<String, L []> [] allLs;
-		allLs = theListeners.entrySet().toArray(new java.util.Map.Entry [0]);
-		for(java.util.Map.Entry<String, L []> entry : allLs)
+		synchronized(theLock)
 		{
-			L [] lstnrs = entry.getValue();
-			for(int i = 0; lstnrs != null && i < lstnrs.length; i++)
-			{
-				if(lstnr.equals(lstnrs[i]))
-				{
-					L [] newLs;
-					if(lstnrs.length == 1)
-						newLs = null;
-					else
-					{
-						newLs = (L []) Array.newInstance(theType, lstnrs.length - 1);
-						System.arraycopy(lstnrs, 0, newLs, 0, i);
-						System.arraycopy(lstnrs, i + 1, newLs, i, newLs.length - i);
-					}
-					lstnrs = newLs;
-				}
-			}
-			if(lstnrs == null)
-				theListeners.remove(entry.getKey());
-			else
-				entry.setValue(lstnrs);
+			for(Object property : theListeners.keySet())
+				removeListener(property, lstnr);
 		}
 	}
 
@@ -170,25 +178,43 @@ public class ListenerManager<L>
 	{
 		if(lstnr == null)
 			return;
-		L [] lstnrs = theListeners.get(property);
-		for(int i = 0; lstnrs != null && i < lstnrs.length; i++)
+		synchronized(theLock)
 		{
-			if(lstnr.equals(lstnrs[i]))
+			L [] lstnrs = theListeners.get(property);
+			if(lstnrs == null)
+				return;
+			int count = 0;
+			for(L l : lstnrs)
+				if(!lstnr.equals(l))
+					count++;
+			if(count == lstnrs.length)
+				return;
+			if(count == 0)
+				theListeners.remove(property);
+			else
 			{
-				if(lstnrs.length == 1)
-					lstnrs = null;
-				else
-				{
-					L [] newLs = (L []) Array.newInstance(theType, lstnrs.length - 1);
-					System.arraycopy(lstnrs, 0, newLs, 0, i);
-					System.arraycopy(lstnrs, i + 1, newLs, i, newLs.length - i);
-					lstnrs = newLs;
-				}
+				L [] newLs = (L []) Array.newInstance(theType, count);
+				count = 0;
+				for(L l : lstnrs)
+					if(!lstnr.equals(l))
+						newLs[count++] = l;
+				theListeners.put(property, newLs);
 			}
+			invalidate(property);
 		}
-		if(lstnrs == null)
-			theListeners.remove(property);
+	}
+
+	/**
+	 * Discards the cached listener views affected by a change to a property's listeners. Must be
+	 * called while holding {@link #theLock}.
+	 * 
+	 * @param property The property whose listeners changed
+	 */
+	private void invalidate(Object property)
+	{
+		if(property == ALL_KEY)
+			theMerged.clear();
 		else
-			theListeners.put(property, lstnrs);
+			theMerged.remove(property);
 	}
 }
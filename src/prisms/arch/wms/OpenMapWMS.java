@@ -7,14 +7,91 @@ import java.util.Properties;
 
 import org.json.simple.JSONObject;
 
+import prisms.arch.PrismsApplication;
+import prisms.util.DualKey;
+
 import com.bbn.openmap.LatLonPoint;
 import com.bbn.openmap.proj.LLXY;
 import com.bbn.openmap.proj.ProjMath;
 import com.bbn.openmap.proj.Projection;
 
-/** A simple OpenMap abstract implementation of the WMS standard for PRISMS */
+/**
+ * A simple OpenMap abstract implementation of the WMS standard for PRISMS. WMS images are rendered
+ * by a pool of image servers so that several overlays may be rendered at once. Since a plugin
+ * instance is created for each session, the number of images rendered at once is limited across
+ * all sessions of the application by plugin name. Requests beyond the limit wait for a render to
+ * finish, up to a limit after which they are refused.
+ */
 public abstract class OpenMapWMS extends prisms.ui.PrismsOpenMapPlugin implements WmsPlugin
 {
+	/** The default maximum time a WMS request will wait for an image server to render with */
+	public static final long DEFAULT_RENDER_TIMEOUT = 30000;
+
+	/** An image server and the format it is currently configured to write */
+	private static class RenderContext
+	{
+		final com.bbn.openmap.image.ImageServer theServer;
+
+		String theFormat;
+
+		RenderContext(com.bbn.openmap.image.ImageServer server)
+		{
+			theServer = server;
+		}
+
+		void setFormat(String format)
+		{
+			if(format.equals(theFormat))
+				return;
+			if(format.equals("png"))
+				theServer.setFormatter(new com.bbn.openmap.image.PNGImageIOFormatter());
+			else if(format.equals("jpeg"))
+				theServer.setFormatter(new com.bbn.openmap.image.SunJPEGFormatter());
+			else
+				theServer.setFormatter(new com.bbn.openmap.image.GIFImageIOFormatter());
+			theFormat = format;
+		}
+	}
+
+	/**
+	 * Limits the number of WMS images rendered at once by all instances of a plugin in an
+	 * application. All fields are guarded by the limit's monitor.
+	 */
+	private static class RenderLimit
+	{
+		int theActive;
+
+		int theWaiting;
+
+		int theMaxRenderers;
+
+		int theMaxWaiting;
+
+		long theTimeout;
+
+		RenderLimit()
+		{
+			theMaxRenderers = Runtime.getRuntime().availableProcessors();
+			theMaxWaiting = theMaxRenderers * 4;
+			theTimeout = DEFAULT_RENDER_TIMEOUT;
+		}
+	}
+
+	/** The render limit for each plugin name in each application */
+	private static final java.util.HashMap<DualKey<PrismsApplication, String>, RenderLimit> theRenderLimits;
+
+	static
+	{
+		theRenderLimits = new java.util.HashMap<DualKey<PrismsApplication, String>, RenderLimit>();
+	}
+
+	private final Properties theOMProps;
+
+	private volatile RenderLimit theLimit;
+
+	/** This plugin's image servers that are not rendering. Guarded by the list's monitor. */
+	private final java.util.LinkedList<RenderContext> theIdleRenderers;
+
 	/**
 	 * Creates a WMS server
 	 * 
@@ -23,6 +100,35 @@ public abstract class OpenMapWMS extends prisms.ui.PrismsOpenMapPlugin implement
 	public OpenMapWMS(Properties omProps)
 	{
 		super(omProps);
+		theOMProps = omProps;
+		theLimit = new RenderLimit();
+		theIdleRenderers = new java.util.LinkedList<RenderContext>();
+	}
+
+	/**
+	 * Joins the render limit shared by this plugin's instances in the session's application and
+	 * configures it from the "render-threads", "render-queue" and "render-timeout" attributes of
+	 * the plugin's configuration, if present
+	 */
+	@Override
+	public void initPlugin(prisms.arch.PrismsSession session, prisms.arch.PrismsConfig config)
+	{
+		super.initPlugin(session, config);
+		DualKey<PrismsApplication, String> key = new DualKey<PrismsApplication, String>(
+			session.getApp(), getName());
+		synchronized(theRenderLimits)
+		{
+			RenderLimit limit = theRenderLimits.get(key);
+			if(limit == null)
+			{
+				limit = new RenderLimit();
+				theRenderLimits.put(key, limit);
+			}
+			theLimit = limit;
+		}
+		int maxRenderers = config.getInt("render-threads", getMaxRenderers());
+		setRenderLimits(maxRenderers, config.getInt("render-queue", maxRenderers * 4),
+			config.getTime("render-timeout", getRenderTimeout()));
 	}
 
 	@Override
@@ -36,32 +142,190 @@ public abstract class OpenMapWMS extends prisms.ui.PrismsOpenMapPlugin implement
 		throw new IllegalArgumentException(getName() + " event not recognized: " + evt);
 	}
 
-	public synchronized void drawMapOverlay(PrismsWmsRequest request, JSONObject event,
+	/**
+	 * Sets the render limits shared by all instances of this plugin in the application
+	 * 
+	 * @param maxRenderers The maximum number of WMS images to render at once
+	 * @param maxWaiting The maximum number of WMS requests that may wait for a render to finish.
+	 *        Requests beyond this are refused.
+	 * @param timeout The maximum time, in milliseconds, that a WMS request will wait to be
+	 *        rendered
+	 */
+	public void setRenderLimits(int maxRenderers, int maxWaiting, long timeout)
+	{
+		if(maxRenderers < 1)
+			throw new IllegalArgumentException("At least one renderer is required");
+		RenderLimit limit = theLimit;
+		synchronized(limit)
+		{
+			limit.theMaxRenderers = maxRenderers;
+			limit.theMaxWaiting = maxWaiting < 0 ? 0 : maxWaiting;
+			limit.theTimeout = timeout;
+			limit.notifyAll();
+		}
+		synchronized(theIdleRenderers)
+		{
+			while(theIdleRenderers.size() > maxRenderers)
+				theIdleRenderers.removeLast();
+		}
+	}
+
+	/**
+	 * @return The maximum number of WMS images this plugin's instances in the application will
+	 *         render at once
+	 */
+	public int getMaxRenderers()
+	{
+		RenderLimit limit = theLimit;
+		synchronized(limit)
+		{
+			return limit.theMaxRenderers;
+		}
+	}
+
+	/** @return The maximum number of WMS requests that may wait for a render to finish */
+	public int getMaxWaiting()
+	{
+		RenderLimit limit = theLimit;
+		synchronized(limit)
+		{
+			return limit.theMaxWaiting;
+		}
+	}
+
+	/** @return The maximum time, in milliseconds, that a WMS request will wait to be rendered */
+	public long getRenderTimeout()
+	{
+		RenderLimit limit = theLimit;
+		synchronized(limit)
+		{
+			return limit.theTimeout;
+		}
+	}
+
+	/**
+	 * Creates an image server for the render pool. The layers of each server must be independent
+	 * of those of any other server. Subclasses that configure {@link #getImageServer()} beyond the
+	 * properties given to the constructor must override this method to configure pooled servers
+	 * the same way.
+	 * 
+	 * @return A new image server to render WMS images with
+	 */
+	protected com.bbn.openmap.image.ImageServer createImageServer()
+	{
+		com.bbn.openmap.image.ImageServer ret = new com.bbn.openmap.image.ImageServer(theOMProps);
+		ret.setBackground(getImageServer().getBackground());
+		return ret;
+	}
+
+	private RenderContext acquireRenderer() throws java.io.IOException
+	{
+		RenderLimit limit = theLimit;
+		synchronized(limit)
+		{
+			if(limit.theActive >= limit.theMaxRenderers)
+			{
+				if(limit.theWaiting >= limit.theMaxWaiting)
+					throw new IllegalStateException("Too many WMS requests waiting to render for "
+						+ getName());
+				long end = System.currentTimeMillis() + limit.theTimeout;
+				limit.theWaiting++;
+				try
+				{
+					while(limit.theActive >= limit.theMaxRenderers)
+					{
+						long wait = end - System.currentTimeMillis();
+						if(wait <= 0)
+							throw new IllegalStateException(
+								"Timed out waiting to render WMS image for " + getName());
+						limit.wait(wait);
+					}
+				} catch(InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+					throw new java.io.InterruptedIOException(
+						"Interrupted waiting to render WMS image");
+				} finally
+				{
+					limit.theWaiting--;
+				}
+			}
+			limit.theActive++;
+		}
+		synchronized(theIdleRenderers)
+		{
+			if(!theIdleRenderers.isEmpty())
+				return theIdleRenderers.removeFirst();
+		}
+		boolean created = false;
+		try
+		{
+			RenderContext ret = new RenderContext(createImageServer());
+			created = true;
+			return ret;
+		} finally
+		{
+			if(!created)
+				releaseRenderer(null);
+		}
+	}
+
+	private void releaseRenderer(RenderContext renderer)
+	{
+		if(renderer != null)
+		{
+			synchronized(theIdleRenderers)
+			{
+				if(theIdleRenderers.size() < getMaxRenderers())
+					theIdleRenderers.addFirst(renderer);
+			}
+		}
+		RenderLimit limit = theLimit;
+		synchronized(limit)
+		{
+			limit.theActive--;
+			limit.notify();
+		}
+	}
+
+	public void drawMapOverlay(PrismsWmsRequest request, JSONObject event,
 		java.io.OutputStream output) throws java.io.IOException
 	{
 		String format = request.getFormat().toLowerCase();
 		if(format.endsWith("png"))
-			getImageServer().setFormatter(new com.bbn.openmap.image.PNGImageIOFormatter());
+			format = "png";
 		else if(format.endsWith("jpg") || format.endsWith("jpeg"))
-			getImageServer().setFormatter(new com.bbn.openmap.image.SunJPEGFormatter());
+			format = "jpeg";
 		else if(format.endsWith("gif"))
-			getImageServer().setFormatter(new com.bbn.openmap.image.GIFImageIOFormatter());
+			format = "gif";
 		else
 			throw new IllegalArgumentException("Unrecognized image format " + format);
-		int layersMask = 0;
-		int bitMask = 1;
 		Projection proj = createProjection(request);
-		com.bbn.openmap.Layer[] layers = getImageServer().getLayers();
-		for(com.bbn.openmap.Layer layer : layers)
+		java.awt.Paint background = request.getBackground();
+		if(background == null)
+			background = getImageServer().getBackground();
+		byte [] image;
+		RenderContext renderer = acquireRenderer();
+		try
+		{
+			renderer.setFormat(format);
+			int layersMask = 0;
+			int bitMask = 1;
+			com.bbn.openmap.Layer[] layers = renderer.theServer.getLayers();
+			for(com.bbn.openmap.Layer layer : layers)
+			{
+				if(request.containsLayer(layer.getName()))
+					layersMask |= bitMask;
+				bitMask <<= 1;
+			}
+			renderer.theServer.setBackground(background);
+			image = renderer.theServer.createImage(proj, request.getWidth(), request.getHeight(),
+				layersMask);
+		} finally
 		{
-			if(request.containsLayer(layer.getName()))
-				layersMask |= bitMask;
-			bitMask <<= 1;
+			releaseRenderer(renderer);
 		}
-		if(request.getBackground() != null)
-			getImageServer().setBackground(request.getBackground());
-		output.write(getImageServer().createImage(proj, request.getWidth(), request.getHeight(),
-			layersMask));
+		output.write(image);
 	}
 
 	/**
@@ -264,14 +264,39 @@ public abstract class PrismsWms implements prisms.arch.wms.WmsPlugin
 		}
 	}
 
+	private static final java.util.concurrent.atomic.AtomicLong theCacheIDs;
+
+	private static final TileCache theSharedTileCache;
+
+	static
+	{
+		theCacheIDs = new java.util.concurrent.atomic.AtomicLong();
+		theSharedTileCache = new TileCache();
+	}
+
 	private prisms.arch.PrismsSession theSession;
 
 	private String theName;
 
+	/** Distinguishes this plugin's images from those of other plugins in a shared tile cache */
+	private final long theCacheID;
+
+	private final java.util.concurrent.atomic.AtomicLong theDataVersion;
+
+	private boolean isTileCaching;
+
+	/** Creates the WMS plugin */
+	public PrismsWms()
+	{
+		theCacheID = theCacheIDs.incrementAndGet();
+		theDataVersion = new java.util.concurrent.atomic.AtomicLong();
+	}
+
 	public void initPlugin(prisms.arch.PrismsSession session, prisms.arch.PrismsConfig pluginEl)
 	{
 		theSession = session;
 		theName = pluginEl.get("name");
+		isTileCaching = pluginEl.is("tile-cache", false);
 	}
 
 	public void initClient()
@@ -290,7 +315,96 @@ public abstract class PrismsWms implements prisms.arch.wms.WmsPlugin
 		return theName;
 	}
 
-	public void drawMapOverlay(PrismsWmsRequest request, JSONObject event,
+	/**
+	 * @return The tile cache that is shared by all WMS plugins that do not override
+	 *         {@link #getTileCache()}
+	 */
+	public static TileCache getSharedTileCache()
+	{
+		return theSharedTileCache;
+	}
+
+	/**
+	 * Tile caching is off unless the plugin's configuration sets "tile-cache" to true, since a
+	 * plugin whose data can change must call {@link #bumpDataVersion()} for caching to be correct.
+	 * 
+	 * @return The cache to keep this plugin's rendered images in, or null if this plugin's images
+	 *         should not be cached
+	 */
+	protected TileCache getTileCache()
+	{
+		return isTileCaching ? theSharedTileCache : null;
+	}
+
+	/** @return The version of the data that this plugin renders */
+	public long getDataVersion()
+	{
+		return theDataVersion.get();
+	}
+
+	/**
+	 * Marks this plugin's rendered data as changed so that images rendered from the previous data
+	 * are no longer served from the tile cache. Subclasses must call this whenever anything that
+	 * {@link #doGetMap(PrismsWmsRequest, JSONObject, GeoRenderer)} draws changes.
+	 */
+	public void bumpDataVersion()
+	{
+		theDataVersion.incrementAndGet();
+	}
+
+	/**
+	 * Gets data besides the WMS parameters that affects how an image is rendered. Images are only
+	 * shared between requests whose WMS parameters and discriminators are equal. By default this is
+	 * the PRISMS-specific data sent with the request.
+	 * 
+	 * @param request The WMS request to render a response to
+	 * @param event The PRISMS-specific data sent with the request
+	 * @return A string to distinguish the request's image from those of other requests with the
+	 *         same WMS parameters
+	 */
+	protected String getCacheDiscriminator(PrismsWmsRequest request, JSONObject event)
+	{
+		return event == null ? null : event.toString();
+	}
+
+	public void drawMapOverlay(final PrismsWmsRequest request, final JSONObject event,
+		java.io.OutputStream output) throws java.io.IOException
+	{
+		final String imageType = getImageType(request.getFormat());
+		TileCache cache = getTileCache();
+		if(cache == null)
+		{
+			renderMapOverlay(request, event, imageType, output);
+			return;
+		}
+		TileCache.Key key = new TileCache.Key(theCacheID, theDataVersion.get(), request,
+			getCacheDiscriminator(request, event));
+		byte [] image = cache.get(key, new TileCache.TileRenderer()
+		{
+			public byte [] render() throws java.io.IOException
+			{
+				java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+				renderMapOverlay(request, event, imageType, bytes);
+				return bytes.toByteArray();
+			}
+		});
+		output.write(image);
+	}
+
+	private static String getImageType(String format)
+	{
+		format = format.toLowerCase();
+		if(format.contains("png"))
+			return "png";
+		else if(format.contains("jpg") || format.contains("jpeg"))
+			return "jpeg";
+		else if(format.contains("gif"))
+			return "gif";
+		else
+			throw new IllegalArgumentException("Unrecognized image format: " + format);
+	}
+
+	private void renderMapOverlay(PrismsWmsRequest request, JSONObject event, String imageType,
 		java.io.OutputStream output) throws java.io.IOException
 	{
 		java.awt.image.BufferedImage image = new java.awt.image.BufferedImage(request.getWidth(),
@@ -307,49 +421,23 @@ public abstract class PrismsWms implements prisms.arch.wms.WmsPlugin
 			prisms.util.PrismsUtils.end(trans, track);
 		}
 		if(renderer == null)
-		{
 			image.getGraphics().dispose();
-			track = prisms.util.PrismsUtils.track(trans, "Write WMS Image");
+		else
+		{
+			track = prisms.util.PrismsUtils.track(trans, "Render WMS Map");
 			try
 			{
-				if(request.getFormat().toLowerCase().contains("png"))
-					javax.imageio.ImageIO.write(image, "png", output);
-				else if(request.getFormat().toLowerCase().contains("jpg")
-					|| request.getFormat().toLowerCase().contains("jpeg"))
-					javax.imageio.ImageIO.write(image, "jpeg", output);
-				else if(request.getFormat().toLowerCase().contains("gif"))
-					javax.imageio.ImageIO.write(image, "gif", output);
-				else
-					throw new IllegalArgumentException("Unrecognized image format: "
-						+ request.getFormat());
+				doGetMap(request, event, renderer);
 			} finally
 			{
 				prisms.util.PrismsUtils.end(trans, track);
+				renderer.getGraphics().dispose();
 			}
-			return;
-		}
-		track = prisms.util.PrismsUtils.track(trans, "Render WMS Map");
-		try
-		{
-			doGetMap(request, event, renderer);
-		} finally
-		{
-			prisms.util.PrismsUtils.end(trans, track);
-			renderer.getGraphics().dispose();
 		}
 		track = prisms.util.PrismsUtils.track(trans, "Write WMS Image");
 		try
 		{
-			if(request.getFormat().toLowerCase().contains("png"))
-				javax.imageio.ImageIO.write(image, "png", output);
-			else if(request.getFormat().toLowerCase().contains("jpg")
-				|| request.getFormat().toLowerCase().contains("jpeg"))
-				javax.imageio.ImageIO.write(image, "jpeg", output);
-			else if(request.getFormat().toLowerCase().contains("gif"))
-				javax.imageio.ImageIO.write(image, "gif", output);
-			else
-				throw new IllegalArgumentException("Unrecognized image format: "
-					+ request.getFormat());
+			javax.imageio.ImageIO.write(image, imageType, output);
 		} finally
 		{
 			prisms.util.PrismsUtils.end(trans, track);
@@ -0,0 +1,396 @@
+/*
+ * TileCache.java Created Oct 16, 2026 by Andrew Butler, PSL
+ */
+package prisms.arch.wms;
+
+/**
+ * A bounded cache of encoded WMS map images. Entries are evicted least-recently-used first once the
+ * total size of the cached images exceeds the cache's byte budget. Requests for an image that is
+ * already being rendered wait for that render instead of starting another.
+ */
+public class TileCache
+{
+	/** The default byte budget for a tile cache */
+	public static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+
+	/** Renders an image on a cache miss */
+	public interface TileRenderer
+	{
+		/**
+		 * @return The encoded image
+		 * @throws java.io.IOException If the image cannot be encoded
+		 */
+		byte [] render() throws java.io.IOException;
+	}
+
+	/**
+	 * Identifies a cached image. The bounding box is normalized to micro-degrees so that requests
+	 * that differ only in the formatting or rounding of their coordinates share an entry. Layers are
+	 * kept exactly as requested since their order and names may affect the rendered image.
+	 */
+	public static final class Key
+	{
+		private final long theOwner;
+
+		private final long theVersion;
+
+		private final int theMinLat;
+
+		private final int theMaxLat;
+
+		private final int theMinLon;
+
+		private final int theMaxLon;
+
+		private final int theWidth;
+
+		private final int theHeight;
+
+		private final String theFormat;
+
+		private final String theSRS;
+
+		private final String [] theLayers;
+
+		private final int theBackground;
+
+		private final boolean isTransparent;
+
+		private final String theDiscriminator;
+
+		private final int theHash;
+
+		/**
+		 * @param owner The ID of the plugin instance that renders the image
+		 * @param version The version of the owner's data that the image is rendered from
+		 * @param request The WMS request for the image
+		 * @param discriminator Any other data that affects how the image is rendered. May be null.
+		 */
+		public Key(long owner, long version, PrismsWmsRequest request, String discriminator)
+		{
+			theOwner = owner;
+			theVersion = version;
+			BoundingBox box = request.getBounds();
+			theMinLat = normalize(box.minLat);
+			theMaxLat = normalize(box.maxLat);
+			theMinLon = normalize(box.minLon);
+			theMaxLon = normalize(box.maxLon);
+			theWidth = request.getWidth();
+			theHeight = request.getHeight();
+			theFormat = request.getFormat() == null ? "" : request.getFormat().toLowerCase();
+			theSRS = request.getSRS() == null ? "" : request.getSRS().toUpperCase();
+			String [] layers = request.getLayers();
+			theLayers = layers == null ? new String [0] : layers.clone();
+			theBackground = request.getBackground() == null ? 0 : request.getBackground().getRGB();
+			isTransparent = request.isTransparent();
+			theDiscriminator = discriminator;
+
+			int hash = (int) (theOwner ^ (theOwner >>> 32));
+			hash = hash * 31 + (int) (theVersion ^ (theVersion >>> 32));
+			hash = hash * 31 + theMinLat;
+			hash = hash * 31 + theMaxLat;
+			hash = hash * 31 + theMinLon;
+			hash = hash * 31 + theMaxLon;
+			hash = hash * 31 + theWidth;
+			hash = hash * 31 + theHeight;
+			hash = hash * 31 + theFormat.hashCode();
+			hash = hash * 31 + theSRS.hashCode();
+			hash = hash * 31 + java.util.Arrays.hashCode(theLayers);
+			hash = hash * 31 + theBackground;
+			hash = hash * 31 + (isTransparent ? 1 : 0);
+			hash = hash * 31 + (theDiscriminator == null ? 0 : theDiscriminator.hashCode());
+			theHash = hash;
+		}
+
+		private static int normalize(float coord)
+		{
+			return (int) Math.round(coord * 1000000.0);
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if(this == o)
+				return true;
+			if(!(o instanceof Key))
+				return false;
+			Key k = (Key) o;
+			return theHash == k.theHash && theOwner == k.theOwner && theVersion == k.theVersion
+				&& theMinLat == k.theMinLat && theMaxLat == k.theMaxLat
+				&& theMinLon == k.theMinLon && theMaxLon == k.theMaxLon
+				&& theWidth == k.theWidth && theHeight == k.theHeight
+				&& theBackground == k.theBackground && isTransparent == k.isTransparent
+				&& theFormat.equals(k.theFormat) && theSRS.equals(k.theSRS)
+				&& java.util.Arrays.equals(theLayers, k.theLayers)
+				&& (theDiscriminator == null ? k.theDiscriminator == null
+					: theDiscriminator.equals(k.theDiscriminator));
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return theHash;
+		}
+
+		@Override
+		public String toString()
+		{
+			return theOwner + "v" + theVersion + " " + theWidth + "x" + theHeight + " " + theFormat
+				+ " [" + theMinLat / 1000000.0 + ", " + theMinLon / 1000000.0 + " to " + theMaxLat
+				/ 1000000.0 + ", " + theMaxLon / 1000000.0 + "] "
+				+ prisms.util.ArrayUtils.toString(theLayers);
+		}
+	}
+
+	/** A render in progress that other requests for the same image may wait on */
+	private static class Flight
+	{
+		final java.util.concurrent.CountDownLatch theLatch = new java.util.concurrent.CountDownLatch(
+			1);
+
+		byte [] theResult;
+
+		Throwable theError;
+	}
+
+	private final java.util.LinkedHashMap<Key, byte []> theEntries;
+
+	private final java.util.HashMap<Key, Flight> theFlights;
+
+	/** Guards {@link #theEntries}, {@link #theFlights} and the statistics */
+	private final Object theLock;
+
+	private long theMaxBytes;
+
+	private long theBytes;
+
+	private long theHits;
+
+	private long theMisses;
+
+	private long theCoalesced;
+
+	private long theEvictions;
+
+	/** Creates a tile cache with the {@link #DEFAULT_MAX_BYTES default} byte budget */
+	public TileCache()
+	{
+		this(DEFAULT_MAX_BYTES);
+	}
+
+	/** @param maxBytes The maximum total size of the images to keep in this cache */
+	public TileCache(long maxBytes)
+	{
+		theEntries = new java.util.LinkedHashMap<Key, byte []>(64, 0.75f, true);
+		theFlights = new java.util.HashMap<Key, Flight>();
+		theLock = new Object();
+		theMaxBytes = maxBytes;
+	}
+
+	/**
+	 * Gets a cached image, rendering it if it is not cached. If another thread is already rendering
+	 * the same image, this method waits for that render and returns its result.
+	 *
+	 * @param key The key of the image to get
+	 * @param renderer Renders the image if it is not cached or being rendered
+	 * @return The encoded image. This array is shared and must not be modified.
+	 * @throws java.io.IOException If the image cannot be rendered
+	 */
+	public byte [] get(Key key, TileRenderer renderer) throws java.io.IOException
+	{
+		Flight flight;
+		boolean leader;
+		synchronized(theLock)
+		{
+			byte [] ret = theEntries.get(key);
+			if(ret != null)
+			{
+				theHits++;
+				return ret;
+			}
+			flight = theFlights.get(key);
+			leader = flight == null;
+			if(leader)
+			{
+				theMisses++;
+				flight = new Flight();
+				theFlights.put(key, flight);
+			}
+			else
+				theCoalesced++;
+		}
+		if(!leader)
+			return await(flight);
+		try
+		{
+			flight.theResult = renderer.render();
+		} catch(java.io.IOException e)
+		{
+			flight.theError = e;
+			throw e;
+		} catch(RuntimeException e)
+		{
+			flight.theError = e;
+			throw e;
+		} catch(Error e)
+		{
+			flight.theError = e;
+			throw e;
+		} finally
+		{
+			synchronized(theLock)
+			{
+				theFlights.remove(key);
+				if(flight.theResult != null)
+					put(key, flight.theResult);
+			}
+			flight.theLatch.countDown();
+		}
+		return flight.theResult;
+	}
+
+	private byte [] await(Flight flight) throws java.io.IOException
+	{
+		try
+		{
+			flight.theLatch.await();
+		} catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new java.io.InterruptedIOException("Interrupted waiting for tile render");
+		}
+		if(flight.theError instanceof RuntimeException)
+			throw (RuntimeException) flight.theError;
+		else if(flight.theError instanceof Error)
+			throw (Error) flight.theError;
+		else if(flight.theError != null)
+		{
+			java.io.IOException toThrow = new java.io.IOException("Tile render failed: "
+				+ flight.theError.getMessage());
+			toThrow.initCause(flight.theError);
+			throw toThrow;
+		}
+		return flight.theResult;
+	}
+
+	/** Must be called while holding {@link #theLock} */
+	private void put(Key key, byte [] image)
+	{
+		if(image.length > theMaxBytes)
+			return;
+		byte [] old = theEntries.put(key, image);
+		if(old != null)
+			theBytes -= old.length;
+		theBytes += image.length;
+		trim();
+	}
+
+	/** Must be called while holding {@link #theLock} */
+	private void trim()
+	{
+		java.util.Iterator<byte []> iter = theEntries.values().iterator();
+		while(theBytes > theMaxBytes && iter.hasNext())
+		{
+			theBytes -= iter.next().length;
+			iter.remove();
+			theEvictions++;
+		}
+	}
+
+	/** Removes all images from this cache */
+	public void clear()
+	{
+		synchronized(theLock)
+		{
+			theEntries.clear();
+			theBytes = 0;
+		}
+	}
+
+	/** @return The maximum total size of the images kept in this cache */
+	public long getMaxBytes()
+	{
+		synchronized(theLock)
+		{
+			return theMaxBytes;
+		}
+	}
+
+	/**
+	 * @param maxBytes The maximum total size of the images to keep in this cache. If this is less
+	 *        than the current size, images will be evicted immediately.
+	 */
+	public void setMaxBytes(long maxBytes)
+	{
+		synchronized(theLock)
+		{
+			theMaxBytes = maxBytes;
+			trim();
+		}
+	}
+
+	/** @return The total size of the images currently in this cache */
+	public long getByteSize()
+	{
+		synchronized(theLock)
+		{
+			return theBytes;
+		}
+	}
+
+	/** @return The number of images currently in this cache */
+	public int getSize()
+	{
+		synchronized(theLock)
+		{
+			return theEntries.size();
+		}
+	}
+
+	/** @return The number of requests that were served from this cache */
+	public long getHitCount()
+	{
+		synchronized(theLock)
+		{
+			return theHits;
+		}
+	}
+
+	/** @return The number of requests that required an image to be rendered */
+	public long getMissCount()
+	{
+		synchronized(theLock)
+		{
+			return theMisses;
+		}
+	}
+
+	/** @return The number of requests that waited for a render already in progress */
+	public long getCoalescedCount()
+	{
+		synchronized(theLock)
+		{
+			return theCoalesced;
+		}
+	}
+
+	/** @return The number of images that have been evicted to stay within the byte budget */
+	public long getEvictionCount()
+	{
+		synchronized(theLock)
+		{
+			return theEvictions;
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		synchronized(theLock)
+		{
+			return "Tile cache: " + theEntries.size() + " images, " + theBytes + "/" + theMaxBytes
+				+ " bytes, " + theHits + " hits, " + theMisses + " misses, " + theCoalesced
+				+ " coalesced, " + theEvictions + " evictions";
+		}
+	}
+}
@@ -1549,13 +1549,13 @@ public class WmsCapabilities
 			theContact.parse(contactEl);
 		}
 		String fees = svc.element("Fees") == null ? null : svc.elementTextTrim("Fees");
-		if(fees.equalsIgnoreCase("none"))
+		if(fees == null || fees.equalsIgnoreCase("none"))
 			theFees = null;
 		else
 			theFees = fees;
 		String ac = svc.element("AccessConstraints") == null ? null : svc
 			.elementTextTrim("AccessConstraints");
-		if(ac.equalsIgnoreCase("none"))
+		if(ac == null || ac.equalsIgnoreCase("none"))
 			theAccessConstraints = null;
 		else
 			theAccessConstraints = ac;
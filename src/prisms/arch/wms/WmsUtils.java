@@ -3,14 +3,40 @@
  */
 package prisms.arch.wms;
 
+import org.apache.log4j.Logger;
 import org.dom4j.Element;
 
 /**
  * A utility class to perform various WMS operations, such as retrieving available layers for a WMS
- * server
+ * server. Capabilities are cached per URL. Concurrent requests for the same URL share a single
+ * load, and entries older than the {@link #getMaxAge() maximum age} are refreshed in the
+ * background while the previous capabilities continue to be served.
  */
 public class WmsUtils
 {
+	private static final Logger log = Logger.getLogger(WmsUtils.class);
+
+	/** The default maximum age of cached capabilities before they are refreshed */
+	public static final long DEFAULT_MAX_AGE = 10L * 60 * 1000;
+
+	/** The default maximum time to wait to connect to a WMS source */
+	public static final int DEFAULT_CONNECT_TIMEOUT = 10000;
+
+	/** The default maximum time to wait for data from a WMS source once connected */
+	public static final int DEFAULT_READ_TIMEOUT = 30000;
+
+	/** The threads that load capabilities documents for all WmsUtils instances */
+	private static final java.util.concurrent.ExecutorService LOADER = java.util.concurrent.Executors
+		.newCachedThreadPool(new java.util.concurrent.ThreadFactory()
+		{
+			public Thread newThread(Runnable r)
+			{
+				Thread ret = new Thread(r, "WMS Capabilities Loader");
+				ret.setDaemon(true);
+				return ret;
+			}
+		});
+
 	/** Represents a layer available from a WMS server */
 	public static class WmsLayer
 	{
@@ -44,9 +70,50 @@ public class WmsUtils
 		}
 	}
 
-	private String [] theCachedWmsUrls;
+	/** The capabilities of a WMS source as of a particular load */
+	private static class LoadedCapabilities
+	{
+		final WmsCapabilities theCapabilities;
+
+		final WmsLayer [] theLayers;
+
+		final long theLoadTime;
+
+		LoadedCapabilities(WmsCapabilities caps, WmsLayer [] layers)
+		{
+			theCapabilities = caps;
+			theLayers = layers;
+			theLoadTime = System.currentTimeMillis();
+		}
+	}
+
+	/** The cache entry for a single WMS source */
+	private static class CacheEntry
+	{
+		final String theURL;
+
+		volatile LoadedCapabilities theValue;
+
+		/** The load in progress for this entry, or null. Guarded by the entry. */
+		java.util.concurrent.Future<LoadedCapabilities> theLoad;
+
+		volatile long theLastAccess;
+
+		CacheEntry(String url)
+		{
+			theURL = url;
+		}
+	}
+
+	private final int theSize;
+
+	private final java.util.concurrent.ConcurrentHashMap<String, CacheEntry> theCache;
 
-	private WmsLayer [][] theCachedWmsLayers;
+	private volatile long theMaxAge;
+
+	private volatile int theConnectTimeout;
+
+	private volatile int theReadTimeout;
 
 	/**
 	 * Creates a utility instance
@@ -55,8 +122,61 @@ public class WmsUtils
 	 */
 	public WmsUtils(final int size)
 	{
-		theCachedWmsUrls = new String [size];
-		theCachedWmsLayers = new WmsLayer [size] [];
+		theSize = size;
+		theCache = new java.util.concurrent.ConcurrentHashMap<String, CacheEntry>();
+		theMaxAge = DEFAULT_MAX_AGE;
+		theConnectTimeout = DEFAULT_CONNECT_TIMEOUT;
+		theReadTimeout = DEFAULT_READ_TIMEOUT;
+	}
+
+	/** @return The age after which cached capabilities are refreshed, in milliseconds */
+	public long getMaxAge()
+	{
+		return theMaxAge;
+	}
+
+	/**
+	 * @param maxAge The age after which cached capabilities should be refreshed, in milliseconds
+	 */
+	public void setMaxAge(long maxAge)
+	{
+		theMaxAge = maxAge;
+	}
+
+	/** @return The maximum time to wait to connect to a WMS source, in milliseconds */
+	public int getConnectTimeout()
+	{
+		return theConnectTimeout;
+	}
+
+	/** @return The maximum time to wait for data from a WMS source, in milliseconds */
+	public int getReadTimeout()
+	{
+		return theReadTimeout;
+	}
+
+	/**
+	 * @param connectTimeout The maximum time to wait to connect to a WMS source, in milliseconds
+	 * @param readTimeout The maximum time to wait for data from a WMS source once connected, in
+	 *        milliseconds
+	 */
+	public void setTimeouts(int connectTimeout, int readTimeout)
+	{
+		if(connectTimeout <= 0 || readTimeout <= 0)
+			throw new IllegalArgumentException("Timeouts must be positive");
+		theConnectTimeout = connectTimeout;
+		theReadTimeout = readTimeout;
+	}
+
+	/**
+	 * Removes a WMS source's capabilities from this cache so that they are reloaded when next
+	 * requested
+	 * 
+	 * @param wmsURL The URL of the WMS source to remove
+	 */
+	public void invalidate(String wmsURL)
+	{
+		theCache.remove(wmsURL);
 	}
 
 	/**
@@ -68,89 +188,77 @@ public class WmsUtils
 	 * @return The set of layers available from the given WMS source
 	 * @throws prisms.arch.PrismsException If an error occurs retrieving the data
 	 */
-	public synchronized WmsLayer [] getWMSLayers(String wmsURL,
-		prisms.ui.UI.DefaultProgressInformer pi) throws prisms.arch.PrismsException
+	public WmsLayer [] getWMSLayers(String wmsURL, prisms.ui.UI.DefaultProgressInformer pi)
+		throws prisms.arch.PrismsException
+	{
+		LoadedCapabilities caps = get(wmsURL, pi);
+		return caps == null ? null : caps.theLayers;
+	}
+
+	/**
+	 * Retrieves the capabilities of a WMS source
+	 * 
+	 * @param wmsURL The URL of the WMS source to get the capabilities of
+	 * @param pi The progress for this method to report to as the capabilities are retrieved
+	 * @return The capabilities of the given WMS source, or null if the capabilities document could
+	 *         not be parsed into a {@link WmsCapabilities} or the operation was canceled
+	 * @throws prisms.arch.PrismsException If an error occurs retrieving the data
+	 */
+	public WmsCapabilities getCapabilities(String wmsURL, prisms.ui.UI.DefaultProgressInformer pi)
+		throws prisms.arch.PrismsException
+	{
+		LoadedCapabilities caps = get(wmsURL, pi);
+		return caps == null ? null : caps.theCapabilities;
+	}
+
+	private LoadedCapabilities get(String wmsURL, prisms.ui.UI.DefaultProgressInformer pi)
+		throws prisms.arch.PrismsException
 	{
 		try
 		{
-			for(int i = 0; i < theCachedWmsUrls.length; i++)
+			long now = System.currentTimeMillis();
+			CacheEntry entry = theCache.get(wmsURL);
+			if(entry == null)
 			{
-				if(wmsURL.equals(theCachedWmsUrls[i]))
-				{
-					WmsLayer [] layers = theCachedWmsLayers[i];
-					for(; i > 0; i--)
-					{
-						theCachedWmsUrls[i] = theCachedWmsUrls[i - 1];
-						theCachedWmsLayers[i] = theCachedWmsLayers[i - 1];
-					}
-					theCachedWmsUrls[0] = wmsURL;
-					theCachedWmsLayers[0] = layers;
-					return layers;
-				}
+				entry = new CacheEntry(wmsURL);
+				entry.theLastAccess = now;
+				CacheEntry old = theCache.putIfAbsent(wmsURL, entry);
+				if(old != null)
+					entry = old;
+				else
+					trim();
 			}
-			if(pi != null)
-				pi.setProgressText("Connecting to " + wmsURL);
-			String connect = wmsURL;
-			if(connect.contains("?"))
-				connect += "&";
-			else
-				connect += "?";
-			connect += "REQUEST=GetCapabilities";
-			java.io.InputStream input;
-			try
+			entry.theLastAccess = now;
+			LoadedCapabilities ret = entry.theValue;
+			if(ret != null)
 			{
-				input = new java.net.URL(connect).openStream();
-			} catch(java.io.IOException e)
-			{
-				throw new prisms.arch.PrismsException("Could not connect to " + wmsURL, e);
+				if(now - ret.theLoadTime > theMaxAge)
+					load(entry);
+				return ret;
 			}
-			if(pi != null && pi.isCanceled())
-				return null;
 			if(pi != null)
-				pi.setProgressText("Reading capabilities of " + wmsURL);
-			Element root;
-			try
-			{
-				root = new org.dom4j.io.SAXReader().read(input).getRootElement();
-			} catch(org.dom4j.DocumentException e)
-			{
-				throw new prisms.arch.PrismsException("Could not read capabilities of " + wmsURL, e);
-			} finally
+				pi.setProgressText("Retrieving capabilities of " + wmsURL);
+			java.util.concurrent.Future<LoadedCapabilities> load = load(entry);
+			while(true)
 			{
+				if(pi != null && pi.isCanceled())
+					return null;
 				try
 				{
-					input.close();
-				} catch(java.io.IOException e)
-				{}
-			}
-			if(pi != null && pi.isCanceled())
-				return null;
-			if(pi != null)
-				pi.setProgressText("Getting layers of " + wmsURL);
-
-			Element capabilities = root.element("Capability");
-			if(capabilities == null)
-			{
-				Element error = root.element("ServiceException");
-				if(root.getName().equals("ServiceExceptionReport") && error != null)
-					throw new prisms.arch.PrismsException("Could not request layers: "
-						+ error.getTextTrim());
-				else
-					throw new prisms.arch.PrismsException("Malformed capabilities response");
-			}
-			java.util.ArrayList<WmsLayer> ret = new java.util.ArrayList<WmsLayer>();
-			for(Element layerEl : (java.util.List<Element>) capabilities.elements("Layer"))
-				addLayers(ret, layerEl, pi);
-			if(pi != null && pi.isCanceled())
-				return null;
-			for(int i = theCachedWmsUrls.length - 1; i > 0; i--)
-			{
-				theCachedWmsUrls[i] = theCachedWmsUrls[i - 1];
-				theCachedWmsLayers[i] = theCachedWmsLayers[i - 1];
+					return load.get(250, java.util.concurrent.TimeUnit.MILLISECONDS);
+				} catch(java.util.concurrent.TimeoutException e)
+				{} catch(InterruptedException e)
+				{
+					throw new prisms.arch.PrismsException("Interrupted retrieving capabilities of "
+						+ wmsURL, e);
+				} catch(java.util.concurrent.ExecutionException e)
+				{
+					if(e.getCause() instanceof prisms.arch.PrismsException)
+						throw (prisms.arch.PrismsException) e.getCause();
+					throw new prisms.arch.PrismsException("Could not retrieve capabilities of "
+						+ wmsURL, e.getCause());
+				}
 			}
-			theCachedWmsUrls[0] = wmsURL;
-			theCachedWmsLayers[0] = ret.toArray(new WmsLayer [ret.size()]);
-			return theCachedWmsLayers[0];
 		} finally
 		{
 			if(pi != null)
@@ -158,6 +266,148 @@ public class WmsUtils
 		}
 	}
 
+	/** Removes the least recently used entries from the cache until it is within its size */
+	private void trim()
+	{
+		while(theCache.size() > theSize)
+		{
+			CacheEntry oldest = null;
+			for(CacheEntry entry : theCache.values())
+				if(oldest == null || entry.theLastAccess < oldest.theLastAccess)
+					oldest = entry;
+			if(oldest == null)
+				break;
+			theCache.remove(oldest.theURL, oldest);
+		}
+	}
+
+	/**
+	 * Starts loading an entry's capabilities in the background if they are not already being
+	 * loaded
+	 * 
+	 * @param entry The entry to load
+	 * @return The load in progress for the entry
+	 */
+	private java.util.concurrent.Future<LoadedCapabilities> load(final CacheEntry entry)
+	{
+		java.util.concurrent.FutureTask<LoadedCapabilities> task;
+		synchronized(entry)
+		{
+			if(entry.theLoad != null)
+				return entry.theLoad;
+			task = new java.util.concurrent.FutureTask<LoadedCapabilities>(
+				new java.util.concurrent.Callable<LoadedCapabilities>()
+				{
+					public LoadedCapabilities call() throws prisms.arch.PrismsException
+					{
+						boolean success = false;
+						try
+						{
+							LoadedCapabilities ret = loadCapabilities(entry.theURL);
+							entry.theValue = ret;
+							success = true;
+							return ret;
+						} finally
+						{
+							synchronized(entry)
+							{
+								entry.theLoad = null;
+							}
+							if(!success)
+							{
+								if(entry.theValue == null)
+									theCache.remove(entry.theURL, entry);
+								else
+									log.warn("Could not refresh capabilities of " + entry.theURL);
+							}
+						}
+					}
+				});
+			entry.theLoad = task;
+		}
+		LOADER.execute(task);
+		return task;
+	}
+
+	/**
+	 * Opens a stream to a WMS source's capabilities document. By default, only http and https URLs
+	 * are accepted and the GetCapabilities request is appended to the URL. The connection is subject to this instance's
+	 * {@link #getConnectTimeout() connect} and {@link #getReadTimeout() read} timeouts so that an
+	 * unresponsive source cannot hold a loader thread indefinitely.
+	 * 
+	 * @param wmsURL The URL of the WMS source
+	 * @return The stream to read the capabilities document from
+	 * @throws java.io.IOException If the URL is not an http or https URL or the source cannot be
+	 *         reached
+	 */
+	protected java.io.InputStream openCapabilities(String wmsURL) throws java.io.IOException
+	{
+		String connect = wmsURL;
+		if(connect.contains("?"))
+			connect += "&";
+		else
+			connect += "?";
+		connect += "REQUEST=GetCapabilities";
+		java.net.URL url = new java.net.URL(connect);
+		if(!"http".equalsIgnoreCase(url.getProtocol()) && !"https".equalsIgnoreCase(url.getProtocol()))
+			throw new java.io.IOException("WMS URL " + wmsURL + " is not an http or https URL");
+		java.net.URLConnection conn = url.openConnection();
+		conn.setConnectTimeout(theConnectTimeout);
+		conn.setReadTimeout(theReadTimeout);
+		return conn.getInputStream();
+	}
+
+	private LoadedCapabilities loadCapabilities(String wmsURL) throws prisms.arch.PrismsException
+	{
+		java.io.InputStream input;
+		try
+		{
+			input = openCapabilities(wmsURL);
+		} catch(java.io.IOException e)
+		{
+			throw new prisms.arch.PrismsException("Could not connect to " + wmsURL, e);
+		}
+		Element root;
+		try
+		{
+			root = new org.dom4j.io.SAXReader().read(input).getRootElement();
+		} catch(org.dom4j.DocumentException e)
+		{
+			throw new prisms.arch.PrismsException("Could not read capabilities of " + wmsURL, e);
+		} finally
+		{
+			try
+			{
+				input.close();
+			} catch(java.io.IOException e)
+			{}
+		}
+
+		Element capabilities = root.element("Capability");
+		if(capabilities == null)
+		{
+			Element error = root.element("ServiceException");
+			if(root.getName().equals("ServiceExceptionReport") && error != null)
+				throw new prisms.arch.PrismsException("Could not request layers: "
+					+ error.getTextTrim());
+			else
+				throw new prisms.arch.PrismsException("Malformed capabilities response");
+		}
+		java.util.ArrayList<WmsLayer> layers = new java.util.ArrayList<WmsLayer>();
+		for(Element layerEl : (java.util.List<Element>) capabilities.elements("Layer"))
+			addLayers(layers, layerEl, null);
+		WmsCapabilities caps = new WmsCapabilities();
+		try
+		{
+			caps.parse(root);
+		} catch(RuntimeException e)
+		{
+			log.warn("Could not parse capabilities of " + wmsURL, e);
+			caps = null;
+		}
+		return new LoadedCapabilities(caps, layers.toArray(new WmsLayer [layers.size()]));
+	}
+
 	void addLayers(java.util.ArrayList<WmsLayer> layers, Element element,
 		prisms.ui.UI.DefaultProgressInformer pi)
 	{
@@ -42,6 +42,140 @@ public class DBUserSource implements ScalableUserSource
 		long thePasswordExpire;
 	}
 
+	/**
+	 * An immutable, indexed snapshot of the users cached by this user source. Modifications create
+	 * a new directory so that lookups never need to lock or scan.
+	 */
+	static class UserDirectory
+	{
+		final User [] users;
+
+		private final java.util.HashMap<Long, User> theByID;
+
+		private final java.util.HashMap<String, User> theByName;
+
+		UserDirectory(User [] _users)
+		{
+			users = _users;
+			theByID = new java.util.HashMap<Long, User>(users.length * 2);
+			theByName = new java.util.HashMap<String, User>(users.length * 2);
+			for(User user : users)
+			{
+				theByID.put(Long.valueOf(user.getID()), user);
+				theByName.put(user.getName(), user);
+			}
+		}
+
+		User get(long id)
+		{
+			return theByID.get(Long.valueOf(id));
+		}
+
+		User get(String name)
+		{
+			User ret = theByName.get(name);
+			if(ret != null && !ret.getName().equals(name))
+				return null; // Renamed but not yet re-indexed
+			return ret;
+		}
+
+		User get(User user)
+		{
+			if(user.getID() >= 0)
+				return get(user.getID());
+			for(User u : users)
+				if(u.equals(user))
+					return u;
+			return null;
+		}
+
+		UserDirectory add(User user)
+		{
+			return new UserDirectory(ArrayUtils.add(users, user));
+		}
+
+		UserDirectory remove(User user)
+		{
+			int idx = ArrayUtils.indexOf(users, user);
+			if(idx < 0)
+				return this;
+			return new UserDirectory(ArrayUtils.remove(users, idx));
+		}
+
+		/**
+		 * @param user The user that may have been renamed
+		 * @return This directory if the user's name is indexed correctly, or a new, re-indexed
+		 *         directory otherwise
+		 */
+		UserDirectory reindex(User user)
+		{
+			if(theByName.get(user.getName()) == user)
+				return this;
+			return new UserDirectory(users);
+		}
+	}
+
+	/**
+	 * An immutable, indexed snapshot of the groups cached by this user source. Modifications create
+	 * a new directory so that lookups never need to lock or scan.
+	 */
+	static class GroupDirectory
+	{
+		final UserGroup [] groups;
+
+		private final java.util.HashMap<Long, UserGroup> theByID;
+
+		private final java.util.HashMap<PrismsApplication, UserGroup []> theByApp;
+
+		GroupDirectory(UserGroup [] _groups)
+		{
+			groups = _groups;
+			theByID = new java.util.HashMap<Long, UserGroup>(groups.length * 2);
+			java.util.HashMap<PrismsApplication, ArrayList<UserGroup>> byApp;
+			byApp = new java.util.HashMap<PrismsApplication, ArrayList<UserGroup>>();
+			for(UserGroup group : groups)
+			{
+				theByID.put(Long.valueOf(group.getID()), group);
+				ArrayList<UserGroup> appGroups = byApp.get(group.getApp());
+				if(appGroups == null)
+				{
+					appGroups = new ArrayList<UserGroup>();
+					byApp.put(group.getApp(), appGroups);
+				}
+				appGroups.add(group);
+			}
+			theByApp = new java.util.HashMap<PrismsApplication, UserGroup []>(byApp.size() * 2);
+			for(java.util.Map.Entry<PrismsApplication, ArrayList<UserGroup>> entry : byApp
+				.entrySet())
+				theByApp.put(entry.getKey(),
+					entry.getValue().toArray(new UserGroup [entry.getValue().size()]));
+		}
+
+		UserGroup get(long id)
+		{
+			return theByID.get(Long.valueOf(id));
+		}
+
+		UserGroup [] get(PrismsApplication app)
+		{
+			UserGroup [] ret = theByApp.get(app);
+			return ret == null ? new UserGroup [0] : ret.clone();
+		}
+
+		GroupDirectory add(UserGroup group)
+		{
+			return new GroupDirectory(ArrayUtils.add(groups, group));
+		}
+
+		GroupDirectory remove(UserGroup group)
+		{
+			int idx = ArrayUtils.indexOf(groups, group);
+			if(idx < 0)
+				return this;
+			return new GroupDirectory(ArrayUtils.remove(groups, idx));
+		}
+	}
+
 	/** Determines a minimum time that passwords are kept around */
 	public static final long PASSWORD_KEEP_TIME = 5L * 60 * 1000;
 
@@ -53,7 +187,7 @@ public class DBUserSource implements ScalableUserSource
 
 	private final java.util.HashMap<String, PrismsApplication> theApps;
 
-	ArrayList<UserSetListener> theListeners;
+	java.util.concurrent.CopyOnWriteArrayList<UserSetListener> theListeners;
 
 	IDGenerator theIDs;
 
@@ -61,13 +195,13 @@ public class DBUserSource implements ScalableUserSource
 
 	private Hashing theHashing;
 
-	User [] theUserCache;
+	volatile UserDirectory theUserCache;
 
 	private User theAnonymousUser;
 
 	private User theSystemUser;
 
-	UserGroup [] theGroupCache;
+	volatile GroupDirectory theGroupCache;
 
 	/** Creates a DBUserSource */
 	public DBUserSource()
@@ -75,7 +209,7 @@ public class DBUserSource implements ScalableUserSource
 		theHashing = new Hashing();
 		theAnonymousUserName = "anonymous";
 		theApps = new java.util.HashMap<String, PrismsApplication>();
-		theListeners = new ArrayList<UserSetListener>();
+		theListeners = new java.util.concurrent.CopyOnWriteArrayList<UserSetListener>();
 	}
 
 	public prisms.records.DBRecordKeeper getRecordKeeper()
@@ -194,20 +328,74 @@ public class DBUserSource implements ScalableUserSource
 
 	public void addListener(UserSetListener listener)
 	{
-		synchronized(theListeners)
+		theListeners.add(listener);
+	}
+
+	public void removeListener(UserSetListener listener)
+	{
+		theListeners.remove(listener);
+	}
+
+	void fireUserAdded(User user)
+	{
+		for(UserSetListener listener : theListeners)
 		{
-			theListeners.add(listener);
+			if(listener instanceof UserSetDeltaListener)
+				((UserSetDeltaListener) listener).userAdded(user);
+			else
+				listener.userSetChanged(theUserCache.users.clone());
 		}
 	}
 
-	public void removeListener(UserSetListener listener)
+	void fireUserRemoved(User user)
+	{
+		for(UserSetListener listener : theListeners)
+		{
+			if(listener instanceof UserSetDeltaListener)
+				((UserSetDeltaListener) listener).userRemoved(user);
+			else
+				listener.userSetChanged(theUserCache.users.clone());
+		}
+	}
+
+	void fireUserChanged(User user, boolean authChange)
+	{
+		for(UserSetListener listener : theListeners)
+		{
+			listener.userChanged(user);
+			if(authChange)
+				listener.userAuthorityChanged(user);
+		}
+	}
+
+	void fireGroupAdded(UserGroup group) throws PrismsException
 	{
-		synchronized(theListeners)
+		for(UserSetListener listener : theListeners)
 		{
-			theListeners.remove(listener);
+			if(listener instanceof UserSetDeltaListener)
+				((UserSetDeltaListener) listener).groupAdded(group);
+			else
+				listener.groupSetChanged(group.getApp(), getGroups(group.getApp()));
 		}
 	}
 
+	void fireGroupRemoved(UserGroup group) throws PrismsException
+	{
+		for(UserSetListener listener : theListeners)
+		{
+			if(listener instanceof UserSetDeltaListener)
+				((UserSetDeltaListener) listener).groupRemoved(group);
+			else
+				listener.groupSetChanged(group.getApp(), getGroups(group.getApp()));
+		}
+	}
+
+	void fireGroupChanged(UserGroup group)
+	{
+		for(UserSetListener listener : theListeners)
+			listener.groupChanged(group);
+	}
+
 	private void fillUserCache(Statement stmt) throws PrismsException
 	{
 		boolean killStatement = false;
@@ -226,7 +414,7 @@ public class DBUserSource implements ScalableUserSource
 		String sql = null;
 		Lock lock = theTransactor.getLock().writeLock();
 		lock.lock();
-		User [] users;
+		UserDirectory users;
 		try
 		{
 			if(theUserCache != null)
@@ -251,7 +439,7 @@ public class DBUserSource implements ScalableUserSource
 			}
 			rs.close();
 			rs = null;
-			users = userList.toArray(new User [userList.size()]);
+			users = new UserDirectory(userList.toArray(new User [userList.size()]));
 
 			LongList userIDs = new LongList();
 			LongList groupIDs = new LongList();
@@ -270,26 +458,24 @@ public class DBUserSource implements ScalableUserSource
 			rs = null;
 			for(int g = 0; g < groupIDs.size(); g++)
 			{
-				for(User u : users)
+				User u = users.get(userIDs.get(g));
+				if(u == null)
+					continue;
+				PrismsApplication app = theApps.get(appNames.get(g));
+				if(app == null)
 				{
-					if(u.getID() != userIDs.get(g))
-						continue;
-					PrismsApplication app = theApps.get(appNames.get(g));
-					if(app == null)
-					{
-						log.error("No such application named " + appNames.get(g));
-						break;
-					}
-					UserGroup group = getGroup(groupIDs.get(g), app, stmt);
-					if(group == null)
-					{
-						log.error("Could not get group with ID " + groupIDs.get(g));
-						break;
-					}
-					if(group.isDeleted())
-						break;
-					u.addTo(group);
+					log.error("No such application named " + appNames.get(g));
+					continue;
+				}
+				UserGroup group = getGroup(groupIDs.get(g), app, stmt);
+				if(group == null)
+				{
+					log.error("Could not get group with ID " + groupIDs.get(g));
+					continue;
 				}
+				if(group.isDeleted())
+					continue;
+				u.addTo(group);
 			}
 			for(User u : readOnlyUsers)
 				u.setReadOnly(true);
@@ -337,7 +523,7 @@ public class DBUserSource implements ScalableUserSource
 		String sql = null;
 		Lock lock = theTransactor.getLock().writeLock();
 		lock.lock();
-		UserGroup [] groups;
+		GroupDirectory groups;
 		try
 		{
 			if(theGroupCache != null)
@@ -356,7 +542,7 @@ public class DBUserSource implements ScalableUserSource
 			}
 			rs.close();
 			rs = null;
-			groups = groupList.toArray(new UserGroup [groupList.size()]);
+			groups = new GroupDirectory(groupList.toArray(new UserGroup [groupList.size()]));
 
 			ArrayList<Long> groupIDs = new ArrayList<Long>();
 			ArrayList<String> appNames = new ArrayList<String>();
@@ -373,25 +559,23 @@ public class DBUserSource implements ScalableUserSource
 			rs = null;
 			for(int p = 0; p < permNames.size(); p++)
 			{
-				for(UserGroup g : groups)
+				UserGroup g = groups.get(groupIDs.get(p).longValue());
+				if(g == null)
+					continue;
+				PrismsApplication app = theApps.get(appNames.get(p));
+				if(app == null)
 				{
-					if(g.getID() != groupIDs.get(p).longValue())
-						continue;
-					PrismsApplication app = theApps.get(appNames.get(p));
-					if(app == null)
-					{
-						log.error("No such application named " + appNames.get(p));
-						break;
-					}
-					Permission perm = app.getPermission(permNames.get(p));
-					if(perm == null)
-					{
-						log.error("No such permission named " + permNames.get(p)
-							+ " for application " + app.getName());
-						break;
-					}
-					g.getPermissions().addPermission(perm);
+					log.error("No such application named " + appNames.get(p));
+					continue;
+				}
+				Permission perm = app.getPermission(permNames.get(p));
+				if(perm == null)
+				{
+					log.error("No such permission named " + permNames.get(p) + " for application "
+						+ app.getName());
+					continue;
 				}
+				g.getPermissions().addPermission(perm);
 			}
 		} catch(SQLException e)
 		{
@@ -857,16 +1041,13 @@ public class DBUserSource implements ScalableUserSource
 				{
 					addingAnonymous = false;
 				}
-				theUserCache = ArrayUtils.remove(theUserCache, theAnonymousUser);
+				theUserCache = theUserCache.remove(theAnonymousUser);
 			}
 			return theAnonymousUser;
 		}
 		else if(name.equals("System"))
 			return getSystemUser();
-		for(User user : theUserCache)
-			if(user.getName().equals(name))
-				return user;
-		return null;
+		return theUserCache.get(name);
 	}
 
 	public User getUser(long id) throws PrismsException
@@ -877,9 +1058,9 @@ public class DBUserSource implements ScalableUserSource
 			return theSystemUser;
 		if(id == IDGenerator.getMaxID(theIDs.getCenterID()) - 1)
 			return theAnonymousUser;
-		for(User user : theUserCache)
-			if(user.getID() == id)
-				return user;
+		User user = theUserCache.get(id);
+		if(user != null)
+			return user;
 		return dbGetUser(id, null);
 	}
 
@@ -1185,7 +1366,7 @@ public class DBUserSource implements ScalableUserSource
 	{
 		if(theUserCache == null)
 			fillUserCache(null);
-		User [] users = theUserCache.clone();
+		User [] users = theUserCache.users.clone();
 		java.util.Arrays.sort(users, new java.util.Comparator<User>()
 		{
 			public int compare(User o1, User o2)
@@ -1200,11 +1381,7 @@ public class DBUserSource implements ScalableUserSource
 	{
 		if(theGroupCache == null)
 			fillGroupCache(null);
-		ArrayList<UserGroup> groups = new ArrayList<UserGroup>();
-		for(UserGroup group : theGroupCache)
-			if(group.getApp() == app)
-				groups.add(group);
-		UserGroup [] ret = groups.toArray(new UserGroup [groups.size()]);
+		UserGroup [] ret = theGroupCache.get(app);
 		java.util.Arrays.sort(ret, new java.util.Comparator<UserGroup>()
 		{
 			public int compare(UserGroup o1, UserGroup o2)
@@ -1219,9 +1396,9 @@ public class DBUserSource implements ScalableUserSource
 	{
 		if(theGroupCache == null)
 			fillGroupCache(null);
-		for(UserGroup g : theGroupCache)
-			if(g.getID() == id)
-				return g;
+		UserGroup g = theGroupCache.get(id);
+		if(g != null)
+			return g;
 		Statement stmt = null;
 		try
 		{
@@ -1313,9 +1490,7 @@ public class DBUserSource implements ScalableUserSource
 	{
 		if(trans != null && trans.isMemoryOnly())
 		{
-			for(UserSetListener listener : theListeners.toArray(new UserSetListener [theListeners
-				.size()]))
-				listener.userChanged(user);
+			fireUserChanged(user, false);
 			return;
 		}
 		theTransactor.performTransaction(new TransactionOperation<PrismsException>()
@@ -1365,9 +1540,7 @@ public class DBUserSource implements ScalableUserSource
 						} catch(SQLException e)
 						{}
 				}
-				for(UserSetListener listener : theListeners
-					.toArray(new UserSetListener [theListeners.size()]))
-					listener.userChanged(user);
+				fireUserChanged(user, false);
 				return null;
 			}
 		}, "Could not set user " + user + "'s access to " + app);
@@ -1392,14 +1565,8 @@ public class DBUserSource implements ScalableUserSource
 			java.util.HashSet<User> readOnlyUsers = new java.util.HashSet<User>();
 			while(rs.next())
 			{
-				User user = null;
 				long id = rs.getLong("id");
-				for(User u : theUserCache)
-					if(u.getID() == id)
-					{
-						user = u;
-						break;
-					}
+				User user = theUserCache.get(id);
 				if(user != null)
 				{
 					userList.add(user);
@@ -1434,28 +1601,27 @@ public class DBUserSource implements ScalableUserSource
 			}
 			rs.close();
 			rs = null;
+			UserDirectory index = new UserDirectory(users);
 			for(int g = 0; g < groupIDs.size(); g++)
 			{
-				for(User u : users)
+				User u = index.get(userIDs.get(g));
+				if(u == null)
+					continue;
+				PrismsApplication app = theApps.get(appNames.get(g));
+				if(app == null)
 				{
-					if(u.getID() != userIDs.get(g))
-						continue;
-					PrismsApplication app = theApps.get(appNames.get(g));
-					if(app == null)
-					{
-						log.error("No such application named " + appNames.get(g));
-						break;
-					}
-					UserGroup group = getGroup(groupIDs.get(g), app, stmt);
-					if(group == null)
-					{
-						log.error("Could not get group with ID " + groupIDs.get(g));
-						break;
-					}
-					if(group.isDeleted())
-						break;
-					u.addTo(group);
+					log.error("No such application named " + appNames.get(g));
+					continue;
 				}
+				UserGroup group = getGroup(groupIDs.get(g), app, stmt);
+				if(group == null)
+				{
+					log.error("Could not get group with ID " + groupIDs.get(g));
+					continue;
+				}
+				if(group.isDeleted())
+					continue;
+				u.addTo(group);
 			}
 			for(User u : readOnlyUsers)
 				u.setReadOnly(true);
@@ -1500,6 +1666,8 @@ public class DBUserSource implements ScalableUserSource
 
 	public void putUser(final User user, final RecordsTransaction trans) throws PrismsException
 	{
+		if(theUserCache == null)
+			fillUserCache(null);
 		if(trans != null && trans.isMemoryOnly())
 		{
 			User cacheUser = null;
@@ -1508,26 +1676,20 @@ public class DBUserSource implements ScalableUserSource
 			else if(user.equals(theAnonymousUser))
 				cacheUser = theAnonymousUser;
 			else
-			{
-				int idx = ArrayUtils.indexOf(theUserCache, user);
-				if(idx >= 0)
-					cacheUser = theUserCache[idx];
-			}
+				cacheUser = theUserCache.get(user);
 			if(cacheUser != null)
 			{
 				if(user != cacheUser)
 					dbUpdateUser(cacheUser, user, null, trans);
 				else
-					for(UserSetListener listener : theListeners
-						.toArray(new UserSetListener [theListeners.size()]))
-						listener.userChanged(user);
+					fireUserChanged(user, false);
+				if(theUserCache.get(cacheUser) == cacheUser)
+					theUserCache = theUserCache.reindex(cacheUser);
 			}
 			else
 			{
-				theUserCache = ArrayUtils.add(theUserCache, user);
-				for(UserSetListener listener : theListeners
-					.toArray(new UserSetListener [theListeners.size()]))
-					listener.userSetChanged(theUserCache.clone());
+				theUserCache = theUserCache.add(user);
+				fireUserAdded(user);
 			}
 			return;
 		}
@@ -1547,10 +1709,8 @@ public class DBUserSource implements ScalableUserSource
 						null);
 					if(theIDs.belongs(user.getID()))
 					{
-						theUserCache = ArrayUtils.add(theUserCache, user);
-						for(UserSetListener listener : theListeners
-							.toArray(new UserSetListener [theListeners.size()]))
-							listener.userSetChanged(theUserCache.clone());
+						theUserCache = theUserCache.add(user);
+						fireUserAdded(user);
 					}
 				}
 				else
@@ -1561,18 +1721,18 @@ public class DBUserSource implements ScalableUserSource
 					{
 						if(recreate)
 						{
-							for(UserSetListener listener : theListeners
-								.toArray(new UserSetListener [theListeners.size()]))
-								listener.userSetChanged(theUserCache.clone());
+							if(user.isDeleted())
+								fireUserRemoved(user);
+							else
+								fireUserAdded(user);
 						}
 						else
-							for(UserSetListener listener : theListeners
-								.toArray(new UserSetListener [theListeners.size()]))
-							{
-								listener.userChanged(user);
-								if(authChange)
-									listener.userAuthorityChanged(user);
-							}
+						{
+							User cacheUser = theUserCache.get(user);
+							if(cacheUser != null)
+								theUserCache = theUserCache.reindex(cacheUser);
+							fireUserChanged(user, authChange);
+						}
 					}
 				}
 				return null;
@@ -1582,19 +1742,19 @@ public class DBUserSource implements ScalableUserSource
 
 	public void deleteUser(final User user, final RecordsTransaction trans) throws PrismsException
 	{
+		if(theUserCache == null)
+			fillUserCache(null);
 		theTransactor.performTransaction(new TransactionOperation<PrismsException>()
 		{
 			public Object run(Statement stmt) throws PrismsException
 			{
 				if(trans != null && !trans.isMemoryOnly())
 					dbRemoveUser(user, stmt, trans);
-				int idx = ArrayUtils.indexOf(theUserCache, user);
-				if(idx >= 0)
+				UserDirectory users = theUserCache.remove(user);
+				if(users != theUserCache)
 				{
-					theUserCache = ArrayUtils.remove(theUserCache, idx);
-					for(UserSetListener listener : theListeners
-						.toArray(new UserSetListener [theListeners.size()]))
-						listener.userSetChanged(theUserCache.clone());
+					theUserCache = users;
+					fireUserRemoved(user);
 				}
 				return null;
 			}
@@ -1614,27 +1774,22 @@ public class DBUserSource implements ScalableUserSource
 	public void putGroup(final UserGroup group, final RecordsTransaction trans)
 		throws PrismsException
 	{
+		if(theUserCache == null)
+			fillUserCache(null);
 		if(trans != null && trans.isMemoryOnly())
 		{
-			UserGroup cacheGroup = null;
-			int idx = ArrayUtils.indexOf(theGroupCache, group);
-			if(idx >= 0)
-				cacheGroup = theGroupCache[idx];
+			UserGroup cacheGroup = theGroupCache.get(group.getID());
 			if(cacheGroup != null)
 			{
 				if(group != cacheGroup)
 					dbUpdateGroup(cacheGroup, group, null, trans);
 				else
-					for(UserSetListener listener : theListeners
-						.toArray(new UserSetListener [theListeners.size()]))
-						listener.groupChanged(group);
+					fireGroupChanged(group);
 			}
 			else
 			{
-				theGroupCache = ArrayUtils.add(theGroupCache, group);
-				for(UserSetListener listener : theListeners
-					.toArray(new UserSetListener [theListeners.size()]))
-					listener.groupSetChanged(group.getApp(), getGroups(group.getApp()));
+				theGroupCache = theGroupCache.add(group);
+				fireGroupAdded(group);
 			}
 			return;
 		}
@@ -1648,10 +1803,8 @@ public class DBUserSource implements ScalableUserSource
 					dbInsertGroup(group, stmt, trans);
 					if(theIDs.belongs(group.getID()))
 					{
-						theGroupCache = ArrayUtils.add(theGroupCache, group);
-						for(UserSetListener listener : theListeners
-							.toArray(new UserSetListener [theListeners.size()]))
-							listener.groupSetChanged(group.getApp(), getGroups(group.getApp()));
+						theGroupCache = theGroupCache.add(group);
+						fireGroupAdded(group);
 					}
 				}
 				else
@@ -1659,11 +1812,10 @@ public class DBUserSource implements ScalableUserSource
 					boolean recreate = dbGroup.isDeleted() != group.isDeleted();
 					boolean authChange = dbUpdateGroup(dbGroup, group, stmt, trans);
 					if(authChange)
-						for(User user : theUserCache)
+						for(User user : theUserCache.users)
 						{
 							if(ArrayUtils.contains(user.getGroups(), group))
-								for(UserSetListener listener : theListeners
-									.toArray(new UserSetListener [theListeners.size()]))
+								for(UserSetListener listener : theListeners)
 									listener.userAuthorityChanged(user);
 						}
 
@@ -1671,14 +1823,13 @@ public class DBUserSource implements ScalableUserSource
 					{
 						if(recreate)
 						{
-							for(UserSetListener listener : theListeners
-								.toArray(new UserSetListener [theListeners.size()]))
-								listener.groupSetChanged(group.getApp(), getGroups(group.getApp()));
+							if(group.isDeleted())
+								fireGroupRemoved(group);
+							else
+								fireGroupAdded(group);
 						}
 						else
-							for(UserSetListener listener : theListeners
-								.toArray(new UserSetListener [theListeners.size()]))
-								listener.groupChanged(group);
+							fireGroupChanged(group);
 					}
 				}
 				return null;
@@ -1689,13 +1840,15 @@ public class DBUserSource implements ScalableUserSource
 	public void deleteGroup(final UserGroup group, final RecordsTransaction trans)
 		throws PrismsException
 	{
+		if(theUserCache == null)
+			fillUserCache(null);
 		theTransactor.performTransaction(new TransactionOperation<PrismsException>()
 		{
 			public Object run(Statement stmt) throws PrismsException
 			{
 				if(trans != null && !trans.isMemoryOnly())
 					dbRemoveGroup(group, stmt, trans);
-				for(User user : theUserCache)
+				for(User user : theUserCache.users)
 				{
 					if(ArrayUtils.contains(user.getGroups(), group))
 					{
@@ -1704,13 +1857,11 @@ public class DBUserSource implements ScalableUserSource
 					}
 				}
 
-				int idx = ArrayUtils.indexOf(theGroupCache, group);
-				if(idx >= 0)
+				GroupDirectory groups = theGroupCache.remove(group);
+				if(groups != theGroupCache)
 				{
-					theGroupCache = ArrayUtils.remove(theGroupCache, group);
-					for(UserSetListener listener : theListeners
-						.toArray(new UserSetListener [theListeners.size()]))
-						listener.groupSetChanged(group.getApp(), getGroups(group.getApp()));
+					theGroupCache = groups;
+					fireGroupRemoved(group);
 				}
 				return null;
 			}
@@ -1854,9 +2005,9 @@ public class DBUserSource implements ScalableUserSource
 			if(theIDs.belongs(dbUser.getID()))
 			{
 				if(setUser.isDeleted())
-					theUserCache = ArrayUtils.remove(theUserCache, setUser);
+					theUserCache = theUserCache.remove(setUser);
 				else
-					theUserCache = ArrayUtils.add(theUserCache, setUser);
+					theUserCache = theUserCache.add(setUser);
 			}
 		}
 
@@ -2025,9 +2176,9 @@ public class DBUserSource implements ScalableUserSource
 	private UserGroup getGroup(long id, PrismsApplication app, Statement stmt)
 		throws PrismsException
 	{
-		for(UserGroup group : theGroupCache)
-			if(group.getID() == id)
-				return group;
+		UserGroup group = theGroupCache.get(id);
+		if(group != null)
+			return group;
 		return dbGetGroup(id, stmt);
 	}
 
@@ -2123,9 +2274,9 @@ public class DBUserSource implements ScalableUserSource
 				.append('\n');
 			update += "deleted=" + boolToSql(setGroup.isDeleted()) + ", ";
 			if(setGroup.isDeleted())
-				theGroupCache = ArrayUtils.remove(theGroupCache, setGroup);
+				theGroupCache = theGroupCache.remove(setGroup);
 			else
-				theGroupCache = ArrayUtils.add(theGroupCache, setGroup);
+				theGroupCache = theGroupCache.add(setGroup);
 			addModification(trans, PrismsSubjectType.group, null, setGroup.isDeleted() ? -1 : 1,
 				dbGroup, null, null, dbGroup.getApp(), null);
 		}
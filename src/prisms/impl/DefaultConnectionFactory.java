@@ -40,12 +40,20 @@ public class DefaultConnectionFactory implements prisms.arch.ConnectionFactory
 
 		private prisms.arch.ds.Transactor.ReconnectListener[] theListeners;
 
+		private ConnectionPool thePool;
+
+		private ThreadLocal<TransactionState> theTransactions;
+
 		DefaultTransactor(prisms.arch.PrismsConfig connEl, String duplicateID)
 		{
 			theConnConfig = connEl;
 			theDuplicateID = duplicateID;
 			theLock = new java.util.concurrent.locks.ReentrantReadWriteLock();
 			theListeners = new ReconnectListener [0];
+			theTransactions = new ThreadLocal<TransactionState>();
+			PrismsConfig poolConfig = connEl.subConfig("pool");
+			if(poolConfig != null && poolConfig.getInt("size", 1) > 1)
+				thePool = new ConnectionPool(connEl, poolConfig, duplicateID);
 		}
 
 		String getDuplicateID()
@@ -81,6 +89,11 @@ public class DefaultConnectionFactory implements prisms.arch.ConnectionFactory
 			return theConnectionID;
 		}
 
+		prisms.arch.ds.ConnectionPoolStats getPoolStats()
+		{
+			return thePool == null ? null : thePool.getStats();
+		}
+
 		@Override
 		protected DefaultTransactor clone()
 		{
@@ -98,12 +111,18 @@ public class DefaultConnectionFactory implements prisms.arch.ConnectionFactory
 			// ret.theLock = new java.util.concurrent.locks.ReentrantReadWriteLock();
 			ret.theLastValidCheck = 0;
 			ret.theListeners = new ReconnectListener [0];
+			ret.theTransactions = new ThreadLocal<TransactionState>();
 			ret.theDuplicateID = Integer.toHexString(ret.hashCode());
+			if(thePool != null)
+				ret.thePool = new ConnectionPool(theConnConfig, theConnConfig.subConfig("pool"),
+					ret.theDuplicateID);
 			return ret;
 		}
 
 		<T extends Throwable> Connection getConnection(Thrower<T> thrower) throws T
 		{
+			// Pooled connections are never handed out, so statements prepared and cached by callers
+			// always live on this dedicated connection and are covered by its reconnect events
 			checkConnected(thrower);
 			return theConn;
 		}
@@ -132,22 +151,8 @@ public class DefaultConnectionFactory implements prisms.arch.ConnectionFactory
 						 * database can be reached even if the connection object is no longer valid.
 						 * This is the simplest, least overhead way I can think of to positively
 						 * validate the connection. */
-						java.sql.ResultSet rs = null;
-						try
-						{
-							java.sql.DatabaseMetaData md = theConn.getMetaData();
-							rs = md.getSchemas();
-							rs.next();
-							rs.close();
-						} catch(SQLException e)
+						if(!isValid(theConn, theConnConfig))
 						{
-							log.warn("Connection " + theConnConfig.get("name")
-								+ " lost! Reconnecting.", e);
-							try
-							{
-								theConn.close();
-							} catch(SQLException e2)
-							{}
 							theConn = null;
 							reconnect = true;
 						}
@@ -201,10 +206,22 @@ public class DefaultConnectionFactory implements prisms.arch.ConnectionFactory
 			prisms.arch.ds.Transactor.TransactionOperation<? extends T> op, String ifError,
 			Thrower<T> thrower) throws T
 		{
+			boolean exclusive = theLock.isWriteLockedByCurrentThread();
+			if(op instanceof prisms.arch.ds.Transactor.ReadOnlyOperation)
+				return performReadOnly(op, exclusive || thePool == null, thrower);
+			if(op instanceof prisms.arch.ds.Transactor.PooledOperation)
+			{
+				TransactionState current = theTransactions.get();
+				if(exclusive && current != null && current.theDepth > 0)
+					return performJoined(op, thrower);
+				if(!exclusive && thePool != null)
+					return performPooled(op, ifError, thrower);
+			}
 			Statement stmt = null;
 			checkConnected(thrower);
 			boolean oldAutoCommit = true;
 			boolean completed = false;
+			TransactionState state = beginTransaction();
 			java.util.concurrent.locks.Lock lock = theLock.writeLock();
 			lock.lock();
 			try
@@ -262,10 +279,256 @@ public class DefaultConnectionFactory implements prisms.arch.ConnectionFactory
 				} finally
 				{
 					lock.unlock();
+					// A failed nested transaction rolls back everything written so far
+					endTransaction(state, completed, !completed);
 				}
 			}
 		}
 
+		/**
+		 * Performs a {@link prisms.arch.ds.Transactor.ReadOnlyOperation read-only operation} without
+		 * beginning a transaction or holding a lock
+		 * 
+		 * @param dedicated Whether to read from this transactor's own connection instead of a pooled
+		 *        one
+		 */
+		private <T extends Throwable> Object performReadOnly(
+			prisms.arch.ds.Transactor.TransactionOperation<? extends T> op, boolean dedicated,
+			Thrower<T> thrower) throws T
+		{
+			PooledConnection pc = null;
+			Connection conn;
+			if(dedicated)
+				conn = getConnection(thrower);
+			else
+			{
+				pc = thePool.borrow(thrower);
+				conn = pc.theConn;
+			}
+			Statement stmt = null;
+			boolean broken = false;
+			try
+			{
+				try
+				{
+					stmt = conn.createStatement();
+				} catch(SQLException e)
+				{
+					broken = true;
+					thrower.error("Connection error: ", e);
+				}
+				return op.run(stmt);
+			} finally
+			{
+				if(stmt != null)
+				{
+					try
+					{
+						stmt.close();
+					} catch(SQLException e)
+					{
+						log.error("Connection error", e);
+					}
+				}
+				if(pc != null)
+					thePool.release(pc, broken);
+			}
+		}
+
+		/**
+		 * Performs a {@link prisms.arch.ds.Transactor.PooledOperation pooled operation} as part of
+		 * the ordinary transaction that the current thread is already performing. The operation is
+		 * committed or rolled back with that transaction.
+		 */
+		private <T extends Throwable> Object performJoined(
+			prisms.arch.ds.Transactor.TransactionOperation<? extends T> op, Thrower<T> thrower)
+			throws T
+		{
+			Statement stmt = null;
+			TransactionState state = beginTransaction();
+			try
+			{
+				try
+				{
+					stmt = theConn.createStatement();
+				} catch(SQLException e)
+				{
+					thrower.error("Connection error: ", e);
+				}
+				return op.run(stmt);
+			} finally
+			{
+				if(stmt != null)
+				{
+					try
+					{
+						stmt.close();
+					} catch(SQLException e)
+					{
+						log.error("Connection error", e);
+					}
+				}
+				endTransaction(state, false, false);
+			}
+		}
+
+		/**
+		 * Performs a {@link prisms.arch.ds.Transactor.PooledOperation pooled operation} on a
+		 * connection borrowed from this transactor's pool. Only the read lock is held, so pooled
+		 * operations run concurrently with each other but are still excluded by ordinary
+		 * transactions, which hold this transactor's write lock. A pooled operation nested inside
+		 * another on the same thread joins the outer operation's connection and is committed or
+		 * rolled back with it.
+		 */
+		private <T extends Throwable> Object performPooled(
+			prisms.arch.ds.Transactor.TransactionOperation<? extends T> op, String ifError,
+			Thrower<T> thrower) throws T
+		{
+			PooledConnection pc = thePool.borrow(thrower);
+			boolean outer = pc.theDepth == 1;
+			Statement stmt = null;
+			boolean oldAutoCommit = true;
+			boolean completed = false;
+			boolean broken = false;
+			TransactionState state = beginTransaction();
+			java.util.concurrent.locks.Lock lock = theLock.readLock();
+			lock.lock();
+			try
+			{
+				try
+				{
+					if(outer)
+					{
+						oldAutoCommit = pc.theConn.getAutoCommit();
+						pc.theConn.setAutoCommit(false);
+					}
+					stmt = pc.theConn.createStatement();
+				} catch(SQLException e)
+				{
+					broken = true;
+					thrower.error("Connection error: ", e);
+				}
+				Object ret = op.run(stmt);
+				if(outer)
+				{
+					try
+					{
+						pc.theConn.commit();
+					} catch(SQLException e)
+					{
+						thrower.error(ifError, e);
+					}
+				}
+				completed = true;
+				return ret;
+			} finally
+			{
+				try
+				{
+					if(stmt != null)
+					{
+						try
+						{
+							stmt.close();
+						} catch(SQLException e)
+						{
+							log.error("Connection error", e);
+						}
+					}
+					if(outer && !broken)
+					{
+						try
+						{
+							if(!completed)
+								pc.theConn.rollback();
+							pc.theConn.setAutoCommit(oldAutoCommit);
+						} catch(SQLException e)
+						{
+							log.error("Transactor could not reset pooled connection", e);
+							broken = true;
+						}
+					}
+				} finally
+				{
+					lock.unlock();
+					thePool.release(pc, broken);
+					endTransaction(state, outer && completed, outer && !completed);
+				}
+			}
+		}
+
+		private TransactionState beginTransaction()
+		{
+			TransactionState ret = theTransactions.get();
+			if(ret == null)
+			{
+				ret = new TransactionState();
+				theTransactions.set(ret);
+			}
+			ret.theDepth++;
+			return ret;
+		}
+
+		/**
+		 * Ends one of the transactions on the current thread. When the connection is committed, the
+		 * tasks waiting for the data written so far are kept to run when the outermost transaction
+		 * finishes, even if a later change is rolled back. When the connection is rolled back, the
+		 * tasks waiting for uncommitted data are discarded and the rollback tasks are run.
+		 * 
+		 * @param committed Whether the connection was committed at the end of the transaction
+		 * @param rolledBack Whether the connection was rolled back at the end of the transaction
+		 */
+		private void endTransaction(TransactionState state, boolean committed, boolean rolledBack)
+		{
+			if(committed)
+			{
+				state.theCommittedTasks.addAll(state.theCommitTasks);
+				state.theCommitTasks.clear();
+				state.theRollbackTasks.clear();
+			}
+			else if(rolledBack)
+			{
+				state.theCommitTasks.clear();
+				runTasks(state.theRollbackTasks, "Rollback");
+			}
+			if(--state.theDepth > 0)
+				return;
+			theTransactions.remove();
+			runTasks(state.theCommittedTasks, "Post-commit");
+		}
+
+		private void runTasks(java.util.ArrayList<Runnable> tasks, String type)
+		{
+			Runnable [] toRun = tasks.toArray(new Runnable [tasks.size()]);
+			tasks.clear();
+			for(Runnable task : toRun)
+			{
+				try
+				{
+					task.run();
+				} catch(RuntimeException e)
+				{
+					log.error(type + " task failed", e);
+				}
+			}
+		}
+
+		void runAfterCommit(Runnable task)
+		{
+			TransactionState state = theTransactions.get();
+			if(state == null)
+				task.run();
+			else
+				state.theCommitTasks.add(task);
+		}
+
+		void runAfterRollback(Runnable task)
+		{
+			TransactionState state = theTransactions.get();
+			if(state != null && !state.theRollbackTasks.contains(task))
+				state.theRollbackTasks.add(task);
+		}
+
 		<T extends Throwable, T2> T2 getDBItem(Statement stmt, String sql, Class<T2> type,
 			Thrower<T> thrower) throws T
 		{
@@ -386,6 +649,8 @@ public class DefaultConnectionFactory implements prisms.arch.ConnectionFactory
 			}
 			theConnectionID = 0;
 			theLock = null;
+			if(thePool != null)
+				thePool.close();
 			if(theConn != null)
 			{
 				DefaultConnectionFactory.this.released(theConnConfig, theConn);
@@ -394,6 +659,278 @@ public class DefaultConnectionFactory implements prisms.arch.ConnectionFactory
 		}
 	}
 
+	/** The transactions a {@link DefaultTransactor} is performing on one thread */
+	static class TransactionState
+	{
+		/** The number of nested transactions on the thread */
+		int theDepth;
+
+		/** The tasks waiting for data that has not yet been committed */
+		final java.util.ArrayList<Runnable> theCommitTasks = new java.util.ArrayList<Runnable>();
+
+		/** The tasks whose data has been committed, to run when the outermost transaction finishes */
+		final java.util.ArrayList<Runnable> theCommittedTasks = new java.util.ArrayList<Runnable>();
+
+		/** The tasks to run if the uncommitted changes are rolled back */
+		final java.util.ArrayList<Runnable> theRollbackTasks = new java.util.ArrayList<Runnable>();
+	}
+
+	/** A connection managed by a {@link ConnectionPool} */
+	static class PooledConnection
+	{
+		final Connection theConn;
+
+		long theLastValidCheck;
+
+		/** The number of nested transactions on the owning thread using this connection */
+		int theDepth;
+
+		PooledConnection(Connection conn)
+		{
+			theConn = conn;
+			theLastValidCheck = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * Hands out a bounded number of connections to
+	 * {@link prisms.arch.ds.Transactor.PooledOperation pooled operations}. A connection is bound to
+	 * the thread that borrowed it for the duration of the operation so that nested pooled
+	 * operations use the same connection. Pooled connections are never returned from
+	 * {@link Transactor#getConnection()}, so no statements are prepared on them outside of an
+	 * operation and they need no reconnect notifications. Threads that cannot get a connection immediately wait in a bounded queue for a limited time.
+	 * Idle connections are checked for validity before being handed out.
+	 * 
+	 * <p>
+	 * A pool is configured by a <code>pool</code> element inside a <code>connection</code>
+	 * element, with the following optional children:
+	 * <ul>
+	 * <li><b>size</b>: The maximum number of connections in the pool</li>
+	 * <li><b>max-waiting</b>: The maximum number of threads that may wait for a connection at once.
+	 * Threads beyond this are refused immediately. Default is 8 times the size.</li>
+	 * <li><b>wait-timeout</b>: The maximum amount of time a thread will wait for a connection.
+	 * Default is 30 seconds.</li>
+	 * <li><b>validate-interval</b>: The amount of time a connection may be used without being
+	 * checked for validity. Default is 10 seconds.</li>
+	 * </ul>
+	 * </p>
+	 */
+	class ConnectionPool
+	{
+		private final PrismsConfig theConnConfig;
+
+		private final String theDuplicateID;
+
+		private final int theSize;
+
+		private final int theMaxWaiting;
+
+		private final long theWaitTimeout;
+
+		private final long theValidateInterval;
+
+		private final java.util.concurrent.Semaphore thePermits;
+
+		private final java.util.concurrent.ConcurrentLinkedQueue<PooledConnection> theIdle;
+
+		private final ThreadLocal<PooledConnection> theBound;
+
+		private final java.util.concurrent.atomic.AtomicInteger theOpen;
+
+		private final java.util.concurrent.atomic.AtomicInteger theWaiting;
+
+		private final java.util.concurrent.atomic.AtomicLong theBorrows;
+
+		private final java.util.concurrent.atomic.AtomicLong theWaits;
+
+		private final java.util.concurrent.atomic.AtomicLong theWaitTime;
+
+		private final java.util.concurrent.atomic.AtomicLong theTimeouts;
+
+		private final java.util.concurrent.atomic.AtomicLong theRejects;
+
+		private final java.util.concurrent.atomic.AtomicLong theReconnects;
+
+		private volatile boolean isClosed;
+
+		ConnectionPool(PrismsConfig connConfig, PrismsConfig poolConfig, String duplicateID)
+		{
+			theConnConfig = connConfig;
+			theDuplicateID = duplicateID;
+			theSize = poolConfig.getInt("size", 1);
+			theMaxWaiting = poolConfig.getInt("max-waiting", theSize * 8);
+			theWaitTimeout = poolConfig.getTime("wait-timeout", 30000);
+			theValidateInterval = poolConfig.getTime("validate-interval", 10000);
+			thePermits = new java.util.concurrent.Semaphore(theSize, true);
+			theIdle = new java.util.concurrent.ConcurrentLinkedQueue<PooledConnection>();
+			theBound = new ThreadLocal<PooledConnection>();
+			theOpen = new java.util.concurrent.atomic.AtomicInteger();
+			theWaiting = new java.util.concurrent.atomic.AtomicInteger();
+			theBorrows = new java.util.concurrent.atomic.AtomicLong();
+			theWaits = new java.util.concurrent.atomic.AtomicLong();
+			theWaitTime = new java.util.concurrent.atomic.AtomicLong();
+			theTimeouts = new java.util.concurrent.atomic.AtomicLong();
+			theRejects = new java.util.concurrent.atomic.AtomicLong();
+			theReconnects = new java.util.concurrent.atomic.AtomicLong();
+		}
+
+		<T extends Throwable> PooledConnection borrow(Thrower<T> thrower) throws T
+		{
+			PooledConnection ret = theBound.get();
+			if(ret != null)
+			{
+				ret.theDepth++;
+				return ret;
+			}
+			if(isClosed)
+				thrower.error("Connection pool " + theConnConfig.get("name") + " is closed");
+			theBorrows.incrementAndGet();
+			if(!thePermits.tryAcquire())
+			{
+				if(theWaiting.incrementAndGet() > theMaxWaiting)
+				{
+					theWaiting.decrementAndGet();
+					theRejects.incrementAndGet();
+					thrower.error("Too many threads waiting for a connection from pool "
+						+ theConnConfig.get("name"));
+					throw new IllegalStateException("Thrower didn't throw an exception!");
+				}
+				theWaits.incrementAndGet();
+				long start = System.currentTimeMillis();
+				boolean acquired = false;
+				try
+				{
+					acquired = thePermits.tryAcquire(theWaitTimeout,
+						java.util.concurrent.TimeUnit.MILLISECONDS);
+				} catch(InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+				} finally
+				{
+					theWaiting.decrementAndGet();
+					theWaitTime.addAndGet(System.currentTimeMillis() - start);
+				}
+				if(!acquired)
+				{
+					theTimeouts.incrementAndGet();
+					thrower.error("Timed out waiting for a connection from pool "
+						+ theConnConfig.get("name"));
+					throw new IllegalStateException("Thrower didn't throw an exception!");
+				}
+			}
+			try
+			{
+				ret = theIdle.poll();
+				long now = System.currentTimeMillis();
+				if(ret != null && now - ret.theLastValidCheck > theValidateInterval)
+				{
+					if(isValid(ret.theConn, theConnConfig))
+						ret.theLastValidCheck = now;
+					else
+					{
+						theReconnects.incrementAndGet();
+						theOpen.decrementAndGet();
+						ret = null;
+					}
+				}
+				if(ret == null)
+				{
+					ret = new PooledConnection(connect(theConnConfig, theDuplicateID));
+					theOpen.incrementAndGet();
+				}
+			} catch(SQLException e)
+			{
+				thePermits.release();
+				thrower.error("Transactor could not get pooled connection!", e);
+				throw new IllegalStateException("Thrower didn't throw an exception!");
+			}
+			ret.theDepth = 1;
+			theBound.set(ret);
+			return ret;
+		}
+
+		void release(PooledConnection pc, boolean broken)
+		{
+			if(--pc.theDepth > 0)
+				return;
+			theBound.remove();
+			if(broken || isClosed)
+				discard(pc);
+			else
+				theIdle.add(pc);
+			thePermits.release();
+		}
+
+		prisms.arch.ds.ConnectionPoolStats getStats()
+		{
+			return new prisms.arch.ds.ConnectionPoolStats(theConnConfig.get("name"), theSize,
+				theOpen.get(), theSize - thePermits.availablePermits(), theWaiting.get(),
+				theBorrows.get(), theWaits.get(), theWaitTime.get(), theTimeouts.get(),
+				theRejects.get(), theReconnects.get());
+		}
+
+		void close()
+		{
+			isClosed = true;
+			PooledConnection pc = theIdle.poll();
+			while(pc != null)
+			{
+				discard(pc);
+				pc = theIdle.poll();
+			}
+		}
+
+		/**
+		 * Closes a pooled connection. Unlike {@link DefaultConnectionFactory#released(PrismsConfig,
+		 * Connection)}, this never shuts down an embedded database, which the transactor's own
+		 * connection may still be using.
+		 */
+		private void discard(PooledConnection pc)
+		{
+			theOpen.decrementAndGet();
+			try
+			{
+				pc.theConn.close();
+			} catch(SQLException e)
+			{
+				log.error("Connection error", e);
+			}
+		}
+	}
+
+	/**
+	 * Makes a call to the database to make sure a connection is really still connected.
+	 * Connection.isClosed() only returns true if it has been closed from the client side.
+	 * Connection.isValid() may still return true if the database can be reached even if the
+	 * connection object is no longer valid. This is the simplest, least overhead way I can think of
+	 * to positively validate the connection. If the connection is found to be invalid, it is closed.
+	 * 
+	 * @param conn The connection to check
+	 * @param connConfig The configuration of the connection
+	 * @return Whether the connection is still valid
+	 */
+	static boolean isValid(Connection conn, PrismsConfig connConfig)
+	{
+		java.sql.ResultSet rs = null;
+		try
+		{
+			java.sql.DatabaseMetaData md = conn.getMetaData();
+			rs = md.getSchemas();
+			rs.next();
+			rs.close();
+			return true;
+		} catch(SQLException e)
+		{
+			log.warn("Connection " + connConfig.get("name") + " lost! Reconnecting.", e);
+			try
+			{
+				conn.close();
+			} catch(SQLException e2)
+			{}
+			return false;
+		}
+	}
+
 	static class TransactorImpl<T extends Throwable> implements prisms.arch.ds.Transactor<T>
 	{
 		private final PrismsConfig theConnectionConfig;
@@ -452,6 +989,13 @@ public class DefaultConnectionFactory implements prisms.arch.ConnectionFactory
 			return theDefaultTransactor.getLock();
 		}
 
+		public prisms.arch.ds.ConnectionPoolStats getPoolStats()
+		{
+			if(isReleased)
+				return null;
+			return theDefaultTransactor.getPoolStats();
+		}
+
 		public prisms.arch.ds.Transactor.Thrower<T> getThrower()
 		{
 			return theThrower;
@@ -504,6 +1048,20 @@ public class DefaultConnectionFactory implements prisms.arch.ConnectionFactory
 			return theDefaultTransactor.performTransaction(op, ifError, theThrower);
 		}
 
+		public void runAfterCommit(Runnable task)
+		{
+			if(isReleased)
+				throw new IllegalStateException("This transactor has been released");
+			theDefaultTransactor.runAfterCommit(task);
+		}
+
+		public void runAfterRollback(Runnable task)
+		{
+			if(isReleased)
+				throw new IllegalStateException("This transactor has been released");
+			theDefaultTransactor.runAfterRollback(task);
+		}
+
 		public <T2> T2 getDBItem(Statement stmt, String sql, Class<T2> type) throws T
 		{
 			if(isReleased)
@@ -656,6 +1214,21 @@ public class DefaultConnectionFactory implements prisms.arch.ConnectionFactory
 		return new TransactorImpl<T>(config, trans, thrower);
 	}
 
+	/** @return Usage statistics for every pooled connection that this factory has created */
+	public synchronized prisms.arch.ds.ConnectionPoolStats[] getPoolStats()
+	{
+		java.util.ArrayList<prisms.arch.ds.ConnectionPoolStats> ret;
+		ret = new java.util.ArrayList<prisms.arch.ds.ConnectionPoolStats>();
+		for(Map<String, DefaultTransactor> conns : theCoreConnections.values())
+			for(DefaultTransactor conn : conns.values())
+			{
+				prisms.arch.ds.ConnectionPoolStats stats = conn.getPoolStats();
+				if(stats != null)
+					ret.add(stats);
+			}
+		return ret.toArray(new prisms.arch.ds.ConnectionPoolStats [ret.size()]);
+	}
+
 	public PrismsConfig getConnectionConfig(PrismsConfig config)
 	{
 		String ref = config.get("ref");
@@ -0,0 +1,506 @@
+/*
+ * ExecutorWorker.java Created Oct 16, 2026 by Andrew Butler, PSL
+ */
+package prisms.impl;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import prisms.arch.Worker;
+
+/**
+ * A worker backed by a {@link java.util.concurrent.ThreadPoolExecutor} with a bounded task queue.
+ * Unlike {@link ThreadPoolWorker}, tasks are handed off without a pool-wide lock. When both the
+ * threads and the queue are full, the worker's {@link RejectionPolicy} decides what happens to the
+ * new task. On runtimes that support virtual threads, the worker may instead run each task in its
+ * own virtual thread. At most the maximum thread count of these run at once; the rest wait, up to
+ * the queue size, for one of them to finish.
+ */
+public class ExecutorWorker implements Worker
+{
+	static final Logger log = Logger.getLogger(ExecutorWorker.class);
+
+	/** Determines what an ExecutorWorker does with a task when its threads and queue are full */
+	public static enum RejectionPolicy
+	{
+		/** Runs the task in the thread that submitted it */
+		CALLER_RUNS("caller-runs"),
+		/** Throws an {@link IllegalStateException} from {@link Worker#run(Runnable, ErrorListener)} */
+		ABORT("abort"),
+		/**
+		 * Drops the oldest queued task to make room for the new one. The dropped task's
+		 * {@link ErrorListener#runtime(RuntimeException) listener} is notified with an
+		 * {@link IllegalStateException}.
+		 */
+		DISCARD_OLDEST("discard-oldest");
+
+		/** The name of this policy in a worker's configuration */
+		public final String configName;
+
+		RejectionPolicy(String config)
+		{
+			configName = config;
+		}
+
+		/**
+		 * @param config The configured name of the policy
+		 * @return The policy with the given name, or null if there is no such policy
+		 */
+		public static RejectionPolicy byName(String config)
+		{
+			for(RejectionPolicy policy : values())
+				if(policy.configName.equals(config))
+					return policy;
+			return null;
+		}
+	}
+
+	private class Task implements Runnable
+	{
+		private final Runnable theTask;
+
+		private final Worker.ErrorListener theListener;
+
+		private final long theQueueTime;
+
+		/** Whether this task was admitted to the virtual executor and must wait for a run permit */
+		boolean isVirtual;
+
+		Task(Runnable task, Worker.ErrorListener listener)
+		{
+			theTask = task;
+			theListener = listener;
+			theQueueTime = System.nanoTime();
+		}
+
+		public void run()
+		{
+			if(isVirtual)
+				theVirtualPermits.acquireUninterruptibly();
+			long start = System.nanoTime();
+			taskStarted(this, start - theQueueTime);
+			try
+			{
+				try
+				{
+					theTask.run();
+				} catch(prisms.util.CancelException e)
+				{
+					log.info(e.getMessage(), e);
+				} catch(Error e)
+				{
+					theListener.error(e);
+				} catch(RuntimeException e)
+				{
+					theListener.runtime(e);
+				}
+			} catch(Throwable e)
+			{
+				log.error("Error listener threw exception: ", e);
+			} finally
+			{
+				taskFinished(this, System.nanoTime() - start);
+			}
+		}
+	}
+
+	private final String theName;
+
+	private final int theMaxThreadCount;
+
+	private final int theQueueSize;
+
+	private final RejectionPolicy thePolicy;
+
+	private final java.util.concurrent.ThreadPoolExecutor thePool;
+
+	private final java.util.concurrent.ExecutorService theVirtualExecutor;
+
+	/** Limits the number of virtual tasks that are running or waiting to run */
+	private final java.util.concurrent.Semaphore theVirtualSlots;
+
+	/** Limits the number of virtual tasks that are running */
+	private final java.util.concurrent.Semaphore theVirtualPermits;
+
+	private final java.util.concurrent.atomic.AtomicInteger theVirtualQueued;
+
+	private final java.util.concurrent.atomic.AtomicInteger theVirtualActive;
+
+	private final AtomicLong theSubmitted;
+
+	private final AtomicLong theCompleted;
+
+	private final AtomicLong theRejected;
+
+	private final AtomicLong theTotalQueueTime;
+
+	private final AtomicLong theMaxQueueTime;
+
+	private final AtomicLong theTotalRunTime;
+
+	private volatile boolean isClosed;
+
+	/**
+	 * Creates a worker with a platform thread pool
+	 *
+	 * @param name The name for this worker
+	 * @param threads The maximum number of threads for the worker. Non-positive values are relative
+	 *        to the number of available processors as in {@link ThreadPoolWorker#setMaxThreadCount(int)}.
+	 * @param queueSize The maximum number of tasks that may wait for a thread
+	 * @param policy The policy for tasks that arrive when the queue is full
+	 */
+	public ExecutorWorker(String name, int threads, int queueSize, RejectionPolicy policy)
+	{
+		this(name, threads, queueSize, policy, false);
+	}
+
+	/**
+	 * Creates a worker
+	 *
+	 * @param name The name for this worker
+	 * @param threads The maximum number of threads for the worker. Non-positive values are relative
+	 *        to the number of available processors as in {@link ThreadPoolWorker#setMaxThreadCount(int)}.
+	 * @param queueSize The maximum number of tasks that may wait for a thread
+	 * @param policy The policy for tasks that arrive when the queue is full
+	 * @param virtual Whether to run each task in its own virtual thread. If the runtime does not
+	 *        support virtual threads, a platform thread pool will be used instead.
+	 */
+	public ExecutorWorker(String name, int threads, int queueSize, RejectionPolicy policy,
+		boolean virtual)
+	{
+		if(threads <= 0)
+			threads += Runtime.getRuntime().availableProcessors();
+		if(threads <= 0)
+			threads = 1;
+		if(queueSize < 0)
+			queueSize = 0;
+		if(policy == null)
+			policy = RejectionPolicy.CALLER_RUNS;
+		theName = name;
+		theMaxThreadCount = threads;
+		theQueueSize = queueSize;
+		thePolicy = policy;
+		theSubmitted = new AtomicLong();
+		theCompleted = new AtomicLong();
+		theRejected = new AtomicLong();
+		theTotalQueueTime = new AtomicLong();
+		theMaxQueueTime = new AtomicLong();
+		theTotalRunTime = new AtomicLong();
+		theVirtualQueued = new java.util.concurrent.atomic.AtomicInteger();
+		theVirtualActive = new java.util.concurrent.atomic.AtomicInteger();
+
+		java.util.concurrent.ExecutorService virtualExec = null;
+		if(virtual)
+		{
+			virtualExec = createVirtualExecutor();
+			if(virtualExec == null)
+				log.warn("Virtual threads are not supported by this runtime. Worker " + name
+					+ " will use a platform thread pool.");
+		}
+		theVirtualExecutor = virtualExec;
+		if(theVirtualExecutor != null)
+		{
+			thePool = null;
+			theVirtualSlots = new java.util.concurrent.Semaphore(threads + queueSize);
+			theVirtualPermits = new java.util.concurrent.Semaphore(threads, true);
+		}
+		else
+		{
+			theVirtualSlots = null;
+			theVirtualPermits = null;
+			java.util.concurrent.BlockingQueue<Runnable> queue;
+			if(queueSize == 0)
+				queue = new java.util.concurrent.SynchronousQueue<Runnable>();
+			else
+				queue = new java.util.concurrent.LinkedBlockingQueue<Runnable>(queueSize);
+			final java.util.concurrent.atomic.AtomicInteger threadCounter;
+			threadCounter = new java.util.concurrent.atomic.AtomicInteger();
+			thePool = new java.util.concurrent.ThreadPoolExecutor(threads, threads, 60,
+				TimeUnit.SECONDS, queue, new java.util.concurrent.ThreadFactory()
+				{
+					public Thread newThread(Runnable r)
+					{
+						Thread ret = new Thread(r, theName + " #" + threadCounter.incrementAndGet());
+						ret.setDaemon(true);
+						return ret;
+					}
+				}, new java.util.concurrent.RejectedExecutionHandler()
+				{
+					public void rejectedExecution(Runnable r,
+						java.util.concurrent.ThreadPoolExecutor executor)
+					{
+						rejected(r);
+					}
+				});
+			thePool.allowCoreThreadTimeOut(true);
+		}
+	}
+
+	/**
+	 * Creates an executor that runs each task in a new virtual thread
+	 *
+	 * @return The executor, or null if the runtime does not support virtual threads
+	 */
+	private static java.util.concurrent.ExecutorService createVirtualExecutor()
+	{
+		try
+		{
+			return (java.util.concurrent.ExecutorService) java.util.concurrent.Executors.class
+				.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch(NoSuchMethodException e)
+		{
+			return null;
+		} catch(Exception e)
+		{
+			log.error("Could not create virtual thread executor", e);
+			return null;
+		}
+	}
+
+	/** @return This worker's name */
+	public String getName()
+	{
+		return theName;
+	}
+
+	public int getMaxThreadCount()
+	{
+		return theMaxThreadCount;
+	}
+
+	/** @return The maximum number of tasks that may wait in this worker's queue */
+	public int getQueueSize()
+	{
+		return theQueueSize;
+	}
+
+	/** @return The policy this worker uses for tasks that arrive when its queue is full */
+	public RejectionPolicy getRejectionPolicy()
+	{
+		return thePolicy;
+	}
+
+	/** @return Whether this worker runs its tasks in virtual threads */
+	public boolean isVirtual()
+	{
+		return theVirtualExecutor != null;
+	}
+
+	/** @return Whether this worker has been closed */
+	public boolean isClosed()
+	{
+		return isClosed;
+	}
+
+	public void run(Runnable task, Worker.ErrorListener listener)
+	{
+		if(isClosed)
+			throw new IllegalStateException("This worker is closed--no new tasks will be accepted");
+		Task t = new Task(task, listener);
+		theSubmitted.incrementAndGet();
+		if(thePool != null)
+		{
+			thePool.execute(t);
+			return;
+		}
+		if(!theVirtualSlots.tryAcquire())
+		{
+			rejected(t);
+			return;
+		}
+		t.isVirtual = true;
+		theVirtualQueued.incrementAndGet();
+		try
+		{
+			theVirtualExecutor.execute(t);
+		} catch(java.util.concurrent.RejectedExecutionException e)
+		{
+			theVirtualQueued.decrementAndGet();
+			theVirtualSlots.release();
+			throw new IllegalStateException("This worker is closed--no new tasks will be accepted");
+		}
+	}
+
+	void rejected(Runnable task)
+	{
+		if(isClosed)
+			throw new IllegalStateException("This worker is closed--no new tasks will be accepted");
+		theRejected.incrementAndGet();
+		switch(thePolicy)
+		{
+		case CALLER_RUNS:
+			task.run();
+			break;
+		case ABORT:
+			theSubmitted.decrementAndGet();
+			throw new IllegalStateException("Worker " + theName + " is saturated: "
+				+ theMaxThreadCount + " threads busy and " + theQueueSize + " tasks queued");
+		case DISCARD_OLDEST:
+			if(thePool != null)
+			{
+				Runnable oldest = thePool.getQueue().poll();
+				if(oldest != null)
+				{
+					discarded(oldest);
+					thePool.execute(task);
+				}
+				else
+					/* The queue is empty (or has no capacity), so there is no older task to make
+					 * room by discarding */
+					discarded(task);
+			}
+			else
+				/* Waiting virtual threads cannot be withdrawn, so the new task is discarded */
+				discarded(task);
+			break;
+		}
+	}
+
+	/**
+	 * Notifies a task's listener that the task was discarded and will not run
+	 * 
+	 * @param task The discarded task
+	 */
+	void discarded(Runnable task)
+	{
+		log.warn("Worker " + theName + " is saturated--discarding task " + task);
+		theSubmitted.decrementAndGet();
+		if(!(task instanceof Task))
+			return;
+		try
+		{
+			((Task) task).theListener.runtime(new IllegalStateException("Worker " + theName
+				+ " is saturated: task was discarded"));
+		} catch(Throwable e)
+		{
+			log.error("Error listener threw exception: ", e);
+		}
+	}
+
+	void taskStarted(Task task, long queueNanos)
+	{
+		if(task.isVirtual)
+		{
+			theVirtualQueued.decrementAndGet();
+			theVirtualActive.incrementAndGet();
+		}
+		theTotalQueueTime.addAndGet(queueNanos);
+		long max = theMaxQueueTime.get();
+		while(queueNanos > max && !theMaxQueueTime.compareAndSet(max, queueNanos))
+			max = theMaxQueueTime.get();
+	}
+
+	void taskFinished(Task task, long runNanos)
+	{
+		theTotalRunTime.addAndGet(runNanos);
+		theCompleted.incrementAndGet();
+		if(task.isVirtual)
+		{
+			theVirtualActive.decrementAndGet();
+			theVirtualPermits.release();
+			theVirtualSlots.release();
+		}
+	}
+
+	/** @return The number of tasks currently waiting to be executed */
+	public int getQueuedTaskCount()
+	{
+		if(thePool != null)
+			return thePool.getQueue().size();
+		return theVirtualQueued.get();
+	}
+
+	/** @return The number of tasks currently being executed */
+	public int getActiveCount()
+	{
+		if(thePool != null)
+			return thePool.getActiveCount();
+		return theVirtualActive.get();
+	}
+
+	/** @return The number of threads currently in this worker's pool */
+	public int getThreadCount()
+	{
+		if(thePool != null)
+			return thePool.getPoolSize();
+		return theVirtualActive.get();
+	}
+
+	/** @return The total number of tasks that have been submitted to this worker */
+	public long getSubmittedCount()
+	{
+		return theSubmitted.get();
+	}
+
+	/** @return The total number of tasks that this worker has finished executing */
+	public long getCompletedCount()
+	{
+		return theCompleted.get();
+	}
+
+	/** @return The number of tasks that arrived when this worker's threads and queue were full */
+	public long getRejectedCount()
+	{
+		return theRejected.get();
+	}
+
+	/** @return The average time, in milliseconds, that tasks have waited for a thread */
+	public float getAverageQueueTime()
+	{
+		long completed = theCompleted.get();
+		if(completed == 0)
+			return 0;
+		return theTotalQueueTime.get() / 1000000f / completed;
+	}
+
+	/** @return The longest time, in milliseconds, that a task has waited for a thread */
+	public float getMaxQueueTime()
+	{
+		return theMaxQueueTime.get() / 1000000f;
+	}
+
+	/** @return The average time, in milliseconds, that tasks have taken to execute */
+	public float getAverageRunTime()
+	{
+		long completed = theCompleted.get();
+		if(completed == 0)
+			return 0;
+		return theTotalRunTime.get() / 1000000f / completed;
+	}
+
+	public void close()
+	{
+		isClosed = true;
+		if(thePool != null)
+			thePool.shutdown();
+		else
+			theVirtualExecutor.shutdown();
+	}
+
+	public void closeNow()
+	{
+		isClosed = true;
+		if(thePool != null)
+		{
+			thePool.getQueue().clear();
+			thePool.shutdown();
+		}
+		else
+			theVirtualExecutor.shutdown();
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder ret = new StringBuilder(theName);
+		ret.append(": ").append(getActiveCount()).append('/').append(theMaxThreadCount);
+		ret.append(" active, ").append(getQueuedTaskCount()).append('/').append(theQueueSize);
+		ret.append(" queued, ").append(getCompletedCount()).append(" completed, ");
+		ret.append(getRejectedCount()).append(" rejected, queue time ");
+		ret.append(getAverageQueueTime()).append("ms avg/").append(getMaxQueueTime());
+		ret.append("ms max, run time ").append(getAverageRunTime()).append("ms avg");
+		return ret.toString();
+	}
+}
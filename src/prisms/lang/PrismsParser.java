@@ -3,16 +3,19 @@ package prisms.lang;
 
 import java.io.Reader;
 import java.util.Map;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.apache.log4j.Logger;
 
 import prisms.arch.PrismsConfig;
 import prisms.util.ArrayUtils;
-import prisms.util.DualKey;
 import prisms.util.PrismsUtils;
 
-/** Parses syntactical structures from text without regard to semantics using an XML-encoded grammar file */
+/**
+ * Parses syntactical structures from text without regard to semantics using an XML-encoded grammar file. The grammar is compiled
+ * when the configuration is validated, after which the parser may be used by many threads at once.
+ */
 public class PrismsParser {
 	private static final Logger log = Logger.getLogger(PrismsParser.class);
 
@@ -33,47 +36,315 @@ public class PrismsParser {
 		NON_OP_CONFIGS = java.util.Collections.unmodifiableSet(nonOpConfigs);
 	}
 
+	private static final PrismsConfig WHITESPACE_CONFIG = new PrismsConfig.DefaultPrismsConfig("whitespace", null, null);
+
+	private static final PrismsConfig TERMINATOR_CONFIG = new PrismsConfig.DefaultPrismsConfig("config", null, null);
+
+	/**
+	 * A grammar element compiled from its configuration so that parsing does not interpret configs, split type lists or compile
+	 * patterns. Nodes are not modified after the grammar they belong to is published.
+	 */
+	static final class Node {
+		static final int RULE = 0;
+
+		static final int LITERAL = 1;
+
+		static final int CHARSET = 2;
+
+		static final int WHITESPACE = 3;
+
+		static final int OPTION = 4;
+
+		static final int FORBID = 5;
+
+		static final int SELECT = 6;
+
+		static final int OP = 7;
+
+		static final int UNKNOWN = 8;
+
+		final PrismsConfig config;
+
+		final int kind;
+
+		/** The ID of the rule, for top-level operators and entities */
+		int id = -1;
+
+		int priority;
+
+		/** The parseable content of a rule or option, or the options of a select */
+		Node [] children;
+
+		boolean ignoreWS;
+
+		/** For whitespace, whether white space is forbidden rather than required */
+		boolean forbid;
+
+		/** The decoded value of a literal */
+		String value;
+
+		/** The decoded pattern of a literal or charset */
+		String patternText;
+
+		Pattern pattern;
+
+		int min;
+
+		int max;
+
+		/** The IDs of the rules that an op may match */
+		int [] types;
+
+		String [] excludeValues;
+
+		String [] excludeEscapes;
+
+		String [] matchValues;
+
+		Node(PrismsConfig cfg, int aKind) {
+			config = cfg;
+			kind = aKind;
+		}
+	}
+
+	/** A parser's operators compiled into an immutable graph. Each operator's ID is its index in priority order. */
+	static final class Grammar {
+		final Node [] rules;
+
+		final int [] ignorables;
+
+		/** The implementations of the operators, by config identity */
+		final java.util.IdentityHashMap<PrismsConfig, Class<? extends ParsedItem>> impls;
+
+		Grammar(java.util.List<PrismsConfig> operators, String [] ignorables) {
+			java.util.HashMap<String, Integer> ids = new java.util.HashMap<>();
+			for(int i = 0; i < operators.size(); i++)
+				ids.put(operators.get(i).get("name"), Integer.valueOf(i));
+			rules = new Node[operators.size()];
+			impls = new java.util.IdentityHashMap<>();
+			for(int i = 0; i < rules.length; i++) {
+				PrismsConfig op = operators.get(i);
+				rules[i] = new Node(op, Node.RULE);
+				rules[i].id = i;
+				rules[i].priority = op.getInt("priority", 0);
+				rules[i].children = compileContent(op, ids);
+				try {
+					Class<? extends ParsedItem> impl = op.getClass("impl", ParsedItem.class);
+					if(impl != null)
+						impls.put(op, impl);
+				} catch(ClassNotFoundException | ClassCastException e) {
+					// Reported when the implementation is needed
+				}
+			}
+			this.ignorables = new int[ignorables.length];
+			for(int i = 0; i < ignorables.length; i++)
+				this.ignorables[i] = ids.get(ignorables[i]).intValue();
+		}
+
+		private static Node [] compileContent(PrismsConfig config, Map<String, Integer> ids) {
+			java.util.ArrayList<Node> ret = new java.util.ArrayList<>();
+			for(PrismsConfig sub : config.subConfigs()) {
+				if(!NON_OP_CONFIGS.contains(sub.getName()))
+					ret.add(compile(sub, ids));
+			}
+			return ret.toArray(new Node[ret.size()]);
+		}
+
+		private static Node compile(PrismsConfig config, Map<String, Integer> ids) {
+			Node ret;
+			switch (config.getName()) {
+			case "literal":
+				ret = new Node(config, Node.LITERAL);
+				ret.ignoreWS = config.is("ignorews", false);
+				if(config.getValue() != null)
+					ret.value = PrismsUtils.decodeUnicode(config.getValue());
+				if(config.get("pattern") != null) {
+					ret.patternText = PrismsUtils.decodeUnicode(config.get("pattern"));
+					ret.pattern = Pattern.compile(ret.patternText, Pattern.DOTALL);
+				}
+				break;
+			case "charset":
+				ret = new Node(config, Node.CHARSET);
+				ret.ignoreWS = config.is("ignorews", false);
+				ret.patternText = PrismsUtils.decodeUnicode(config.get("pattern"));
+				ret.pattern = Pattern.compile(ret.patternText, Pattern.DOTALL);
+				PrismsConfig [] excludes = config.subConfigs("exclude");
+				ret.excludeValues = new String[excludes.length];
+				ret.excludeEscapes = new String[excludes.length];
+				for(int i = 0; i < excludes.length; i++) {
+					ret.excludeValues[i] = PrismsUtils.decodeUnicode(excludes[i].getValue());
+					String escape = excludes[i].get("escape");
+					ret.excludeEscapes[i] = escape == null ? null : PrismsUtils.decodeUnicode(escape);
+				}
+				PrismsConfig [] matches = config.subConfigs("match");
+				ret.matchValues = new String[matches.length];
+				for(int i = 0; i < matches.length; i++)
+					ret.matchValues[i] = PrismsUtils.decodeUnicode(matches[i].getValue());
+				break;
+			case "whitespace":
+				ret = new Node(config, Node.WHITESPACE);
+				ret.forbid = config.get("type") != null;
+				break;
+			case "option":
+				ret = new Node(config, Node.OPTION);
+				ret.min = config.getInt("min", 0);
+				// If a min is declared and no max, the max is infinite. If no min is declared, then the default max is 1.
+				ret.max = config.getInt("max", config.get("min") != null ? -1 : 1);
+				ret.children = compileContent(config, ids);
+				break;
+			case "forbid":
+				ret = new Node(config, Node.FORBID);
+				ret.min = 0;
+				ret.max = 1;
+				ret.children = compileContent(config, ids);
+				break;
+			case "select":
+				ret = new Node(config, Node.SELECT);
+				PrismsConfig [] options = config.subConfigs();
+				ret.children = new Node[options.length];
+				for(int i = 0; i < options.length; i++)
+					ret.children[i] = compile(options[i], ids);
+				break;
+			case "op":
+				ret = new Node(config, Node.OP);
+				ret.ignoreWS = config.is("ignorews", false);
+				if(config.get("type") != null) {
+					String [] types = config.get("type").split("\\|");
+					ret.types = new int[types.length];
+					for(int i = 0; i < types.length; i++) {
+						Integer id = ids.get(types[i]);
+						if(id == null)
+							id = ids.get(types[i].trim());
+						ret.types[i] = id.intValue();
+					}
+				} else
+					ret.types = new int[0];
+				break;
+			default:
+				ret = new Node(config, Node.UNKNOWN);
+			}
+			return ret;
+		}
+	}
+
+	/**
+	 * Memoizes the results of parsing rules at positions in the text for a single statement. Results are kept in tables indexed
+	 * by position relative to the start of the statement and by rule ID, with an extra slot after the rules for the best match of
+	 * any type. The same rows are reused for each statement in a command, so the tables only grow to the length of the longest
+	 * statement.
+	 */
 	static class ParseSessionCache {
-		private ParseMatch none = new ParseMatch(null, null, 0, null, false, "NO MATCH!");
+		final Grammar grammar;
+
+		/** The slot for the best match of any type */
+		final int any;
 
-		Map<DualKey<Integer, String>, ParseMatch> theFound;
+		private final int theWords;
 
-		java.util.Set<DualKey<Integer, String>> theFinding;
+		private ParseMatch [][] theFound;
 
-		ParseSessionCache() {
-			theFound = new java.util.HashMap<>();
-			theFinding = new java.util.HashSet<>();
+		private long [][] theFinding;
+
+		/** The statement that each row was last used for. Rows used for earlier statements are stale. */
+		private int [] theRowStatements;
+
+		private int theStatement;
+
+		/** The position in the text where the current statement starts */
+		private int theStart;
+
+		ParseSessionCache(Grammar aGrammar) {
+			grammar = aGrammar;
+			any = aGrammar.rules.length;
+			theWords = (any + 64) >>> 6;
+			theFound = new ParseMatch[16][];
+			theFinding = new long[16][];
+			theRowStatements = new int[16];
+			theStatement = 1;
 		}
 
-		void addFinding(int position, String type) {
-			theFinding.add(new DualKey<>(Integer.valueOf(position), type));
+		/**
+		 * Clears this cache for a new statement
+		 *
+		 * @param start The position in the text where the new statement starts
+		 */
+		void reset(int start) {
+			theStatement++;
+			theStart = start;
 		}
 
-		void addFound(int position, String type, ParseMatch found) {
-			if(found == null)
-				found = none;
-			theFound.put(new DualKey<>(Integer.valueOf(position), type), found);
-			if(type == null && found != none)
-				theFound.put(new DualKey<>(Integer.valueOf(position), found.config.get("name")), found);
+		/** @return The row for the position, or -1 if the position is before the current statement */
+		private int row(int position) {
+			return position < theStart ? -1 : position - theStart;
 		}
 
-		boolean isFound(int position, String type) {
-			return theFound.containsKey(new DualKey<>(Integer.valueOf(position), type));
+		private boolean isCurrent(int row) {
+			return row >= 0 && row < theRowStatements.length && theRowStatements[row] == theStatement;
 		}
 
-		ParseMatch getFound(int position, String type) {
-			ParseMatch ret = theFound.get(new DualKey<>(Integer.valueOf(position), type));
-			if(ret == none)
-				return null;
-			return ret;
+		/** @return The row for the position, cleared if it was last used for an earlier statement, or -1 if it can't be cached */
+		private int use(int position) {
+			int row = row(position);
+			if(row < 0 || isCurrent(row))
+				return row;
+			if(row >= theFound.length) {
+				int newLength = Math.max(row + 1, theFound.length * 2);
+				theFound = java.util.Arrays.copyOf(theFound, newLength);
+				theFinding = java.util.Arrays.copyOf(theFinding, newLength);
+				theRowStatements = java.util.Arrays.copyOf(theRowStatements, newLength);
+			}
+			if(theFound[row] == null) {
+				theFound[row] = new ParseMatch[any + 1];
+				theFinding[row] = new long[theWords];
+			} else {
+				java.util.Arrays.fill(theFound[row], null);
+				java.util.Arrays.fill(theFinding[row], 0);
+			}
+			theRowStatements[row] = theStatement;
+			return row;
+		}
+
+		void addFinding(int position, int slot) {
+			int row = use(position);
+			if(row >= 0)
+				theFinding[row][slot >>> 6] |= 1L << (slot & 63);
+		}
+
+		void stopFinding(int position, int slot) {
+			int row = row(position);
+			if(isCurrent(row))
+				theFinding[row][slot >>> 6] &= ~(1L << (slot & 63));
+		}
+
+		boolean isFinding(int position, int slot) {
+			int row = row(position);
+			return isCurrent(row) && (theFinding[row][slot >>> 6] & (1L << (slot & 63))) != 0;
 		}
 
-		boolean isFinding(int position, String type) {
-			return theFinding.contains(new DualKey<>(Integer.valueOf(position), type));
+		void addFound(int position, int slot, ParseMatch found) {
+			int row = use(position);
+			if(row >= 0)
+				theFound[row][slot] = found;
 		}
 
-		void stopFinding(int position, String type) {
-			theFinding.remove(new DualKey<>(Integer.valueOf(position), type));
+		/** Caches the best match of any type, which is also cached as the best match for its own rule */
+		void addFound(int position, ParseMatch found, int rule) {
+			int row = use(position);
+			if(row >= 0) {
+				theFound[row][any] = found;
+				theFound[row][rule] = found;
+			}
+		}
+
+		boolean isFound(int position, int slot) {
+			return getFound(position, slot) != null;
+		}
+
+		ParseMatch getFound(int position, int slot) {
+			int row = row(position);
+			if(!isCurrent(row))
+				return null;
+			return theFound[row][slot];
 		}
 	}
 
@@ -119,9 +390,15 @@ public class PrismsParser {
 
 	private java.util.List<String> theTerminators;
 
-	private boolean isValidated;
+	/** A snapshot of {@link #theTerminators} for parsing threads to read */
+	private volatile String [] theTerminatorArray;
+
+	private volatile boolean isValidated;
+
+	/** The compiled grammar, set when the configuration is validated */
+	private volatile Grammar theGrammar;
 
-	private PrismsParserDebugger theDebugger;
+	private volatile PrismsParserDebugger theDebugger;
 
 	/** Creates a parser */
 	public PrismsParser() {
@@ -129,12 +406,18 @@ public class PrismsParser {
 		theOpsByName = new java.util.HashMap<>();
 		theIgnorables = new String[0];
 		theTerminators = new java.util.ArrayList<>();
+		theTerminatorArray = new String[0];
 		addTerminator("\n");
 		addTerminator(";");
 		theDebugger = new NullDebugger();
 	}
 
-	/** @param debugger The debugger to use in debugging parsing */
+	/**
+	 * Sets the debugger for this parser. While a debugger other than the default is set, parsing is done by only one thread at a
+	 * time.
+	 *
+	 * @param debugger The debugger to use in debugging parsing
+	 */
 	public void setDebugger(PrismsParserDebugger debugger) {
 		if(debugger != null)
 			theDebugger = debugger;
@@ -145,23 +428,26 @@ public class PrismsParser {
 	}
 
 	/** @param terminator The terminator string to accept as a boundary between successive matches */
-	public void addTerminator(String terminator) {
+	public synchronized void addTerminator(String terminator) {
 		theTerminators.add(terminator);
+		theTerminatorArray = theTerminators.toArray(new String[theTerminators.size()]);
 	}
 
 	/** @param terminator The terminator string to not accept for a boundary between successive matchess */
-	public void removeTerminator(String terminator) {
+	public synchronized void removeTerminator(String terminator) {
 		theTerminators.remove(terminator);
+		theTerminatorArray = theTerminators.toArray(new String[theTerminators.size()]);
 	}
 
 	/** Clears this perser's terminators so that a clean set can be added */
-	public void clearTerminators() {
+	public synchronized void clearTerminators() {
 		theTerminators.clear();
+		theTerminatorArray = new String[0];
 	}
 
 	/** @return All terminator strings that are accepted by this parser as boundaries between successive matches */
 	public String [] getTerminators() {
-		return theTerminators.toArray(new String[theTerminators.size()]);
+		return theTerminatorArray.clone();
 	}
 
 	/**
@@ -304,27 +590,32 @@ public class PrismsParser {
 	}
 
 	/**
-	 * Checks this parser's configuration for errors
+	 * Checks this parser's configuration for errors and compiles it for parsing
 	 *
 	 * @throws IllegalArgumentException If an error is found in the configuration
 	 */
 	public void validateConfig() throws IllegalArgumentException {
 		if(isValidated)
 			return;
-		for(PrismsConfig op : theOperators) {
-			try {
-				checkReferences(op);
-			} catch(IllegalArgumentException e) {
-				throw new IllegalArgumentException(op.getName() + " \"" + op.get("name") + "\":", e);
+		synchronized(this) {
+			if(isValidated)
+				return;
+			for(PrismsConfig op : theOperators) {
+				try {
+					checkReferences(op);
+				} catch(IllegalArgumentException e) {
+					throw new IllegalArgumentException(op.getName() + " \"" + op.get("name") + "\":", e);
+				}
 			}
+			java.util.Collections.sort(theOperators, new java.util.Comparator<PrismsConfig>() {
+				@Override
+				public int compare(PrismsConfig o1, PrismsConfig o2) {
+					return o2.getInt("priority", 0) - o1.getInt("priority", 0);
+				}
+			});
+			theGrammar = new Grammar(theOperators, theIgnorables);
+			isValidated = true;
 		}
-		java.util.Collections.sort(theOperators, new java.util.Comparator<PrismsConfig>() {
-			@Override
-			public int compare(PrismsConfig o1, PrismsConfig o2) {
-				return o2.getInt("priority", 0) - o1.getInt("priority", 0);
-			}
-		});
-		isValidated = true;
 		theDebugger.init(this);
 	}
 
@@ -347,17 +638,27 @@ public class PrismsParser {
 	 * @return The structure matches parsed
 	 * @throws ParseException If parsing fails
 	 */
-	public synchronized ParseMatch [] parseMatches(String cmd) throws ParseException {
+	public ParseMatch [] parseMatches(String cmd) throws ParseException {
 		validateConfig();
+		if(theDebugger instanceof NullDebugger)
+			return parse(cmd);
+		synchronized(this) {
+			return parse(cmd);
+		}
+	}
+
+	private ParseMatch [] parse(String cmd) throws ParseException {
 		if(cmd.length() == 0)
 			throw new ParseException("No input given", cmd, 0);
 		int index = 0;
 		StringBuilder str = new StringBuilder(cmd);
+		ParseSessionCache cache = new ParseSessionCache(theGrammar);
 		theDebugger.start(str);
 		ParseMatch [] parseMatches = new ParseMatch[0];
 		try {
 			while(index < str.length()) {
-				ParseMatch parseMatch = parseMatch(str, index, new ParseSessionCache());
+				cache.reset(index);
+				ParseMatch parseMatch = parseMatch(str, index, cache);
 				if(parseMatch == null)
 					throw new ParseException("Syntax error", cmd, index);
 				index += parseMatch.text.length();
@@ -383,8 +684,10 @@ public class PrismsParser {
 						throw new ParseException("Terminator expected", cmd, index);
 					index += terminator.text.length();
 					ParseMatch [] ignores = null;
-					if(index < str.length())
-						ignores = parseIgnorables(str, index, new ParseSessionCache(), true);
+					if(index < str.length()) {
+						cache.reset(index);
+						ignores = parseIgnorables(str, index, cache, true);
+					}
 					ParseMatch [] subs = parseMatch.getParsed();
 					String text = parseMatch.text + terminator.text;
 					subs = ArrayUtils.add(subs, terminator);
@@ -415,7 +718,7 @@ public class PrismsParser {
 	 * @return The syntax structures parsed from the matches
 	 * @throws ParseException If parsing fails
 	 */
-	public synchronized ParsedItem [] parseStructures(ParsedItem parent, ParseMatch... matches) throws ParseException {
+	public ParsedItem [] parseStructures(ParsedItem parent, ParseMatch... matches) throws ParseException {
 		if(parent == null)
 			throw new IllegalArgumentException("Parent required for parsed structures.  Use " + ParseStructRoot.class.getSimpleName() + ".");
 		ParsedItem [] ret = new ParsedItem[matches.length];
@@ -426,7 +729,7 @@ public class PrismsParser {
 			Class<? extends ParsedItem> implClass = null;
 			while(implClass == null) {
 				try {
-					implClass = implMatch.config.getClass("impl", ParsedItem.class);
+					implClass = getImplementation(implMatch.config);
 				} catch(ClassNotFoundException e) {
 					throw new ParseException("Implementation not found for " + implMatch.config, e, parent.getRoot().getFullCommand(), -1);
 				} catch(ClassCastException e) {
@@ -459,18 +762,29 @@ public class PrismsParser {
 		return ret;
 	}
 
+	private Class<? extends ParsedItem> getImplementation(PrismsConfig config) throws ClassNotFoundException, ClassCastException {
+		Grammar grammar = theGrammar;
+		if(grammar != null) {
+			Class<? extends ParsedItem> ret = grammar.impls.get(config);
+			if(ret != null)
+				return ret;
+		}
+		return config.getClass("impl", ParsedItem.class);
+	}
+
 	ParseMatch parseMatch(StringBuilder sb, int index, ParseSessionCache cache) {
 		return getBestMatch(sb, index, cache, false);
 	}
 
-	ParseMatch getBestMatch(StringBuilder sb, int index, ParseSessionCache cache, boolean useCache, String... types) {
+	ParseMatch getBestMatch(StringBuilder sb, int index, ParseSessionCache cache, boolean useCache, int... types) {
+		Node [] rules = cache.grammar.rules;
 		ParseMatch ret = null;
 		boolean betterMatch = true;
 		boolean firstRound = true;
 		while(betterMatch) {
 			betterMatch = false;
 			if(types.length > 0) {
-				for(String type : types) {
+				for(int type : types) {
 					if(cache.isFinding(index, type))
 						continue;
 					ParseMatch match;
@@ -486,7 +800,7 @@ public class PrismsParser {
 					else {
 						cache.addFinding(index, type);
 						try {
-							match = parseTypedMatch(sb, index, cache, theOpsByName.get(type), true);
+							match = parseTypedMatch(sb, index, cache, rules[type], true);
 						} finally {
 							cache.stopFinding(index, type);
 						}
@@ -504,37 +818,37 @@ public class PrismsParser {
 					}
 				}
 			} else {
-				if(useCache && firstRound && cache.isFound(index, null)) {
-					ret = cache.getFound(index, null);
+				int any = cache.any;
+				if(useCache && firstRound && cache.isFound(index, any)) {
+					ret = cache.getFound(index, any);
 					theDebugger.usedCache(ret);
 					return ret;
 				}
-				if(cache.isFinding(index, null))
-					return cache.getFound(index, null);
-				cache.addFinding(index, null);
+				if(cache.isFinding(index, any))
+					return cache.getFound(index, any);
+				cache.addFinding(index, any);
 				try {
-					ParseMatch bestComplete = cache.getFound(index, null);
+					ParseMatch bestComplete = cache.getFound(index, any);
 					boolean usedCache = true;
-					for(PrismsConfig op : theOperators) {
-						if(op.getInt("priority", 0) < 0)
+					for(Node op : rules) {
+						if(op.priority < 0)
 							break;
-						String name = op.get("name");
-						if(cache.isFinding(index, name))
+						if(cache.isFinding(index, op.id))
 							continue;
 						ParseMatch match;
-						if(useCache && firstRound && cache.isFound(index, name))
-							match = cache.getFound(index, name);
+						if(useCache && firstRound && cache.isFound(index, op.id))
+							match = cache.getFound(index, op.id);
 						else {
-							cache.addFinding(index, name);
+							cache.addFinding(index, op.id);
 							try {
 								match = parseTypedMatch(sb, index, cache, op, true);
 							} finally {
-								cache.stopFinding(index, name);
+								cache.stopFinding(index, op.id);
 							}
 						}
 						if(match != null && match.isComplete() && isBetter(bestComplete, match)) {
 							bestComplete = match;
-							cache.addFound(index, null, match);
+							cache.addFound(index, match, op.id);
 						}
 						if(match != null && isBetter(ret, match)) {
 							theDebugger.matchDiscarded(ret);
@@ -547,7 +861,7 @@ public class PrismsParser {
 					if(usedCache)
 						theDebugger.usedCache(ret);
 				} finally {
-					cache.stopFinding(index, null);
+					cache.stopFinding(index, any);
 				}
 			}
 			firstRound = false;
@@ -586,9 +900,9 @@ public class PrismsParser {
 		}
 	}
 
-	ParseMatch parseTypedMatch(StringBuilder sb, int index, ParseSessionCache cache, PrismsConfig op, boolean reportRoot) {
+	ParseMatch parseTypedMatch(StringBuilder sb, int index, ParseSessionCache cache, Node op, boolean reportRoot) {
 		if (reportRoot)
-			theDebugger.preParse(sb, index, op);
+			theDebugger.preParse(sb, index, op.config);
 		final int startIndex = index;
 		ParseMatch [] subMatches = new ParseMatch[0];
 
@@ -598,67 +912,56 @@ public class PrismsParser {
 		boolean badOptionOld = true;
 
 		ParseMatch [] ignores = null;
-		for(PrismsConfig sub : op.subConfigs()) {
+		for(Node sub : op.children) {
 			if(badOption != null && badOptionOld)
 				badOption = null;
-			if(NON_OP_CONFIGS.contains(sub.getName()))
-				continue;
 			ignores = null;
 			ParseMatch match;
-			switch (sub.getName()) {
-			case "literal":
+			switch (sub.kind) {
+			case Node.LITERAL:
 				badOptionOld = true;
-				ignores = parseIgnorables(sb, index, cache, !sub.is("ignorews", false));
+				ignores = parseIgnorables(sb, index, cache, !sub.ignoreWS);
 				if(ignores != null)
 					for(ParseMatch ig : ignores)
 						index += ig.text.length();
-				theDebugger.preParse(sb, index, sub);
+				theDebugger.preParse(sb, index, sub.config);
 				match = parseLiteral(sb, index, sub);
-				theDebugger.postParse(sb, index, sub, match);
+				theDebugger.postParse(sb, index, sub.config, match);
 				break;
-			case "charset":
+			case Node.CHARSET:
 				badOptionOld = true;
-				ignores = parseIgnorables(sb, index, cache, !sub.is("ignorews", false));
+				ignores = parseIgnorables(sb, index, cache, !sub.ignoreWS);
 				if(ignores != null)
 					for(ParseMatch ig : ignores)
 						index += ig.text.length();
-				theDebugger.preParse(sb, index, sub);
+				theDebugger.preParse(sb, index, sub.config);
 				match = parseCharset(sb, index, sub);
-				theDebugger.postParse(sb, index, sub, match);
+				theDebugger.postParse(sb, index, sub.config, match);
 				break;
-			case "whitespace":
+			case Node.WHITESPACE:
 				badOptionOld = true;
-				theDebugger.preParse(sb, index, sub);
+				theDebugger.preParse(sb, index, sub.config);
 				match = parseWhiteSpace(sb, index);
-				theDebugger.postParse(sb, index, sub, match);
-				if(sub.get("type") != null) // forbid
+				theDebugger.postParse(sb, index, sub.config, match);
+				if(sub.forbid)
 				{
 					if(match != null)
-						match = new ParseMatch(sub, match.text, match.index, null, true, "White space unexpected");
+						match = new ParseMatch(sub.config, match.text, match.index, null, true, "White space unexpected");
 					else
 						continue;
 				} else if(match == null)
-					match = new ParseMatch(sub, "", index, null, false, "White space expected");
+					match = new ParseMatch(sub.config, "", index, null, false, "White space expected");
 				break;
-			case "option":
-			case "forbid":
+			case Node.OPTION:
+			case Node.FORBID:
 				badOptionOld = true;
-				int min,
-				max;
-				if(sub.getName().equals("forbid")) {
-					min = 0;
-					max = 1;
-				} else {
-					min = sub.getInt("min", 0);
-					// If a min is declared and no max, the max is infinite. If no min is declared, then the default max is 1.
-					max = sub.getInt("max", sub.get("min") != null ? -1 : 1);
-				}
+				int min = sub.min, max = sub.max;
 				int count = 0;
 				match = null;
 				int preOptionIndex = index;
 				ParseMatch [] optionMatches = null;
 				int optStartIndex = index;
-				theDebugger.preParse(sb, index, sub);
+				theDebugger.preParse(sb, index, sub.config);
 				while(max < 0 || count < max) {
 					match = parseTypedMatch(sb, index, cache, sub, false);
 					if(match == null || !match.isComplete() || match.getError() != null) {
@@ -679,32 +982,32 @@ public class PrismsParser {
 								subMatches = ArrayUtils.addAll(optMatch.getParsed());
 						match = badOption;
 					} else {
-						String name = sub.get("storeAs");
+						String name = sub.config.get("storeAs");
 						if(name == null)
 							name = "option";
-						match = new ParseMatch(sub, "", index, null, false, "At least " + min + " \"" + name + "\" occurrence"
+						match = new ParseMatch(sub.config, "", index, null, false, "At least " + min + " \"" + name + "\" occurrence"
 							+ (min > 1 ? "s" : "") + " expected");
 					}
 					break; // handle this outside the switch
 				}
-				if(sub.getName().equals("forbid") && optionMatches != null) {
-					match = new ParseMatch(sub, sb.substring(preOptionIndex, index), preOptionIndex, optionMatches, true,
+				if(sub.kind == Node.FORBID && optionMatches != null) {
+					match = new ParseMatch(sub.config, sb.substring(preOptionIndex, index), preOptionIndex, optionMatches, true,
 						"Forbidden content present");
 					break;
 				}
 				// For option, add the content and continue the loop
 				if (optionMatches != null) {
-					match = new ParseMatch(sub, sb.substring(optStartIndex, index), optStartIndex, optionMatches, true, null);
+					match = new ParseMatch(sub.config, sb.substring(optStartIndex, index), optStartIndex, optionMatches, true, null);
 					subMatches = ArrayUtils.add(subMatches, match);
 				}
-				theDebugger.postParse(sb, optStartIndex, sub, match);
+				theDebugger.postParse(sb, optStartIndex, sub.config, match);
 				continue;
-			case "select":
-				theDebugger.preParse(sb, index, sub);
+			case Node.SELECT:
+				theDebugger.preParse(sb, index, sub.config);
 				badOptionOld = true;
 				match = null;
 				optStartIndex = index;
-				for(PrismsConfig option : sub.subConfigs()) {
+				for(Node option : sub.children) {
 					ParseMatch optionMatch = parseTypedMatch(sb, index, cache, option, true);
 					if(optionMatch == null)
 						continue;
@@ -718,43 +1021,38 @@ public class PrismsParser {
 					}
 				}
 				if(match != null) {
-					match = new ParseMatch(sub, match.text, optStartIndex, new ParseMatch[] {match}, true, null);
+					match = new ParseMatch(sub.config, match.text, optStartIndex, new ParseMatch[] {match}, true, null);
 					// if(match.isComplete() && match.getError() == null) {
 					subMatches = ArrayUtils.add(subMatches, match);
 					index += match.text.length();
-					theDebugger.postParse(sb, optStartIndex, sub, match);
+					theDebugger.postParse(sb, optStartIndex, sub.config, match);
 					continue;
 					// }
 				}
-				theDebugger.postParse(sb, optStartIndex, sub, match);
+				theDebugger.postParse(sb, optStartIndex, sub.config, match);
 				break;
-			case "op":
+			case Node.OP:
 				badOptionOld = true;
-				ignores = parseIgnorables(sb, index, cache, !sub.is("ignorews", false));
+				ignores = parseIgnorables(sb, index, cache, !sub.ignoreWS);
 				if(ignores != null)
 					for(ParseMatch ig : ignores)
 						index += ig.text.length();
-				String [] types;
-				if(sub.get("type") != null)
-					types = sub.get("type").split("\\|");
-				else
-					types = new String[0];
-				theDebugger.preParse(sb, index, sub);
-				match = getBestMatch(sb, index, cache, true, types);
+				theDebugger.preParse(sb, index, sub.config);
+				match = getBestMatch(sb, index, cache, true, sub.types);
 				if(match != null)
-					match = new ParseMatch(sub, match.text, index, new ParseMatch[] {match}, true, null);
-				theDebugger.postParse(sb, index, sub, match);
+					match = new ParseMatch(sub.config, match.text, index, new ParseMatch[] {match}, true, null);
+				theDebugger.postParse(sb, index, sub.config, match);
 				break;
 			default:
-				throw new IllegalStateException("Unrecognized configuration: \"" + sub.getName() + "\" in " + op.getName()
-					+ (op.get("name") == null ? "" : " " + op.get("name")) + ":\n" + op);
+				throw new IllegalStateException("Unrecognized configuration: \"" + sub.config.getName() + "\" in " + op.config.getName()
+					+ (op.config.get("name") == null ? "" : " " + op.config.get("name")) + ":\n" + op.config);
 			}
 			if(match == null || (!match.isComplete() && match.text.length() == 0)) {
 				if(badOption != null)
 					match = badOption;
 			}
 			if(match == null || (!match.isComplete() && match.text.length() == 0 && subMatches.length == 0)) {
-				theDebugger.postParse(sb, startIndex, op, null);
+				theDebugger.postParse(sb, startIndex, op.config, null);
 				return null;
 			}
 			if(ignores != null)
@@ -762,8 +1060,8 @@ public class PrismsParser {
 			subMatches = ArrayUtils.add(subMatches, match);
 			index = match.index + match.text.length();
 			if(!match.isComplete()) {
-				ParseMatch ret = new ParseMatch(op, sb.substring(startIndex, index), startIndex, subMatches, true, null);
-				theDebugger.postParse(sb, startIndex, op, ret);
+				ParseMatch ret = new ParseMatch(op.config, sb.substring(startIndex, index), startIndex, subMatches, true, null);
+				theDebugger.postParse(sb, startIndex, op.config, ret);
 				return ret;
 			}
 		}
@@ -772,20 +1070,21 @@ public class PrismsParser {
 			subMatches=ArrayUtils.add(subMatches, terminator);
 			index+=terminator.text.length();
 		}*/
-		ParseMatch ret = new ParseMatch(op, sb.substring(startIndex, index), startIndex, subMatches, true, null);
+		ParseMatch ret = new ParseMatch(op.config, sb.substring(startIndex, index), startIndex, subMatches, true, null);
 		if (reportRoot)
-			theDebugger.postParse(sb, startIndex, op, ret);
+			theDebugger.postParse(sb, startIndex, op.config, ret);
 		return ret;
 	}
 
 	private ParseMatch parseTerminator(StringBuilder sb, int index) {
 		final int startIndex = index;
+		String [] terminators = theTerminatorArray;
 		boolean firstRound = true;
 		do {
 			if(!firstRound)
 				index++; // Pass white space character and try again
 			firstRound = false;
-			for(String term : theTerminators) {
+			for(String term : terminators) {
 				if(index + term.length() > sb.length())
 					continue;
 				boolean matches = true;
@@ -793,8 +1092,7 @@ public class PrismsParser {
 					if(term.charAt(i) != sb.charAt(index + i))
 						matches = false;
 				if(matches)
-					return new ParseMatch(new PrismsConfig.DefaultPrismsConfig("config", null, null), sb.substring(startIndex,
-						index + term.length()), startIndex, null, true, null);
+					return new ParseMatch(TERMINATOR_CONFIG, sb.substring(startIndex, index + term.length()), startIndex, null, true, null);
 			}
 		} while(index < sb.length() && Character.isWhitespace(sb.charAt(index)));
 		return null;
@@ -805,7 +1103,7 @@ public class PrismsParser {
 		ParseMatch match;
 		do {
 			match = null;
-			match = getBestMatch(sb, index, cache, true, theIgnorables);
+			match = getBestMatch(sb, index, cache, true, cache.grammar.ignorables);
 			if(match == null && withWS)
 				match = parseWhiteSpace(sb, index);
 			if(match != null) {
@@ -821,80 +1119,77 @@ public class PrismsParser {
 		while(index < sb.length() && Character.isWhitespace(sb.charAt(index)))
 			index++;
 		if(index > start)
-			return new ParseMatch(new PrismsConfig.DefaultPrismsConfig("whitespace", null, null), sb.substring(start, index), start, null,
-				true, null);
+			return new ParseMatch(WHITESPACE_CONFIG, sb.substring(start, index), start, null, true, null);
 		else
 			return null;
 	}
 
-	private ParseMatch parseLiteral(StringBuilder sb, int index, PrismsConfig item) {
-		String value = item.getValue();
-		if(value != null)
-			value = prisms.util.PrismsUtils.decodeUnicode(value);
+	private ParseMatch parseLiteral(StringBuilder sb, int index, Node item) {
+		String value = item.value;
 		if(index == sb.length()) {
 			if(value != null && value.length() > 0)
-				return new ParseMatch(item, "", index, null, false, item.getValue() + " expected");
+				return new ParseMatch(item.config, "", index, null, false, item.config.getValue() + " expected");
 			else
-				return new ParseMatch(item, "", index, null, false, "Sequence matching " + item.get("pattern") + " expected");
+				return new ParseMatch(item.config, "", index, null, false, "Sequence matching " + item.config.get("pattern") + " expected");
 		}
 		if(value != null && value.length() > 0) {
 			for(int i = 0; i < value.length(); i++)
 				if(index + i >= sb.length() || sb.charAt(index + i) != value.charAt(i))
-					return new ParseMatch(item, "", index, null, false, item.getValue() + " expected");
-			return new ParseMatch(item, sb.substring(index, index + value.length()), index, null, true, null);
+					return new ParseMatch(item.config, "", index, null, false, item.config.getValue() + " expected");
+			return new ParseMatch(item.config, sb.substring(index, index + value.length()), index, null, true, null);
 		} else {
-			String pattern = PrismsUtils.decodeUnicode(item.get("pattern"));
-			java.util.regex.Matcher match = Pattern.compile(pattern, Pattern.DOTALL).matcher(sb.substring(index));
-			if(!match.find() || match.start() > 0)
-				return new ParseMatch(item, "", index, null, false, "Sequence matching " + item.get("pattern") + " expected");
-			return new ParseMatch(item, sb.substring(index, index + match.end()), index, null, true, null);
+			// The region's bounds are opaque, so the pattern sees the same text as it would in sb.substring(index)
+			Matcher match = item.pattern.matcher(sb);
+			match.region(index, sb.length());
+			if(!match.lookingAt())
+				return new ParseMatch(item.config, "", index, null, false, "Sequence matching " + item.config.get("pattern") + " expected");
+			return new ParseMatch(item.config, sb.substring(index, match.end()), index, null, true, null);
 		}
 	}
 
-	private ParseMatch parseCharset(StringBuilder sb, int index, PrismsConfig item) {
+	private ParseMatch parseCharset(StringBuilder sb, int index, Node item) {
 		if(index == sb.length())
-			return new ParseMatch(item, "", index, null, false, "Sequence matching " + item.get("pattern") + " expected");
-		String pattern = PrismsUtils.decodeUnicode(item.get("pattern"));
-		Pattern pat = Pattern.compile(pattern, Pattern.DOTALL);
-		java.util.regex.Matcher match = pat.matcher(sb.substring(index));
-		if(!match.find() || match.start() > 0)
-			return new ParseMatch(item, "", index, null, false, "Sequence matching " + pattern + " expected");
-		int end = index + match.end();
-		for(PrismsConfig exclude : item.subConfigs("exclude")) {
-			String escape = exclude.get("escape");
-			String value = PrismsUtils.decodeUnicode(exclude.getValue());
+			return new ParseMatch(item.config, "", index, null, false, "Sequence matching " + item.config.get("pattern") + " expected");
+		String pattern = item.patternText;
+		Matcher match = item.pattern.matcher(sb);
+		match.region(index, sb.length());
+		if(!match.lookingAt())
+			return new ParseMatch(item.config, "", index, null, false, "Sequence matching " + pattern + " expected");
+		int end = match.end();
+		for(int x = 0; x < item.excludeValues.length; x++) {
+			String escape = item.excludeEscapes[x];
+			String value = item.excludeValues[x];
 			if(escape == null) {
-				int idx = sb.indexOf(value, index);
-				if(idx >= 0 && idx < end)
+				int idx = indexOf(sb, value, index, end);
+				if(idx >= 0)
 					end = idx;
 			} else {
-				escape = PrismsUtils.decodeUnicode(escape);
 				for(int i = index; i < end; i++) {
 					if(startsWith(sb, i, escape))
 						i += escape.length() - 1;
 					else if(startsWith(sb, i, value)) {
 						end = i;
-						if(!pat.matcher(sb.substring(index, end)).matches())
-							return new ParseMatch(item, sb.substring(index, end), index, null, true, value + " not expected");
+						match.region(index, end);
+						if(!match.matches())
+							return new ParseMatch(item.config, sb.substring(index, end), index, null, true, value + " not expected");
 						break;
 					}
 				}
 			}
 		}
-		if(item.subConfigs("match").length > 0) {
+		if(item.matchValues.length > 0) {
 			String text = sb.substring(index, end);
 			boolean found = false;
 			int maxLen = 0;
 			String maxMatch = null;
 			boolean incomplete = false;
-			for(PrismsConfig m : item.subConfigs("match")) {
-				String mValue = PrismsUtils.decodeUnicode(m.getValue());
+			for(String mValue : item.matchValues) {
 				if(text.equals(mValue))
 					found = true;
 				if(found)
 					break;
 				if(mValue == null)
-					throw new IllegalStateException("Match must have content: " + item);
+					throw new IllegalStateException("Match must have content: " + item.config);
 				int i;
 				for(i = 0; i < text.length() && i < mValue.length(); i++) {
 					if(text.charAt(i) != mValue.length()) {
@@ -909,7 +1204,7 @@ public class PrismsParser {
 					incomplete = true;
 			}
 			if(!found) {
-				PrismsConfig [] matches = item.subConfigs("match");
+				PrismsConfig [] matches = item.config.subConfigs("match");
 				StringBuilder msg = new StringBuilder();
 				if(matches.length == 1)
 					msg.append(matches[0].getValue());
@@ -922,11 +1217,11 @@ public class PrismsParser {
 					}
 				}
 				msg.append(" expected");
-				return new ParseMatch(item, maxMatch == null ? "" : maxMatch, index, null, incomplete, msg.toString());
+				return new ParseMatch(item.config, maxMatch == null ? "" : maxMatch, index, null, incomplete, msg.toString());
 			}
 		}
 
-		return new ParseMatch(item, sb.substring(index, end), index, null, true, null);
+		return new ParseMatch(item.config, sb.substring(index, end), index, null, true, null);
 	}
 
 	private static boolean startsWith(StringBuilder sb, int index, String seq) {
@@ -936,6 +1231,19 @@ public class PrismsParser {
 		return true;
 	}
 
+	/** @return The first index in [from, to) at which the whole of seq occurs in sb, or -1 if there is none */
+	private static int indexOf(StringBuilder sb, String seq, int from, int to) {
+		int last = Math.min(to, sb.length() - seq.length() + 1);
+		for(int i = from; i < last; i++) {
+			int j = 0;
+			while(j < seq.length() && sb.charAt(i + j) == seq.charAt(j))
+				j++;
+			if(j == seq.length())
+				return i;
+		}
+		return -1;
+	}
+
 	/**
 	 * A unit test for the parser--attempts to parse and evaluate the content of UnitTest.txt
 	 *
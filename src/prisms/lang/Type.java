@@ -749,6 +749,20 @@ public class Type
 		return true;
 	}
 
+	@Override
+	public int hashCode()
+	{
+		int ret = theBaseType == null ? 0 : theBaseType.hashCode();
+		ret = ret * 31 + (theName == null ? 0 : theName.hashCode());
+		ret = ret * 31 + (isBounded ? 1 : 0);
+		ret = ret * 31 + (isUpperBound ? 1 : 0);
+		ret = ret * 31 + (theBoundType == null ? 0 : theBoundType.hashCode());
+		if(theParamTypes != null)
+			for(Type pt : theParamTypes)
+				ret = ret * 31 + (pt == null ? 0 : pt.hashCode());
+		return ret;
+	}
+
 	/**
 	 * @param wrapper The wrapper for a primtive type
 	 * @return The wrapped primitive type, or null if the given type is not primitive or a primitive wrapper
@@ -0,0 +1,373 @@
+/* MemberCache.java Created Oct 16, 2026 by Andrew Butler, PSL */
+package prisms.lang.types;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Modifier;
+
+import prisms.lang.Type;
+
+/**
+ * Caches the results of reflective member resolution for method, field and constructor invocations so that an invocation that is
+ * evaluated repeatedly does not repeat overload resolution each time. Resolutions are keyed by the fully resolved receiver and argument
+ * types, so a change to an environment's imports or declared types, which changes the types that names evaluate to, results in a
+ * different key rather than a stale entry. Entries are stored per receiver class and are released when the class is unloaded. Each class
+ * keeps its most recently used signatures, up to {@link #MAX_SIGNATURES}.
+ */
+public class MemberCache {
+	/** The maximum number of signatures cached for a single receiver class, beyond which the least recently used are replaced */
+	public static final int MAX_SIGNATURES = 64;
+
+	static final int METHOD = 0;
+
+	static final int FIELD = 1;
+
+	static final int CONSTRUCTOR = 2;
+
+	private static final MethodHandle NO_HANDLE = MethodHandles.constant(Object.class, null);
+
+	private static final ClassValue<java.util.LinkedHashMap<Signature, Member>> MEMBERS = new ClassValue<java.util.LinkedHashMap<Signature, Member>>() {
+		@Override
+		protected java.util.LinkedHashMap<Signature, Member> computeValue(Class<?> type) {
+			return new java.util.LinkedHashMap<Signature, Member>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(java.util.Map.Entry<Signature, Member> eldest) {
+					return size() > MAX_SIGNATURES;
+				}
+			};
+		}
+	};
+
+	private MemberCache() {
+	}
+
+	/** Identifies a resolution: the kind of member, the receiver type, the member name and the argument types */
+	static final class Signature {
+		private final int theKind;
+
+		private final Type theReceiver;
+
+		private final String theName;
+
+		private final boolean isPublicOnly;
+
+		private final boolean isStatic;
+
+		private final Type [] theArgTypes;
+
+		private final int theHash;
+
+		/**
+		 * @param kind The kind of member--{@link #METHOD}, {@link #FIELD} or {@link #CONSTRUCTOR}
+		 * @param receiver The type of the receiver, or the type being constructed
+		 * @param name The name of the member. Null for constructors.
+		 * @param publicOnly Whether non-public members are excluded
+		 * @param _static Whether the member is accessed from a static context
+		 * @param argTypes The types of the arguments to the invocation
+		 */
+		Signature(int kind, Type receiver, String name, boolean publicOnly, boolean _static, Type [] argTypes) {
+			theKind = kind;
+			theReceiver = receiver;
+			theName = name;
+			isPublicOnly = publicOnly;
+			isStatic = _static;
+			theArgTypes = argTypes;
+			int hash = kind;
+			hash = hash * 31 + receiver.hashCode();
+			hash = hash * 31 + (name == null ? 0 : name.hashCode());
+			hash = hash * 31 + (publicOnly ? 1 : 0);
+			hash = hash * 31 + (_static ? 1 : 0);
+			for(Type argType : argTypes)
+				hash = hash * 31 + argType.hashCode();
+			theHash = hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if(this == o)
+				return true;
+			if(!(o instanceof Signature))
+				return false;
+			Signature s = (Signature) o;
+			return theHash == s.theHash && theKind == s.theKind && isPublicOnly == s.isPublicOnly && isStatic == s.isStatic
+				&& (theName == null ? s.theName == null : theName.equals(s.theName)) && theReceiver.equals(s.theReceiver)
+				&& java.util.Arrays.equals(theArgTypes, s.theArgTypes);
+		}
+
+		@Override
+		public int hashCode() {
+			return theHash;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder ret = new StringBuilder();
+			ret.append(theReceiver);
+			if(theName != null)
+				ret.append('.').append(theName);
+			if(theKind != FIELD) {
+				ret.append('(');
+				for(int i = 0; i < theArgTypes.length; i++) {
+					if(i > 0)
+						ret.append(", ");
+					ret.append(theArgTypes[i]);
+				}
+				ret.append(')');
+			}
+			return ret.toString();
+		}
+	}
+
+	/**
+	 * A resolved member. Invocation goes through a method handle created the first time the member is invoked when the arguments are
+	 * of types that the handle can accept without a conversion error. Otherwise it falls back to reflection so that failures are
+	 * reported exactly as reflection reports them.
+	 */
+	static class Member {
+		private final Signature theSignature;
+
+		private final java.lang.reflect.AccessibleObject theMember;
+
+		private final Class<?> [] theParamTypes;
+
+		private final boolean isStaticMember;
+
+		private volatile MethodHandle theHandle;
+
+		Member(Signature sig, java.lang.reflect.AccessibleObject member, Class<?> [] paramTypes) {
+			theSignature = sig;
+			theMember = member;
+			theParamTypes = paramTypes;
+			isStaticMember = member instanceof java.lang.reflect.Constructor
+				|| Modifier.isStatic(((java.lang.reflect.Member) member).getModifiers());
+		}
+
+		/** @return The signature that this member was resolved for */
+		Signature getSignature() {
+			return theSignature;
+		}
+
+		/**
+		 * Invokes this member as {@link java.lang.reflect.Method#invoke(Object, Object...)},
+		 * {@link java.lang.reflect.Field#get(Object)} or {@link java.lang.reflect.Constructor#newInstance(Object...)} would
+		 *
+		 * @param target The receiver for the invocation. Ignored for static members and constructors.
+		 * @param args The arguments for the invocation. Empty for fields.
+		 * @return The result of the invocation
+		 * @throws ReflectiveOperationException If the invocation fails or the member throws an exception
+		 */
+		Object invoke(Object target, Object [] args) throws ReflectiveOperationException {
+			MethodHandle handle = theHandle;
+			if(handle == null) {
+				handle = createHandle();
+				theHandle = handle;
+			}
+			if(handle != NO_HANDLE && canInvoke(target, args)) {
+				try {
+					return (Object) handle.invokeExact(target, args);
+				} catch(Throwable e) {
+					throw new java.lang.reflect.InvocationTargetException(e);
+				}
+			}
+			if(theMember instanceof java.lang.reflect.Method)
+				return ((java.lang.reflect.Method) theMember).invoke(target, args);
+			else if(theMember instanceof java.lang.reflect.Field)
+				return ((java.lang.reflect.Field) theMember).get(target);
+			else
+				return ((java.lang.reflect.Constructor<?>) theMember).newInstance(args);
+		}
+
+		private MethodHandle createHandle() {
+			MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+			try {
+				MethodHandle ret;
+				if(theMember instanceof java.lang.reflect.Method)
+					ret = lookup.unreflect((java.lang.reflect.Method) theMember).asFixedArity();
+				else if(theMember instanceof java.lang.reflect.Field)
+					ret = lookup.unreflectGetter((java.lang.reflect.Field) theMember);
+				else
+					ret = lookup.unreflectConstructor((java.lang.reflect.Constructor<?>) theMember).asFixedArity();
+				if(isStaticMember)
+					ret = MethodHandles.dropArguments(ret, 0, Object.class);
+				return ret.asType(MethodType.genericMethodType(theParamTypes.length + 1)).asSpreader(Object [].class,
+					theParamTypes.length);
+			} catch(IllegalAccessException | RuntimeException e) {
+				return NO_HANDLE;
+			}
+		}
+
+		/** @return Whether the method handle will accept the given receiver and arguments without a conversion error */
+		private boolean canInvoke(Object target, Object [] args) {
+			if(!isStaticMember
+				&& !((java.lang.reflect.Member) theMember).getDeclaringClass().isInstance(target))
+				return false;
+			if(args.length != theParamTypes.length)
+				return false;
+			for(int i = 0; i < args.length; i++) {
+				if(!theParamTypes[i].isPrimitive()) {
+					if(args[i] != null && !theParamTypes[i].isInstance(args[i]))
+						return false;
+				} else if(args[i] == null)
+					return false;
+				else {
+					Class<?> prim = Type.getPrimitiveType(args[i].getClass());
+					if(prim == null || !isWidening(prim, theParamTypes[i]))
+						return false;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public String toString() {
+			return theSignature + " -> " + theMember;
+		}
+	}
+
+	/** A resolved method, with the types that do not depend on the invocation's values */
+	static class MethodMember extends Member {
+		private final java.lang.reflect.Method theMethod;
+
+		private final Type theVarArgType;
+
+		private final Type theReturnType;
+
+		private final Type [] theExceptionTypes;
+
+		/**
+		 * @param sig The signature that the method was resolved for
+		 * @param method The resolved method
+		 * @param varArgType The array type to combine trailing arguments into, or null if the arguments are passed as-is
+		 * @param returnType The resolved return type of the invocation
+		 * @param exTypes The resolved types of the exceptions the method may throw
+		 */
+		MethodMember(Signature sig, java.lang.reflect.Method method, Type varArgType, Type returnType, Type [] exTypes) {
+			super(sig, method, method.getParameterTypes());
+			theMethod = method;
+			theVarArgType = varArgType;
+			theReturnType = returnType;
+			theExceptionTypes = exTypes;
+		}
+
+		java.lang.reflect.Method getMethod() {
+			return theMethod;
+		}
+
+		Type getVarArgType() {
+			return theVarArgType;
+		}
+
+		Type getReturnType() {
+			return theReturnType;
+		}
+
+		Type [] getExceptionTypes() {
+			return theExceptionTypes;
+		}
+	}
+
+	/** A resolved field, with its type as seen from the receiver */
+	static class FieldMember extends Member {
+		private final java.lang.reflect.Field theField;
+
+		private final Type theType;
+
+		FieldMember(Signature sig, java.lang.reflect.Field field, Type type) {
+			super(sig, field, new Class<?>[0]);
+			theField = field;
+			theType = type;
+		}
+
+		java.lang.reflect.Field getField() {
+			return theField;
+		}
+
+		Type getType() {
+			return theType;
+		}
+	}
+
+	/** A resolved constructor */
+	static class ConstructorMember extends Member {
+		private final java.lang.reflect.Constructor<?> theConstructor;
+
+		ConstructorMember(Signature sig, java.lang.reflect.Constructor<?> constructor) {
+			super(sig, constructor, constructor.getParameterTypes());
+			theConstructor = constructor;
+		}
+
+		java.lang.reflect.Constructor<?> getConstructor() {
+			return theConstructor;
+		}
+	}
+
+	/**
+	 * @param sig The signature to get the resolution for
+	 * @param callSite The member last resolved at the call site. May be null.
+	 * @return The cached member for the signature, or null if it has not been resolved
+	 */
+	static Member get(Signature sig, Member callSite) {
+		if(callSite != null && callSite.getSignature().equals(sig))
+			return callSite;
+		java.util.LinkedHashMap<Signature, Member> members = MEMBERS.get(getReceiverClass(sig));
+		synchronized(members) {
+			return members.get(sig);
+		}
+	}
+
+	/** @param member The newly resolved member to cache */
+	static void put(Member member) {
+		java.util.LinkedHashMap<Signature, Member> members = MEMBERS.get(getReceiverClass(member.getSignature()));
+		synchronized(members) {
+			if(!members.containsKey(member.getSignature()))
+				members.put(member.getSignature(), member);
+		}
+	}
+
+	private static Class<?> getReceiverClass(Signature sig) {
+		Class<?> ret = sig.theReceiver.getBaseType();
+		return ret == null ? Object.class : ret;
+	}
+
+	/**
+	 * Combines trailing arguments into an array for a variable-argument invocation
+	 *
+	 * @param argRes The arguments to the invocation
+	 * @param paramCount The number of parameters the invoked member declares
+	 * @param arrType The component type of the array to create
+	 * @return The arguments to pass to the member
+	 */
+	static prisms.lang.EvaluationResult[] packVarArgs(prisms.lang.EvaluationResult[] argRes, int paramCount, Type arrType) {
+		Object newArg = java.lang.reflect.Array.newInstance(arrType.toClass(), argRes.length - paramCount + 1);
+		for(int i = paramCount - 1; i < argRes.length; i++)
+			java.lang.reflect.Array.set(newArg, i - paramCount + 1, argRes[i].getValue());
+		prisms.lang.EvaluationResult[] newArgRes = new prisms.lang.EvaluationResult[paramCount];
+		System.arraycopy(argRes, 0, newArgRes, 0, newArgRes.length - 1);
+		newArgRes[newArgRes.length - 1] = new prisms.lang.EvaluationResult(arrType.getArrayType(), newArg);
+		return newArgRes;
+	}
+
+	/**
+	 * @param from The primitive type of an argument
+	 * @param to The primitive type of a parameter
+	 * @return Whether reflection would convert the argument to the parameter type
+	 */
+	static boolean isWidening(Class<?> from, Class<?> to) {
+		if(from == to)
+			return true;
+		if(from == Boolean.TYPE || to == Boolean.TYPE || to == Character.TYPE || to == Byte.TYPE)
+			return false;
+		if(to == Short.TYPE)
+			return from == Byte.TYPE;
+		if(to == Integer.TYPE)
+			return from == Byte.TYPE || from == Short.TYPE || from == Character.TYPE;
+		if(to == Long.TYPE)
+			return from != Float.TYPE && from != Double.TYPE;
+		if(to == Float.TYPE)
+			return from != Double.TYPE;
+		return true;
+	}
+}
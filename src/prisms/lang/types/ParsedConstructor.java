@@ -21,6 +21,8 @@ public class ParsedConstructor extends ParsedItem {
 
 	private ParsedFunctionDeclaration [] theMethods;
 
+	private volatile MemberCache.Member theLastMember;
+
 	@Override
 	public void setup(prisms.lang.PrismsParser parser, ParsedItem parent, prisms.lang.ParseMatch match) throws prisms.lang.ParseException {
 		super.setup(parser, parent, match);
@@ -166,8 +168,18 @@ public class ParsedConstructor extends ParsedItem {
 			return evaluateAnonymous(env, type.getType(), withValues);
 	}
 
-	@SuppressWarnings("rawtypes")
 	public java.lang.reflect.Constructor<?> getTarget(Type type, Type [] argTypes, boolean publicOnly) throws EvaluationException {
+		return getMember(type, argTypes, publicOnly).getConstructor();
+	}
+
+	@SuppressWarnings("rawtypes")
+	private MemberCache.ConstructorMember getMember(Type type, Type [] argTypes, boolean publicOnly) throws EvaluationException {
+		MemberCache.Signature sig = new MemberCache.Signature(MemberCache.CONSTRUCTOR, type, null, publicOnly, false, argTypes.clone());
+		MemberCache.ConstructorMember member = (MemberCache.ConstructorMember) MemberCache.get(sig, theLastMember);
+		if(member != null) {
+			theLastMember = member;
+			return member;
+		}
 		java.lang.reflect.Constructor [] constructors;
 		if(publicOnly)
 			constructors = type.getBaseType().getConstructors();
@@ -217,9 +229,12 @@ public class ParsedConstructor extends ParsedItem {
 				break;
 			}
 		}
-		if(goodTarget != null)
-			return goodTarget;
-		else if(badTarget != null) {
+		if(goodTarget != null) {
+			member = new MemberCache.ConstructorMember(sig, goodTarget);
+			MemberCache.put(member);
+			theLastMember = member;
+			return member;
+		} else if(badTarget != null) {
 			StringBuilder msg = new StringBuilder();
 			msg.append("new ").append(type.getBaseType().getName()).append('(');
 			Class<?> [] paramTypes = badTarget.getParameterTypes();
@@ -266,7 +281,8 @@ public class ParsedConstructor extends ParsedItem {
 			argTypes[i] = argRes[i].getType();
 		}
 
-		java.lang.reflect.Constructor<?> goodTarget = getTarget(type, argTypes, env.usePublicOnly());
+		MemberCache.ConstructorMember member = getMember(type, argTypes, env.usePublicOnly());
+		java.lang.reflect.Constructor<?> goodTarget = member.getConstructor();
 		for(java.lang.reflect.Type c : goodTarget.getGenericExceptionTypes()) {
 			Type ct = new Type(c);
 			if(!env.canHandle(ct))
@@ -287,7 +303,7 @@ public class ParsedConstructor extends ParsedItem {
 				java.lang.reflect.Array.set(varArgs, i - paramTypes.length + 1, argRes[i].getValue());
 		}
 		try {
-			return new prisms.lang.EvaluationResult(type, withValues ? goodTarget.newInstance(args) : null);
+			return new prisms.lang.EvaluationResult(type, withValues ? member.invoke(null, args) : null);
 		} catch(java.lang.reflect.InvocationTargetException e) {
 			throw new prisms.lang.ExecutionException(new Type(e.getCause().getClass()), e.getCause(), this, getStored("type").index);
 		} catch(Exception e) {
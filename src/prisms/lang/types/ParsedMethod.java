@@ -30,6 +30,8 @@ public class ParsedMethod extends Assignable {
 
 	private prisms.lang.ParsedItem[] theArguments;
 
+	private volatile MemberCache.Member theLastMember;
+
 	@Override
 	public void setup(PrismsParser parser, ParsedItem parent, ParseMatch match) throws ParseException {
 		super.setup(parser, parent, match);
@@ -233,16 +235,23 @@ public class ParsedMethod extends Assignable {
 					.getValue())) : null);
 			else if(theName.equals("class") && ctxType.isType())
 				return new EvaluationResult(new Type(Class.class, ctxType.getType()), ctxType.getType().getBaseType());
+			MemberCache.Signature sig = new MemberCache.Signature(MemberCache.FIELD, ctxType.getType(), theName, env.usePublicOnly(),
+				false, new Type[0]);
+			MemberCache.FieldMember member = (MemberCache.FieldMember) MemberCache.get(sig, theLastMember);
 			java.lang.reflect.Field field;
-			try {
-				field = ctxType.getType().getBaseType().getField(theName);
-			} catch(Exception e) {
-				throw new EvaluationException("Could not access field " + theName + " on type " + ctxType.typeString(), e, this,
-					getStored("name").index);
+			if(member != null)
+				field = member.getField();
+			else {
+				try {
+					field = ctxType.getType().getBaseType().getField(theName);
+				} catch(Exception e) {
+					throw new EvaluationException("Could not access field " + theName + " on type " + ctxType.typeString(), e, this,
+						getStored("name").index);
+				}
+				if(field == null)
+					throw new EvaluationException(ctxType.typeString() + "." + theName + " cannot be resolved or is not a field", this,
+						getStored("name").index);
 			}
-			if(field == null)
-				throw new EvaluationException(ctxType.typeString() + "." + theName + " cannot be resolved or is not a field", this,
-					getStored("name").index);
 			if(env.usePublicOnly() && (field.getModifiers() & Modifier.PUBLIC) == 0)
 				throw new EvaluationException(ctxType.typeString() + "." + theName + " is not visible", this, getStored("name").index);
 			if(isStatic && (field.getModifiers() & Modifier.STATIC) == 0)
@@ -257,8 +266,13 @@ public class ParsedMethod extends Assignable {
 				}
 			}
 			try {
-				return new EvaluationResult(ctxType.getType().resolve(field.getGenericType(), field.getDeclaringClass(), null,
-					new java.lang.reflect.Type[0], new Type[0]), withValues ? field.get(ctxType.getValue()) : null);
+				if(member == null) {
+					member = new MemberCache.FieldMember(sig, field, ctxType.getType().resolve(field.getGenericType(),
+						field.getDeclaringClass(), null, new java.lang.reflect.Type[0], new Type[0]));
+					MemberCache.put(member);
+				}
+				theLastMember = member;
+				return new EvaluationResult(member.getType(), withValues ? member.invoke(ctxType.getValue(), new Object[0]) : null);
 			} catch(Exception e) {
 				throw new EvaluationException("Retrieval of field " + field.getName() + " of type " + field.getDeclaringClass().getName()
 					+ " failed", e, this, getStored("name").index);
@@ -290,89 +304,119 @@ public class ParsedMethod extends Assignable {
 					throw new EvaluationException("Argument to getClass() is null", e, this, getStored("dot").index);
 				}
 			}
-			java.lang.reflect.Method[] methods;
-			if(ctxType.getType() == Type.NULL)
-				methods = Object.class.getMethods();
-			else
-				methods = ctxType.getType().getBaseType().getMethods();
-			if(!env.usePublicOnly())
-				methods = prisms.util.ArrayUtils.mergeInclusive(java.lang.reflect.Method.class, methods, ctxType.getType().getBaseType()
-					.getDeclaredMethods());
-			java.lang.reflect.Method goodTarget = null;
-			java.lang.reflect.Method badTarget = null;
-			java.util.Map<String, Type> inferred = new java.util.HashMap<>();
 			Type [] argTypes = new Type[argRes.length];
 			for(int i = 0; i < argTypes.length; i++)
 				argTypes[i] = argRes[i].getType();
-			for(java.lang.reflect.Method m : methods) {
-				if(!m.getName().equals(theName) || m.isSynthetic())
-					continue;
+			MemberCache.Signature sig = null;
+			MemberCache.MethodMember member = null;
+			if(ctxType.getType() != Type.NULL) {
+				sig = new MemberCache.Signature(MemberCache.METHOD, ctxType.getType(), theName, env.usePublicOnly(), isStatic, argTypes);
+				member = (MemberCache.MethodMember) MemberCache.get(sig, theLastMember);
+			}
+			java.lang.reflect.Method goodTarget = null;
+			java.lang.reflect.Method badTarget = null;
+			if(member != null) {
+				goodTarget = member.getMethod();
+				if(member.getVarArgType() != null)
+					argRes = MemberCache.packVarArgs(argRes, goodTarget.getParameterTypes().length, member.getVarArgType());
+			} else {
+				java.lang.reflect.Method[] methods;
+				if(ctxType.getType() == Type.NULL)
+					methods = Object.class.getMethods();
+				else
+					methods = ctxType.getType().getBaseType().getMethods();
+				if(!env.usePublicOnly())
+					methods = prisms.util.ArrayUtils.mergeInclusive(java.lang.reflect.Method.class, methods, ctxType.getType()
+						.getBaseType().getDeclaredMethods());
+				java.util.Map<String, Type> inferred = new java.util.HashMap<>();
+				Type goodVarArgType = null;
+				int packed = 0;
+				for(java.lang.reflect.Method m : methods) {
+					if(!m.getName().equals(theName) || m.isSynthetic())
+						continue;
 
-				java.lang.reflect.Type[] _paramTypes = m.getGenericParameterTypes();
-				Type [] paramTypes = new Type[_paramTypes.length];
-				for(int p = 0; p < paramTypes.length; p++)
-					paramTypes[p] = ctxType.getType().resolve(_paramTypes[p], m.getDeclaringClass(), null, m.getGenericParameterTypes(),
-						argTypes);
-				if(paramTypes.length > argRes.length + 1)
-					continue;
-				inferred.clear();
-				inferMethodTypes(inferred, m, argTypes);
-				boolean bad = false;
-				int p;
-				for(p = 0; !bad && p < paramTypes.length - 1; p++) {
-					if(!paramTypes[p].isAssignable(argRes[p].getType()))
-						bad = true;
-				}
-				if(bad) {
-					if(badTarget == null)
-						badTarget = m;
-					continue;
-				}
-				java.lang.reflect.Method target = null;
-				if(paramTypes.length == argRes.length && (paramTypes.length == 0 || paramTypes[p].isAssignable(argRes[p].getType())))
-					target = m;
-				else if(m.isVarArgs()) {
-					Type varArgType = paramTypes[p].getComponentType();
-					for(; !bad && p < argRes.length; p++)
-						if(!varArgType.isAssignable(argRes[p].getType()))
+					java.lang.reflect.Type[] _paramTypes = m.getGenericParameterTypes();
+					Type [] paramTypes = new Type[_paramTypes.length];
+					for(int p = 0; p < paramTypes.length; p++)
+						paramTypes[p] = ctxType.getType().resolve(_paramTypes[p], m.getDeclaringClass(), null,
+							m.getGenericParameterTypes(), argTypes);
+					if(paramTypes.length > argRes.length + 1)
+						continue;
+					inferred.clear();
+					inferMethodTypes(inferred, m, argTypes);
+					boolean bad = false;
+					int p;
+					for(p = 0; !bad && p < paramTypes.length - 1; p++) {
+						if(!paramTypes[p].isAssignable(argRes[p].getType()))
 							bad = true;
-					if(!bad) {
+					}
+					if(bad) {
+						if(badTarget == null)
+							badTarget = m;
+						continue;
+					}
+					java.lang.reflect.Method target = null;
+					Type varArgArrType = null;
+					if(paramTypes.length == argRes.length
+						&& (paramTypes.length == 0 || paramTypes[p].isAssignable(argRes[p].getType())))
 						target = m;
-						Type arrType;
-						if(argRes.length < paramTypes.length)
-							arrType = varArgType;
-						else {
-							arrType = argRes[paramTypes.length - 1].getType();
-							for(int i = paramTypes.length; i < argRes.length; i++)
-								arrType = arrType.getCommonType(argRes[i].getType());
+					else if(m.isVarArgs()) {
+						Type varArgType = paramTypes[p].getComponentType();
+						for(; !bad && p < argRes.length; p++)
+							if(!varArgType.isAssignable(argRes[p].getType()))
+								bad = true;
+						if(!bad) {
+							target = m;
+							if(argRes.length < paramTypes.length)
+								varArgArrType = varArgType;
+							else {
+								varArgArrType = argRes[paramTypes.length - 1].getType();
+								for(int i = paramTypes.length; i < argRes.length; i++)
+									varArgArrType = varArgArrType.getCommonType(argRes[i].getType());
+							}
+							argRes = MemberCache.packVarArgs(argRes, paramTypes.length, varArgArrType);
+							packed++;
 						}
-						Object newArg = java.lang.reflect.Array.newInstance(arrType.toClass(), argRes.length - paramTypes.length + 1);
-						for(int i = paramTypes.length - 1; i < argRes.length; i++)
-							java.lang.reflect.Array.set(newArg, i - paramTypes.length + 1, argRes[i].getValue());
-						EvaluationResult [] newArgRes = new prisms.lang.EvaluationResult[paramTypes.length];
-						System.arraycopy(argRes, 0, newArgRes, 0, newArgRes.length - 1);
-						newArgRes[newArgRes.length - 1] = new EvaluationResult(arrType.getArrayType(), newArg);
-						argRes = newArgRes;
+					}
+					if(target == null) {
+						if(badTarget == null)
+							badTarget = m;
+						continue;
+					}
+					if(env.usePublicOnly() && (target.getModifiers() & Modifier.PUBLIC) == 0)
+						badTarget = target;
+					else if(isStatic && (target.getModifiers() & Modifier.STATIC) == 0)
+						badTarget = target;
+					else {
+						goodTarget = target;
+						goodVarArgType = varArgArrType;
+						break;
 					}
 				}
-				if(target == null) {
-					if(badTarget == null)
-						badTarget = m;
-					continue;
-				}
-				if(env.usePublicOnly() && (target.getModifiers() & Modifier.PUBLIC) == 0)
-					badTarget = target;
-				else if(isStatic && (target.getModifiers() & Modifier.STATIC) == 0)
-					badTarget = target;
-				else {
-					goodTarget = target;
-					break;
+				if(goodTarget != null) {
+					java.lang.reflect.Type[] _exTypes = goodTarget.getGenericExceptionTypes();
+					Type [] exTypes = new Type[_exTypes.length];
+					for(int i = 0; i < exTypes.length; i++)
+						exTypes[i] = ctxType.getType().resolve(_exTypes[i], goodTarget.getDeclaringClass(), inferred,
+							goodTarget.getGenericParameterTypes(), argTypes);
+					Type retType;
+					try {
+						retType = ctxType.getType().resolve(goodTarget.getGenericReturnType(), goodTarget.getDeclaringClass(), inferred,
+							goodTarget.getGenericParameterTypes(), argTypes);
+					} catch(Exception e) {
+						throw new EvaluationException("Could not invoke method " + theName + " of class " + ctxType.typeString(), e, this,
+							getStored("name").index);
+					}
+					member = new MemberCache.MethodMember(sig, goodTarget, goodVarArgType, retType, exTypes);
+					// Only cache the resolution if replaying it would repack the arguments the same way
+					if(sig != null && packed == (goodVarArgType == null ? 0 : 1))
+						MemberCache.put(member);
+					else
+						sig = null;
 				}
 			}
 			if(goodTarget != null) {
-				for(java.lang.reflect.Type c : goodTarget.getGenericExceptionTypes()) {
-					Type ct = ctxType.getType().resolve(c, goodTarget.getDeclaringClass(), inferred, goodTarget.getGenericParameterTypes(),
-						argTypes);
+				for(Type ct : member.getExceptionTypes()) {
 					if(!env.canHandle(ct))
 						throw new prisms.lang.EvaluationException("Unhandled exception type " + ct, this, getStored("name").index);
 				}
@@ -397,10 +441,10 @@ public class ParsedMethod extends Assignable {
 							getStored("name").index);
 					}
 				}
+				if(sig != null)
+					theLastMember = member;
 				try {
-					Type retType = ctxType.getType().resolve(goodTarget.getGenericReturnType(), goodTarget.getDeclaringClass(), inferred,
-						goodTarget.getGenericParameterTypes(), argTypes);
-					return new EvaluationResult(retType, withValues ? goodTarget.invoke(ctxType.getValue(), args) : null);
+					return new EvaluationResult(member.getReturnType(), withValues ? member.invoke(ctxType.getValue(), args) : null);
 				} catch(java.lang.reflect.InvocationTargetException e) {
 					throw new ExecutionException(new Type(e.getCause().getClass()), e.getCause(), this, getStored("name").index);
 				} catch(Exception e) {
@@ -6,6 +6,7 @@ package prisms.logging;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashMap;
@@ -29,6 +30,18 @@ public class PrismsLogger implements
 
 	static final int MAX_SIZE = 1000000;
 
+	/** The default maximum number of log entries written to the database in a single batch */
+	public static final int DEFAULT_BATCH_SIZE = 100;
+
+	/** The default interval, in milliseconds, at which queued log entries are written */
+	public static final long DEFAULT_FLUSH_INTERVAL = 50;
+
+	/** The default number of queued entries past which low-level log entries are dropped */
+	public static final int DEFAULT_MAX_QUEUE = 10000;
+
+	/** The default number of recently written entries remembered for duplicate detection */
+	public static final int DEFAULT_DUPLICATE_CACHE = 1000;
+
 	static final String MULTI_WILDCARD = "(<**>)";
 
 	static final String SINGLE_WILDCARD = "(<..>)";
@@ -69,7 +82,7 @@ public class PrismsLogger implements
 		}
 
 		@Override
-		protected synchronized long [] execute(Object... params) throws PrismsException
+		protected long [] execute(Object... params) throws PrismsException
 		{
 			return super.execute(params);
 		}
@@ -81,14 +94,15 @@ public class PrismsLogger implements
 		}
 
 		@Override
-		protected void setParameter(int type, Object param, int index) throws PrismsException
+		protected void setParameter(java.sql.PreparedStatement ps, int type, Object param,
+			int index) throws PrismsException
 		{
 			if(param instanceof org.apache.log4j.Level)
 				param = Integer.valueOf(((org.apache.log4j.Level) param).toInt());
 			if(type == java.sql.Types.TIMESTAMP && param == null
 				|| (param instanceof Long && ((Long) param).longValue() <= 0))
 				param = Long.valueOf(365L * 24 * 60 * 60 * 1000);
-			super.setParameter(type, param, index);
+			super.setParameter(ps, type, param, index);
 		}
 
 		@Override
@@ -440,6 +454,36 @@ public class PrismsLogger implements
 
 	private java.util.concurrent.ConcurrentLinkedQueue<LogEntry> theQueueEntries;
 
+	private final java.util.concurrent.atomic.AtomicInteger theQueueSize;
+
+	private final java.util.concurrent.atomic.AtomicLong theDroppedCount;
+
+	private long theReportedDropCount;
+
+	private int theBatchSize;
+
+	private long theFlushInterval;
+
+	private int theMaxQueueSize;
+
+	private org.apache.log4j.Level theDropLevel;
+
+	private int theDuplicateCacheSize;
+
+	private final java.util.LinkedHashMap<CrcKey, RecentEntry> theRecentEntries;
+
+	private volatile int theMaxQueueDepth;
+
+	private volatile long theWrittenCount;
+
+	private volatile long theBatchCount;
+
+	private volatile long theTotalWriteTime;
+
+	private volatile long theLastWriteTime;
+
+	private volatile long theMaxWriteTime;
+
 	private java.util.LinkedList<LogEntry> thePastEntries;
 
 	private AutoPurger thePurger;
@@ -467,6 +511,21 @@ public class PrismsLogger implements
 	{
 		theEnv = env;
 		theQueueEntries = new java.util.concurrent.ConcurrentLinkedQueue<LogEntry>();
+		theQueueSize = new java.util.concurrent.atomic.AtomicInteger();
+		theDroppedCount = new java.util.concurrent.atomic.AtomicLong();
+		theBatchSize = DEFAULT_BATCH_SIZE;
+		theFlushInterval = DEFAULT_FLUSH_INTERVAL;
+		theMaxQueueSize = DEFAULT_MAX_QUEUE;
+		theDropLevel = org.apache.log4j.Level.INFO;
+		theDuplicateCacheSize = DEFAULT_DUPLICATE_CACHE;
+		theRecentEntries = new java.util.LinkedHashMap<CrcKey, RecentEntry>(16, 0.75f, true)
+		{
+			@Override
+			protected boolean removeEldestEntry(java.util.Map.Entry<CrcKey, RecentEntry> eldest)
+			{
+				return size() > theDuplicateCacheSize;
+			}
+		};
 		theLogConstraints = new HashMap<String, org.apache.log4j.Level>();
 		theLoggers = new Logger [0];
 		thePastEntries = new java.util.LinkedList<LogEntry>();
@@ -526,6 +585,14 @@ public class PrismsLogger implements
 		if(isConfigured)
 			throw new IllegalStateException("This logger has already been configured");
 		theExposedDir = getConfiguredExposedDir(config);
+		theBatchSize = config.getInt("write/batch-size", DEFAULT_BATCH_SIZE);
+		if(theBatchSize < 1)
+			theBatchSize = 1;
+		theFlushInterval = config.getTime("write/flush-interval", DEFAULT_FLUSH_INTERVAL);
+		theMaxQueueSize = config.getInt("write/max-queue", DEFAULT_MAX_QUEUE);
+		theDropLevel = org.apache.log4j.Level.toLevel(config.get("write/drop-level"),
+			org.apache.log4j.Level.INFO);
+		theDuplicateCacheSize = config.getInt("write/duplicate-cache", DEFAULT_DUPLICATE_CACHE);
 		prisms.arch.PrismsConfig purge = config.subConfig("purge");
 		prisms.logging.LogEntrySearch.LogEntrySearchBuilder builder;
 		builder = new prisms.logging.LogEntrySearch.LogEntrySearchBuilder(theEnv);
@@ -847,7 +914,7 @@ public class PrismsLogger implements
 							doPeriodicCheck();
 							try
 							{
-								Thread.sleep(50);
+								Thread.sleep(theFlushInterval);
 							} catch(InterruptedException e)
 							{}
 						} catch(Throwable e)
@@ -1039,6 +1106,15 @@ public class PrismsLogger implements
 			return;
 		if(loggerName.equals(nodbLog.getName()))
 			return;
+		int depth = theQueueSize.get();
+		if(depth >= theMaxQueueSize
+			&& (depth >= theMaxQueueSize * 2 || theDropLevel.isGreaterOrEqual(level)))
+		{
+			/* The writer can't keep up. Drop entries at or below the drop level first, and
+			 * everything else once the queue is twice its bound, rather than run out of memory. */
+			theDroppedCount.incrementAndGet();
+			return;
+		}
 		LogEntry entry = new LogEntry();
 		prisms.arch.ds.IDGenerator.PrismsInstance inst = theEnv.getIDs().getLocalInstance();
 		if(inst != null)
@@ -1076,6 +1152,60 @@ public class PrismsLogger implements
 			entry.setStackTrace(stackTrace);
 		}
 		theQueueEntries.add(entry);
+		depth = theQueueSize.incrementAndGet();
+		if(depth > theMaxQueueDepth)
+			theMaxQueueDepth = depth;
+	}
+
+	/** @return The number of log entries waiting to be written to the database */
+	public int getQueueDepth()
+	{
+		return theQueueSize.get();
+	}
+
+	/** @return The largest number of log entries that have been waiting to be written at once */
+	public int getMaxQueueDepth()
+	{
+		return theMaxQueueDepth;
+	}
+
+	/** @return The number of log entries that have been dropped because the queue was full */
+	public long getDroppedCount()
+	{
+		return theDroppedCount.get();
+	}
+
+	/** @return The number of log entries that this logger has attempted to write */
+	public long getWrittenCount()
+	{
+		return theWrittenCount;
+	}
+
+	/** @return The number of batches of log entries that this logger has written */
+	public long getBatchCount()
+	{
+		return theBatchCount;
+	}
+
+	/** @return The time, in milliseconds, that the most recent batch of entries took to write */
+	public long getLastWriteLatency()
+	{
+		return theLastWriteTime;
+	}
+
+	/** @return The longest time, in milliseconds, that a batch of entries has taken to write */
+	public long getMaxWriteLatency()
+	{
+		return theMaxWriteTime;
+	}
+
+	/** @return The average time, in milliseconds, that a batch of entries takes to write */
+	public float getAverageWriteLatency()
+	{
+		long count = theBatchCount;
+		if(count == 0)
+			return 0;
+		return theTotalWriteTime * 1.0f / count;
 	}
 
 	void doPeriodicCheck()
@@ -1179,304 +1309,477 @@ public class PrismsLogger implements
 				iter.remove();
 			}
 		}
+		long dropped = theDroppedCount.get();
+		if(dropped > theReportedDropCount)
+		{
+			nodbLog.warn("Log queue exceeded " + theMaxQueueSize + " entries: dropped "
+				+ (dropped - theReportedDropCount) + " log entries");
+			theReportedDropCount = dropped;
+		}
 		prisms.arch.PrismsTransaction trans = theEnv.getTransaction();
-		if(isClosed || theQueueEntries.isEmpty() || theInserter == null
-			|| theDuplicateQuery == null)
+		if(isClosed || theQueueEntries.isEmpty() || theInserter == null)
 			return;
+		ArrayList<PendingEntry> batch = new ArrayList<PendingEntry>();
 		while(!theQueueEntries.isEmpty())
 		{
 			if(isClosed || theIDGetter == null)
 				return;
-			boolean written = false;
-			LogEntry entry = theQueueEntries.poll();
-			if(!thePastEntries.isEmpty())
+			batch.clear();
+			while(batch.size() < theBatchSize)
 			{
-				boolean found = false;
-				for(LogEntry pastEntry : thePastEntries)
-					if(pastEntry.headersSame(entry))
-					{
-						found = true;
-						break;
-					}
-				if(found)
-					continue;
+				LogEntry entry = theQueueEntries.poll();
+				if(entry == null)
+					break;
+				theQueueSize.decrementAndGet();
+				if(!isRepeat(entry, batch))
+					batch.add(new PendingEntry(entry, crc(entry.getMessage()), crc(entry
+						.getStackTrace()), crc(entry.getTrackingData())));
 			}
-			ResultSet rs = null;
+			if(batch.isEmpty())
+				continue;
+			long start = System.currentTimeMillis();
+			prisms.util.ProgramTracker.TrackNode track = trans.getTracker().start(
+				"Check Duplicates");
 			try
 			{
-				long msgCRC = crc(entry.getMessage());
-				long stCRC = crc(entry.getStackTrace());
-				long trackCRC = crc(entry.getTrackingData());
-
-				// Check whether this entry is a duplicate
-				theDuplicateQuery.setLong(1, msgCRC);
-				theDuplicateQuery.setLong(2, stCRC);
-				theDuplicateQuery.setLong(3, trackCRC);
-				int duplicate = -1;
-				prisms.util.ProgramTracker.TrackNode track = trans.getTracker().start(
-					"Check Duplicate");
 				try
 				{
-					rs = theDuplicateQuery.executeQuery();
-					while(duplicate < 0 && rs.next())
-					{
-						boolean isDuplicate = true;
-						String message = rs.getString("shortMessage");
-						String stackTrace = null;
-						String tracking = null;
-						if(stCRC == -1 && entry.getMessage().equals(message))
-						{}
-						else
-						{
-							theContentQuery.setInt(1, rs.getInt("id"));
-							StringBuilder msgSB = new StringBuilder();
-							StringBuilder stSB = new StringBuilder();
-							StringBuilder trackSB = new StringBuilder();
-							boolean hasST = false;
-							boolean hasTrack = false;
-							ResultSet rs2 = theContentQuery.executeQuery();
-							try
-							{
-								while(rs2.next())
-								{
-									char type = rs2.getString("contentType").charAt(0);
-									StringBuilder sb;
-									if(type == 's' || type == 'S')
-									{
-										sb = stSB;
-										hasST = true;
-									}
-									else if(type == 't' || type == 'T')
-									{
-										sb = trackSB;
-										hasTrack = true;
-									}
-									else
-										sb = msgSB;
-									sb.append(rs2.getString("content").substring(
-										sb.length() - rs2.getInt("indexNum")));
-								}
-							} finally
-							{
-								rs2.close();
-								rs2 = null;
-							}
-							if(message == null)
-								message = msgSB.toString();
-							stackTrace = hasST ? stSB.toString() : null;
-							tracking = hasTrack ? trackSB.toString() : null;
-							isDuplicate = entry.getMessage().equals(message);
-							isDuplicate &= (entry.getStackTrace() == null ? stackTrace == null
-								: entry.getStackTrace().equals(stackTrace));
-							isDuplicate &= (entry.getTrackingData() == null ? tracking == null
-								: entry.getTrackingData().equals(tracking));
-						}
-						if(isDuplicate)
-							duplicate = rs.getInt("id");
-					}
+					findDuplicates(batch);
 				} finally
 				{
 					trans.getTracker().end(track);
-					if(rs != null)
-						rs.close();
-					rs = null;
 				}
-
-				// Insert the new entry
-				int p = 1;
-				track = trans.getTracker().start("Insert Entry");
-				int id;
+				track = trans.getTracker().start("Insert Entries");
 				try
 				{
-					p++; // Set the ID last
-					theInserter.setString(p++, entry.getInstanceLocation());
-					theInserter.setTimestamp(p++, new java.sql.Timestamp(entry.getLogTime()));
-					if(entry.getApp() != null)
-						theInserter.setString(p++, entry.getApp());
-					else
-						theInserter.setNull(p++, java.sql.Types.VARCHAR);
-					if(entry.getClient() != null)
-						theInserter.setString(p++, entry.getClient());
-					else
-						theInserter.setNull(p++, java.sql.Types.VARCHAR);
-					if(entry.getUser() != null)
-						theInserter.setLong(p++, entry.getUser().getID());
-					else
-						theInserter.setNull(p++, java.sql.Types.NUMERIC);
-					if(entry.getSessionID() != null)
-						theInserter.setString(p++, entry.getSessionID());
-					else
-						theInserter.setNull(p++, java.sql.Types.VARCHAR);
-					theInserter.setInt(p++, entry.getLevel().toInt());
-					if(entry.getLoggerName().length() > 256)
-						entry.setLoggerName(entry.getLoggerName().substring(0, 256));
-					theInserter.setString(p++, entry.getLoggerName());
-					if(entry.getMessage().length() <= 100)
-						theInserter.setString(p++, entry.getMessage());
-					else
-						theInserter.setNull(p++, java.sql.Types.VARCHAR);
-					theInserter.setLong(p++, msgCRC);
-					theInserter.setLong(p++, stCRC);
-					theInserter.setLong(p++, trackCRC);
-					if(duplicate >= 0)
-						theInserter.setInt(p++, duplicate);
-					else
-						theInserter.setNull(p++, java.sql.Types.INTEGER);
-					int size = 1;
-					if(entry.getDuplicateRef() < 0)
-					{
-						if(entry.getMessage().length() > 100)
-						{
-							size++;
-							int len = entry.getMessage().length() - CONTENT_LENGTH;
-							if(len > 0)
-								size += (len - 1) / (CONTENT_LENGTH - CONTENT_OVERLAP) + 1;
-						}
-						if(entry.getStackTrace() != null)
-						{
-							size++;
-							int len = entry.getStackTrace().length() - CONTENT_LENGTH;
-							if(len > 0)
-								size += (len - 1) / (CONTENT_LENGTH - CONTENT_OVERLAP) + 1;
-						}
-						if(entry.getTrackingData() != null)
-						{
-							size++;
-							int len = entry.getTrackingData().length() - CONTENT_LENGTH;
-							if(len > 0)
-								size += (len - 1) / (CONTENT_LENGTH - CONTENT_OVERLAP) + 1;
-						}
-					}
-					theInserter.setInt(p++, size);
-					try
-					{
-						id = theEnv.getIDs().getNextIntID(theIDGetter, "prisms_log_entry",
-							theTransactor.getTablePrefix(), "id", null);
-					} catch(PrismsException e)
-					{
-						log.error("Could not get log ID. Exiting.");
-						isClosed = true;
+					if(!insertEntries(batch))
 						return;
-					}
-					theInserter.setInt(1, id);
-					theInserter.executeUpdate();
-					written = true;
 				} finally
 				{
 					trans.getTracker().end(track);
 				}
-
+				for(PendingEntry pe : batch)
+					thePastEntries.add(pe.entry);
 				track = trans.getTracker().start("Insert Content");
 				try
 				{
-					if(duplicate < 0)
+					insertContent(batch);
+				} finally
+				{
+					trans.getTracker().end(track);
+				}
+				synchronized(theRecentEntries)
+				{
+					for(PendingEntry pe : batch)
+						if(pe.isOriginal())
+							theRecentEntries.put(pe.key, new RecentEntry(pe.id, pe.entry));
+				}
+			} catch(PrismsException e)
+			{
+				nodbLog.error("Could not insert " + batch.size() + " new log entries", e);
+			} catch(SQLException e)
+			{
+				nodbLog.error("Could not insert " + batch.size() + " new log entries", e);
+			}
+			long time = System.currentTimeMillis() - start;
+			theLastWriteTime = time;
+			if(time > theMaxWriteTime)
+				theMaxWriteTime = time;
+			theTotalWriteTime += time;
+			theBatchCount++;
+			theWrittenCount += batch.size();
+		}
+	}
+
+	/**
+	 * @param entry The entry to check
+	 * @param batch The entries about to be written
+	 * @return Whether the entry is a repeat of an entry that was just written or is about to be
+	 */
+	private boolean isRepeat(LogEntry entry, java.util.List<PendingEntry> batch)
+	{
+		for(LogEntry pastEntry : thePastEntries)
+			if(pastEntry.headersSame(entry))
+				return true;
+		for(PendingEntry pe : batch)
+			if(pe.entry.headersSame(entry))
+				return true;
+		return false;
+	}
+
+	/**
+	 * Finds entries in the database or earlier in the batch that each entry in the batch is a
+	 * duplicate of. Entries that are not found among recently written entries are all looked up in
+	 * the database with a single query.
+	 * 
+	 * @param batch The entries to find duplicates for
+	 * @throws PrismsException If the database connection cannot be obtained
+	 * @throws SQLException If an error occurs querying the database
+	 */
+	private void findDuplicates(java.util.List<PendingEntry> batch) throws PrismsException,
+		SQLException
+	{
+		ArrayList<PendingEntry> unresolved = new ArrayList<PendingEntry>();
+		synchronized(theRecentEntries)
+		{
+			for(PendingEntry pe : batch)
+			{
+				RecentEntry recent = theRecentEntries.get(pe.key);
+				if(recent != null && recent.matches(pe.entry))
+					pe.duplicate = recent.id;
+				else
+					unresolved.add(pe);
+			}
+		}
+		if(!unresolved.isEmpty())
+			findDBDuplicates(unresolved);
+
+		// Entries may also duplicate an original entry earlier in the same batch
+		HashMap<CrcKey, PendingEntry> originals = new HashMap<CrcKey, PendingEntry>();
+		for(PendingEntry pe : batch)
+		{
+			if(pe.duplicate >= 0)
+				continue;
+			PendingEntry original = originals.get(pe.key);
+			if(original != null && new RecentEntry(-1, original.entry).matches(pe.entry))
+				pe.duplicateOf = original;
+			else
+				originals.put(pe.key, pe);
+		}
+	}
+
+	private void findDBDuplicates(java.util.List<PendingEntry> entries) throws PrismsException,
+		SQLException
+	{
+		long [] msgCRCs = new long [entries.size()];
+		for(int i = 0; i < msgCRCs.length; i++)
+			msgCRCs[i] = entries.get(i).key.theMessageCRC;
+		HashMap<CrcKey, ArrayList<Object []>> candidates = new HashMap<CrcKey, ArrayList<Object []>>();
+		Statement stmt = null;
+		ResultSet rs = null;
+		try
+		{
+			stmt = theTransactor.getConnection().createStatement();
+			String sql = "SELECT id, shortMessage, messageCRC, stackTraceCRC, trackingCRC FROM "
+				+ theTransactor.getTablePrefix() + "prisms_log_entry WHERE logDuplicate IS NULL"
+				+ " AND entrySize<" + MAX_SIZE + " AND ";
+			rs = DBUtils.executeQuery(stmt, sql, DBUtils.simplifyKeySet(msgCRCs, 90),
+				" ORDER BY id", "messageCRC", 90);
+			while(rs.next())
+			{
+				CrcKey key = new CrcKey(rs.getLong("messageCRC"), rs.getLong("stackTraceCRC"),
+					rs.getLong("trackingCRC"));
+				ArrayList<Object []> list = candidates.get(key);
+				if(list == null)
+				{
+					list = new ArrayList<Object []>();
+					candidates.put(key, list);
+				}
+				list.add(new Object [] {Integer.valueOf(rs.getInt("id")),
+					rs.getString("shortMessage")});
+			}
+			rs.close();
+			rs = null;
+			if(candidates.isEmpty())
+				return;
+
+			// Resolve what can be resolved from the short message; gather IDs whose content is needed
+			IntList contentIDs = new IntList();
+			for(PendingEntry pe : entries)
+			{
+				ArrayList<Object []> list = candidates.get(pe.key);
+				if(list == null)
+					continue;
+				for(Object [] c : list)
+				{
+					if(pe.key.theStackTraceCRC == -1 && pe.entry.getMessage().equals(c[1]))
 					{
-						if(entry.getMessage().length() > 100)
-						{
-							theContentInserter.setInt(1, id);
-							theContentInserter.setString(4, "M");
-							String msg = entry.getMessage();
-							if(msg.length() <= CONTENT_LENGTH)
-							{
-								theContentInserter.setInt(2, 0);
-								theContentInserter.setString(3, msg);
-								theContentInserter.executeUpdate();
-							}
-							else
-							{
-								int inc = CONTENT_LENGTH - CONTENT_OVERLAP;
-								for(int i = 0; i < msg.length(); i += inc)
-								{
-									int end = i + CONTENT_LENGTH;
-									int diff = end - msg.length();
-									if(diff > 0)
-									{
-										end = msg.length();
-										i -= diff;
-									}
-									theContentInserter.setInt(2, i);
-									theContentInserter.setString(3, msg.substring(i, end));
-									theContentInserter.executeUpdate();
-									if(diff >= 0)
-										break;
-								}
-							}
-						}
-						if(entry.getStackTrace() != null && entry.getStackTrace().length() > 0)
-						{
-							theContentInserter.setInt(1, id);
-							theContentInserter.setString(4, "S");
-							String st = entry.getStackTrace();
-							if(st.length() <= CONTENT_LENGTH)
-							{
-								theContentInserter.setInt(2, 0);
-								theContentInserter.setString(3, st);
-								theContentInserter.executeUpdate();
-							}
-							else
-							{
-								int inc = CONTENT_LENGTH - CONTENT_OVERLAP;
-								for(int i = 0; i < st.length(); i += inc)
-								{
-									int end = i + CONTENT_LENGTH;
-									int diff = end - st.length();
-									if(diff > 0)
-									{
-										end = st.length();
-										i -= diff;
-									}
-									theContentInserter.setInt(2, i);
-									theContentInserter.setString(3, st.substring(i, end));
-									theContentInserter.executeUpdate();
-									if(diff >= 0)
-										break;
-								}
-							}
-						}
-						if(entry.getTrackingData() != null && entry.getTrackingData().length() > 0)
+						pe.duplicate = ((Integer) c[0]).intValue();
+						break;
+					}
+					contentIDs.add(((Integer) c[0]).intValue());
+				}
+			}
+			if(contentIDs.isEmpty())
+				return;
+			HashMap<Integer, RecentEntry> contents = getContents(stmt, contentIDs, candidates);
+			for(PendingEntry pe : entries)
+			{
+				if(pe.duplicate >= 0)
+					continue;
+				ArrayList<Object []> list = candidates.get(pe.key);
+				if(list == null)
+					continue;
+				for(Object [] c : list)
+				{
+					RecentEntry content = contents.get(c[0]);
+					if(content != null && content.matches(pe.entry))
+					{
+						pe.duplicate = content.id;
+						synchronized(theRecentEntries)
 						{
-							theContentInserter.setInt(1, id);
-							theContentInserter.setString(4, "T");
-							String st = entry.getTrackingData();
-							if(st.length() <= CONTENT_LENGTH)
-							{
-								theContentInserter.setInt(2, 0);
-								theContentInserter.setString(3, st);
-								theContentInserter.executeUpdate();
-							}
-							else
-							{
-								int inc = CONTENT_LENGTH - CONTENT_OVERLAP;
-								for(int i = 0; i < st.length(); i += inc)
-								{
-									int end = i + CONTENT_LENGTH;
-									int diff = end - st.length();
-									if(diff > 0)
-									{
-										end = st.length();
-										i -= diff;
-									}
-									theContentInserter.setInt(2, i);
-									theContentInserter.setString(3, st.substring(i, end));
-									theContentInserter.executeUpdate();
-									if(diff >= 0)
-										break;
-								}
-							}
+							theRecentEntries.put(pe.key, content);
 						}
+						break;
 					}
-				} finally
+				}
+			}
+		} finally
+		{
+			if(rs != null)
+				try
 				{
-					trans.getTracker().end(track);
+					rs.close();
+				} catch(SQLException e)
+				{
+					log.error("Connection error", e);
 				}
-			} catch(SQLException e)
+			if(stmt != null)
+				try
+				{
+					stmt.close();
+				} catch(SQLException e)
+				{
+					log.error("Connection error", e);
+				}
+		}
+	}
+
+	/**
+	 * Reassembles the content of a set of log entries from the chunks stored in the database
+	 * 
+	 * @param stmt The statement to query with
+	 * @param ids The IDs of the entries to get the content of
+	 * @param candidates The candidate entries, containing the short messages of the entries
+	 * @return The content of each entry, by ID
+	 * @throws SQLException If an error occurs querying the database
+	 */
+	private HashMap<Integer, RecentEntry> getContents(Statement stmt, IntList ids,
+		HashMap<CrcKey, ArrayList<Object []>> candidates) throws SQLException
+	{
+		HashMap<Integer, StringBuilder []> sbs = new HashMap<Integer, StringBuilder []>();
+		long [] longIDs = new long [ids.size()];
+		for(int i = 0; i < longIDs.length; i++)
+			longIDs[i] = ids.get(i);
+		String sql = "SELECT logEntry, indexNum, content, contentType FROM "
+			+ theTransactor.getTablePrefix() + "prisms_log_content WHERE ";
+		ResultSet rs = DBUtils.executeQuery(stmt, sql, DBUtils.simplifyKeySet(longIDs, 90),
+			" ORDER BY logEntry, indexNum", "logEntry", 90);
+		try
+		{
+			while(rs.next())
 			{
-				nodbLog.error("Could not insert new log entry", e);
-			} finally
+				Integer id = Integer.valueOf(rs.getInt("logEntry"));
+				StringBuilder [] entrySBs = sbs.get(id);
+				if(entrySBs == null)
+				{
+					entrySBs = new StringBuilder [3];
+					sbs.put(id, entrySBs);
+				}
+				char type = rs.getString("contentType").charAt(0);
+				int idx;
+				if(type == 's' || type == 'S')
+					idx = 1;
+				else if(type == 't' || type == 'T')
+					idx = 2;
+				else
+					idx = 0;
+				if(entrySBs[idx] == null)
+					entrySBs[idx] = new StringBuilder();
+				StringBuilder sb = entrySBs[idx];
+				sb.append(rs.getString("content").substring(sb.length() - rs.getInt("indexNum")));
+			}
+		} finally
+		{
+			rs.close();
+		}
+		HashMap<Integer, RecentEntry> ret = new HashMap<Integer, RecentEntry>();
+		for(ArrayList<Object []> list : candidates.values())
+			for(Object [] c : list)
+			{
+				Integer id = (Integer) c[0];
+				if(!ids.contains(id.intValue()) || ret.containsKey(id))
+					continue;
+				StringBuilder [] entrySBs = sbs.get(id);
+				String message = (String) c[1];
+				if(message == null)
+					message = entrySBs == null || entrySBs[0] == null ? "" : entrySBs[0].toString();
+				String stackTrace = entrySBs == null || entrySBs[1] == null ? null : entrySBs[1]
+					.toString();
+				String tracking = entrySBs == null || entrySBs[2] == null ? null : entrySBs[2]
+					.toString();
+				ret.put(id, new RecentEntry(id.intValue(), message, stackTrace, tracking));
+			}
+		return ret;
+	}
+
+	/**
+	 * Inserts a batch of log entries into the database
+	 * 
+	 * @param batch The entries to insert
+	 * @return False if an ID could not be obtained for an entry, in which case this logger is
+	 *         closed
+	 * @throws SQLException If an error occurs writing the entries
+	 */
+	private boolean insertEntries(java.util.List<PendingEntry> batch) throws SQLException
+	{
+		try
+		{
+			for(PendingEntry pe : batch)
 			{
-				if(written)
-					thePastEntries.add(entry);
+				LogEntry entry = pe.entry;
+				try
+				{
+					pe.id = theEnv.getIDs().getNextIntID(theIDGetter, "prisms_log_entry",
+						theTransactor.getTablePrefix(), "id", null);
+				} catch(PrismsException e)
+				{
+					log.error("Could not get log ID. Exiting.");
+					isClosed = true;
+					return false;
+				}
+				int p = 1;
+				theInserter.setInt(p++, pe.id);
+				theInserter.setString(p++, entry.getInstanceLocation());
+				theInserter.setTimestamp(p++, new java.sql.Timestamp(entry.getLogTime()));
+				if(entry.getApp() != null)
+					theInserter.setString(p++, entry.getApp());
+				else
+					theInserter.setNull(p++, java.sql.Types.VARCHAR);
+				if(entry.getClient() != null)
+					theInserter.setString(p++, entry.getClient());
+				else
+					theInserter.setNull(p++, java.sql.Types.VARCHAR);
+				if(entry.getUser() != null)
+					theInserter.setLong(p++, entry.getUser().getID());
+				else
+					theInserter.setNull(p++, java.sql.Types.NUMERIC);
+				if(entry.getSessionID() != null)
+					theInserter.setString(p++, entry.getSessionID());
+				else
+					theInserter.setNull(p++, java.sql.Types.VARCHAR);
+				theInserter.setInt(p++, entry.getLevel().toInt());
+				if(entry.getLoggerName().length() > 256)
+					entry.setLoggerName(entry.getLoggerName().substring(0, 256));
+				theInserter.setString(p++, entry.getLoggerName());
+				if(entry.getMessage().length() <= 100)
+					theInserter.setString(p++, entry.getMessage());
+				else
+					theInserter.setNull(p++, java.sql.Types.VARCHAR);
+				theInserter.setLong(p++, pe.key.theMessageCRC);
+				theInserter.setLong(p++, pe.key.theStackTraceCRC);
+				theInserter.setLong(p++, pe.key.theTrackingCRC);
+				if(pe.duplicate >= 0)
+					theInserter.setInt(p++, pe.duplicate);
+				else if(pe.duplicateOf != null)
+					theInserter.setInt(p++, pe.duplicateOf.id);
+				else
+					theInserter.setNull(p++, java.sql.Types.INTEGER);
+				int size = 1;
+				if(entry.getDuplicateRef() < 0)
+				{
+					size += contentSize(entry.getMessage().length() > 100 ? entry.getMessage()
+						: null);
+					size += contentSize(entry.getStackTrace());
+					size += contentSize(entry.getTrackingData());
+				}
+				theInserter.setInt(p++, size);
+				theInserter.addBatch();
 			}
+			theInserter.executeBatch();
+		} finally
+		{
+			theInserter.clearBatch();
+		}
+		return true;
+	}
+
+	private static int contentSize(String content)
+	{
+		if(content == null)
+			return 0;
+		int size = 1;
+		int len = content.length() - CONTENT_LENGTH;
+		if(len > 0)
+			size += (len - 1) / (CONTENT_LENGTH - CONTENT_OVERLAP) + 1;
+		return size;
+	}
+
+	/**
+	 * Inserts the long message, stack trace and tracking data of the original entries in a batch
+	 * 
+	 * @param batch The entries to insert the content of
+	 * @throws SQLException If an error occurs writing the content
+	 */
+	private void insertContent(java.util.List<PendingEntry> batch) throws SQLException
+	{
+		boolean any = false;
+		try
+		{
+			for(PendingEntry pe : batch)
+			{
+				if(!pe.isOriginal())
+					continue;
+				LogEntry entry = pe.entry;
+				if(entry.getMessage().length() > 100)
+				{
+					addContent(pe.id, "M", entry.getMessage());
+					any = true;
+				}
+				if(entry.getStackTrace() != null && entry.getStackTrace().length() > 0)
+				{
+					addContent(pe.id, "S", entry.getStackTrace());
+					any = true;
+				}
+				if(entry.getTrackingData() != null && entry.getTrackingData().length() > 0)
+				{
+					addContent(pe.id, "T", entry.getTrackingData());
+					any = true;
+				}
+			}
+			if(any)
+				theContentInserter.executeBatch();
+		} finally
+		{
+			theContentInserter.clearBatch();
+		}
+	}
+
+	/**
+	 * Adds the rows for a piece of an entry's content to the content insertion batch, splitting it
+	 * into overlapping chunks if necessary
+	 * 
+	 * @param id The ID of the entry that the content belongs to
+	 * @param type The type of the content (M, S or T)
+	 * @param content The content to add
+	 * @throws SQLException If the parameters cannot be set
+	 */
+	private void addContent(int id, String type, String content) throws SQLException
+	{
+		theContentInserter.setInt(1, id);
+		theContentInserter.setString(4, type);
+		if(content.length() <= CONTENT_LENGTH)
+		{
+			theContentInserter.setInt(2, 0);
+			theContentInserter.setString(3, content);
+			theContentInserter.addBatch();
+			return;
+		}
+		int inc = CONTENT_LENGTH - CONTENT_OVERLAP;
+		for(int i = 0; i < content.length(); i += inc)
+		{
+			int end = i + CONTENT_LENGTH;
+			int diff = end - content.length();
+			if(diff > 0)
+			{
+				end = content.length();
+				i -= diff;
+			}
+			theContentInserter.setInt(2, i);
+			theContentInserter.setString(3, content.substring(i, end));
+			theContentInserter.addBatch();
+			if(diff >= 0)
+				break;
 		}
 	}
 
@@ -1644,39 +1947,36 @@ public class PrismsLogger implements
 
 	public long [] search(Search search, Sorter<LogField> sorter) throws PrismsException
 	{
-		String sql = createQuery(search, sorter, false) + " ORDER BY " + getOrder(sorter);
-		Statement stmt = null;
-		ResultSet rs = null;
-		LongList ret = new LongList();
-		try
-		{
-			stmt = theTransactor.getConnection().createStatement();
-			rs = stmt.executeQuery(sql);
-			while(rs.next())
-				ret.add(rs.getLong(1));
-		} catch(SQLException e)
-		{
-			throw new PrismsException("Could not query log entries: SQL=" + sql, e);
-		} finally
-		{
-			if(rs != null)
-				try
-				{
-					rs.close();
-				} catch(SQLException e)
-				{
-					log.error("Connection error" + e);
-				}
-			if(stmt != null)
-				try
-				{
-					stmt.close();
-				} catch(SQLException e)
+		final String sql = createQuery(search, sorter, false) + " ORDER BY " + getOrder(sorter);
+		return (long []) theTransactor.performTransaction(
+			new prisms.arch.ds.Transactor.ReadOnlyOperation<PrismsException>()
+			{
+				public Object run(Statement stmt) throws PrismsException
 				{
-					log.error("Connection error: " + e);
+					ResultSet rs = null;
+					LongList ret = new LongList();
+					try
+					{
+						rs = stmt.executeQuery(sql);
+						while(rs.next())
+							ret.add(rs.getLong(1));
+					} catch(SQLException e)
+					{
+						throw new PrismsException("Could not query log entries: SQL=" + sql, e);
+					} finally
+					{
+						if(rs != null)
+							try
+							{
+								rs.close();
+							} catch(SQLException e)
+							{
+								log.error("Connection error" + e);
+							}
+					}
+					return ret.toArray();
 				}
-		}
-		return ret.toArray();
+			}, "Could not query log entries");
 	}
 
 	/**
@@ -1879,13 +2179,30 @@ public class PrismsLogger implements
 		((DBLogEntrySearch) search).dispose();
 	}
 
-	public LogEntry [] getItems(long... ids) throws PrismsException
+	public ItemIterator<LogEntry, PrismsException> getItems(LongList ids, int offset, int limit)
+	{
+		return new ChunkedItemIterator<LogEntry, PrismsException>(this, ids, offset, limit);
+	}
+
+	public LogEntry [] getItems(final long... ids) throws PrismsException
 	{
-		prisms.util.DBUtils.KeyExpression key = DBUtils.simplifyKeySet(ids, 50);
+		final prisms.util.DBUtils.KeyExpression key = DBUtils.simplifyKeySet(ids, 50);
 		if(key == null)
 			return new LogEntry [0];
+		return (LogEntry []) theTransactor.performTransaction(
+			new prisms.arch.ds.Transactor.ReadOnlyOperation<PrismsException>()
+			{
+				public Object run(Statement stmt) throws PrismsException
+				{
+					return getItems(ids, key, stmt);
+				}
+			}, "Could not query log entries");
+	}
+
+	LogEntry [] getItems(long [] ids, prisms.util.DBUtils.KeyExpression key, Statement stmt)
+		throws PrismsException
+	{
 		String sql = "SELECT * FROM " + theTransactor.getTablePrefix() + "prisms_log_entry WHERE ";
-		Statement stmt = null;
 		ResultSet rs = null;
 		LogEntry [] entries;
 		prisms.arch.PrismsTransaction trans = theEnv != null ? theEnv.getTransaction() : null;
@@ -1893,7 +2210,6 @@ public class PrismsLogger implements
 		try
 		{
 			java.util.ArrayList<LogEntry> ret = new java.util.ArrayList<LogEntry>();
-			stmt = theTransactor.getConnection().createStatement();
 			ProgramTracker.TrackNode track2 = PrismsUtils.track(trans, "Get Entry Headers");
 			try
 			{
@@ -1938,38 +2254,14 @@ public class PrismsLogger implements
 			}
 
 			// Sort the entries in the order of the IDs given
-			Long [] idObjs = new Long [ids.length];
-			for(int i = 0; i < ids.length; i++)
-				idObjs[i] = Long.valueOf(ids[i]);
-			final ArrayUtils.ArrayAdjuster<LogEntry, Long, RuntimeException> [] adjuster;
-			adjuster = new ArrayUtils.ArrayAdjuster [1];
-			adjuster[0] = new ArrayUtils.ArrayAdjuster<LogEntry, Long, RuntimeException>(
-				ret.toArray(new LogEntry [ret.size()]), idObjs,
-				new ArrayUtils.DifferenceListener<LogEntry, Long>()
-				{
-					public boolean identity(LogEntry o1, Long o2)
-					{
-						return o1 != null && o1.getID() == o2.longValue();
-					}
-
-					public LogEntry added(Long o, int idx, int retIdx)
-					{
-						adjuster[0].nullElement();
-						return null;
-					}
-
-					public LogEntry removed(LogEntry o, int idx, int incMod, int retIdx)
-					{
-						return o;
-					}
-
-					public LogEntry set(LogEntry o1, int idx1, int incMod, Long o2, int idx2,
-						int retIdx)
-					{
-						return o1;
-					}
-				});
-			entries = adjuster[0].adjust();
+			// Put the items in the order of the IDs given
+			LongIndexMap idIndexes = new LongIndexMap(ids);
+			LogEntry [] ordered = new LogEntry [ids.length];
+			for(LogEntry item : ret)
+				if(item != null)
+					for(int i = idIndexes.indexOf(item.getID()); i >= 0; i = idIndexes.nextIndexOf(i))
+						ordered[i] = item;
+			entries = ordered;
 
 			// Adjust the key set to get the content of duplicates
 			long [] newIDs = ids.clone();
@@ -2044,14 +2336,6 @@ public class PrismsLogger implements
 				{
 					log.error("Connection error" + e);
 				}
-			if(stmt != null)
-				try
-				{
-					stmt.close();
-				} catch(SQLException e)
-				{
-					log.error("Connection error: " + e);
-				}
 			PrismsUtils.end(trans, track);
 		}
 		return entries;
@@ -2095,14 +2379,14 @@ public class PrismsLogger implements
 		final IntList idInts = new IntList(ids);
 		idInts.setSorted(true);
 		idInts.setUnique(true);
+		final String sql = "UPDATE " + theTransactor.getTablePrefix()
+			+ "prisms_log_entry SET entrySaved=" + DBUtils.formatDate(time, isOracle()) + " WHERE ";
+		// Only uses the given statement, so it may run on a pooled connection
 		theTransactor.performTransaction(
-			new prisms.arch.ds.Transactor.TransactionOperation<PrismsException>()
+			new prisms.arch.ds.Transactor.PooledOperation<PrismsException>()
 			{
 				public Object run(Statement stmt) throws PrismsException
 				{
-					String sql = "UPDATE " + theTransactor.getTablePrefix()
-						+ "prisms_log_entry SET entrySaved=" + DBUtils.formatDate(time, isOracle())
-						+ " WHERE ";
 					DBUtils.KeyExpression keys = DBUtils.simplifyKeySet(idInts.toLongArray(), 90);
 					try
 					{
@@ -2586,6 +2870,102 @@ public class PrismsLogger implements
 		}
 	}
 
+	/** The CRCs of a log entry's message, stack trace and tracking data */
+	private static class CrcKey
+	{
+		final long theMessageCRC;
+
+		final long theStackTraceCRC;
+
+		final long theTrackingCRC;
+
+		CrcKey(long msgCRC, long stCRC, long trackCRC)
+		{
+			theMessageCRC = msgCRC;
+			theStackTraceCRC = stCRC;
+			theTrackingCRC = trackCRC;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if(!(o instanceof CrcKey))
+				return false;
+			CrcKey key = (CrcKey) o;
+			return key.theMessageCRC == theMessageCRC && key.theStackTraceCRC == theStackTraceCRC
+				&& key.theTrackingCRC == theTrackingCRC;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			long hash = theMessageCRC * 31 * 31 + theStackTraceCRC * 31 + theTrackingCRC;
+			return (int) (hash ^ (hash >>> 32));
+		}
+	}
+
+	/** The content of an original (non-duplicate) log entry in the database */
+	private static class RecentEntry
+	{
+		final int id;
+
+		final String message;
+
+		final String stackTrace;
+
+		final String tracking;
+
+		RecentEntry(int _id, LogEntry entry)
+		{
+			this(_id, entry.getMessage(), entry.getStackTrace(), entry.getTrackingData());
+		}
+
+		RecentEntry(int _id, String _message, String _stackTrace, String _tracking)
+		{
+			id = _id;
+			message = _message;
+			stackTrace = _stackTrace;
+			tracking = _tracking;
+		}
+
+		boolean matches(LogEntry entry)
+		{
+			return entry.getMessage().equals(message)
+				&& (entry.getStackTrace() == null ? stackTrace == null : entry.getStackTrace()
+					.equals(stackTrace))
+				&& (entry.getTrackingData() == null ? tracking == null : entry.getTrackingData()
+					.equals(tracking));
+		}
+	}
+
+	/** A log entry that is being written to the database */
+	private static class PendingEntry
+	{
+		final LogEntry entry;
+
+		final CrcKey key;
+
+		/** The ID of the original entry in the database that this entry duplicates, or -1 */
+		int duplicate;
+
+		/** The original entry earlier in the same batch that this entry duplicates */
+		PendingEntry duplicateOf;
+
+		int id;
+
+		PendingEntry(LogEntry _entry, long msgCRC, long stCRC, long trackCRC)
+		{
+			entry = _entry;
+			key = new CrcKey(msgCRC, stCRC, trackCRC);
+			duplicate = -1;
+		}
+
+		boolean isOriginal()
+		{
+			return duplicate < 0 && duplicateOf == null;
+		}
+	}
+
 	private void checkLoggerConfigs()
 	{
 		long now = System.currentTimeMillis();
@@ -2701,6 +3081,11 @@ public class PrismsLogger implements
 	{
 		if(ids == null)
 			return 0;
+		// Purging may delete or reassign originals that recently written entries refer to
+		synchronized(theRecentEntries)
+		{
+			theRecentEntries.clear();
+		}
 		ids.setSorted(true); // Optimizes some calls below
 		ids.setUnique(true);
 		prisms.util.DBUtils.KeyExpression key = DBUtils.simplifyKeySet(ids.toLongArray(), 50);
@@ -2965,10 +3350,6 @@ public class PrismsLogger implements
 
 	private java.sql.PreparedStatement theIDGetter;
 
-	private java.sql.PreparedStatement theDuplicateQuery;
-
-	private java.sql.PreparedStatement theContentQuery;
-
 	private java.sql.PreparedStatement theInserter;
 
 	private java.sql.PreparedStatement theContentInserter;
@@ -2994,16 +3375,6 @@ public class PrismsLogger implements
 				theTransactor.getTablePrefix(), "id", null);
 			theIDGetter = theTransactor.getConnection().prepareStatement(sql);
 
-			sql = "SELECT id, shortMessage FROM " + theTransactor.getTablePrefix()
-				+ "prisms_log_entry WHERE logDuplicate IS NULL"
-				+ " AND messageCRC=? AND stackTraceCRC=? AND trackingCRC=? AND entrySize<"
-				+ MAX_SIZE;
-			theDuplicateQuery = theTransactor.getConnection().prepareStatement(sql);
-
-			sql = "SELECT * FROM " + theTransactor.getTablePrefix()
-				+ "prisms_log_content WHERE logEntry=? ORDER BY indexNum";
-			theContentQuery = theTransactor.getConnection().prepareStatement(sql);
-
 			sql = "INSERT INTO " + theTransactor.getTablePrefix() + "prisms_log_entry"
 				+ " (id, logInstance, logTime, logApp, logClient, logUser, logSession,"
 				+ " logLevel, loggerName, shortMessage, messageCRC, stackTraceCRC, trackingCRC,"
@@ -3092,10 +3463,6 @@ public class PrismsLogger implements
 		{
 			theIDGetter.close();
 			theIDGetter = null;
-			theDuplicateQuery.close();
-			theDuplicateQuery = null;
-			theContentQuery.close();
-			theContentQuery = null;
 			theInserter.close();
 			theInserter = null;
 			theContentInserter.close();
@@ -26,9 +26,11 @@ import prisms.message.MessageChangeTypes.RecipientChange;
 import prisms.message.MessageSearch.SizeSearch;
 import prisms.records.RecordsTransaction;
 import prisms.util.ArrayUtils;
+import prisms.util.ChunkedItemIterator;
 import prisms.util.DBUtils;
 import prisms.util.DemandCache;
 import prisms.util.IntList;
+import prisms.util.LongIndexMap;
 import prisms.util.LongList;
 import prisms.util.PrismsUtils;
 import prisms.util.Search;
@@ -59,7 +61,7 @@ public class DefaultMessageManager implements MessageManager
 		}
 
 		@Override
-		protected synchronized long [] execute(Object... params) throws PrismsMessageException
+		protected long [] execute(Object... params) throws PrismsMessageException
 		{
 			return super.execute(params);
 		}
@@ -227,42 +229,7 @@ public class DefaultMessageManager implements MessageManager
 				joins.append(wheres);
 			}
 			String sql = joins.toString() + " ORDER BY msg.msgTime DESC";
-
-			Statement stmt = null;
-			ResultSet rs = null;
-			try
-			{
-				theTransactor.checkConnected();
-				stmt = theTransactor.getConnection().createStatement();
-				rs = stmt.executeQuery(sql);
-				LongList ids = new LongList();
-				while(rs.next())
-					ids.add(rs.getLong(1));
-				rs.close();
-				rs = null;
-				return ids.toArray();
-			} catch(SQLException e)
-			{
-				throw new PrismsMessageException("Could not search messages", e);
-			} finally
-			{
-				if(rs != null)
-					try
-					{
-						rs.close();
-					} catch(SQLException e)
-					{
-						log.error("Connection error", e);
-					}
-				if(stmt != null)
-					try
-					{
-						stmt.close();
-					} catch(SQLException e)
-					{
-						log.error("Connection error", e);
-					}
-			}
+			return queryIDs(sql);
 		}
 
 		@Override
@@ -308,6 +275,14 @@ public class DefaultMessageManager implements MessageManager
 			((DBMessagePrepSearch) search).dispose();
 		}
 
+		@Override
+		public ItemIterator<MessageView, PrismsMessageException> getItems(LongList ids, int offset,
+			int limit)
+		{
+			return new ChunkedItemIterator<MessageView, PrismsMessageException>(this, ids, offset,
+				limit);
+		}
+
 		@Override
 		public MessageView [] getItems(long... ids) throws PrismsMessageException
 		{
@@ -393,41 +368,14 @@ public class DefaultMessageManager implements MessageManager
 				for(MessageView view : entry.getValue())
 					view.setMessage(msg);
 			}
-			Long [] idObjs = new Long [ids.length];
-			for(int i = 0; i < ids.length; i++)
-				idObjs[i] = Long.valueOf(ids[i]);
-			final ArrayUtils.ArrayAdjuster<MessageView, Long, RuntimeException> [] adjuster;
-			adjuster = new ArrayUtils.ArrayAdjuster [0];
-			adjuster[0] = new ArrayUtils.ArrayAdjuster<MessageView, Long, RuntimeException>(
-				ret.toArray(new MessageView [ret.size()]), idObjs,
-				new ArrayUtils.DifferenceListener<MessageView, Long>()
-				{
-					@Override
-					public boolean identity(MessageView o1, Long o2)
-					{
-						return o1.getID() == o2.longValue();
-					}
-
-					@Override
-					public MessageView added(Long o, int mIdx, int retIdx)
-					{
-						adjuster[0].nullElement();
-						return null;
-					}
-
-					@Override
-					public MessageView removed(MessageView o, int oIdx, int incMod, int retIdx)
-					{
-						return null;
-					}
-
-					@Override
-					public MessageView set(MessageView o1, int idx1, int incMod, Long o2, int idx2, int retIdx)
-					{
-						return o1;
-					}
-				});
-			return adjuster[0].adjust();
+			// Put the items in the order of the IDs given
+			LongIndexMap idIndexes = new LongIndexMap(ids);
+			MessageView [] ordered = new MessageView [ids.length];
+			for(MessageView item : ret)
+				if(item != null)
+					for(int i = idIndexes.indexOf(item.getID()); i >= 0; i = idIndexes.nextIndexOf(i))
+						ordered[i] = item;
+			return ordered;
 		}
 	}
 
@@ -631,41 +579,47 @@ public class DefaultMessageManager implements MessageManager
 			joins.append(wheres);
 		}
 		String sql = joins.toString() + " ORDER BY msg.mgsTime DESC";
-		Statement stmt = null;
-		ResultSet rs = null;
-		try
-		{
-			theTransactor.checkConnected();
-			stmt = theTransactor.getConnection().createStatement();
-			rs = stmt.executeQuery(sql);
-			LongList ids = new LongList();
-			while(rs.next())
-				ids.add(rs.getLong(1));
-			rs.close();
-			rs = null;
-			return ids.toArray();
-		} catch(SQLException e)
-		{
-			throw new PrismsMessageException("Could not search messages", e);
-		} finally
+		return queryIDs(sql);
+	}
+
+	/**
+	 * @param sql The query to run, which selects IDs in its first column
+	 * @return The IDs selected by the query
+	 * @throws PrismsMessageException If the query fails
+	 */
+	long [] queryIDs(final String sql) throws PrismsMessageException
+	{
+		return (long []) theTransactor.performTransaction(new Transactor.ReadOnlyOperation<PrismsMessageException>()
 		{
-			if(rs != null)
+			@Override
+			public Object run(Statement stmt) throws PrismsMessageException
+			{
+				ResultSet rs = null;
 				try
 				{
+					rs = stmt.executeQuery(sql);
+					LongList ids = new LongList();
+					while(rs.next())
+						ids.add(rs.getLong(1));
 					rs.close();
+					rs = null;
+					return ids.toArray();
 				} catch(SQLException e)
 				{
-					log.error("Connection error", e);
-				}
-			if(stmt != null)
-				try
-				{
-					stmt.close();
-				} catch(SQLException e)
+					throw new PrismsMessageException("Could not search messages", e);
+				} finally
 				{
-					log.error("Connection error", e);
+					if(rs != null)
+						try
+						{
+							rs.close();
+						} catch(SQLException e)
+						{
+							log.error("Connection error", e);
+						}
 				}
-		}
+			}
+		}, "Could not search messages");
 	}
 
 	@Override
@@ -707,9 +661,24 @@ public class DefaultMessageManager implements MessageManager
 	}
 
 	@Override
-	public Message [] getItems(long... ids) throws PrismsMessageException
+	public Message [] getItems(final long... ids) throws PrismsMessageException
+	{
+		if(ids.length == 0)
+			return new Message [0];
+		return (Message []) theTransactor.performTransaction(new Transactor.ReadOnlyOperation<PrismsMessageException>()
+		{
+			@Override
+			public Object run(Statement stmt) throws PrismsMessageException
+			{
+				return getMessages(stmt, false, ids);
+			}
+		}, "Could not get messages");
+	}
+
+	@Override
+	public ItemIterator<Message, PrismsMessageException> getItems(LongList ids, int offset, int limit)
 	{
-		return getMessages(null, false, ids);
+		return new ChunkedItemIterator<Message, PrismsMessageException>(this, ids, offset, limit);
 	}
 
 	Message [] getMessages(Statement stmt, boolean withDeletedContent, long... ids) throws PrismsMessageException
@@ -977,40 +946,14 @@ public class DefaultMessageManager implements MessageManager
 			theMessageCache.put(Long.valueOf(ret.get(0).getID()), ret.get(0));
 		}
 		ret.addAll(cached);
-		Long [] idObjs = new Long [ids.length];
-		for(int i = 0; i < ids.length; i++)
-			idObjs[i] = Long.valueOf(ids[i]);
-		final ArrayUtils.ArrayAdjuster<Message, Long, RuntimeException> [] adjuster;
-		adjuster = new ArrayUtils.ArrayAdjuster [1];
-		adjuster[0] = new ArrayUtils.ArrayAdjuster<Message, Long, RuntimeException>(
-			ret.toArray(new Message [ret.size()]), idObjs, new ArrayUtils.DifferenceListener<Message, Long>()
-			{
-				@Override
-				public boolean identity(Message o1, Long o2)
-				{
-					return o1 != null && o1.getID() == o2.longValue();
-				}
-
-				@Override
-				public Message added(Long o, int idx, int retIdx)
-				{
-					adjuster[0].nullElement();
-					return null;
-				}
-
-				@Override
-				public Message removed(Message o, int idx, int incMod, int retIdx)
-				{
-					return o;
-				}
-
-				@Override
-				public Message set(Message o1, int idx1, int incMod, Long o2, int idx2, int retIdx)
-				{
-					return o1;
-				}
-			});
-		return adjuster[0].adjust();
+		// Put the items in the order of the IDs given
+		LongIndexMap idIndexes = new LongIndexMap(ids);
+		Message [] ordered = new Message [ids.length];
+		for(Message item : ret)
+			if(item != null)
+				for(int i = idIndexes.indexOf(item.getID()); i >= 0; i = idIndexes.nextIndexOf(i))
+					ordered[i] = item;
+		return ordered;
 	}
 
 	void cleanDeleted(Message msg)
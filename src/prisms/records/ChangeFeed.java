@@ -0,0 +1,42 @@
+/*
+ * ChangeFeed.java Created Oct 16, 2026 by Andrew Butler, PSL
+ */
+package prisms.records;
+
+/**
+ * Carries the IDs of change records written by one server instance to the other instances sharing
+ * its database, so that each {@link ScaledRecordKeeper} can apply the changes as soon as they are
+ * written instead of waiting to poll the database for them
+ */
+public interface ChangeFeed
+{
+	/** Receives change IDs published to a feed */
+	public interface Listener
+	{
+		/**
+		 * Called when change records have been written to the shared database
+		 * 
+		 * @param namespace The namespace of the record keeper that wrote the changes
+		 * @param changeIDs The IDs of the changes that were written
+		 */
+		void changesPublished(String namespace, long [] changeIDs);
+	}
+
+	/**
+	 * Notifies the other instances on this feed that changes have been written. This must only be
+	 * called after the changes have been committed to the database.
+	 * 
+	 * @param namespace The namespace of the record keeper that wrote the changes
+	 * @param changeIDs The IDs of the changes that were written
+	 */
+	void publish(String namespace, long [] changeIDs);
+
+	/** @param listener The listener to be notified when changes are published to this feed */
+	void addListener(Listener listener);
+
+	/**
+	 * @param listener The listener to stop notifying
+	 * @return Whether the listener was registered with this feed
+	 */
+	boolean removeListener(Listener listener);
+}
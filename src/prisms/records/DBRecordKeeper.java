@@ -32,7 +32,7 @@ public class DBRecordKeeper implements RecordKeeper
 		}
 
 		@Override
-		protected synchronized long [] execute(Object... params) throws PrismsRecordException
+		protected long [] execute(Object... params) throws PrismsRecordException
 		{
 			return super.execute(params);
 		}
@@ -44,7 +44,8 @@ public class DBRecordKeeper implements RecordKeeper
 		}
 
 		@Override
-		protected void setParameter(int type, Object param, int index) throws PrismsRecordException
+		protected void setParameter(java.sql.PreparedStatement ps, int type, Object param,
+			int index) throws PrismsRecordException
 		{
 			if(type == java.sql.Types.CHAR && param instanceof Integer
 				&& getParentSearch(index) instanceof ChangeSearch.AdditivitySearch)
@@ -60,7 +61,7 @@ public class DBRecordKeeper implements RecordKeeper
 			else if(type == java.sql.Types.TIMESTAMP && param == null
 				|| (param instanceof Long && ((Long) param).longValue() <= 0))
 				param = Long.valueOf(365L * 24 * 60 * 60 * 1000);
-			super.setParameter(type, param, index);
+			super.setParameter(ps, type, param, index);
 		}
 
 		@Override
@@ -305,6 +306,26 @@ public class DBRecordKeeper implements RecordKeeper
 
 	private long theLastChange;
 
+	/**
+	 * The latest change time for each (center ID, subject center) pair, combining the newest change
+	 * record and the purge record. Null until first needed or after it is invalidated.
+	 */
+	private java.util.HashMap<DualKey<Integer, Integer>, Long> theLatestChanges;
+
+	private final Object theLatestChangeLock = new Object();
+
+	/** Incremented whenever the latest change cache is modified or invalidated */
+	private int theLatestChangeMods;
+
+	/** Discards the latest change cache when a transaction that wrote changes is rolled back */
+	private final Runnable theLatestChangeClearer = new Runnable()
+	{
+		public void run()
+		{
+			clearLatestChanges();
+		}
+	};
+
 	/**
 	 * Creates a record keeper
 	 * 
@@ -1415,105 +1436,99 @@ public class DBRecordKeeper implements RecordKeeper
 
 	public int [] getAllCenterIDs() throws PrismsRecordException
 	{
-		Statement stmt = null;
-		ResultSet rs = null;
-		String sql = null;
 		IntList ret = new IntList();
-		try
+		for(DualKey<Integer, Integer> key : getLatestChangeCache().keySet())
 		{
-			stmt = theTransactor.getConnection().createStatement();
-			sql = "SELECT DISTINCT centerID FROM " + theTransactor.getTablePrefix()
-				+ "prisms_purge_record WHERE recordNS=" + toSQL(theNamespace);
-			rs = stmt.executeQuery(sql);
-			while(rs.next())
-				ret.add(rs.getInt(1));
-			rs.close();
-			rs = null;
-			sql = "SELECT DISTINCT subjectCenter FROM " + theTransactor.getTablePrefix()
-				+ "prisms_purge_record WHERE recordNS=" + toSQL(theNamespace);
-			rs = stmt.executeQuery(sql);
-			while(rs.next())
-				if(!ret.contains(rs.getInt(1)))
-					ret.add(rs.getInt(1));
-			rs.close();
-			rs = null;
-			sql = "SELECT id, subjectCenter FROM " + theTransactor.getTablePrefix()
-				+ "prisms_change_record WHERE recordNS=" + toSQL(theNamespace);
-			rs = stmt.executeQuery(sql);
-			while(rs.next())
-			{
-				int centerID = RecordUtils.getCenterID(rs.getLong(1));
-				if(!ret.contains(centerID))
-					ret.add(centerID);
-				centerID = rs.getInt(2);
-				if(!ret.contains(centerID))
-					ret.add(centerID);
-			}
-			rs.close();
-			rs = null;
-		} catch(SQLException e)
-		{
-			throw new PrismsRecordException("Could not retrieve all center IDs: SQL=" + sql, e);
-		} finally
-		{
-			if(rs != null)
-				try
-				{
-					rs.close();
-				} catch(SQLException e)
-				{
-					throw new PrismsRecordException("Connection error", e);
-				}
-			if(stmt != null)
-				try
-				{
-					stmt.close();
-				} catch(SQLException e)
-				{
-					throw new PrismsRecordException("Connection error", e);
-				}
+			if(!ret.contains(key.getKey1().intValue()))
+				ret.add(key.getKey1().intValue());
+			if(!ret.contains(key.getKey2().intValue()))
+				ret.add(key.getKey2().intValue());
 		}
 		return ret.toArray();
 	}
 
 	public long getLatestChange(int centerID, int subjectCenter) throws PrismsRecordException
 	{
+		Long ret = getLatestChangeCache().get(
+			new DualKey<Integer, Integer>(Integer.valueOf(centerID), Integer.valueOf(subjectCenter)));
+		return ret == null ? -1 : ret.longValue();
+	}
+
+	public LatestCenterChange [] getLatestChanges() throws PrismsRecordException
+	{
+		ArrayList<LatestCenterChange> ret = new ArrayList<LatestCenterChange>();
+		for(java.util.Map.Entry<DualKey<Integer, Integer>, Long> entry : getLatestChangeCache()
+			.entrySet())
+			if(entry.getValue().longValue() > 0)
+				ret.add(new LatestCenterChange(entry.getKey().getKey1().intValue(), entry.getKey()
+					.getKey2().intValue(), entry.getValue().longValue()));
+		return ret.toArray(new LatestCenterChange [ret.size()]);
+	}
+
+	/**
+	 * @return A snapshot of the latest change time for every (center ID, subject center) pair known
+	 *         to this record keeper. The matrix is loaded from the database with two queries the
+	 *         first time it is needed and kept up to date as changes are written afterward.
+	 * @throws PrismsRecordException If an error occurs loading the data
+	 */
+	private java.util.HashMap<DualKey<Integer, Integer>, Long> getLatestChangeCache()
+		throws PrismsRecordException
+	{
+		int mods;
+		synchronized(theLatestChangeLock)
+		{
+			if(theLatestChanges != null)
+				return new java.util.HashMap<DualKey<Integer, Integer>, Long>(theLatestChanges);
+			mods = theLatestChangeMods;
+		}
+		java.util.HashMap<DualKey<Integer, Integer>, Long> ret = loadLatestChanges();
+		synchronized(theLatestChangeLock)
+		{
+			/* If a change was written while we were querying, the loaded matrix may not reflect it.
+			 * Use it for this call but don't cache it. */
+			if(mods == theLatestChangeMods)
+				theLatestChanges = new java.util.HashMap<DualKey<Integer, Integer>, Long>(ret);
+		}
+		return ret;
+	}
+
+	private java.util.HashMap<DualKey<Integer, Integer>, Long> loadLatestChanges()
+		throws PrismsRecordException
+	{
+		java.util.HashMap<DualKey<Integer, Integer>, Long> ret;
+		ret = new java.util.HashMap<DualKey<Integer, Integer>, Long>();
 		Statement stmt = null;
 		ResultSet rs = null;
 		String sql = null;
-		long ret = -1;
 		try
 		{
 			stmt = theTransactor.getConnection().createStatement();
-			sql = "SELECT MAX(changeTime) FROM " + theTransactor.getTablePrefix()
-				+ "prisms_change_record WHERE recordNS=" + toSQL(theNamespace) + " AND id>="
-				+ (centerID * 1L * RecordUtils.theCenterIDRange) + " AND id<"
-				+ ((centerID + 1L) * RecordUtils.theCenterIDRange) + " AND subjectCenter="
-				+ subjectCenter;
+			sql = "SELECT FLOOR(id / " + RecordUtils.theCenterIDRange + "), subjectCenter,"
+				+ " MAX(changeTime) FROM " + theTransactor.getTablePrefix()
+				+ "prisms_change_record WHERE recordNS=" + toSQL(theNamespace)
+				+ " GROUP BY FLOOR(id / " + RecordUtils.theCenterIDRange + "), subjectCenter";
 			rs = stmt.executeQuery(sql);
-			if(rs.next())
+			while(rs.next())
 			{
-				java.sql.Timestamp ts = rs.getTimestamp(1);
-				if(ts != null)
-					ret = ts.getTime();
+				java.sql.Timestamp ts = rs.getTimestamp(3);
+				mergeLatestChange(ret, rs.getInt(1), rs.getInt(2), ts == null ? -1 : ts.getTime());
 			}
 			rs.close();
 			rs = null;
-			sql = "SELECT latestChange FROM " + theTransactor.getTablePrefix()
-				+ "prisms_purge_record WHERE recordNS=" + toSQL(theNamespace) + " AND centerID="
-				+ centerID + " AND subjectCenter=" + subjectCenter;
+			sql = "SELECT centerID, subjectCenter, latestChange FROM "
+				+ theTransactor.getTablePrefix() + "prisms_purge_record WHERE recordNS="
+				+ toSQL(theNamespace);
 			rs = stmt.executeQuery(sql);
-			if(rs.next())
+			while(rs.next())
 			{
-				long latestChange = rs.getTimestamp(1).getTime();
-				if(latestChange > ret)
-					ret = latestChange;
+				java.sql.Timestamp ts = rs.getTimestamp(3);
+				mergeLatestChange(ret, rs.getInt(1), rs.getInt(2), ts == null ? -1 : ts.getTime());
 			}
 			rs.close();
 			rs = null;
 		} catch(SQLException e)
 		{
-			throw new PrismsRecordException("Could not retrieve all center IDs: SQL=" + sql, e);
+			throw new PrismsRecordException("Could not retrieve latest changes: SQL=" + sql, e);
 		} finally
 		{
 			if(rs != null)
@@ -1536,9 +1551,61 @@ public class DBRecordKeeper implements RecordKeeper
 		return ret;
 	}
 
+	private static void mergeLatestChange(java.util.Map<DualKey<Integer, Integer>, Long> changes,
+		int centerID, int subjectCenter, long time)
+	{
+		DualKey<Integer, Integer> key = new DualKey<Integer, Integer>(Integer.valueOf(centerID),
+			Integer.valueOf(subjectCenter));
+		Long old = changes.get(key);
+		if(old == null || old.longValue() < time)
+			changes.put(key, Long.valueOf(time));
+	}
+
+	/**
+	 * Updates the cached latest change matrix with a change that has been written to the database
+	 * once the change is committed. If the change is rolled back, the cache is discarded since it
+	 * may have been loaded while the uncommitted change was visible.
+	 * 
+	 * @param centerID The ID of the center that caused the change
+	 * @param subjectCenter The ID of the center whose data set was modified
+	 * @param time The time of the change
+	 */
+	private void changeWritten(final int centerID, final int subjectCenter, final long time)
+	{
+		theTransactor.runAfterRollback(theLatestChangeClearer);
+		theTransactor.runAfterCommit(new Runnable()
+		{
+			public void run()
+			{
+				synchronized(theLatestChangeLock)
+				{
+					theLatestChangeMods++;
+					if(theLatestChanges != null)
+						mergeLatestChange(theLatestChanges, centerID, subjectCenter, time);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Discards the cached latest change matrix so that it is reloaded from the database the next
+	 * time it is needed. Subclasses should call this when the change records may have been modified
+	 * by something other than this record keeper.
+	 */
+	protected void clearLatestChanges()
+	{
+		synchronized(theLatestChangeLock)
+		{
+			theLatestChangeMods++;
+			theLatestChanges = null;
+		}
+	}
+
 	public void setLatestChange(int centerID, int subjectCenter, long time)
 		throws PrismsRecordException
 	{
+		if(getLatestChange(centerID, subjectCenter) >= time)
+			return;
 		Statement stmt = null;
 		ResultSet rs = null;
 		String sql = null;
@@ -1589,9 +1656,10 @@ public class DBRecordKeeper implements RecordKeeper
 					+ ", " + formatDate(time) + ")";
 				stmt.execute(sql);
 			}
+			changeWritten(centerID, subjectCenter, time);
 		} catch(SQLException e)
 		{
-			throw new PrismsRecordException("Could not retrieve all center IDs: SQL=" + sql, e);
+			throw new PrismsRecordException("Could not set latest change: SQL=" + sql, e);
 		} finally
 		{
 			if(rs != null)
@@ -1625,39 +1693,36 @@ public class DBRecordKeeper implements RecordKeeper
 
 	public long [] search(Search search, Sorter<ChangeField> sorter) throws PrismsRecordException
 	{
-		String sql = createQuery(search, sorter, false) + " ORDER BY " + getOrder(sorter);
-		Statement stmt = null;
-		ResultSet rs = null;
-		LongList ret = new LongList();
-		try
-		{
-			stmt = theTransactor.getConnection().createStatement();
-			rs = stmt.executeQuery(sql);
-			while(rs.next())
-				ret.add(rs.getLong(1));
-		} catch(SQLException e)
-		{
-			throw new PrismsRecordException("Could not query changes: SQL=" + sql, e);
-		} finally
-		{
-			if(rs != null)
-				try
-				{
-					rs.close();
-				} catch(SQLException e)
-				{
-					throw new PrismsRecordException("Connection error", e);
-				}
-			if(stmt != null)
-				try
-				{
-					stmt.close();
-				} catch(SQLException e)
+		final String sql = createQuery(search, sorter, false) + " ORDER BY " + getOrder(sorter);
+		return (long []) theTransactor.performTransaction(
+			new Transactor.ReadOnlyOperation<PrismsRecordException>()
+			{
+				public Object run(Statement stmt) throws PrismsRecordException
 				{
-					log.error("Connection error", e);
+					ResultSet rs = null;
+					LongList ret = new LongList();
+					try
+					{
+						rs = stmt.executeQuery(sql);
+						while(rs.next())
+							ret.add(rs.getLong(1));
+					} catch(SQLException e)
+					{
+						throw new PrismsRecordException("Could not query changes: SQL=" + sql, e);
+					} finally
+					{
+						if(rs != null)
+							try
+							{
+								rs.close();
+							} catch(SQLException e)
+							{
+								throw new PrismsRecordException("Connection error", e);
+							}
+					}
+					return ret.toArray();
 				}
-		}
-		return ret.toArray();
+			}, "Could not query changes");
 	}
 
 	public PreparedSearch<ChangeField> prepare(Search search, Sorter<ChangeField> sorter)
@@ -1678,9 +1743,25 @@ public class DBRecordKeeper implements RecordKeeper
 		((DBChangeSearch) search).dispose();
 	}
 
-	public ChangeRecord [] getItems(long... ids) throws PrismsRecordException
+	public ChangeRecord [] getItems(final long... ids) throws PrismsRecordException
 	{
-		return getChanges(null, ids);
+		if(ids.length == 0)
+			return new ChangeRecord [0];
+		return (ChangeRecord []) theTransactor.performTransaction(
+			new Transactor.ReadOnlyOperation<PrismsRecordException>()
+			{
+				public Object run(Statement stmt) throws PrismsRecordException
+				{
+					return getChanges(stmt, ids);
+				}
+			}, "Could not get changes");
+	}
+
+	public ItemIterator<ChangeRecord, PrismsRecordException> getItems(LongList ids, int offset,
+		int limit)
+	{
+		return new ChunkedItemIterator<ChangeRecord, PrismsRecordException>(this, ids, offset,
+			limit);
 	}
 
 	public int getSubjectCenter(long changeID) throws PrismsRecordException
@@ -2322,37 +2403,14 @@ public class DBRecordKeeper implements RecordKeeper
 					ret[i] = getChangeError(stmt, i);
 				}
 			}
-			Long [] idObjs = new Long [ids.length];
-			for(int i = 0; i < ids.length; i++)
-				idObjs[i] = Long.valueOf(ids[i]);
-			final ArrayUtils.ArrayAdjuster<ChangeRecord, Long, RuntimeException> [] adjuster;
-			adjuster = new ArrayUtils.ArrayAdjuster [1];
-			adjuster[0] = new ArrayUtils.ArrayAdjuster<ChangeRecord, Long, RuntimeException>(ret,
-				idObjs, new ArrayUtils.DifferenceListener<ChangeRecord, Long>()
-				{
-					public boolean identity(ChangeRecord o1, Long o2)
-					{
-						return o1 != null && o1.id == o2.longValue();
-					}
-
-					public ChangeRecord added(Long o, int idx, int retIdx)
-					{
-						adjuster[0].nullElement();
-						return null;
-					}
-
-					public ChangeRecord removed(ChangeRecord o, int idx, int incMod, int retIdx)
-					{
-						return o;
-					}
-
-					public ChangeRecord set(ChangeRecord o1, int idx1, int incMod, Long o2,
-						int idx2, int retIdx)
-					{
-						return o1;
-					}
-				});
-			return adjuster[0].adjust();
+			// Put the items in the order of the IDs given
+			LongIndexMap idIndexes = new LongIndexMap(ids);
+			ChangeRecord [] ordered = new ChangeRecord [ids.length];
+			for(ChangeRecord item : ret)
+				if(item != null)
+					for(int i = idIndexes.indexOf(item.id); i >= 0; i = idIndexes.nextIndexOf(i))
+						ordered[i] = item;
+			return ordered;
 		} finally
 		{
 			try
@@ -2780,24 +2838,109 @@ public class DBRecordKeeper implements RecordKeeper
 
 	public void persist(ChangeRecord record) throws PrismsRecordException
 	{
+		persist(new ChangeRecord [] {record});
+	}
+
+	/**
+	 * Writes change records to the database. The records are inserted by pooled operations, so
+	 * inserts from different threads need not wait for each other or for unrelated transactions.
+	 * Purging the history of a deleted item and auto-purging may involve the record persister, so
+	 * these are done on the transactor's own connection between the inserts.
+	 */
+	public void persist(final ChangeRecord... records) throws PrismsRecordException
+	{
+		if(records.length == 0)
+			return;
+		final boolean [] inserted = new boolean [1];
+		int start = 0;
+		boolean checkFirst = true;
+		while(start < records.length)
+		{
+			final int from = start;
+			final boolean checkFrom = checkFirst;
+			int candidate = ((Integer) theTransactor.performTransaction(
+				new Transactor.PooledOperation<PrismsRecordException>()
+				{
+					public Object run(Statement stmt) throws PrismsRecordException
+					{
+						return Integer.valueOf(insertChanges(records, from, checkFrom, stmt, inserted));
+					}
+				}, "Could not persist changes")).intValue();
+			if(candidate == records.length)
+				break;
+			// Everything before the candidate has been written, so its history check can see it
+			if(purgeUnseenHistory(records[candidate]))
+			{
+				start = candidate + 1;
+				checkFirst = true;
+			}
+			else
+			{
+				start = candidate;
+				checkFirst = false;
+			}
+		}
+		if(!inserted[0])
+			return;
+		if(theAutoPurger == null)
+			getAutoPurger();
 		Statement stmt = null;
+		try
+		{
+			stmt = theTransactor.getConnection().createStatement();
+			theAutoPurger.doPurge(this, stmt, theTransactor.getTablePrefix()
+				+ "prisms_change_record", "changeTime", "changeUser", "subjectType", "changeType",
+				"additivity");
+		} catch(SQLException e)
+		{
+			throw new PrismsRecordException("Could not create statement", e);
+		} finally
+		{
+			if(stmt != null)
+				try
+				{
+					stmt.close();
+				} catch(SQLException e)
+				{
+					log.error("Connection error", e);
+				}
+		}
+	}
+
+	/**
+	 * Inserts change records that are not already in the database, stopping at the first record
+	 * that may need its history purged
+	 * 
+	 * @param records The records to insert
+	 * @param from The index of the first record to insert
+	 * @param checkFrom Whether to check the first record for purging
+	 * @param stmt The statement to query and insert with
+	 * @param inserted A single-element array whose element is set to true if any record is
+	 *        inserted
+	 * @return The index of the record that may need its history purged, or the number of records
+	 *         if every record from the given index was inserted or already present
+	 * @throws PrismsRecordException If the records cannot be inserted
+	 */
+	int insertChanges(ChangeRecord [] records, int from, boolean checkFrom, Statement stmt,
+		boolean [] inserted) throws PrismsRecordException
+	{
 		ResultSet rs = null;
 		String sql = null;
+		ChangeRecord record = null;
 		try
 		{
+			java.util.HashSet<Long> existing = new java.util.HashSet<Long>();
+			long [] ids = new long [records.length - from];
+			for(int i = 0; i < ids.length; i++)
+				ids[i] = records[from + i].id;
+			sql = "SELECT id FROM " + theTransactor.getTablePrefix()
+				+ "prisms_change_record WHERE recordNS=" + toSQL(theNamespace) + " AND "
+				+ prisms.util.DBUtils.simplifyKeySet(ids, 200).toSQL("id");
 			try
 			{
-				stmt = theTransactor.getConnection().createStatement();
-				sql = "SELECT id FROM " + theTransactor.getTablePrefix()
-					+ "prisms_change_record WHERE recordNS=" + toSQL(theNamespace) + " AND id="
-					+ record.id;
 				rs = stmt.executeQuery(sql);
-				if(rs.next())
-				{ // modification already exists
-					rs.close();
-					rs = null;
-					return;
-				}
+				while(rs.next())
+					existing.add(Long.valueOf(rs.getLong(1)));
 			} finally
 			{
 				if(rs != null)
@@ -2809,204 +2952,341 @@ public class DBRecordKeeper implements RecordKeeper
 						log.error("Connection error", e);
 					}
 			}
-			if(!hasAbsoluteIntegrity
-				&& record.type.additivity < 0
-				&& record.type.changeType == null
-				&& prisms.arch.ds.IDGenerator.getCenterID(record.id) == theIDs.getCenterID()
-				&& prisms.arch.ds.IDGenerator.getCenterID(getDataID(record.majorSubject)) == theIDs
-					.getCenterID())
+			sql = null;
+			java.util.ArrayList<ChangeRecord> batch = new java.util.ArrayList<ChangeRecord>();
+			for(int i = from; i < records.length; i++)
+			{
+				record = records[i];
+				if(!existing.add(Long.valueOf(record.id)))
+					continue; // modification already exists or is repeated in this batch
+				if((i > from || checkFrom) && isPurgeCandidate(record))
+				{
+					/* The history check needs to see every change before this one, so anything
+					 * batched so far must be written first */
+					insertBatch(batch, stmt);
+					return i;
+				}
+				batch.add(record);
+				inserted[0] = true;
+			}
+			record = null;
+			insertBatch(batch, stmt);
+			return records.length;
+		} catch(SQLException e)
+		{
+			if(record != null)
+				throw new PrismsRecordException("Could not persist " + record.type.subjectType
+					+ " change: SQL=" + sql, e);
+			else
+				throw new PrismsRecordException("Could not persist " + records.length
+					+ " changes: SQL=" + sql, e);
+		}
+	}
+
+	/**
+	 * @param record The change record to be persisted
+	 * @return Whether the record is a local deletion whose item may have been created and deleted
+	 *         before any other center saw it
+	 * @throws PrismsRecordException If the record's subject cannot be identified
+	 */
+	private boolean isPurgeCandidate(ChangeRecord record) throws PrismsRecordException
+	{
+		return !hasAbsoluteIntegrity
+			&& record.type.additivity < 0
+			&& record.type.changeType == null
+			&& prisms.arch.ds.IDGenerator.getCenterID(record.id) == theIDs.getCenterID()
+			&& prisms.arch.ds.IDGenerator.getCenterID(getDataID(record.majorSubject)) == theIDs
+				.getCenterID();
+	}
+
+	/**
+	 * Purges the history of a local item that was created and deleted before any other center
+	 * synchronized with this one
+	 * 
+	 * @param record The deletion record of the item
+	 * @return Whether the history was purged, in which case the deletion need not be persisted
+	 * @throws PrismsRecordException If an error occurs retrieving the history
+	 */
+	private boolean purgeUnseenHistory(ChangeRecord record) throws PrismsRecordException
+	{
+		Statement stmt = null;
+		try
+		{
+			stmt = theTransactor.getConnection().createStatement();
+			return purgeUnseenHistory(record, stmt);
+		} catch(SQLException e)
+		{
+			throw new PrismsRecordException("Could not create statement", e);
+		} finally
+		{
+			if(stmt != null)
+				try
+				{
+					stmt.close();
+				} catch(SQLException e)
+				{
+					log.error("Connection error", e);
+				}
+		}
+	}
+
+	private boolean purgeUnseenHistory(ChangeRecord record, Statement stmt)
+		throws PrismsRecordException
+	{
+		ResultSet rs = null;
+		String sql;
+		/* If the item was created and deleted before anybody else saw it, it's safe to
+		 * purge the item and spare the DB the extra entries. */
+		Search search = getHistorySearch(record.majorSubject);
+		Sorter<ChangeField> sorter = new Sorter<ChangeField>();
+		sorter.addSort(ChangeField.CHANGE_TIME, true);
+		long [] historyIDs = search(search, sorter);
+		ChangeRecord [] history = getItems(historyIDs);
+		if(history.length > 0
+			&& history[0].type.additivity > 0
+			&& history[0].type.changeType == null
+			&& prisms.arch.ds.IDGenerator.getCenterID(history[0].id) == theIDs
+				.getCenterID())
+		{
+			long maxTime;
+			sql = "SELECT MAX(syncTime) FROM " + theTransactor.getTablePrefix()
+				+ "prisms_sync_record WHERE recordNS=" + toSQL(theNamespace)
+				+ " AND isImport=" + boolToSql(false);
+			try
+			{
+				rs = stmt.executeQuery(sql);
+				if(!rs.next())
+					maxTime = 0;
+				else
+				{
+					java.sql.Timestamp time = rs.getTimestamp(1);
+					if(time == null)
+						maxTime = 0;
+					else
+						maxTime = time.getTime();
+				}
+			} catch(SQLException e)
+			{
+				log.error("Could not query sync records", e);
+				maxTime = -1;
+			} finally
 			{
-				/* If the item was created and deleted before anybody else saw it, it's safe to
-				 * purge the item and spare the DB the extra entries. */
-				Search search = getHistorySearch(record.majorSubject);
-				Sorter<ChangeField> sorter = new Sorter<ChangeField>();
-				sorter.addSort(ChangeField.CHANGE_TIME, true);
-				long [] historyIDs = search(search, sorter);
-				ChangeRecord [] history = getItems(historyIDs);
-				if(history.length > 0
-					&& history[0].type.additivity > 0
-					&& history[0].type.changeType == null
-					&& prisms.arch.ds.IDGenerator.getCenterID(history[0].id) == theIDs
-						.getCenterID())
-				{
-					long maxTime;
-					sql = "SELECT MAX(syncTime) FROM " + theTransactor.getTablePrefix()
-						+ "prisms_sync_record WHERE recordNS=" + toSQL(theNamespace)
-						+ " AND isImport=" + boolToSql(false);
+				if(rs != null)
 					try
 					{
-						rs = stmt.executeQuery(sql);
-						if(!rs.next())
-							maxTime = 0;
-						else
-						{
-							java.sql.Timestamp time = rs.getTimestamp(1);
-							if(time == null)
-								maxTime = 0;
-							else
-								maxTime = time.getTime();
-						}
+						rs.close();
 					} catch(SQLException e)
 					{
-						log.error("Could not query sync records", e);
-						maxTime = -1;
-					} finally
-					{
-						if(rs != null)
-							try
-							{
-								rs.close();
-							} catch(SQLException e)
-							{
-								log.error("Connection error", e);
-							}
-					}
-					if(maxTime >= 0 && maxTime < history[0].time)
-					{
-						for(ChangeRecord h : history)
-							purge(h, stmt, false);
-						return;
+						log.error("Connection error", e);
 					}
-				}
 			}
-			sql = null;
+			if(maxTime >= 0 && maxTime < history[0].time)
+			{
+				for(ChangeRecord h : history)
+					purge(h, stmt, false);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Writes a set of change records to the database with a single batch of an insert statement
+	 * prepared on the given statement's connection
+	 * 
+	 * @param batch The records to insert. This list will be empty when this method returns.
+	 * @param stmt The statement whose connection to insert the records with
+	 * @throws PrismsRecordException If a record cannot be serialized
+	 * @throws SQLException If the insert fails
+	 */
+	private void insertBatch(java.util.List<ChangeRecord> batch, Statement stmt)
+		throws PrismsRecordException, SQLException
+	{
+		if(batch.isEmpty())
+			return;
+		java.sql.Connection conn = stmt.getConnection();
+		if(conn == theTransactor.getConnection())
+		{
+			// The prepared inserter on the transactor's own connection is shared
 			synchronized(this)
 			{
-				java.sql.PreparedStatement pStmt = theChangeInserter;
-				pStmt.clearParameters();
-				pStmt.setLong(1, record.id);
-				pStmt.setString(2, boolToSqlP(record.localOnly));
-				pStmt.setTimestamp(3, getUtcTimestamp(record.time));
-				pStmt.setLong(4, record.user.getID());
+				insertBatch(batch, theChangeInserter);
+			}
+			return;
+		}
+		java.sql.PreparedStatement pStmt = conn.prepareStatement(getInsertSQL());
+		try
+		{
+			insertBatch(batch, pStmt);
+		} finally
+		{
+			try
+			{
+				pStmt.close();
+			} catch(SQLException e)
+			{
+				log.error("Connection error", e);
+			}
+		}
+	}
+
+	private void insertBatch(java.util.List<ChangeRecord> batch, java.sql.PreparedStatement pStmt)
+		throws PrismsRecordException, SQLException
+	{
+		try
+		{
+			if(batch.size() == 1)
+			{
+				setInsertParams(pStmt, batch.get(0));
+				pStmt.execute();
+			}
+			else
+			{
+				for(ChangeRecord record : batch)
+				{
+					setInsertParams(pStmt, record);
+					pStmt.addBatch();
+				}
+				pStmt.executeBatch();
+			}
+			for(ChangeRecord record : batch)
+			{
+				int subjectCenter;
 				if(record instanceof ChangeRecordError)
+					subjectCenter = RecordUtils.getCenterID(((ChangeRecordError) record)
+						.getMajorSubjectID());
+				else
+					subjectCenter = getSubjectCenter(record.majorSubject);
+				changeWritten(RecordUtils.getCenterID(record.id), subjectCenter, record.time);
+			}
+		} finally
+		{
+			batch.clear();
+			try
+			{
+				pStmt.clearBatch();
+				pStmt.clearParameters();
+			} catch(SQLException e)
+			{
+				log.error("Connection error", e);
+			}
+		}
+	}
+
+	private void setInsertParams(java.sql.PreparedStatement pStmt, ChangeRecord record)
+		throws PrismsRecordException, SQLException
+	{
+		pStmt.clearParameters();
+		pStmt.setLong(1, record.id);
+		pStmt.setString(2, boolToSqlP(record.localOnly));
+		pStmt.setTimestamp(3, getUtcTimestamp(record.time));
+		pStmt.setLong(4, record.user.getID());
+		if(record instanceof ChangeRecordError)
+		{
+			ChangeRecordError error = (ChangeRecordError) record;
+			pStmt.setString(5, error.getSubjectType());
+			if(error.getChangeType() == null)
+				pStmt.setNull(6, java.sql.Types.VARCHAR);
+			else
+				pStmt.setString(6, error.getChangeType());
+			pStmt.setString(7, error.getAdditivity() < 0 ? "-" : (error.getAdditivity() > 0
+				? "+" : "0"));
+			pStmt.setInt(8, RecordUtils.getCenterID(error.getMajorSubjectID()));
+			pStmt.setLong(9, error.getMajorSubjectID());
+			if(error.getMinorSubjectID() >= 0)
+				pStmt.setLong(10, error.getMinorSubjectID());
+			else
+				pStmt.setNull(10, java.sql.Types.NUMERIC);
+			if(error.getSerializedPreValue() instanceof Number)
+			{
+				pStmt.setLong(11, ((Number) error.getSerializedPreValue()).longValue());
+				pStmt.setNull(12, java.sql.Types.VARCHAR);
+				pStmt.setNull(13, java.sql.Types.CLOB);
+			}
+			else if(error.getSerializedPreValue() != null)
+			{
+				pStmt.setNull(11, java.sql.Types.NUMERIC);
+				String serialized = (String) error.getSerializedPreValue();
+				if(serialized.length() <= 100)
 				{
-					ChangeRecordError error = (ChangeRecordError) record;
-					pStmt.setString(5, error.getSubjectType());
-					if(error.getChangeType() == null)
-						pStmt.setNull(6, java.sql.Types.VARCHAR);
-					else
-						pStmt.setString(6, error.getChangeType());
-					pStmt.setString(7, error.getAdditivity() < 0 ? "-" : (error.getAdditivity() > 0
-						? "+" : "0"));
-					pStmt.setInt(8, RecordUtils.getCenterID(error.getMajorSubjectID()));
-					pStmt.setLong(9, error.getMajorSubjectID());
-					if(error.getMinorSubjectID() >= 0)
-						pStmt.setLong(10, error.getMinorSubjectID());
-					else
-						pStmt.setNull(10, java.sql.Types.NUMERIC);
-					if(error.getSerializedPreValue() instanceof Number)
-					{
-						pStmt.setLong(11, ((Number) error.getSerializedPreValue()).longValue());
-						pStmt.setNull(12, java.sql.Types.VARCHAR);
-						pStmt.setNull(13, java.sql.Types.CLOB);
-					}
-					else if(error.getSerializedPreValue() != null)
-					{
-						pStmt.setNull(11, java.sql.Types.NUMERIC);
-						String serialized = (String) error.getSerializedPreValue();
-						if(serialized.length() <= 100)
-						{
-							pStmt.setString(12, PrismsUtils.encodeUnicode(serialized));
-							pStmt.setNull(13, java.sql.Types.CLOB);
-						}
-						else
-						{
-							pStmt.setNull(12, java.sql.Types.VARCHAR);
-							pStmt.setCharacterStream(13,
-								new java.io.StringReader(PrismsUtils.encodeUnicode(serialized)),
-								serialized.length());
-						}
-					}
-					else
-					{
-						pStmt.setNull(11, java.sql.Types.NUMERIC);
-						pStmt.setNull(12, java.sql.Types.VARCHAR);
-						pStmt.setNull(13, java.sql.Types.CLOB);
-					}
-					if(error.getData1ID() >= 0)
-						pStmt.setLong(14, error.getData1ID());
-					else
-						pStmt.setNull(14, java.sql.Types.NUMERIC);
-					if(error.getData2ID() >= 0)
-						pStmt.setLong(15, error.getData2ID());
-					else
-						pStmt.setNull(15, java.sql.Types.NUMERIC);
+					pStmt.setString(12, PrismsUtils.encodeUnicode(serialized));
+					pStmt.setNull(13, java.sql.Types.CLOB);
 				}
 				else
 				{
-					pStmt.setString(5, record.type.subjectType.name());
-					if(record.type.changeType == null)
-						pStmt.setNull(6, java.sql.Types.VARCHAR);
-					else
-						pStmt.setString(6, record.type.changeType.name());
-					pStmt.setString(7, record.type.additivity < 0 ? "-"
-						: (record.type.additivity > 0 ? "+" : "0"));
-					pStmt.setInt(8, getSubjectCenter(record.majorSubject));
-					pStmt.setLong(9, getDataID(record.majorSubject));
-					if(record.minorSubject == null)
-						pStmt.setNull(10, java.sql.Types.NUMERIC);
-					else
-						pStmt.setLong(10, getDataID(record.minorSubject));
-					if(record.previousValue == null)
-					{
-						pStmt.setNull(11, java.sql.Types.NUMERIC);
-						pStmt.setNull(12, java.sql.Types.VARCHAR);
-						pStmt.setNull(13, java.sql.Types.CLOB);
-					}
-					else if(record.type.changeType.isObjectIdentifiable())
-					{
-						pStmt.setLong(11, getDataID(record.previousValue));
-						pStmt.setNull(12, java.sql.Types.VARCHAR);
-						pStmt.setNull(13, java.sql.Types.CLOB);
-					}
-					else
-					{
-						pStmt.setNull(11, java.sql.Types.NUMERIC);
-						String serialized = serializePreValue(record);
-						if(serialized.length() <= 100)
-						{
-							pStmt.setString(12, PrismsUtils.encodeUnicode(serialized));
-							pStmt.setNull(13, java.sql.Types.CLOB);
-						}
-						else
-						{
-							pStmt.setNull(12, java.sql.Types.VARCHAR);
-							pStmt.setCharacterStream(13,
-								new java.io.StringReader(PrismsUtils.encodeUnicode(serialized)),
-								serialized.length());
-						}
-					}
-					if(record.data1 == null)
-						pStmt.setNull(14, java.sql.Types.NUMERIC);
-					else
-						pStmt.setLong(14, getDataID(record.data1));
-					if(record.data2 == null)
-						pStmt.setNull(15, java.sql.Types.NUMERIC);
-					else
-						pStmt.setLong(15, getDataID(record.data2));
+					pStmt.setNull(12, java.sql.Types.VARCHAR);
+					pStmt.setCharacterStream(13,
+						new java.io.StringReader(PrismsUtils.encodeUnicode(serialized)),
+						serialized.length());
 				}
-				pStmt.execute();
-				pStmt.clearParameters();
 			}
-			if(theAutoPurger == null)
-				getAutoPurger();
-			theAutoPurger.doPurge(this, stmt, theTransactor.getTablePrefix()
-				+ "prisms_change_record", "changeTime", "changeUser", "subjectType", "changeType",
-				"additivity");
-		} catch(SQLException e)
-		{
-			throw new PrismsRecordException("Could not persist " + record.type.subjectType
-				+ " change: SQL=" + sql, e);
-		} finally
+			else
+			{
+				pStmt.setNull(11, java.sql.Types.NUMERIC);
+				pStmt.setNull(12, java.sql.Types.VARCHAR);
+				pStmt.setNull(13, java.sql.Types.CLOB);
+			}
+			if(error.getData1ID() >= 0)
+				pStmt.setLong(14, error.getData1ID());
+			else
+				pStmt.setNull(14, java.sql.Types.NUMERIC);
+			if(error.getData2ID() >= 0)
+				pStmt.setLong(15, error.getData2ID());
+			else
+				pStmt.setNull(15, java.sql.Types.NUMERIC);
+		}
+		else
 		{
-			if(stmt != null)
-				try
+			pStmt.setString(5, record.type.subjectType.name());
+			if(record.type.changeType == null)
+				pStmt.setNull(6, java.sql.Types.VARCHAR);
+			else
+				pStmt.setString(6, record.type.changeType.name());
+			pStmt.setString(7, record.type.additivity < 0 ? "-"
+				: (record.type.additivity > 0 ? "+" : "0"));
+			pStmt.setInt(8, getSubjectCenter(record.majorSubject));
+			pStmt.setLong(9, getDataID(record.majorSubject));
+			if(record.minorSubject == null)
+				pStmt.setNull(10, java.sql.Types.NUMERIC);
+			else
+				pStmt.setLong(10, getDataID(record.minorSubject));
+			if(record.previousValue == null)
+			{
+				pStmt.setNull(11, java.sql.Types.NUMERIC);
+				pStmt.setNull(12, java.sql.Types.VARCHAR);
+				pStmt.setNull(13, java.sql.Types.CLOB);
+			}
+			else if(record.type.changeType.isObjectIdentifiable())
+			{
+				pStmt.setLong(11, getDataID(record.previousValue));
+				pStmt.setNull(12, java.sql.Types.VARCHAR);
+				pStmt.setNull(13, java.sql.Types.CLOB);
+			}
+			else
+			{
+				pStmt.setNull(11, java.sql.Types.NUMERIC);
+				String serialized = serializePreValue(record);
+				if(serialized.length() <= 100)
 				{
-					stmt.close();
-				} catch(SQLException e)
+					pStmt.setString(12, PrismsUtils.encodeUnicode(serialized));
+					pStmt.setNull(13, java.sql.Types.CLOB);
+				}
+				else
 				{
-					log.error("Connection error", e);
+					pStmt.setNull(12, java.sql.Types.VARCHAR);
+					pStmt.setCharacterStream(13,
+						new java.io.StringReader(PrismsUtils.encodeUnicode(serialized)),
+						serialized.length());
 				}
+			}
+			if(record.data1 == null)
+				pStmt.setNull(14, java.sql.Types.NUMERIC);
+			else
+				pStmt.setLong(14, getDataID(record.data1));
+			if(record.data2 == null)
+				pStmt.setNull(15, java.sql.Types.NUMERIC);
+			else
+				pStmt.setLong(15, getDataID(record.data2));
 		}
 	}
 
@@ -3167,6 +3447,8 @@ public class DBRecordKeeper implements RecordKeeper
 				}
 			}
 			dbDeleteMod(record, stmt);
+			if(!withPurgeRecord)
+				clearLatestChanges();
 			checkForExpiredData(record, stmt);
 		} catch(SQLException e)
 		{
@@ -3709,14 +3991,19 @@ public class DBRecordKeeper implements RecordKeeper
 		return o1 == null ? o2 == null : o1.equals(o2);
 	}
 
-	private void prepareStatements() throws PrismsRecordException
+	private String getInsertSQL()
 	{
-		String sql = "INSERT INTO " + theTransactor.getTablePrefix()
+		return "INSERT INTO " + theTransactor.getTablePrefix()
 			+ "prisms_change_record (recordNS, id, localOnly, changeTime,"
 			+ " changeUser, subjectType, changeType, additivity, subjectCenter, majorSubject,"
 			+ " minorSubject, preValueID, shortPreValue, longPreValue, changeData1,"
 			+ " changeData2) VALUES (" + toSQL(theNamespace)
 			+ ", ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+	}
+
+	private void prepareStatements() throws PrismsRecordException
+	{
+		String sql = getInsertSQL();
 		try
 		{
 			theChangeInserter = theTransactor.getConnection().prepareStatement(sql);
@@ -3732,6 +4019,7 @@ public class DBRecordKeeper implements RecordKeeper
 	/** Called whenever this keeper's connection is connected or re-connected. For subclasses. */
 	protected void connectionUpdated()
 	{
+		clearLatestChanges();
 		try
 		{
 			prepareStatements();
@@ -0,0 +1,36 @@
+/*
+ * LoopbackChangeFeed.java Created Oct 16, 2026 by Andrew Butler, PSL
+ */
+package prisms.records;
+
+/**
+ * A change feed that delivers published changes to its listeners in the same JVM, on the thread
+ * that publishes them. Useful for testing scaled record keepers and for several record keepers in
+ * one server that share a database.
+ */
+public class LoopbackChangeFeed implements ChangeFeed
+{
+	private final java.util.concurrent.CopyOnWriteArrayList<Listener> theListeners;
+
+	/** Creates a loopback feed */
+	public LoopbackChangeFeed()
+	{
+		theListeners = new java.util.concurrent.CopyOnWriteArrayList<Listener>();
+	}
+
+	public void publish(String namespace, long [] changeIDs)
+	{
+		for(Listener listener : theListeners)
+			listener.changesPublished(namespace, changeIDs.clone());
+	}
+
+	public void addListener(Listener listener)
+	{
+		theListeners.addIfAbsent(listener);
+	}
+
+	public boolean removeListener(Listener listener)
+	{
+		return theListeners.remove(listener);
+	}
+}
@@ -961,6 +961,27 @@ public class MemoryRecordKeeper implements RecordKeeper
 		return purged == null ? -1 : purged.longValue();
 	}
 
+	public LatestCenterChange [] getLatestChanges()
+	{
+		java.util.HashMap<DualKey<Integer, Integer>, Long> latest;
+		latest = new java.util.HashMap<DualKey<Integer, Integer>, Long>(theRecentPurges);
+		for(ChangeRecord change : theChanges)
+		{
+			DualKey<Integer, Integer> key = new DualKey<Integer, Integer>(
+				Integer.valueOf(RecordUtils.getCenterID(change.id)),
+				Integer.valueOf(getSubjectCenter(change)));
+			Long time = latest.get(key);
+			if(time == null || time.longValue() < change.time)
+				latest.put(key, Long.valueOf(change.time));
+		}
+		java.util.ArrayList<LatestCenterChange> ret = new java.util.ArrayList<LatestCenterChange>();
+		for(java.util.Map.Entry<DualKey<Integer, Integer>, Long> entry : latest.entrySet())
+			if(entry.getValue().longValue() > 0)
+				ret.add(new LatestCenterChange(entry.getKey().getKey1().intValue(), entry.getKey()
+					.getKey2().intValue(), entry.getValue().longValue()));
+		return ret.toArray(new LatestCenterChange [ret.size()]);
+	}
+
 	public int getSubjectCenter(long changeID)
 	{
 		for(ChangeRecord change : theChanges)
@@ -999,35 +1020,19 @@ public class MemoryRecordKeeper implements RecordKeeper
 
 	public ChangeRecord [] getItems(long... ids) throws PrismsRecordException
 	{
-		LongList idList = new LongList(ids);
-		java.util.ArrayList<ChangeRecord> ret = new java.util.ArrayList<ChangeRecord>();
+		LongIndexMap idIndexes = new LongIndexMap(ids);
+		ChangeRecord [] ret = new ChangeRecord [ids.length];
 		for(ChangeRecord change : theChanges)
-			if(idList.contains(change.id))
-				ret.add(change);
-		return ArrayUtils.adjust(ret.toArray(new ChangeRecord [ret.size()]),
-			idList.toObjectArray(), new ArrayUtils.DifferenceListener<ChangeRecord, Long>()
-			{
-				public boolean identity(ChangeRecord o1, Long o2)
-				{
-					return o1.id == o2.longValue();
-				}
-
-				public ChangeRecord added(Long o, int mIdx, int retIdx)
-				{
-					return null;
-				}
-
-				public ChangeRecord removed(ChangeRecord o, int oIdx, int incMod, int retIdx)
-				{
-					return null;
-				}
+			for(int i = idIndexes.indexOf(change.id); i >= 0; i = idIndexes.nextIndexOf(i))
+				ret[i] = change;
+		return ret;
+	}
 
-				public ChangeRecord set(ChangeRecord o1, int idx1, int incMod, Long o2, int idx2,
-					int retIdx)
-				{
-					return o1;
-				}
-			});
+	public ItemIterator<ChangeRecord, PrismsRecordException> getItems(LongList ids, int offset,
+		int limit)
+	{
+		return new ChunkedItemIterator<ChangeRecord, PrismsRecordException>(this, ids, offset,
+			limit);
 	}
 
 	public Search getHistorySearch(Object historyItem) throws PrismsRecordException
@@ -1342,6 +1347,12 @@ public class MemoryRecordKeeper implements RecordKeeper
 		}
 	}
 
+	public void persist(ChangeRecord... records) throws PrismsRecordException
+	{
+		for(ChangeRecord record : records)
+			persist(record);
+	}
+
 	public long getLatestPurgedChange(int centerID, int subjectCenter) throws PrismsRecordException
 	{
 		Long ret = theRecentPurges.get(new DualKey<Integer, Integer>(Integer.valueOf(centerID),
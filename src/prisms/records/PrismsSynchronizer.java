@@ -1793,9 +1793,16 @@ public class PrismsSynchronizer
 		}
 	}
 
-	/** Reads changes from a synchronization stream */
+	/**
+	 * Reads changes from a synchronization stream. Imported changes are persisted in batches, so
+	 * code that feeds changes to {@link #readChange(JSONObject)} directly must call
+	 * {@link #flush()} when it is done.
+	 */
 	public static class ChangeReader extends prisms.util.json.SAJParser.DefaultHandler
 	{
+		/** The number of imported changes to persist in a single batch */
+		public static final int PERSIST_BATCH_SIZE = 100;
+
 		private final SyncTransaction theTrans;
 
 		private final Reader theReader;
@@ -1806,6 +1813,12 @@ public class PrismsSynchronizer
 
 		private int theChangeCount;
 
+		private final java.util.ArrayList<ChangeRecord> thePendingPersists;
+
+		private final java.util.ArrayList<ChangeRecord> thePendingAssocs;
+
+		private final java.util.ArrayList<Boolean> thePendingErrors;
+
 		/**
 		 * @param trans The sync transaction to use to read the synchronization data
 		 * @param reader The reader to read the data from
@@ -1821,11 +1834,20 @@ public class PrismsSynchronizer
 			theGetter = getter;
 			theTotalChangeCount = totalChangeCount;
 			theTrans.getPI().setProgressScale(totalChangeCount);
+			thePendingPersists = new java.util.ArrayList<ChangeRecord>();
+			thePendingAssocs = new java.util.ArrayList<ChangeRecord>();
+			thePendingErrors = new java.util.ArrayList<Boolean>();
 		}
 
 		int parse() throws java.io.IOException, prisms.util.json.SAJParser.ParseException
 		{
-			new prisms.util.json.SAJParser().parse(theReader, this);
+			try
+			{
+				new prisms.util.json.SAJParser().parse(theReader, this);
+			} finally
+			{
+				flush();
+			}
 			return theChangeCount;
 		}
 
@@ -1905,15 +1927,69 @@ public class PrismsSynchronizer
 				log.error("Could not perform change " + change.id, e);
 				error = true;
 			}
+			if(store)
+				thePendingPersists.add(change);
+			if(theTrans.shouldStoreSyncRecord())
+			{
+				thePendingAssocs.add(change);
+				thePendingErrors.add(Boolean.valueOf(error));
+			}
+			if(thePendingPersists.size() >= PERSIST_BATCH_SIZE
+				|| thePendingAssocs.size() >= PERSIST_BATCH_SIZE)
+				flush();
+		}
+
+		/**
+		 * Persists all changes read by this reader that have not yet been written to the record
+		 * keeper and associates them with the synchronization record. If the changes cannot be
+		 * persisted as a batch, they are persisted one at a time so that one bad change does not
+		 * keep the others, which have already been applied, from being recorded.
+		 */
+		public void flush()
+		{
+			RecordKeeper keeper = theTrans.getSync().getKeeper();
 			try
 			{
-				if(store)
-					keeper.persist(change);
-				if(theTrans.shouldStoreSyncRecord())
-					keeper.associate(change, theTrans.getSyncRecord(), error);
-			} catch(PrismsRecordException e2)
+				if(!thePendingPersists.isEmpty())
+				{
+					try
+					{
+						keeper.persist(thePendingPersists.toArray(new ChangeRecord [thePendingPersists
+							.size()]));
+					} catch(PrismsRecordException e)
+					{
+						log.warn("Could not persist " + thePendingPersists.size()
+							+ " changes as a batch--persisting individually", e);
+						for(ChangeRecord change : thePendingPersists)
+						{
+							try
+							{
+								if(!keeper.hasChange(change.id))
+									keeper.persist(change);
+							} catch(PrismsRecordException e2)
+							{
+								log.error("Could not persist change " + change.id, e2);
+							}
+						}
+					}
+				}
+				for(int i = 0; i < thePendingAssocs.size(); i++)
+				{
+					ChangeRecord change = thePendingAssocs.get(i);
+					try
+					{
+						keeper.associate(change, theTrans.getSyncRecord(), thePendingErrors.get(i)
+							.booleanValue());
+					} catch(PrismsRecordException e)
+					{
+						log.error("Could not associate change " + change.id, e);
+					}
+				}
+			} finally
 			{
-				log.error("Could not persist change " + change.id, e2);
+				thePendingPersists.clear();
+				thePendingAssocs.clear();
+				thePendingErrors.clear();
 			}
 		}
 	}
@@ -2860,29 +2936,17 @@ public class PrismsSynchronizer
 	SyncOutput getSyncOutput(SyncTransaction trans, final SyncRequest request,
 		boolean exclusiveForSubjects) throws PrismsRecordException
 	{
-		final int [] centerIDs = theKeeper.getAllCenterIDs();
-		LatestCenterChange [] localChanges;
+		LatestCenterChange [] localChanges = theKeeper.getLatestChanges();
+		if(exclusiveForSubjects)
 		{
+			prisms.util.IntList subjects = new prisms.util.IntList();
+			for(LatestCenterChange lcc : request.getLatestChanges())
+				if(!subjects.contains(lcc.getSubjectCenter()))
+					subjects.add(lcc.getSubjectCenter());
 			java.util.ArrayList<LatestCenterChange> ret = new java.util.ArrayList<LatestCenterChange>();
-			for(int centerID : centerIDs)
-				for(int subjectCenter : centerIDs)
-				{
-					if(exclusiveForSubjects)
-					{
-						boolean hit = false;
-						for(LatestCenterChange lcc : request.getLatestChanges())
-							if(lcc.getSubjectCenter() == subjectCenter)
-							{
-								hit = true;
-								break;
-							}
-						if(!hit)
-							continue;
-					}
-					long lastChange = theKeeper.getLatestChange(centerID, subjectCenter);
-					if(lastChange > 0)
-						ret.add(new LatestCenterChange(centerID, subjectCenter, lastChange));
-				}
+			for(LatestCenterChange lcc : localChanges)
+				if(subjects.contains(lcc.getSubjectCenter()))
+					ret.add(lcc);
 			localChanges = ret.toArray(new LatestCenterChange [ret.size()]);
 		}
 
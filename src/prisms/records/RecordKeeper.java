@@ -88,6 +88,17 @@ public interface RecordKeeper extends
 	 */
 	long getLatestChange(int centerID, int subjectCenter) throws PrismsRecordException;
 
+	/**
+	 * Gets the latest change time for every center/subject center pair at once. The result is
+	 * equivalent to calling {@link #getLatestChange(int, int)} for each pair of IDs from
+	 * {@link #getAllCenterIDs()} and keeping the pairs with a positive time, but is typically much
+	 * cheaper.
+	 * 
+	 * @return The latest change for each center/subject center pair that has one
+	 * @throws PrismsRecordException If an error occurs retrieving the data
+	 */
+	LatestCenterChange [] getLatestChanges() throws PrismsRecordException;
+
 	/**
 	 * Gets the synchronization records for a center
 	 * 
@@ -197,6 +208,16 @@ public interface RecordKeeper extends
 	 */
 	void persist(ChangeRecord record) throws PrismsRecordException;
 
+	/**
+	 * Persists a set of changes that already have assigned IDs. This has the same effect as calling
+	 * {@link #persist(ChangeRecord)} for each record in order, but allows the implementation to
+	 * write the changes more efficiently.
+	 * 
+	 * @param records The records of the changes
+	 * @throws PrismsRecordException If an error occurs setting the data
+	 */
+	void persist(ChangeRecord... records) throws PrismsRecordException;
+
 	/**
 	 * Associates a change with a synchronization record. For use when the change is already in the
 	 * database when the synchronization attempt occurs.
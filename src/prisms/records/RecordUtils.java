@@ -711,24 +711,16 @@ public class RecordUtils
 		prisms.util.json.JsonSerialWriter jsw) throws PrismsRecordException, java.io.IOException
 	{
 		jsw.startArray();
-		int [] centerIDs = keeper.getAllCenterIDs();
-		for(int centerID : centerIDs)
+		for(LatestCenterChange change : keeper.getLatestChanges())
 		{
-			for(int subjectCenter : centerIDs)
-			{
-				long lastChange = keeper.getLatestChange(centerID, subjectCenter);
-				if(lastChange > 0)
-				{
-					jsw.startObject();
-					jsw.startProperty("centerID");
-					jsw.writeNumber(Integer.valueOf(centerID));
-					jsw.startProperty("subjectCenter");
-					jsw.writeNumber(Integer.valueOf(subjectCenter));
-					jsw.startProperty("latestChange");
-					jsw.writeNumber(Long.valueOf(lastChange));
-					jsw.endObject();
-				}
-			}
+			jsw.startObject();
+			jsw.startProperty("centerID");
+			jsw.writeNumber(Integer.valueOf(change.getCenterID()));
+			jsw.startProperty("subjectCenter");
+			jsw.writeNumber(Integer.valueOf(change.getSubjectCenter()));
+			jsw.startProperty("latestChange");
+			jsw.writeNumber(Long.valueOf(change.getLatestChange()));
+			jsw.endObject();
 		}
 		jsw.endArray();
 	}
@@ -12,6 +12,13 @@ import prisms.util.Search;
  * written to the database by other instances of this type pointing to the same database. In this
  * way, the memory representations of a data set may be kept consistent across multiple server
  * instances simply by pointing to a common database.
+ * 
+ * <p>
+ * If a {@link ChangeFeed} is set (or configured with a change-feed element in the connection's
+ * configuration), each keeper publishes the IDs of the changes it writes and applies the changes
+ * published by other instances as soon as they arrive. The database is then polled only every
+ * {@link #getFallbackInterval()} millis to catch any notifications that were lost.
+ * </p>
  */
 public class ScaledRecordKeeper extends DBRecordKeeper
 {
@@ -47,6 +54,12 @@ public class ScaledRecordKeeper extends DBRecordKeeper
 	 */
 	public static int SYNC_PURGE_AGE_SECONDS = 5 * 60;
 
+	/** The default value for {@link #getFallbackInterval()} */
+	public static final long DEFAULT_FALLBACK_INTERVAL = 60000;
+
+	/** The default value for {@link #getProcessedWindow()} */
+	public static final long DEFAULT_PROCESSED_WINDOW = 5 * 60 * 1000;
+
 	private ScaleImpl theImpl;
 
 	private ScaledRecordKeeper [] theDepends;
@@ -61,7 +74,19 @@ public class ScaledRecordKeeper extends DBRecordKeeper
 
 	private long theTimeBeforeCheck;
 
-	private prisms.util.LongList theProcessedChanges;
+	private long theFallbackInterval;
+
+	private long theProcessedWindow;
+
+	/** The IDs of changes written or applied by this keeper, with the time they were processed */
+	private java.util.LinkedHashMap<Long, Long> theProcessedChanges;
+
+	private ChangeFeed theFeed;
+
+	/** The feed this keeper obtained from its configuration and must release when disconnected */
+	private SocketChangeFeed theConfiguredFeed;
+
+	private final ChangeFeed.Listener theFeedListener;
 
 	// private long theLastPurge;
 
@@ -74,9 +99,33 @@ public class ScaledRecordKeeper extends DBRecordKeeper
 	{
 		super(namespace, connEl, factory, ids);
 		theCheckInterval = 10000;
-		theProcessedChanges = new prisms.util.LongList();
+		theFallbackInterval = DEFAULT_FALLBACK_INTERVAL;
+		theProcessedWindow = DEFAULT_PROCESSED_WINDOW;
+		theProcessedChanges = new java.util.LinkedHashMap<Long, Long>();
 		theDepends = new ScaledRecordKeeper [0];
 		theTimeBeforeCheck = theLastCheck = System.currentTimeMillis();
+		theFeedListener = new ChangeFeed.Listener()
+		{
+			public void changesPublished(String ns, long [] changeIDs)
+			{
+				if(ns.equals(getNamespace()))
+					applyPublished(changeIDs);
+			}
+		};
+		prisms.arch.PrismsConfig feedConfig = getTransactor().getConnectionConfig().subConfig(
+			"change-feed");
+		if(feedConfig != null)
+		{
+			theFallbackInterval = feedConfig.getTime("fallback-interval", theFallbackInterval);
+			try
+			{
+				theConfiguredFeed = SocketChangeFeed.getFeed(feedConfig);
+				setChangeFeed(theConfiguredFeed);
+			} catch(PrismsRecordException e)
+			{
+				log.error("Could not create change feed--falling back to polling", e);
+			}
+		}
 	}
 
 	@Override
@@ -138,14 +187,85 @@ public class ScaledRecordKeeper extends DBRecordKeeper
 		theCheckInterval = checkInterval;
 	}
 
+	/** @return The feed that this keeper publishes and receives changes on, or null if none is set */
+	public ChangeFeed getChangeFeed()
+	{
+		return theFeed;
+	}
+
+	/** @param feed The feed for this keeper to publish and receive changes on. May be null. */
+	public void setChangeFeed(ChangeFeed feed)
+	{
+		if(theFeed != null)
+			theFeed.removeListener(theFeedListener);
+		theFeed = feed;
+		if(feed != null)
+			feed.addListener(theFeedListener);
+	}
+
+	/**
+	 * @return The frequency at which {@link #checkChanges(boolean)} will actually poll the database
+	 *         when the force parameter is false and a {@link #getChangeFeed() change feed} is set
+	 */
+	public long getFallbackInterval()
+	{
+		return theFallbackInterval;
+	}
+
+	/**
+	 * @param interval The frequency at which {@link #checkChanges(boolean)} will actually poll the
+	 *        database when the force parameter is false and a {@link #getChangeFeed() change feed}
+	 *        is set
+	 */
+	public void setFallbackInterval(long interval)
+	{
+		theFallbackInterval = interval;
+	}
+
+	/**
+	 * @return How long, in milliseconds, this keeper remembers the IDs of changes it has processed
+	 *         after they are out of the range of its database checks. This should be larger than
+	 *         the clock difference between any two servers sharing the database.
+	 */
+	public long getProcessedWindow()
+	{
+		return theProcessedWindow;
+	}
+
+	/**
+	 * @param window How long, in milliseconds, this keeper should remember the IDs of changes it has
+	 *        processed after they are out of the range of its database checks
+	 */
+	public void setProcessedWindow(long window)
+	{
+		theProcessedWindow = window;
+	}
+
 	@Override
-	public void persist(ChangeRecord record) throws PrismsRecordException
+	public void persist(ChangeRecord... records) throws PrismsRecordException
 	{
 		synchronized(this)
 		{
-			theProcessedChanges.add(record.id);
+			Long now = Long.valueOf(System.currentTimeMillis());
+			for(ChangeRecord record : records)
+				theProcessedChanges.put(Long.valueOf(record.id), now);
+		}
+		super.persist(records);
+		final ChangeFeed feed = theFeed;
+		if(feed != null && records.length > 0)
+		{
+			final long [] ids = new long [records.length];
+			for(int i = 0; i < records.length; i++)
+				ids[i] = records[i].id;
+			// Other instances must not be told of the changes until they can read them
+			getTransactor().runAfterCommit(new Runnable()
+			{
+				public void run()
+				{
+					feed.publish(getNamespace(), ids);
+				}
+			});
 		}
-		super.persist(record);
 	}
 
 	// /**
@@ -289,12 +409,13 @@ public class ScaledRecordKeeper extends DBRecordKeeper
 	public boolean checkChanges(boolean force)
 	{
 		long now = System.currentTimeMillis();
-		if(!force && (now - theLastCheck) < theCheckInterval)
+		long interval = theFeed != null ? theFallbackInterval : theCheckInterval;
+		if(!force && (now - theLastCheck) < interval)
 			return true;
 
 		synchronized(this)
 		{
-			if(!force && (now - theLastCheck) < theCheckInterval)
+			if(!force && (now - theLastCheck) < interval)
 				return true;
 
 			for(ScaledRecordKeeper depend : theDepends)
@@ -310,97 +431,149 @@ public class ScaledRecordKeeper extends DBRecordKeeper
 				log.error("Could not query for changes from scaled environment", e);
 				return false;
 			}
-			ids.removeAll(theProcessedChanges);
-
-			if(ids.isEmpty())
-				return true;
+			removeProcessed(ids);
 
 			boolean ret = true;
-			boolean success = true;
-			int batchCount = 100;
-			if(batchCount > ids.size())
-				batchCount = ids.size();
-			long [] batch = new long [batchCount];
-			for(int i = 0; i < ids.size(); i += batchCount)
+			if(!ids.isEmpty())
 			{
-				if(batchCount + i > ids.size())
+				// Another instance has written changes, so the cached latest change times are stale
+				clearLatestChanges();
+				try
+				{
+					ret = applyChanges(ids, now);
+				} catch(PrismsRecordException e)
 				{
-					batchCount = ids.size() - i;
-					batch = new long [batchCount];
+					log.error("Could not get change batch", e);
+					return false;
 				}
-				ids.arrayCopy(i, batch, 0, batch.length);
-				ChangeRecord [] changes;
+			}
+			theTimeBeforeCheck = theLastCheck;
+			theLastCheck = now;
+			/* Changes processed well before the start of the next check's range cannot be returned
+			 * by it, so there is no need to remember them */
+			java.util.Iterator<Long> iter = theProcessedChanges.values().iterator();
+			while(iter.hasNext() && iter.next().longValue() < theTimeBeforeCheck - theProcessedWindow)
+				iter.remove();
+			return ret;
+		}
+	}
+
+	/**
+	 * Applies changes published to this keeper's change feed by another instance
+	 * 
+	 * @param changeIDs The IDs of the changes that were written by the other instance
+	 */
+	void applyPublished(long [] changeIDs)
+	{
+		synchronized(this)
+		{
+			prisms.util.LongList ids = new prisms.util.LongList(changeIDs);
+			removeProcessed(ids);
+			if(ids.isEmpty())
+				return;
+			for(ScaledRecordKeeper depend : theDepends)
+				depend.checkChanges(true);
+			clearLatestChanges();
+			try
+			{
+				applyChanges(ids, System.currentTimeMillis());
+			} catch(PrismsRecordException e)
+			{
+				log.error("Could not get published changes--will be picked up by the next check", e);
+			}
+		}
+	}
+
+	private void removeProcessed(prisms.util.LongList ids)
+	{
+		for(int i = ids.size() - 1; i >= 0; i--)
+			if(theProcessedChanges.containsKey(Long.valueOf(ids.get(i))))
+				ids.remove(i);
+	}
+
+	/**
+	 * Retrieves changes from the database and implements them in memory. Changes are marked as
+	 * processed as they are retrieved so that they are not implemented again.
+	 * 
+	 * @param ids The IDs of the changes to implement
+	 * @param now The time of the check
+	 * @return Whether all the changes were implemented successfully
+	 * @throws PrismsRecordException If the changes cannot be retrieved
+	 */
+	private boolean applyChanges(prisms.util.LongList ids, long now) throws PrismsRecordException
+	{
+		boolean ret = true;
+		int batchCount = 100;
+		if(batchCount > ids.size())
+			batchCount = ids.size();
+		long [] batch = new long [batchCount];
+		for(int i = 0; i < ids.size(); i += batchCount)
+		{
+			if(batchCount + i > ids.size())
+			{
+				batchCount = ids.size() - i;
+				batch = new long [batchCount];
+			}
+			ids.arrayCopy(i, batch, 0, batch.length);
+			ChangeRecord [] changes = getItems(batch);
+			for(ChangeRecord change : changes)
+			{
+				/* Changes that were published but are not yet visible in the database will not be
+				 * returned here. They are left for the next check to pick up. */
+				if(change == null)
+					continue;
+				theProcessedChanges.put(Long.valueOf(change.id), Long.valueOf(now));
+				if(change instanceof ChangeRecordError)
+					continue;
+				long [] successors = null;
 				try
 				{
-					changes = getItems(batch);
+					successors = execute(
+						theSuccessorCheck,
+						change.type.subjectType.name(),
+						Integer.valueOf(change.type.additivity),
+						Integer.valueOf(change.type.additivity),
+						change.type.changeType == null ? null : change.type.changeType.name(),
+						Long.valueOf(getDataID(change.majorSubject)),
+						change.minorSubject == null ? null : Long
+							.valueOf(getDataID(change.minorSubject)), change.data1 == null
+							? null : Long.valueOf(getDataID(change.data1)),
+						change.data2 == null ? null : Long.valueOf(getDataID(change.data2)),
+						Long.valueOf(change.time));
 				} catch(PrismsRecordException e)
 				{
-					log.error("Could not get change batch", e);
-					success = false;
+					log.error("Could not check for successors", e);
 					ret = false;
-					break;
 				}
-				for(ChangeRecord change : changes)
-				{
-					if(change instanceof ChangeRecordError)
-						continue;
-					long [] successors = null;
-					try
-					{
-						successors = execute(
-							theSuccessorCheck,
-							change.type.subjectType.name(),
-							Integer.valueOf(change.type.additivity),
-							Integer.valueOf(change.type.additivity),
-							change.type.changeType == null ? null : change.type.changeType.name(),
-							Long.valueOf(getDataID(change.majorSubject)),
-							change.minorSubject == null ? null : Long
-								.valueOf(getDataID(change.minorSubject)), change.data1 == null
-								? null : Long.valueOf(getDataID(change.data1)),
-							change.data2 == null ? null : Long.valueOf(getDataID(change.data2)),
-							Long.valueOf(change.time));
-					} catch(PrismsRecordException e)
-					{
-						log.error("Could not check for successors", e);
-						ret = false;
-					}
-					if(successors != null && successors.length > 0)
-						continue;
-					Object currentValue = null;
-					if(change.type.changeType != null
-						&& change.type.changeType.getObjectType() != null)
-						try
-						{
-							currentValue = theImpl.getDBCurrentValue(change);
-						} catch(PrismsRecordException e)
-						{
-							log.error(
-								"Could not retrieve current value for change from DB for change "
-									+ change, e);
-							ret = false;
-							continue;
-						}
+				if(successors != null && successors.length > 0)
+					continue;
+				Object currentValue = null;
+				if(change.type.changeType != null
+					&& change.type.changeType.getObjectType() != null)
 					try
 					{
-						theImpl.doMemChange(change, currentValue);
+						currentValue = theImpl.getDBCurrentValue(change);
 					} catch(PrismsRecordException e)
 					{
 						log.error(
-							"Could not implement change from scaled environment: "
-								+ change.toString(currentValue), e);
+							"Could not retrieve current value for change from DB for change "
+								+ change, e);
 						ret = false;
+						continue;
 					}
+				try
+				{
+					theImpl.doMemChange(change, currentValue);
+				} catch(PrismsRecordException e)
+				{
+					log.error(
+						"Could not implement change from scaled environment: "
+							+ change.toString(currentValue), e);
+					ret = false;
 				}
-				if(!success)
-					return ret;
-				theProcessedChanges.clear();
-				theProcessedChanges.addAll(ids, -1);
-				ids.clear();
-				theTimeBeforeCheck = theLastCheck;
-				theLastCheck = now;
 			}
-			return ret;
 		}
+		return ret;
 	}
 
 	private void createPreparedSearches() throws PrismsRecordException
@@ -458,6 +631,12 @@ public class ScaledRecordKeeper extends DBRecordKeeper
 		{
 			log.error("Could not destroy prepared searches", e);
 		}
+		setChangeFeed(null);
+		if(theConfiguredFeed != null)
+		{
+			theConfiguredFeed.release();
+			theConfiguredFeed = null;
+		}
 		super.disconnect();
 	}
 }
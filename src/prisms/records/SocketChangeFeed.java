@@ -0,0 +1,247 @@
+/*
+ * SocketChangeFeed.java Created Oct 16, 2026 by Andrew Butler, PSL
+ */
+package prisms.records;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A change feed that sends published change IDs to the other server instances sharing a database
+ * as UDP datagrams. Delivery is not guaranteed, so scaled record keepers using this feed still poll
+ * the database occasionally to pick up any changes whose notifications were lost.
+ * 
+ * <p>
+ * A feed is configured in the shared connection's configuration like this:
+ * 
+ * <pre>
+ * &lt;change-feed&gt;
+ *     &lt;port&gt;7100&lt;/port&gt;
+ *     &lt;peer&gt;server2:7100&lt;/peer&gt;
+ *     &lt;peer&gt;server3:7100&lt;/peer&gt;
+ * &lt;/change-feed&gt;
+ * </pre>
+ * 
+ * </p>
+ */
+public class SocketChangeFeed implements ChangeFeed
+{
+	static final Logger log = Logger.getLogger(SocketChangeFeed.class);
+
+	/** The maximum number of change IDs sent in a single datagram */
+	public static final int MAX_IDS_PER_PACKET = 1024;
+
+	private static final java.util.HashMap<Integer, SocketChangeFeed> theFeeds = new java.util.HashMap<Integer, SocketChangeFeed>();
+
+	private final java.net.DatagramSocket theSocket;
+
+	private final java.net.InetSocketAddress [] thePeers;
+
+	private final long theSenderID;
+
+	private final java.util.concurrent.CopyOnWriteArrayList<Listener> theListeners;
+
+	private final Thread theReceiver;
+
+	private volatile boolean isClosed;
+
+	/** The number of record keepers sharing this feed that have not released it */
+	private int theUsers;
+
+	/**
+	 * Creates a feed
+	 * 
+	 * @param port The local port to receive change notifications on
+	 * @param peers The addresses of the other instances to send change notifications to
+	 * @throws java.net.SocketException If the port cannot be bound
+	 */
+	public SocketChangeFeed(int port, java.net.InetSocketAddress... peers)
+		throws java.net.SocketException
+	{
+		theSocket = new java.net.DatagramSocket(port);
+		thePeers = peers;
+		theSenderID = new java.security.SecureRandom().nextLong();
+		theListeners = new java.util.concurrent.CopyOnWriteArrayList<Listener>();
+		theReceiver = new Thread(new Runnable()
+		{
+			public void run()
+			{
+				receive();
+			}
+		}, "PRISMS Change Feed " + port);
+		theReceiver.setDaemon(true);
+		theReceiver.start();
+	}
+
+	/**
+	 * Gets the feed for a change-feed configuration. Feeds are shared by port, so all record keepers
+	 * configured with the same port use the same socket. Each caller must {@link #release()} the
+	 * feed when it is finished with it.
+	 * 
+	 * @param config The change-feed configuration
+	 * @return The feed for the given configuration
+	 * @throws PrismsRecordException If the configuration is invalid or the port cannot be bound
+	 */
+	public static SocketChangeFeed getFeed(prisms.arch.PrismsConfig config)
+		throws PrismsRecordException
+	{
+		int port = config.getInt("port", -1);
+		if(port <= 0)
+			throw new PrismsRecordException("No valid port given for change feed: " + config);
+		synchronized(theFeeds)
+		{
+			SocketChangeFeed ret = theFeeds.get(Integer.valueOf(port));
+			if(ret != null && !ret.isClosed)
+			{
+				ret.theUsers++;
+				return ret;
+			}
+			String [] peerStrs = config.getAll("peer");
+			java.net.InetSocketAddress [] peers = new java.net.InetSocketAddress [peerStrs.length];
+			for(int p = 0; p < peerStrs.length; p++)
+			{
+				String peer = peerStrs[p].trim();
+				int colon = peer.lastIndexOf(':');
+				if(colon < 0)
+					peers[p] = new java.net.InetSocketAddress(peer, port);
+				else
+					try
+					{
+						peers[p] = new java.net.InetSocketAddress(peer.substring(0, colon),
+							Integer.parseInt(peer.substring(colon + 1)));
+					} catch(NumberFormatException e)
+					{
+						throw new PrismsRecordException("Invalid change feed peer: " + peer, e);
+					}
+			}
+			try
+			{
+				ret = new SocketChangeFeed(port, peers);
+			} catch(java.net.SocketException e)
+			{
+				throw new PrismsRecordException("Could not open change feed on port " + port, e);
+			}
+			ret.theUsers = 1;
+			theFeeds.put(Integer.valueOf(port), ret);
+			return ret;
+		}
+	}
+
+	public void publish(String namespace, long [] changeIDs)
+	{
+		if(isClosed || thePeers.length == 0)
+			return;
+		for(int i = 0; i < changeIDs.length; i += MAX_IDS_PER_PACKET)
+		{
+			int count = Math.min(MAX_IDS_PER_PACKET, changeIDs.length - i);
+			byte [] data;
+			try
+			{
+				java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream(
+					24 + namespace.length() * 3 + count * 8);
+				java.io.DataOutputStream out = new java.io.DataOutputStream(bytes);
+				out.writeLong(theSenderID);
+				out.writeUTF(namespace);
+				out.writeInt(count);
+				for(int j = 0; j < count; j++)
+					out.writeLong(changeIDs[i + j]);
+				out.close();
+				data = bytes.toByteArray();
+			} catch(java.io.IOException e)
+			{
+				throw new IllegalStateException("Could not serialize change IDs", e);
+			}
+			for(java.net.InetSocketAddress peer : thePeers)
+				try
+				{
+					theSocket.send(new java.net.DatagramPacket(data, data.length, peer));
+				} catch(java.io.IOException e)
+				{
+					log.warn("Could not send change notification to " + peer, e);
+				}
+		}
+	}
+
+	public void addListener(Listener listener)
+	{
+		theListeners.addIfAbsent(listener);
+	}
+
+	public boolean removeListener(Listener listener)
+	{
+		return theListeners.remove(listener);
+	}
+
+	/**
+	 * Releases a feed obtained from {@link #getFeed(prisms.arch.PrismsConfig)}. The feed is closed
+	 * when all its users have released it.
+	 */
+	public void release()
+	{
+		synchronized(theFeeds)
+		{
+			if(--theUsers > 0)
+				return;
+		}
+		close();
+	}
+
+	/** Closes this feed's socket and stops receiving notifications */
+	public void close()
+	{
+		isClosed = true;
+		synchronized(theFeeds)
+		{
+			if(theFeeds.get(Integer.valueOf(theSocket.getLocalPort())) == this)
+				theFeeds.remove(Integer.valueOf(theSocket.getLocalPort()));
+		}
+		theSocket.close();
+	}
+
+	void receive()
+	{
+		byte [] buffer = new byte [65536];
+		while(!isClosed)
+		{
+			java.net.DatagramPacket packet = new java.net.DatagramPacket(buffer, buffer.length);
+			try
+			{
+				theSocket.receive(packet);
+			} catch(java.io.IOException e)
+			{
+				if(!isClosed)
+					log.error("Could not receive change notification", e);
+				continue;
+			}
+			String namespace;
+			long [] ids;
+			try
+			{
+				java.io.DataInputStream in = new java.io.DataInputStream(
+					new java.io.ByteArrayInputStream(packet.getData(), packet.getOffset(),
+						packet.getLength()));
+				if(in.readLong() == theSenderID)
+					continue;
+				namespace = in.readUTF();
+				int count = in.readInt();
+				if(count < 0 || count > MAX_IDS_PER_PACKET)
+					throw new java.io.IOException("Invalid change count: " + count);
+				ids = new long [count];
+				for(int i = 0; i < ids.length; i++)
+					ids[i] = in.readLong();
+			} catch(java.io.IOException e)
+			{
+				log.warn("Invalid change notification received from " + packet.getSocketAddress(),
+					e);
+				continue;
+			}
+			for(Listener listener : theListeners)
+				try
+				{
+					listener.changesPublished(namespace, ids);
+				} catch(RuntimeException e)
+				{
+					log.error("Change feed listener threw exception", e);
+				}
+		}
+	}
+}
@@ -24,7 +24,8 @@ public abstract class MapLayerEditor implements prisms.arch.AppPlugin
 
 	private String theName;
 
-	private prisms.arch.wms.WmsUtils theWmsUtils;
+	/** Caches WMS capabilities for all sessions' layer editors */
+	private static final prisms.arch.wms.WmsUtils theWmsUtils = new prisms.arch.wms.WmsUtils(50);
 
 	private prisms.util.preferences.Preference<Object> theLayersPref;
 
@@ -32,7 +33,6 @@ public abstract class MapLayerEditor implements prisms.arch.AppPlugin
 	{
 		theSession = session;
 		theName = config.get("name");
-		theWmsUtils = new prisms.arch.wms.WmsUtils(5);
 		if(theLayersPref == null)
 			theLayersPref = new prisms.util.preferences.Preference<Object>(theName, "layers",
 				prisms.util.preferences.Preference.Type.ARBITRARY, Object.class, false);
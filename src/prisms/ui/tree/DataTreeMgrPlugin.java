@@ -225,7 +225,7 @@ public class DataTreeMgrPlugin extends DataTreeManager implements prisms.arch.Ap
 		}
 		final DataTreeNode [][] newSelected = new DataTreeNode [1] [0];
 		prisms.util.ArrayUtils.adjust(theSelection.toArray(new DataTreeNode [theSelection.size()]),
-			nodes, new prisms.util.ArrayUtils.DifferenceListener<DataTreeNode, DataTreeNode>()
+			nodes, new prisms.util.ArrayUtils.HashedDifferenceListener<DataTreeNode, DataTreeNode>()
 			{
 				/**
 				 * @see prisms.util.ArrayUtils.DifferenceListener#identity(java.lang.Object,
@@ -236,6 +236,16 @@ public class DataTreeMgrPlugin extends DataTreeManager implements prisms.arch.Ap
 					return o1 == o2;
 				}
 
+				public Object getOriginalKey(DataTreeNode o)
+				{
+					return new prisms.util.ArrayUtils.IdentityKey(o);
+				}
+
+				public Object getModifierKey(DataTreeNode o)
+				{
+					return new prisms.util.ArrayUtils.IdentityKey(o);
+				}
+
 				public DataTreeNode set(DataTreeNode o1, int idx1, int incMod, DataTreeNode o2,
 					int idx2, int retIdx)
 				{
@@ -1925,6 +1925,86 @@ public final class ArrayUtils
 		T1 set(T1 o1, int idx1, int incMod, T2 o2, int idx2, int retIdx) throws E;
 	}
 
+	/**
+	 * A {@link DifferenceListenerE} that can supply a hashable key for each element of both arrays. When a listener of this type is passed
+	 * to {@link ArrayUtils#adjust(Object[], Object[], DifferenceListenerE)}, elements are matched by key in linear time instead of by
+	 * calling {@link #identity(Object, Object)} for each pair of elements. The callbacks are invoked in exactly the same order either way.
+	 * 
+	 * <p>
+	 * The keys must agree with {@link #identity(Object, Object)}: two elements' keys must be equal (with consistent hash codes) if and only
+	 * if identity would return true for the elements. An element whose key is null will never be matched.
+	 * </p>
+	 * 
+	 * @param <T1> The type of the original array
+	 * @param <T2> The type of the modifying array
+	 * @param <E> The type of exception that may be thrown
+	 */
+	public static interface HashedDifferenceListenerE<T1, T2, E extends Throwable> extends DifferenceListenerE<T1, T2, E>
+	{
+		/**
+		 * @param o The element from the original array
+		 * @return The key to match the element by, or null if the element should not be matched
+		 * @throws E If an error occurs in this method
+		 */
+		Object getOriginalKey(T1 o) throws E;
+
+		/**
+		 * @param o The element from the modifier array
+		 * @return The key to match the element by, or null if the element should not be matched
+		 * @throws E If an error occurs in this method
+		 */
+		Object getModifierKey(T2 o) throws E;
+	}
+
+	/**
+	 * A key for a {@link HashedDifferenceListenerE} whose identity method compares elements with <code>==</code>. Two keys are equal only
+	 * if they wrap the same instance.
+	 */
+	public static final class IdentityKey
+	{
+		private final Object theValue;
+
+		/** @param value The value to wrap */
+		public IdentityKey(Object value)
+		{
+			theValue = value;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			return o instanceof IdentityKey && ((IdentityKey) o).theValue == theValue;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return System.identityHashCode(theValue);
+		}
+	}
+
+	/**
+	 * A {@link HashedDifferenceListenerE} that throws no checked exceptions
+	 * 
+	 * @param <T1> The type of the original array
+	 * @param <T2> The type of the modifying array
+	 */
+	public static interface HashedDifferenceListener<T1, T2> extends HashedDifferenceListenerE<T1, T2, RuntimeException>,
+		DifferenceListener<T1, T2>
+	{
+		/**
+		 * @see prisms.util.ArrayUtils.HashedDifferenceListenerE#getOriginalKey(java.lang.Object)
+		 */
+		@Override
+		Object getOriginalKey(T1 o);
+
+		/**
+		 * @see prisms.util.ArrayUtils.HashedDifferenceListenerE#getModifierKey(java.lang.Object)
+		 */
+		@Override
+		Object getModifierKey(T2 o);
+	}
+
 	/**
 	 * <p>
 	 * Reconciles differences between two ordered sets of objects. Allows a programmer highly customized control between two different
@@ -1942,7 +2022,8 @@ public final class ArrayUtils
 	 * @param <E> The type of exception that may be thrown
 	 * @param original The original array
 	 * @param modifier The modifying array
-	 * @param dl The listener to determine how to deal with differences between the two arrays
+	 * @param dl The listener to determine how to deal with differences between the two arrays. If this is a
+	 *        {@link HashedDifferenceListenerE}, elements will be matched by key in linear time.
 	 * @return A final array that is the result of applying select changes between the original and the modifying arrays
 	 * @throws E If the {@link DifferenceListenerE} throws an exception
 	 */
@@ -2005,6 +2086,11 @@ public final class ArrayUtils
 
 		private void init() throws E
 		{
+			if(dl instanceof HashedDifferenceListenerE)
+			{
+				initHashed((HashedDifferenceListenerE<T1, T2, E>) dl);
+				return;
+			}
 			int o, m, r = original.length + modifier.length;
 			for(m = 0; m < modifier.length; m++)
 				mMappings[m] = -1;
@@ -2028,6 +2114,50 @@ public final class ArrayUtils
 			maxLength = r;
 		}
 
+		/**
+		 * Matches elements in the same way as {@link #init()}--each original element is matched with the first unmatched modifier
+		 * element that it is identical to--but uses keys to do it in linear time
+		 */
+		private void initHashed(HashedDifferenceListenerE<T1, T2, E> hdl) throws E
+		{
+			int o, m, r = original.length + modifier.length;
+			/* The first unmatched modifier index for each key. Modifiers with the same key as an earlier modifier are chained from
+			 * it by nextSame. */
+			java.util.HashMap<Object, Integer> firstIdx = new java.util.HashMap<Object, Integer>(modifier.length * 4 / 3 + 1);
+			int [] nextSame = new int [modifier.length];
+			for(m = modifier.length - 1; m >= 0; m--)
+			{
+				mMappings[m] = -1;
+				nextSame[m] = -1;
+				Object key = hdl.getModifierKey(modifier[m]);
+				if(key == null)
+					continue;
+				Integer prev = firstIdx.put(key, Integer.valueOf(m));
+				if(prev != null)
+					nextSame[m] = prev.intValue();
+			}
+			for(o = 0; o < original.length; o++)
+			{
+				oIdxAdj[o] = o;
+				oMappings[o] = -1;
+				Object key = hdl.getOriginalKey(original[o]);
+				if(key == null)
+					continue;
+				Integer match = firstIdx.get(key);
+				if(match == null)
+					continue;
+				m = match.intValue();
+				if(nextSame[m] >= 0)
+					firstIdx.put(key, Integer.valueOf(nextSame[m]));
+				else
+					firstIdx.remove(key);
+				oMappings[o] = m;
+				mMappings[m] = o;
+				r--;
+			}
+			maxLength = r;
+		}
+
 		/**
 		 * Adjusts the arrays set from the constructor
 		 * 
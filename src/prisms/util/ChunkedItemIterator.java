@@ -0,0 +1,90 @@
+/*
+ * ChunkedItemIterator.java Created Oct 16, 2026 by Andrew Butler, PSL
+ */
+package prisms.util;
+
+/**
+ * Implements {@link SearchableAPI#getItems(LongList, int, int)} for any API by retrieving items
+ * with {@link SearchableAPI#getItems(long...)} a chunk at a time as the iteration advances
+ * 
+ * @param <T> The type of item retrieved
+ * @param <E> The type of exception that may be thrown retrieving items
+ */
+public class ChunkedItemIterator<T, E extends Exception> implements
+	SearchableAPI.ItemIterator<T, E>
+{
+	/** The default number of items retrieved at once */
+	public static final int DEFAULT_CHUNK_SIZE = 100;
+
+	private final SearchableAPI<T, ?, E> theAPI;
+
+	private final long [] theIDs;
+
+	private final int theChunkSize;
+
+	private int theChunkStart;
+
+	private T [] theChunk;
+
+	private int theIndex;
+
+	/**
+	 * @param api The API to retrieve items from
+	 * @param ids The IDs of the items to retrieve
+	 * @param offset The index in the ID list of the first item to retrieve
+	 * @param limit The maximum number of items to retrieve, or &lt;0 to retrieve all items after
+	 *        the offset
+	 * @param chunkSize The number of items to retrieve at once
+	 */
+	public ChunkedItemIterator(SearchableAPI<T, ?, E> api, LongList ids, int offset, int limit,
+		int chunkSize)
+	{
+		if(offset < 0)
+			throw new IndexOutOfBoundsException("" + offset);
+		if(chunkSize <= 0)
+			throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+		theAPI = api;
+		int count = Math.max(0, ids.size() - offset);
+		if(limit >= 0 && limit < count)
+			count = limit;
+		theIDs = new long [count];
+		ids.arrayCopy(offset, theIDs, 0, count);
+		theChunkSize = chunkSize;
+	}
+
+	/**
+	 * Creates an iterator with the {@link #DEFAULT_CHUNK_SIZE default chunk size}
+	 * 
+	 * @see #ChunkedItemIterator(SearchableAPI, LongList, int, int, int)
+	 */
+	public ChunkedItemIterator(SearchableAPI<T, ?, E> api, LongList ids, int offset, int limit)
+	{
+		this(api, ids, offset, limit, DEFAULT_CHUNK_SIZE);
+	}
+
+	/** @return The total number of items this iterator will return */
+	public int size()
+	{
+		return theIDs.length;
+	}
+
+	public boolean hasNext()
+	{
+		return theIndex < theIDs.length;
+	}
+
+	public T next() throws E
+	{
+		if(theIndex >= theIDs.length)
+			throw new java.util.NoSuchElementException();
+		if(theChunk == null || theIndex >= theChunkStart + theChunk.length)
+		{
+			theChunk = null; // Release the previous chunk before retrieving the next
+			theChunkStart = theIndex;
+			long [] chunkIDs = new long [Math.min(theChunkSize, theIDs.length - theIndex)];
+			System.arraycopy(theIDs, theIndex, chunkIDs, 0, chunkIDs.length);
+			theChunk = theAPI.getItems(chunkIDs);
+		}
+		return theChunk[theIndex++ - theChunkStart];
+	}
+}
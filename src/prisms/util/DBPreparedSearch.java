@@ -12,7 +12,8 @@ import prisms.arch.ds.Transactor;
 
 /**
  * Implements most of the functionality needed for a {@link SearchableAPI.PreparedSearch} for a
- * database implementation
+ * database implementation. A prepared search keeps a small pool of prepared statements so that
+ * several threads may execute it at once.
  * 
  * @param <S> The sub-type of search that this implementation knows how to handle
  * @param <F> The type of sorter field that the API can sort on
@@ -23,15 +24,30 @@ public abstract class DBPreparedSearch<S extends Search, F extends Sorter.Field,
 {
 	private static final Logger log = Logger.getLogger(DBPreparedSearch.class);
 
+	/** The default maximum number of idle statements kept by each prepared search */
+	public static final int DEFAULT_MAX_IDLE = 4;
+
 	private final Transactor<E> theTransactor;
 
-	private int theConnectionID;
+	/** The connection that the idle statements were prepared on */
+	private java.sql.Connection theConnection;
 
 	private final String theSQL;
 
 	private final int [] theParamTypes;
 
-	private java.sql.PreparedStatement thePS;
+	/** Idle statements prepared on {@link #theConnection} */
+	private final java.util.ArrayList<java.sql.PreparedStatement> theIdleStatements;
+
+	private int theMaxIdle;
+
+	private int theActiveCount;
+
+	private int theMaxActiveCount;
+
+	private long theExecuteCount;
+
+	private long thePrepareCount;
 
 	private IntList theTempTypes;
 
@@ -56,8 +72,12 @@ public abstract class DBPreparedSearch<S extends Search, F extends Sorter.Field,
 
 		theTransactor = transactor;
 		theSQL = sql;
-		theConnectionID = -1;
-		checkPrepare();
+		theIdleStatements = new java.util.ArrayList<java.sql.PreparedStatement>();
+		theMaxIdle = DEFAULT_MAX_IDLE;
+		// Prepare a statement up front so that invalid SQL is caught here. This is not an execution.
+		theConnection = theTransactor.getConnection();
+		theIdleStatements.add(prepare(theConnection));
+		thePrepareCount++;
 	}
 
 	@Override
@@ -88,47 +108,208 @@ public abstract class DBPreparedSearch<S extends Search, F extends Sorter.Field,
 	 */
 	protected abstract void addSqlTypes(S search, IntList types);
 
-	private void checkPrepare() throws E
+	/**
+	 * @return The maximum number of prepared statements this search keeps open while they are not
+	 *         being used
+	 */
+	public int getMaxIdle()
+	{
+		return theMaxIdle;
+	}
+
+	/**
+	 * @param maxIdle The maximum number of prepared statements this search should keep open while
+	 *        they are not being used. More statements than this may be used by concurrent
+	 *        executions, but the extras are closed afterward.
+	 */
+	public void setMaxIdle(int maxIdle)
+	{
+		theMaxIdle = maxIdle;
+	}
+
+	/** @return The number of times this search has been executed */
+	public synchronized long getExecuteCount()
 	{
-		int cid = theTransactor.getConnectionID();
-		if(cid == theConnectionID)
-			return;
+		return theExecuteCount;
+	}
+
+	/** @return The number of statements this search has prepared */
+	public synchronized long getPrepareCount()
+	{
+		return thePrepareCount;
+	}
+
+	/** @return The number of executions of this search currently in progress */
+	public synchronized int getActiveCount()
+	{
+		return theActiveCount;
+	}
+
+	/** @return The largest number of executions of this search that have been in progress at once */
+	public synchronized int getMaxActiveCount()
+	{
+		return theMaxActiveCount;
+	}
 
+	/** @return The number of prepared statements this search currently holds open while idle */
+	public synchronized int getIdleCount()
+	{
+		return theIdleStatements.size();
+	}
+
+	/**
+	 * Gets a statement to execute this search with, preparing a new one if none are idle
+	 * 
+	 * @return The statement to use
+	 * @throws E If the statement cannot be prepared
+	 */
+	private java.sql.PreparedStatement borrow() throws E
+	{
+		java.sql.Connection conn = theTransactor.getConnection();
+		synchronized(this)
+		{
+			if(conn != theConnection)
+			{
+				closeIdle();
+				theConnection = conn;
+			}
+			theActiveCount++;
+			if(theActiveCount > theMaxActiveCount)
+				theMaxActiveCount = theActiveCount;
+			theExecuteCount++;
+			if(!theIdleStatements.isEmpty())
+				return theIdleStatements.remove(theIdleStatements.size() - 1);
+			thePrepareCount++;
+		}
+		boolean success = false;
 		try
 		{
-			thePS = theTransactor.getConnection().prepareStatement(theSQL);
+			java.sql.PreparedStatement ret = prepare(conn);
+			success = true;
+			return ret;
+		} finally
+		{
+			if(!success)
+				synchronized(this)
+				{
+					theActiveCount--;
+				}
+		}
+	}
+
+	/**
+	 * Prepares a new statement for this search
+	 * 
+	 * @param conn The connection to prepare the statement on
+	 * @return The prepared statement
+	 * @throws E If the statement cannot be prepared
+	 */
+	private java.sql.PreparedStatement prepare(java.sql.Connection conn) throws E
+	{
+		try
+		{
+			return conn.prepareStatement(theSQL);
 		} catch(SQLException e)
 		{
 			theTransactor.getThrower().error("Could not prepare search: SQL=" + theSQL, e);
+			throw new IllegalStateException("Thrower failed to throw exception");
 		}
 	}
 
 	/**
-	 * Executes the search
+	 * Returns a statement to the pool after an execution, or closes it if the pool is full, the
+	 * statement is no longer usable, or the statement was prepared on a connection other than the
+	 * one the pool is keeping statements for
+	 * 
+	 * @param ps The statement to release
+	 */
+	private void release(java.sql.PreparedStatement ps)
+	{
+		java.sql.Connection conn = null;
+		try
+		{
+			ps.clearParameters();
+			conn = ps.getConnection();
+		} catch(SQLException e)
+		{
+			log.error("Could not clear prepared statement parameters", e);
+			ps = closeStatement(ps);
+		}
+		synchronized(this)
+		{
+			theActiveCount--;
+			if(ps != null && conn != null && conn == theConnection
+				&& theIdleStatements.size() < theMaxIdle)
+			{
+				theIdleStatements.add(ps);
+				ps = null;
+			}
+		}
+		if(ps != null)
+			closeStatement(ps);
+	}
+
+	private synchronized void closeIdle()
+	{
+		for(java.sql.PreparedStatement ps : theIdleStatements)
+			closeStatement(ps);
+		theIdleStatements.clear();
+	}
+
+	private static java.sql.PreparedStatement closeStatement(java.sql.PreparedStatement ps)
+	{
+		try
+		{
+			ps.close();
+		} catch(SQLException e)
+		{
+			log.error("Connection error", e);
+		} catch(Error e)
+		{
+			// Keep getting these from an HSQL bug--silence
+			if(e.getMessage() == null || !e.getMessage().contains("compilation"))
+				log.error("Error", e);
+		}
+		return null;
+	}
+
+	/**
+	 * Executes the search. This method may be called by several threads at once.
 	 * 
 	 * @param params The parameters to fill in the search
 	 * @return The IDs of all items in the API that met this search's criteria
 	 * @throws E If the search fails
 	 */
-	protected synchronized long [] execute(Object... params) throws E
+	protected long [] execute(Object... params) throws E
 	{
-		checkPrepare();
 		if(params.length != theParamTypes.length)
 			theTransactor.getThrower().error(
 				"Prepared search expected " + theParamTypes.length + " parameters, but received "
 					+ params.length);
+		java.sql.PreparedStatement ps = borrow();
 		LongList ret = new LongList();
 		java.sql.ResultSet rs = null;
 		try
 		{
 			for(int p = 0; p < params.length; p++)
-				setParameter(theParamTypes[p], params[p], p);
+				setParameter(ps, theParamTypes[p], params[p], p);
 
-			rs = thePS.executeQuery();
+			rs = ps.executeQuery();
 			while(rs.next())
 				ret.add(rs.getLong(1));
 		} catch(SQLException e)
 		{
+			// The statement may be the cause, so don't reuse it
+			if(rs != null)
+				try
+				{
+					rs.close();
+				} catch(SQLException e2)
+				{
+					log.error("Connection error", e2);
+				}
+			rs = null;
+			ps = closeStatement(ps);
 			theTransactor.getThrower().error("Could not execute prepared search: SQL=" + theSQL, e);
 		} finally
 		{
@@ -140,37 +321,29 @@ public abstract class DBPreparedSearch<S extends Search, F extends Sorter.Field,
 				{
 					log.error("Connection error", e);
 				}
-			try
-			{
-				thePS.clearParameters();
-			} catch(SQLException e)
-			{
-				log.error("Could not clear prepared statement parameters", e);
-			}
+			if(ps != null)
+				release(ps);
+			else
+				synchronized(this)
+				{
+					theActiveCount--;
+				}
 		}
 		return ret.toArray();
 	}
 
 	/**
 	 * Releases this search's resources. If this search is used after this method is called, its
-	 * resources will be automatically recreated.
+	 * resources will be automatically recreated. Statements being used by executions in progress
+	 * are closed when the executions finish.
 	 */
 	protected void dispose()
 	{
-		try
-		{
-			thePS.close();
-		} catch(SQLException e)
-		{
-			log.error("Connection error", e);
-		} catch(Error e)
+		synchronized(this)
 		{
-			// Keep getting these from an HSQL bug--silence
-			if(!e.getMessage().contains("compilation"))
-				log.error("Error", e);
+			closeIdle();
+			theConnection = null;
 		}
-		thePS = null;
-		theConnectionID = -1;
 	}
 
 	@Override
@@ -181,21 +354,23 @@ public abstract class DBPreparedSearch<S extends Search, F extends Sorter.Field,
 	}
 
 	/**
-	 * Sets a parameter in the prepared statement
+	 * Sets a parameter in a prepared statement
 	 * 
+	 * @param ps The prepared statement to set the parameter in
 	 * @param type The SQL type of the parameter
 	 * @param param The value of the parameter to set
 	 * @param index The index of the parameter to set
 	 * @throws E If the parameter cannot be set at the given index, for example, because its type is
 	 *         not valid for that index
 	 */
-	protected void setParameter(int type, Object param, int index) throws E
+	protected void setParameter(java.sql.PreparedStatement ps, int type, Object param, int index)
+		throws E
 	{
 		try
 		{
 			if(param == null)
 			{
-				thePS.setNull(index + 1, type);
+				ps.setNull(index + 1, type);
 				return;
 			}
 			param = isCompatible(type, param);
@@ -208,40 +383,40 @@ public abstract class DBPreparedSearch<S extends Search, F extends Sorter.Field,
 			}
 			index++;
 			if(param instanceof Long)
-				thePS.setLong(index, ((Long) param).longValue());
+				ps.setLong(index, ((Long) param).longValue());
 			else if(param instanceof Integer)
-				thePS.setInt(index, ((Integer) param).intValue());
+				ps.setInt(index, ((Integer) param).intValue());
 			else if(param instanceof Short)
-				thePS.setShort(index, ((Short) param).shortValue());
+				ps.setShort(index, ((Short) param).shortValue());
 			else if(param instanceof Byte)
-				thePS.setByte(index, ((Byte) param).byteValue());
+				ps.setByte(index, ((Byte) param).byteValue());
 			else if(param instanceof Float)
-				thePS.setFloat(index, ((Float) param).floatValue());
+				ps.setFloat(index, ((Float) param).floatValue());
 			else if(param instanceof Double)
-				thePS.setDouble(index, ((Double) param).doubleValue());
+				ps.setDouble(index, ((Double) param).doubleValue());
 			else if(param instanceof java.math.BigDecimal)
-				thePS.setBigDecimal(index, (java.math.BigDecimal) param);
+				ps.setBigDecimal(index, (java.math.BigDecimal) param);
 			else if(param instanceof Boolean)
-				thePS.setBoolean(index, ((Boolean) param).booleanValue());
+				ps.setBoolean(index, ((Boolean) param).booleanValue());
 			else if(param instanceof String)
-				thePS.setString(index, (String) param);
+				ps.setString(index, (String) param);
 			else if(param instanceof java.io.InputStream)
-				DBUtils.setBlob(thePS, index, (java.io.InputStream) param);
+				DBUtils.setBlob(ps, index, (java.io.InputStream) param);
 			else if(param instanceof java.io.Reader)
-				DBUtils.setClob(thePS, index, (java.io.Reader) param);
+				DBUtils.setClob(ps, index, (java.io.Reader) param);
 			else if(param instanceof java.sql.Date)
-				thePS.setDate(index, (java.sql.Date) param);
+				ps.setDate(index, (java.sql.Date) param);
 			else if(param instanceof java.sql.Timestamp)
 			{
 				try
 				{
-					thePS.setTimestamp(index, (java.sql.Timestamp) param);
+					ps.setTimestamp(index, (java.sql.Timestamp) param);
 				} catch(IllegalArgumentException e)
 				{
 					// Looks like HSQL bug. Try again
 					try
 					{
-						thePS.setTimestamp(index, (java.sql.Timestamp) param);
+						ps.setTimestamp(index, (java.sql.Timestamp) param);
 					} catch(IllegalArgumentException e2)
 					{
 						// Failed. Throw error
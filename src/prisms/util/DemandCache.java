@@ -33,6 +33,21 @@ import java.util.*;
  */
 public class DemandCache<K, V> implements Map<K, V>
 {
+	private static final org.apache.log4j.Logger log = org.apache.log4j.Logger.getLogger(DemandCache.class);
+
+	/** The thread that purges all DemandCaches whose purges are asynchronous */
+	private static final java.util.concurrent.ExecutorService PURGER = java.util.concurrent.Executors
+		.newSingleThreadExecutor(new java.util.concurrent.ThreadFactory()
+		{
+			@Override
+			public Thread newThread(Runnable r)
+			{
+				Thread ret = new Thread(r, "DemandCache Purger");
+				ret.setDaemon(true);
+				return ret;
+			}
+		});
+
 	/**
 	 * Allows this cache to assess the quality of a cache item to determine its value to the accessor. Implementors of
 	 * this class should make the methods as fast as possible to speed up the purge process.
@@ -105,6 +120,15 @@ public class DemandCache<K, V> implements Map<K, V>
 		V value;
 
 		float demand;
+
+		/** The size of the value as of its last evaluation, counted in {@link DemandCache#theTotalSize} */
+		float size;
+
+		/** The quality of the value as of its last evaluation, counted in {@link DemandCache#theTotalQuality} */
+		float quality;
+
+		/** Whether this value has been removed from the cache and from the running totals */
+		boolean removed;
 	}
 
 	private final Qualitizer<K, V> theQualitizer;
@@ -121,9 +145,31 @@ public class DemandCache<K, V> implements Map<K, V>
 
 	private long theCheckedTime;
 
-	private long thePurgeTime;
+	private volatile long thePurgeTime;
+
+	private final java.util.concurrent.atomic.DoubleAdder thePurgeMods;
+
+	private final java.util.concurrent.atomic.DoubleAdder theTotalSize;
+
+	private final java.util.concurrent.atomic.DoubleAdder theTotalQuality;
+
+	private final java.util.concurrent.locks.ReentrantLock thePurgeLock;
+
+	private final java.util.concurrent.atomic.AtomicBoolean isPurgeScheduled;
+
+	private final Runnable thePurgeTask;
+
+	private volatile boolean isAsyncPurge;
+
+	private final java.util.concurrent.atomic.AtomicLong thePurgeCount;
 
-	private float thePurgeMods;
+	private final java.util.concurrent.atomic.AtomicLong thePurgedEntryCount;
+
+	private final java.util.concurrent.atomic.AtomicLong theTotalPurgeNanos;
+
+	private volatile long theLastPurgeNanos;
+
+	private volatile long theMaxPurgeNanos;
 
 	/** Creates a DemandCache with default values */
 	public DemandCache()
@@ -140,14 +186,7 @@ public class DemandCache<K, V> implements Map<K, V>
 	 */
 	public DemandCache(Qualitizer<K, V> qualitizer, float prefSize, long halfLife)
 	{
-		theQualitizer = qualitizer;
-		theCache = new java.util.concurrent.ConcurrentHashMap<>();
-		thePreferredSize = prefSize;
-		theHalfLife = halfLife;
-		theReference = 1;
-		theCheckedTime = System.currentTimeMillis();
-		thePurgeTime = theCheckedTime;
-		thePurgeListeners = new PurgeListener[0];
+		this(qualitizer, prefSize, halfLife, 16);
 	}
 
 	/**
@@ -167,6 +206,30 @@ public class DemandCache<K, V> implements Map<K, V>
 		theCheckedTime = System.currentTimeMillis();
 		thePurgeTime = theCheckedTime;
 		thePurgeListeners = new PurgeListener [0];
+		thePurgeMods = new java.util.concurrent.atomic.DoubleAdder();
+		theTotalSize = new java.util.concurrent.atomic.DoubleAdder();
+		theTotalQuality = new java.util.concurrent.atomic.DoubleAdder();
+		thePurgeLock = new java.util.concurrent.locks.ReentrantLock();
+		isPurgeScheduled = new java.util.concurrent.atomic.AtomicBoolean();
+		isAsyncPurge = true;
+		thePurgeCount = new java.util.concurrent.atomic.AtomicLong();
+		thePurgedEntryCount = new java.util.concurrent.atomic.AtomicLong();
+		theTotalPurgeNanos = new java.util.concurrent.atomic.AtomicLong();
+		thePurgeTask = new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				isPurgeScheduled.set(false);
+				try
+				{
+					purge(false);
+				} catch(RuntimeException e)
+				{
+					log.error("Could not purge cache", e);
+				}
+			}
+		};
 	}
 
 	/** @return The preferred size of this cache, or <=0 if this cache has no preferred size */
@@ -201,6 +264,25 @@ public class DemandCache<K, V> implements Map<K, V>
 			purge(true);
 	}
 
+	/**
+	 * @return Whether purges triggered by modifications to this cache are performed on a maintenance thread rather than
+	 *         the modifying thread
+	 */
+	public boolean isAsyncPurge()
+	{
+		return isAsyncPurge;
+	}
+
+	/**
+	 * @param async Whether purges triggered by modifications to this cache should be performed on a maintenance thread
+	 *        rather than the modifying thread. True by default. Purges requested with {@link #purge(boolean)} are always
+	 *        performed on the calling thread.
+	 */
+	public void setAsyncPurge(boolean async)
+	{
+		isAsyncPurge = async;
+	}
+
 	/** @param listener The listener to watch this cache's purging with */
 	public void addPurgeListener(PurgeListener<? super K, ? super V> listener)
 	{
@@ -228,7 +310,7 @@ public class DemandCache<K, V> implements Map<K, V>
 	public V put(K key, V value)
 	{
 		V ret = _put(key, value);
-		purge(false);
+		checkPurge();
 		return ret;
 	}
 
@@ -239,22 +321,72 @@ public class DemandCache<K, V> implements Map<K, V>
 			return value;
 		CacheValue newValue = new CacheValue();
 		newValue.value = value;
+		newValue.size = s(key, value);
+		newValue.quality = q(key, value);
 		_access(newValue, ACCESS_SET);
+		theTotalSize.add(newValue.size);
+		theTotalQuality.add(newValue.quality);
 		oldValue = theCache.put(key, newValue);
+		if(oldValue != null)
+			removed(oldValue);
 		if(theQualitizer == null || thePreferredSize <= 0)
 		{
 			if(oldValue == null)
-				thePurgeMods++;
+				thePurgeMods.add(1);
 		}
 		else
 		{
-			thePurgeMods += s(key, value);
+			thePurgeMods.add(newValue.size);
 			if(oldValue != null)
-				thePurgeMods -= s(key, oldValue.value);
+				thePurgeMods.add(-oldValue.size);
 		}
 		return oldValue == null ? null : oldValue.value;
 	}
 
+	/**
+	 * Removes a value that has been taken out of the cache map from this cache's running totals
+	 * 
+	 * @param value The value that is no longer in the cache
+	 */
+	private void removed(CacheValue value)
+	{
+		synchronized(value)
+		{
+			if(value.removed)
+				return;
+			value.removed = true;
+			theTotalSize.add(-value.size);
+			theTotalQuality.add(-value.quality);
+		}
+	}
+
+	/**
+	 * Re-evaluates the size and quality of a cache value, which may have changed since it was put in the cache, and
+	 * updates this cache's running totals accordingly
+	 * 
+	 * @param key The key of the value
+	 * @param value The value to re-evaluate
+	 * @return The change in the value's size
+	 */
+	private float refresh(K key, CacheValue value)
+	{
+		if(theQualitizer == null)
+			return 0;
+		float size = s(key, value.value);
+		float quality = q(key, value.value);
+		synchronized(value)
+		{
+			if(value.removed)
+				return 0;
+			float sizeDiff = size - value.size;
+			theTotalSize.add(sizeDiff);
+			theTotalQuality.add(quality - value.quality);
+			value.size = size;
+			value.quality = quality;
+			return sizeDiff;
+		}
+	}
+
 	private float q(K key, V value)
 	{
 		if(theQualitizer == null)
@@ -285,10 +417,11 @@ public class DemandCache<K, V> implements Map<K, V>
 		CacheValue oldValue = theCache.remove(key);
 		if(oldValue != null)
 		{
+			removed(oldValue);
 			if(theQualitizer == null || thePreferredSize <= 0)
-				thePurgeMods--;
+				thePurgeMods.add(-1);
 			else
-				thePurgeMods -= s((K) key, oldValue.value);
+				thePurgeMods.add(-oldValue.size);
 		}
 		return oldValue == null ? null : oldValue.value;
 	}
@@ -296,8 +429,14 @@ public class DemandCache<K, V> implements Map<K, V>
 	@Override
 	public void clear()
 	{
-		thePurgeMods = 0;
-		theCache.clear();
+		java.util.Iterator<CacheValue> iter = theCache.values().iterator();
+		while(iter.hasNext())
+		{
+			CacheValue value = iter.next();
+			iter.remove();
+			removed(value);
+		}
+		thePurgeMods.reset();
 	}
 
 	@Override
@@ -344,7 +483,7 @@ public class DemandCache<K, V> implements Map<K, V>
 	{
 		for(Map.Entry<? extends K, ? extends V> entry : m.entrySet())
 			_put(entry.getKey(), entry.getValue());
-		purge(false);
+		checkPurge();
 	}
 
 	/**
@@ -358,7 +497,7 @@ public class DemandCache<K, V> implements Map<K, V>
 	public Set<K> keySet()
 	{
 		final Object [] keys;
-		purge(false);
+		checkPurge();
 		keys = theCache.keySet().toArray();
 		return new java.util.AbstractSet<K>()
 			{
@@ -411,7 +550,7 @@ public class DemandCache<K, V> implements Map<K, V>
 	public Set<Map.Entry<K, V>> entrySet()
 	{
 		final Map.Entry<K, CacheValue> [] entries;
-		purge(false);
+		checkPurge();
 		entries = theCache.entrySet().toArray(new Map.Entry [0]);
 		return new java.util.AbstractSet<Map.Entry<K, V>>()
 			{
@@ -538,10 +677,7 @@ public class DemandCache<K, V> implements Map<K, V>
 	{
 		if(theQualitizer == null)
 			return theCache.size();
-		float ret = 0;
-		for(Entry<K, CacheValue> entry : theCache.entrySet())
-			ret += s(entry.getKey(), entry.getValue().value);
-		return ret;
+		return (float) theTotalSize.sum();
 	}
 
 	/**
@@ -552,14 +688,7 @@ public class DemandCache<K, V> implements Map<K, V>
 	{
 		if(theQualitizer == null)
 			return theCache.size();
-		float ret = 0;
-		int count = 0;
-		for(Entry<K, CacheValue> entry : theCache.entrySet())
-		{
-			count++;
-			ret += q(entry.getKey(), entry.getValue().value);
-		}
-		return ret / count;
+		return (float) (theTotalQuality.sum() / theCache.size());
 	}
 
 	private void _access(CacheValue value, int weight)
@@ -593,6 +722,82 @@ public class DemandCache<K, V> implements Map<K, V>
 			_access(value, weight);
 	}
 
+	/** @return The number of times this cache has been purged */
+	public long getPurgeCount()
+	{
+		return thePurgeCount.get();
+	}
+
+	/** @return The total number of entries that have been purged from this cache */
+	public long getPurgedEntryCount()
+	{
+		return thePurgedEntryCount.get();
+	}
+
+	/** @return The time, in milliseconds, that the most recent purge of this cache took */
+	public float getLastPurgeDuration()
+	{
+		return theLastPurgeNanos / 1000000f;
+	}
+
+	/** @return The longest time, in milliseconds, that a purge of this cache has taken */
+	public float getMaxPurgeDuration()
+	{
+		return theMaxPurgeNanos / 1000000f;
+	}
+
+	/** @return The average time, in milliseconds, that purges of this cache have taken */
+	public float getAveragePurgeDuration()
+	{
+		long count = thePurgeCount.get();
+		if(count == 0)
+			return 0;
+		return theTotalPurgeNanos.get() / 1000000f / count;
+	}
+
+	/**
+	 * @return A measure of this cache's need to be purged, determined by the number of modifications directly to this
+	 *         cache and time elapsed since the last purge. A purge is needed when this is at least 1.
+	 */
+	private float getPurgeNeed()
+	{
+		float purgeNeed = 0;
+		if(theHalfLife > 0 && theCheckedTime > thePurgeTime)
+			purgeNeed += (System.currentTimeMillis() - thePurgeTime) * 10.0f / theHalfLife;
+		float mods = (float) thePurgeMods.sum();
+		if(thePreferredSize > 0)
+			purgeNeed += mods / thePreferredSize * 10;
+		else
+			purgeNeed += mods / 100;
+		return purgeNeed;
+	}
+
+	/**
+	 * Called after modifications to this cache. Schedules a purge on the maintenance thread if one is needed. If the
+	 * maintenance thread has fallen far behind, the calling thread performs the purge itself unless another purge is
+	 * already in progress.
+	 */
+	private void checkPurge()
+	{
+		float purgeNeed = getPurgeNeed();
+		if(purgeNeed < 1)
+			return;
+		if(!isAsyncPurge)
+			purge(false);
+		else if(isPurgeScheduled.compareAndSet(false, true))
+			PURGER.execute(thePurgeTask);
+		else if(purgeNeed >= 10 && thePurgeLock.tryLock())
+		{
+			try
+			{
+				_purge();
+			} finally
+			{
+				thePurgeLock.unlock();
+			}
+		}
+	}
+
 	/**
 	 * Purges the cache of values that are deemed of less use to the accessor. The behavior of this method depends the
 	 * behavior of {@link #shouldRemove(Object, CacheValue, float, float, int)}
@@ -604,44 +809,57 @@ public class DemandCache<K, V> implements Map<K, V>
 	 */
 	public void purge(boolean force)
 	{
-		if(!force)
+		if(!force && getPurgeNeed() < 1)
+			return;
+		thePurgeLock.lock();
+		try
 		{
-			float purgeNeed = 0;
-			if(theHalfLife > 0 && theCheckedTime > thePurgeTime)
-				purgeNeed += (System.currentTimeMillis() - thePurgeTime) * 10.0f / theHalfLife;
-			if(thePreferredSize > 0)
-				purgeNeed += thePurgeMods / thePreferredSize * 10;
-			else
-				purgeNeed += thePurgeMods / 100;
-			if(purgeNeed < 1)
-				return;
+			if(!force && getPurgeNeed() < 1)
+				return; // Another thread purged while we waited
+			_purge();
+		} finally
+		{
+			thePurgeLock.unlock();
 		}
+	}
+
+	/**
+	 * Performs a purge. The cache's totals are kept up-to-date as entries are added and removed, so the purge is a
+	 * single pass over the entries, re-evaluating each one's size and quality as it goes. The purge lock must be held
+	 * when this method is called.
+	 */
+	private void _purge()
+	{
+		long start = System.nanoTime();
 		updateReference();
 		scaleReference();
-		int count = 0;
-		float totalSize = 0;
-		float totalQuality = 0;
+		/* Modifications during this purge count toward the next one */
+		thePurgeMods.reset();
+		int count = theCache.size();
+		float totalSize;
+		float totalQuality;
 		if(theQualitizer == null)
 		{
-			count = theCache.size();
 			totalSize = count;
 			totalQuality = count;
 		}
 		else
-			for(Entry<K, CacheValue> entry : theCache.entrySet())
-			{
-				count++;
-				totalSize += s(entry.getKey(), entry.getValue().value);
-				totalQuality += q(entry.getKey(), entry.getValue().value);
-			}
+		{
+			totalSize = (float) theTotalSize.sum();
+			totalQuality = (float) theTotalQuality.sum();
+		}
 
 		java.util.ArrayList<K> purgeKeys = new java.util.ArrayList<>();
+		java.util.ArrayList<V> values = new java.util.ArrayList<>();
 		java.util.Iterator<Entry<K, CacheValue>> iter = theCache.entrySet().iterator();
 		final PurgeListener<? super K, ? super V> [] pls = thePurgeListeners;
 		while(iter.hasNext())
 		{
 			Entry<K, CacheValue> entry = iter.next();
 			CacheValue value = entry.getValue();
+			float oldQuality = value.quality;
+			totalSize += refresh(entry.getKey(), value);
+			totalQuality += value.quality - oldQuality;
 			if(!shouldRemove(entry.getKey(), value, totalSize, totalQuality / count, count))
 				continue;
 			boolean purge = true;
@@ -649,36 +867,24 @@ public class DemandCache<K, V> implements Map<K, V>
 				purge = pls[i].prePurge(entry.getKey(), value.value);
 			if(!purge)
 				continue;
+			if(!theCache.remove(entry.getKey(), value))
+				continue; // Replaced or removed by another thread
+			removed(value);
 			count--;
-			if(theQualitizer != null)
-			{
-				totalSize -= s(entry.getKey(), value.value);
-				totalQuality -= q(entry.getKey(), value.value);
-			}
-			else
-			{
-				totalSize--;
-				totalQuality--;
-			}
+			totalSize -= value.size;
+			totalQuality -= value.quality;
 			purgeKeys.add(entry.getKey());
+			values.add(value.value);
 		}
 		thePurgeTime = System.currentTimeMillis();
-		thePurgeMods = 0;
 
-		if(purgeKeys.isEmpty())
-			return;
-		java.util.ArrayList<V> values = new java.util.ArrayList<>();
-		for(int i = 0; i < purgeKeys.size(); i++)
-		{
-			CacheValue cv = theCache.remove(purgeKeys.get(i));
-			if(cv != null)
-				values.add(cv.value);
-			else
-			{
-				purgeKeys.remove(i);
-				i--;
-			}
-		}
+		long time = System.nanoTime() - start;
+		theLastPurgeNanos = time;
+		if(time > theMaxPurgeNanos)
+			theMaxPurgeNanos = time;
+		theTotalPurgeNanos.addAndGet(time);
+		thePurgeCount.incrementAndGet();
+		thePurgedEntryCount.addAndGet(purgeKeys.size());
 		if(purgeKeys.isEmpty())
 			return;
 		for(int i = 0; i < pls.length; i++)
@@ -706,8 +912,8 @@ public class DemandCache<K, V> implements Map<K, V>
 	 */
 	protected boolean shouldRemove(K key, CacheValue value, float totalSize, float avgQuality, int entryCount)
 	{
-		float quality = q(key, value.value);
-		float size = s(key, value.value);
+		float quality = value.quality;
+		float size = value.size;
 		if(quality == 0)
 			return true; // Remove if the value has no quality
 		if(size == 0)
@@ -8,10 +8,36 @@ import java.io.IOException;
 /**
  * Wraps a stream to export data in a non-readable and compressed form. The stream is first zipped,
  * then obfsucated to prevent human interaction.
+ * 
+ * <p>
+ * By default the data is zipped at the maximum compression level, which produces a stream that can
+ * be read by any version of {@link ImportStream}. Other {@link Codec codecs} may be selected for
+ * speed. These write a short header before the obfuscated data so that {@link ImportStream} can tell
+ * how the data was compressed.
+ * </p>
  */
 public class ExportStream extends java.io.OutputStream
 {
-	private java.util.zip.ZipOutputStream theOutput;
+	/** The ways that an export stream may compress its data */
+	public static enum Codec
+	{
+		/** Zip compression with no header. This is the original export format. */
+		ZIP,
+		/** Raw deflate compression, without the zip entry overhead */
+		DEFLATE,
+		/** No compression. The data is only obfuscated. */
+		NONE;
+	}
+
+	/** The bytes that begin the header of an export stream that uses a non-default codec */
+	static final byte [] MAGIC = new byte [] {'P', 'X'};
+
+	/** The version of the header format written by this class */
+	static final int FORMAT_VERSION = 1;
+
+	private java.io.OutputStream theOutput;
+
+	private java.util.zip.Deflater theDeflater;
 
 	/**
 	 * Wraps a stream to export data
@@ -21,10 +47,50 @@ public class ExportStream extends java.io.OutputStream
 	 */
 	public ExportStream(java.io.OutputStream wrap) throws IOException
 	{
-		theOutput = new java.util.zip.ZipOutputStream(ObfuscatingStream.obfuscate(wrap));
-		java.util.zip.ZipEntry zipEntry = new java.util.zip.ZipEntry("export.json");
-		theOutput.putNextEntry(zipEntry);
-		theOutput.setLevel(9);
+		this(wrap, Codec.ZIP, java.util.zip.Deflater.BEST_COMPRESSION);
+	}
+
+	/**
+	 * Wraps a stream to export data with a given compression codec and level
+	 * 
+	 * @param wrap The stream to write exported data to
+	 * @param codec The codec to compress the data with
+	 * @param level The compression level (0-9) to use. Ignored for {@link Codec#NONE}.
+	 * @throws IOException If an error occurs wrapping the stream
+	 */
+	public ExportStream(java.io.OutputStream wrap, Codec codec, int level) throws IOException
+	{
+		if(level < java.util.zip.Deflater.NO_COMPRESSION
+			|| level > java.util.zip.Deflater.BEST_COMPRESSION)
+			throw new IllegalArgumentException("Invalid compression level: " + level);
+		switch(codec)
+		{
+		case ZIP:
+			java.util.zip.ZipOutputStream zos;
+			zos = new java.util.zip.ZipOutputStream(ObfuscatingStream.obfuscate(wrap));
+			java.util.zip.ZipEntry zipEntry = new java.util.zip.ZipEntry("export.json");
+			zos.putNextEntry(zipEntry);
+			zos.setLevel(level);
+			theOutput = zos;
+			break;
+		case DEFLATE:
+			writeHeader(wrap, codec);
+			theDeflater = new java.util.zip.Deflater(level, true);
+			theOutput = new java.util.zip.DeflaterOutputStream(ObfuscatingStream.obfuscate(wrap),
+				theDeflater, ObfuscatingStream.BUFFER_SIZE);
+			break;
+		case NONE:
+			writeHeader(wrap, codec);
+			theOutput = ObfuscatingStream.obfuscate(wrap);
+			break;
+		}
+	}
+
+	private static void writeHeader(java.io.OutputStream wrap, Codec codec) throws IOException
+	{
+		wrap.write(MAGIC);
+		wrap.write(FORMAT_VERSION);
+		wrap.write(codec.ordinal());
 	}
 
 	@Override
@@ -54,7 +120,10 @@ public class ExportStream extends java.io.OutputStream
 	@Override
 	public void close() throws IOException
 	{
-		theOutput.finish();
+		if(theOutput instanceof java.util.zip.DeflaterOutputStream)
+			((java.util.zip.DeflaterOutputStream) theOutput).finish();
 		theOutput.close();
+		if(theDeflater != null)
+			theDeflater.end();
 	}
 }
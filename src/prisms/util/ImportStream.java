@@ -5,11 +5,17 @@ package prisms.util;
 
 import java.io.IOException;
 
-/** Wraps a stream that has been exported to import the data in readable form */
+/**
+ * Wraps a stream that has been exported to import the data in readable form. Streams written with
+ * any {@link ExportStream.Codec codec} may be read, including those written before codecs were
+ * selectable.
+ */
 public class ImportStream extends java.io.InputStream
 {
 	private java.io.InputStream theInput;
 
+	private java.util.zip.Inflater theInflater;
+
 	/**
 	 * Wraps a stream with an import stream
 	 * 
@@ -18,10 +24,48 @@ public class ImportStream extends java.io.InputStream
 	 */
 	public ImportStream(java.io.InputStream wrap) throws IOException
 	{
-		java.util.zip.ZipInputStream zis;
-		zis = new java.util.zip.ZipInputStream(ObfuscatingStream.unobfuscate(wrap));
-		zis.getNextEntry();
-		theInput = zis;
+		java.io.PushbackInputStream pis = new java.io.PushbackInputStream(wrap, 1);
+		int first = pis.read();
+		if(first >= 0)
+			pis.unread(first);
+		/* Data in the original format starts with the obfuscation warp, which is less than 8. The
+		 * header magic bytes cannot be confused with it. */
+		ExportStream.Codec codec;
+		if(first == ExportStream.MAGIC[0])
+			codec = readHeader(pis);
+		else
+			codec = ExportStream.Codec.ZIP;
+		switch(codec)
+		{
+		case ZIP:
+			java.util.zip.ZipInputStream zis;
+			zis = new java.util.zip.ZipInputStream(ObfuscatingStream.unobfuscate(pis));
+			zis.getNextEntry();
+			theInput = zis;
+			break;
+		case DEFLATE:
+			theInflater = new java.util.zip.Inflater(true);
+			theInput = new java.util.zip.InflaterInputStream(ObfuscatingStream.unobfuscate(pis),
+				theInflater, ObfuscatingStream.BUFFER_SIZE);
+			break;
+		case NONE:
+			theInput = ObfuscatingStream.unobfuscate(pis);
+			break;
+		}
+	}
+
+	private static ExportStream.Codec readHeader(java.io.InputStream is) throws IOException
+	{
+		for(int i = 0; i < ExportStream.MAGIC.length; i++)
+			if(is.read() != ExportStream.MAGIC[i])
+				throw new IOException("Unrecognized export stream header");
+		int version = is.read();
+		if(version < 1 || version > ExportStream.FORMAT_VERSION)
+			throw new IOException("Unsupported export stream version: " + version);
+		int codec = is.read();
+		if(codec < 0 || codec >= ExportStream.Codec.values().length)
+			throw new IOException("Unrecognized export stream codec: " + codec);
+		return ExportStream.Codec.values()[codec];
 	}
 
 	@Override
@@ -76,6 +120,8 @@ public class ImportStream extends java.io.InputStream
 	public void close() throws IOException
 	{
 		theInput.close();
+		if(theInflater != null)
+			theInflater.end();
 	}
 
 	/**
@@ -383,8 +383,8 @@ public class IntList implements Iterable<Integer>, Sealable, Cloneable
 				{
 					while(i1 < theSize && theValue[i1] < value[i2])
 						i1++;
-					if(i2 < end && theValue[i1] != value[i2]
-						&& (i2 == 0 || value[i2] != value[i2 - 1]))
+					if((i1 == theSize || theValue[i1] != value[i2])
+						&& (i2 == start || value[i2] != value[i2 - 1]))
 						ret++;
 					i2++;
 				}
@@ -0,0 +1,78 @@
+/*
+ * LongIndexMap.java Created Oct 16, 2026 by Andrew Butler, PSL
+ */
+package prisms.util;
+
+/**
+ * Maps each value in an array of longs to its index (or indices, if the value occurs more than once)
+ * in the array without boxing. This is useful for putting items retrieved from a data source back
+ * into the order of the IDs that were requested.
+ */
+public class LongIndexMap
+{
+	private final long [] theKeys;
+
+	/** Open-addressed hash table of the first index of each key, or -1 for empty slots */
+	private final int [] theTable;
+
+	/** The next index with the same key as each index, or -1 */
+	private final int [] theNext;
+
+	/** @param keys The values to map to their indices */
+	public LongIndexMap(long [] keys)
+	{
+		theKeys = keys;
+		int tableSize = 4;
+		while(tableSize < keys.length * 2)
+			tableSize <<= 1;
+		theTable = new int [tableSize];
+		java.util.Arrays.fill(theTable, -1);
+		theNext = new int [keys.length];
+		// Add backward so that each key's chain runs in ascending order
+		for(int i = keys.length - 1; i >= 0; i--)
+		{
+			int slot = slot(keys[i]);
+			theNext[i] = theTable[slot];
+			theTable[slot] = i;
+		}
+	}
+
+	/** @return The number of values (including duplicates) in this map */
+	public int size()
+	{
+		return theKeys.length;
+	}
+
+	/**
+	 * @param key The value to get the index of
+	 * @return The first index of the given value in the array, or -1 if the value is not present
+	 */
+	public int indexOf(long key)
+	{
+		return theTable[slot(key)];
+	}
+
+	/**
+	 * @param index The index of a value in the array
+	 * @return The next index of the same value in the array, or -1 if the value does not occur
+	 *         after the given index
+	 */
+	public int nextIndexOf(int index)
+	{
+		return theNext[index];
+	}
+
+	/**
+	 * Finds the slot for a key: either the slot containing the key's first index or the empty slot
+	 * where it would go
+	 */
+	private int slot(long key)
+	{
+		int mask = theTable.length - 1;
+		long h = key * 0x9E3779B97F4A7C15L;
+		int slot = (int) (h ^ (h >>> 32)) & mask;
+		while(theTable[slot] >= 0 && theKeys[theTable[slot]] != key)
+			slot = (slot + 1) & mask;
+		return slot;
+	}
+}
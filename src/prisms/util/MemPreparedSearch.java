@@ -90,10 +90,9 @@ public abstract class MemPreparedSearch<T, S extends Search, F extends Sorter.Fi
 			return filter;
 		if(search instanceof Search.NotSearch)
 		{
-			BitSet ret = new BitSet();
-			ret.and(filter);
-			matches(items, ret, ((Search.NotSearch) search).getOperand(), state, params, types);
-			ret.xor(filter);
+			BitSet ret = (BitSet) filter.clone();
+			ret.andNot(matches(items, filter, ((Search.NotSearch) search).getOperand(), state,
+				params, types));
 			return ret;
 		}
 		else if(search instanceof Search.ExpressionSearch)
@@ -13,6 +13,9 @@ public class ObfuscatingStream
 	private static final char [] HEX_CHARS = new char [] {'0', '1', '2', '3', '4', '5', '6', '7',
 		'8', '9', 'A', 'B', 'C', 'D', 'E', 'F'};
 
+	/** The size of the blocks that {@link ObfuscatingOutputStream} writes to its wrapped stream */
+	static final int BUFFER_SIZE = 8192;
+
 	/**
 	 * A class that obfuscates data as it is written to a binary stream
 	 */
@@ -24,6 +27,8 @@ public class ObfuscatingStream
 
 		private int theCount;
 
+		private byte [] theBuffer;
+
 		ObfuscatingOutputStream(OutputStream os)
 		{
 			theOS = os;
@@ -41,12 +46,56 @@ public class ObfuscatingStream
 				theWarp = (int) (Math.random() * 8);
 				theOS.write(theWarp);
 			}
-			int shift = (theWarp + theCount) % 8;
+			int shift = (theWarp + theCount) & 7;
 			theCount++;
 			int toWrite = b & 0xff;
 			toWrite = ((toWrite >> shift) | (toWrite << (8 - shift))) & 0xff;
 			theOS.write(toWrite);
 		}
+
+		/**
+		 * Obfuscates the bytes into an internal buffer and writes them to the wrapped stream in
+		 * blocks. The bytes written are identical to those that would be written one at a time by
+		 * {@link #write(int)}.
+		 * 
+		 * @see java.io.OutputStream#write(byte[], int, int)
+		 */
+		@Override
+		public void write(byte [] b, int off, int len) throws IOException
+		{
+			if(off < 0 || len < 0 || off + len > b.length)
+				throw new IndexOutOfBoundsException();
+			if(len == 0)
+				return;
+			if(theWarp < 0)
+			{
+				theWarp = (int) (Math.random() * 8);
+				theOS.write(theWarp);
+			}
+			if(theBuffer == null)
+				theBuffer = new byte [BUFFER_SIZE];
+			while(len > 0)
+			{
+				int block = len < theBuffer.length ? len : theBuffer.length;
+				int shift = (theWarp + theCount) & 7;
+				for(int i = 0; i < block; i++)
+				{
+					int toWrite = b[off + i] & 0xff;
+					theBuffer[i] = (byte) ((toWrite >> shift) | (toWrite << (8 - shift)));
+					shift = (shift + 1) & 7;
+				}
+				theCount += block;
+				theOS.write(theBuffer, 0, block);
+				off += block;
+				len -= block;
+			}
+		}
+
+		@Override
+		public void flush() throws IOException
+		{
+			theOS.flush();
+		}
 	}
 
 	/**
@@ -78,12 +127,50 @@ public class ObfuscatingStream
 			int read = theIS.read();
 			if(read < 0)
 				return read;
-			int shift = (theWarp + theCount) % 8;
+			int shift = (theWarp + theCount) & 7;
 			theCount++;
 			int ret = read & 0xff;
 			ret = ((ret << shift) | (ret >> (8 - shift))) & 0xff;
 			return ret;
 		}
+
+		/**
+		 * Reads a block of obfuscated bytes from the wrapped stream and unobfuscates them in place
+		 * 
+		 * @see java.io.InputStream#read(byte[], int, int)
+		 */
+		@Override
+		public int read(byte [] b, int off, int len) throws IOException
+		{
+			if(off < 0 || len < 0 || off + len > b.length)
+				throw new IndexOutOfBoundsException();
+			if(len == 0)
+				return 0;
+			if(theWarp < 0)
+			{
+				theWarp = theIS.read();
+				if(theWarp < 0)
+					return -1;
+			}
+			int read = theIS.read(b, off, len);
+			if(read <= 0)
+				return read;
+			int shift = (theWarp + theCount) & 7;
+			for(int i = off; i < off + read; i++)
+			{
+				int unob = b[i] & 0xff;
+				b[i] = (byte) ((unob << shift) | (unob >> (8 - shift)));
+				shift = (shift + 1) & 7;
+			}
+			theCount += read;
+			return read;
+		}
+
+		@Override
+		public int available() throws IOException
+		{
+			return theIS.available();
+		}
 	}
 
 	/**
@@ -131,9 +131,13 @@ public class PrismsUtils
 
 	private static java.util.Random theRandom;
 
+	/** Whether each class that has been tracked as a task overrides {@link Object#toString()} */
+	private static java.util.concurrent.ConcurrentHashMap<Class<?>, Boolean> theToStringOverrides;
+
 	static
 	{
 		theRandom = new java.util.Random();
+		theToStringOverrides = new java.util.concurrent.ConcurrentHashMap<Class<?>, Boolean>();
 		try
 		{
 			isJava6 = java.sql.Connection.class.getMethod("isValid", Integer.TYPE) != null;
@@ -770,7 +774,9 @@ public class PrismsUtils
 	 */
 	public static ProgramTracker.TrackNode track(prisms.arch.PrismsTransaction trans, Object taskObj)
 	{
-		return track(trans, taskToString(taskObj));
+		if(trans == null || !trans.getTracker().isOn())
+			return null;
+		return trans.getTracker().start(taskToString(taskObj));
 	}
 
 	/**
@@ -784,7 +790,22 @@ public class PrismsUtils
 	{
 		if(taskObj == null)
 			return "null";
-		String className = taskObj.getClass().getName();
+		Class<?> clazz = taskObj.getClass();
+		Boolean overrides = theToStringOverrides.get(clazz);
+		if(overrides == null)
+		{
+			try
+			{
+				overrides = Boolean.valueOf(clazz.getMethod("toString").getDeclaringClass() != Object.class);
+			} catch(NoSuchMethodException e)
+			{
+				overrides = Boolean.TRUE;
+			}
+			theToStringOverrides.put(clazz, overrides);
+		}
+		String className = clazz.getName();
+		if(!overrides.booleanValue())
+			return className;
 		String str = taskObj.toString();
 		if(str.startsWith(className))
 			return className;
@@ -40,6 +40,9 @@ public class ProgramTracker implements Cloneable
     /** The format used to print length statistics */
     public static final java.text.NumberFormat NANO_FORMAT = new java.text.DecimalFormat("0.00E0");
 
+    /** The number of sibling tasks above which tasks are looked up by hash instead of by scanning */
+    static final int INDEX_THRESHOLD = 8;
+
     /**
      * This static variable is to be used for <b>temporary</b> debugging purposes only. It allows for easier profiling
      * of applications without extensive code changes to access the correct tracker. However, if this variable is used
@@ -259,6 +262,9 @@ public class ProgramTracker implements Cloneable
         /** The subroutines of this routine */
         java.util.ArrayList<TrackNode> children;
 
+        /** The subroutines of this routine by name. Only created once there are many of them. */
+        java.util.HashMap<String, TrackNode> childIndex;
+
         /**
          * The number of times that this routine was {@link ProgramTracker#start(String) start}ed but not explicitly
          * {@link ProgramTracker#start(String) end}ed
@@ -378,6 +384,30 @@ public class ProgramTracker implements Cloneable
             if(lengthStats != null)
                 lengthStats.clear();
             children.clear();
+            childIndex = null;
+        }
+
+        /**
+         * @param task The name of the subtask to get
+         * @return The subtask of this task with the given name, or null if there is no such subtask
+         */
+        TrackNode getChild(String task)
+        {
+            if(childIndex != null)
+                return childIndex.get(task);
+            for(TrackNode child : children)
+                if(child.name == task || child.name.equals(task))
+                    return child;
+            return null;
+        }
+
+        void addChild(TrackNode child)
+        {
+            children.add(child);
+            if(childIndex != null)
+                childIndex.put(child.name, child);
+            else if(children.size() > INDEX_THRESHOLD)
+                childIndex = index(children);
         }
 
         /**
@@ -449,11 +479,11 @@ public class ProgramTracker implements Cloneable
          */
         public TrackNode create(String task)
         {
-            for(TrackNode child : children)
-                if(child.getName().equals(task))
-                    return child;
-            TrackNode ret = newNode(this, task);
-            children.add(ret);
+            TrackNode ret = getChild(task);
+            if(ret != null)
+                return ret;
+            ret = newNode(this, task);
+            addChild(ret);
             return ret;
         }
 
@@ -503,16 +533,15 @@ public class ProgramTracker implements Cloneable
                 lengthStats.merge(node.lengthStats);
             for(TrackNode child : node.children)
             {
-                boolean found = false;
-                for(TrackNode thisChild : children)
-                    if (thisChild.name.equals(child.name))
-                    {
-                        thisChild.merge(child);
-                        found = true;
-                        break;
-                    }
-                if(!found)
-                    children.add(child.clone());
+                TrackNode thisChild = getChild(child.name);
+                if(thisChild != null)
+                    thisChild.merge(child);
+                else
+                {
+                    thisChild = child.clone();
+                    thisChild.parent = this;
+                    addChild(thisChild);
+                }
             }
         }
 
@@ -547,11 +576,12 @@ public class ProgramTracker implements Cloneable
                 ret.lengthStats = lengthStats.clone();
             ret.parent = null;
             ret.children = new java.util.ArrayList<TrackNode>();
+            ret.childIndex = null;
             for(TrackNode child : children)
             {
                 TrackNode childClone = child.clone();
-                childClone.parent = this;
-                ret.children.add(childClone);
+                childClone.parent = ret;
+                ret.addChild(childClone);
             }
             return ret;
         }
@@ -698,6 +728,8 @@ public class ProgramTracker implements Cloneable
 
     private java.util.ArrayList<TrackNode> theNodes;
 
+    private java.util.HashMap<String, TrackNode> theNodeIndex;
+
     boolean isWithRTStats;
 
     boolean isWithCPU;
@@ -813,6 +845,33 @@ public class ProgramTracker implements Cloneable
             return 0;
     }
 
+    static java.util.HashMap<String, TrackNode> index(java.util.List<TrackNode> nodes)
+    {
+        java.util.HashMap<String, TrackNode> ret = new java.util.HashMap<String, TrackNode>(nodes.size() * 2);
+        for(TrackNode node : nodes)
+            ret.put(node.name, node);
+        return ret;
+    }
+
+    private TrackNode getRoot(String routine)
+    {
+        if(theNodeIndex != null)
+            return theNodeIndex.get(routine);
+        for(TrackNode node : theNodes)
+            if(node.name == routine || node.name.equals(routine))
+                return node;
+        return null;
+    }
+
+    private void addRoot(TrackNode node)
+    {
+        theNodes.add(node);
+        if(theNodeIndex != null)
+            theNodeIndex.put(node.name, node);
+        else if(theNodes.size() > INDEX_THRESHOLD)
+            theNodeIndex = index(theNodes);
+    }
+
     void releaseNode(TrackNode node)
     {
         if(node.isReleased)
@@ -833,6 +892,7 @@ public class ProgramTracker implements Cloneable
             for(TrackNode node : theNodes)
                 releaseNode(node);
             theNodes.clear();
+            theNodeIndex = null;
         }
         theCurrentThread = null;
     }
@@ -860,16 +920,11 @@ public class ProgramTracker implements Cloneable
         TrackNode ret = null;
         if(theCurrentNode == null)
         {
-            for(TrackNode node : theNodes)
-                if (node.getName().equals(routine))
-                {
-                    ret = node;
-                    break;
-                }
+            ret = getRoot(routine);
             if(ret == null)
             {
                 ret = newNode(null, routine);
-                theNodes.add(ret);
+                addRoot(ret);
             }
         }
         else
@@ -1074,12 +1129,13 @@ public class ProgramTracker implements Cloneable
         }
         ret.theCacheNodes = new java.util.ArrayList<TrackNode>();
         ret.theNodes = new java.util.ArrayList<TrackNode>();
+        ret.theNodeIndex = null;
         ret.theCurrentNode = null;
         ret.theCurrentThread = null;
         for(TrackNode node : theNodes)
         {
             TrackNode clone = node.clone();
-            ret.theNodes.add(clone);
+            ret.addRoot(clone);
             if(node == theCurrentNode)
                 ret.theCurrentNode = clone;
         }
@@ -1112,16 +1168,11 @@ public class ProgramTracker implements Cloneable
     {
         for(TrackNode node : tracker.theNodes)
         {
-            boolean found = false;
-            for(TrackNode thisNode : theNodes)
-                if (thisNode.name.equals(node.name))
-                {
-                    thisNode.merge(node);
-                    found = true;
-                    break;
-                }
-            if(!found)
-                theNodes.add(node.clone());
+            TrackNode thisNode = getRoot(node.name);
+            if(thisNode != null)
+                thisNode.merge(node);
+            else
+                addRoot(node.clone());
         }
     }
 
@@ -1198,7 +1249,7 @@ public class ProgramTracker implements Cloneable
         ProgramTracker ret = new ProgramTracker((String) json.get("name"),
                 ((Boolean) json.get("withStats")).booleanValue());
         for(JSONObject node : (java.util.List<JSONObject>) json.get("nodes"))
-            ret.theNodes.add(ret.nodeFromJson(null, node));
+            ret.addRoot(ret.nodeFromJson(null, node));
         return ret;
     }
 
@@ -1223,7 +1274,7 @@ public class ProgramTracker implements Cloneable
         if(json.get("lengthStats") != null)
             ret.lengthStats = RunningStatistic.fromJson((JSONObject) json.get("lengthStats"));
         for(JSONObject node : (java.util.List<JSONObject>) json.get("children"))
-            ret.children.add(nodeFromJson(ret, node));
+            ret.addChild(nodeFromJson(ret, node));
         return ret;
     }
 }
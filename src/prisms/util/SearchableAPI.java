@@ -43,6 +43,26 @@ public interface SearchableAPI<T, F extends Sorter.Field, E extends Exception>
 		Search getParentSearch(int paramIdx);
 	}
 
+	/**
+	 * Iterates over items retrieved lazily from an API. Differs from java.util.Iterator in that
+	 * {@link #next()} may throw the API's exception type.
+	 * 
+	 * @param <T> The type of item retrieved
+	 * @param <E> The type of exception that may be thrown retrieving items
+	 */
+	public interface ItemIterator<T, E extends Exception>
+	{
+		/** @return Whether there are any more items that have not been returned by this iterator */
+		boolean hasNext();
+
+		/**
+		 * @return The next item, or null if the next ID does not match an item
+		 * @throws E If an error occurs retrieving the item
+		 * @throws java.util.NoSuchElementException If there are no more items
+		 */
+		T next() throws E;
+	}
+
 	/**
 	 * Executes a search for items within this API's data source
 	 * 
@@ -100,4 +120,18 @@ public interface SearchableAPI<T, F extends Sorter.Field, E extends Exception>
 	 * @throws E If an error occurs getting the data
 	 */
 	T [] getItems(long... ids) throws E;
+
+	/**
+	 * Gets a page of items from the data source lazily. The items are retrieved in chunks as the
+	 * iterator advances, so that only a chunk's worth of items needs to be held in memory at once.
+	 * 
+	 * @param ids The IDs of the items to get. The page of IDs is copied when this method is called,
+	 *        so later modifications to the list will not affect the iteration.
+	 * @param offset The index in the ID list of the first item to get
+	 * @param limit The maximum number of items to get, or &lt;0 to get all items after the offset
+	 * @return An iterator over the items whose IDs are given, in the same order and with the same
+	 *         semantics as {@link #getItems(long...)}
+	 * @throws E If an error occurs preparing the retrieval
+	 */
+	ItemIterator<T, E> getItems(LongList ids, int offset, int limit) throws E;
 }
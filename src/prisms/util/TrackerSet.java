@@ -6,12 +6,34 @@ package prisms.util;
 import org.apache.log4j.Logger;
 
 /**
- * Maintains a set of {@link ProgramTracker}s to keep track of performance over a set of time intervals
+ * Maintains a set of {@link ProgramTracker}s to keep track of performance over a set of time intervals.
+ * Tracking data is accumulated separately by each thread that adds it and merged into the set at most
+ * once per {@link #getMergeInterval() merge interval}, so that threads adding data do not contend with
+ * each other. The accumulated data is kept by one per-thread map shared by all tracker sets, so a set
+ * that is no longer referenced leaves nothing behind in the threads that added data to it.
  */
 public class TrackerSet
 {
 	private static final Logger log = Logger.getLogger(TrackerSet.class);
 
+	/** The default interval at which each thread's accumulated tracking data is merged into the set */
+	public static final long DEFAULT_MERGE_INTERVAL = 1000;
+
+	/** Each thread's accumulated tracking data for every tracker set it has added data to */
+	private static final ThreadLocal<java.util.WeakHashMap<TrackerSet, PendingData>> thePending;
+
+	static
+	{
+		thePending = new ThreadLocal<java.util.WeakHashMap<TrackerSet, PendingData>>()
+		{
+			@Override
+			protected java.util.WeakHashMap<TrackerSet, PendingData> initialValue()
+			{
+				return new java.util.WeakHashMap<TrackerSet, PendingData>();
+			}
+		};
+	}
+
 	/** A configuration for one time interval */
 	public static class TrackConfig
 	{
@@ -44,6 +66,23 @@ public class TrackerSet
 		}
 	}
 
+	/** Tracking data accumulated by a single thread that has not yet been merged into the set */
+	private static class PendingData
+	{
+		final Thread theThread;
+
+		ProgramTracker theData;
+
+		long theLastMerge;
+
+		PendingData(Thread thread, String name)
+		{
+			theThread = thread;
+			theData = new ProgramTracker(name);
+			theLastMerge = System.currentTimeMillis();
+		}
+	}
+
 	private String theName;
 
 	private TrackConfig [] theConfigs;
@@ -54,6 +93,12 @@ public class TrackerSet
 
 	private boolean isConfigured;
 
+	private long theMergeInterval;
+
+	private volatile boolean isClosed;
+
+	private final java.util.concurrent.ConcurrentLinkedQueue<PendingData> theAllPending;
+
 	/**
 	 * Creates a tracker set
 	 * 
@@ -66,6 +111,8 @@ public class TrackerSet
 		theConfigs = new TrackConfig [0];
 		theTrackers = new ProgramTracker [0] [];
 		theLock = new java.util.concurrent.locks.ReentrantLock();
+		theMergeInterval = DEFAULT_MERGE_INTERVAL;
+		theAllPending = new java.util.concurrent.ConcurrentLinkedQueue<PendingData>();
 		if(configs != null)
 			addTrackConfigs(configs);
 	}
@@ -116,6 +163,24 @@ public class TrackerSet
 		}
 	}
 
+	/**
+	 * @return The interval at which each thread's accumulated tracking data is merged into this set.
+	 *         Data is always merged before it is retrieved with {@link #getTrackData(long)}.
+	 */
+	public long getMergeInterval()
+	{
+		return theMergeInterval;
+	}
+
+	/**
+	 * @param interval The interval at which each thread's accumulated tracking data should be merged
+	 *        into this set. If &lt;=0, data will be merged every time it is added.
+	 */
+	public void setMergeInterval(long interval)
+	{
+		theMergeInterval = interval;
+	}
+
 	/**
 	 * Populates this track set with a piece of data
 	 * 
@@ -125,6 +190,54 @@ public class TrackerSet
 	{
 		if(!isConfigured)
 			throw new IllegalStateException("This TrackerSet has not been configured");
+		if(theConfigs.length == 0)
+			return;
+		if(theMergeInterval <= 0 || isClosed)
+		{
+			merge(tracker);
+			return;
+		}
+		java.util.WeakHashMap<TrackerSet, PendingData> threadPending = thePending.get();
+		PendingData pending = threadPending.get(this);
+		if(pending == null)
+		{
+			pending = new PendingData(Thread.currentThread(), theName);
+			threadPending.put(this, pending);
+			theAllPending.add(pending);
+		}
+		long now = System.currentTimeMillis();
+		/* This lock is only contended when the data is being drained for retrieval */
+		synchronized(pending)
+		{
+			pending.theData.merge(tracker);
+			if(now - pending.theLastMerge < theMergeInterval)
+				return;
+		}
+		flush(pending, now);
+	}
+
+	/**
+	 * Merges a thread's accumulated tracking data into this set
+	 * 
+	 * @param pending The accumulated data to merge
+	 * @param now The current time
+	 */
+	private void flush(PendingData pending, long now)
+	{
+		ProgramTracker data;
+		synchronized(pending)
+		{
+			pending.theLastMerge = now;
+			if(pending.theData.getData().length == 0)
+				return;
+			data = pending.theData;
+			pending.theData = new ProgramTracker(theName);
+		}
+		merge(data);
+	}
+
+	private void merge(ProgramTracker tracker)
+	{
 		theLock.lock();
 		try
 		{
@@ -143,6 +256,33 @@ public class TrackerSet
 		}
 	}
 
+	/** Merges all threads' accumulated tracking data into this set */
+	private void flushAll()
+	{
+		long now = System.currentTimeMillis();
+		java.util.Iterator<PendingData> iter = theAllPending.iterator();
+		while(iter.hasNext())
+		{
+			PendingData pending = iter.next();
+			flush(pending, now);
+			if(!pending.theThread.isAlive())
+				iter.remove();
+		}
+	}
+
+	/**
+	 * Merges all data accumulated by threads into this set and stops accumulating data per thread. Data
+	 * added after this call is merged directly. This should be called when a tracker set is discarded
+	 * while the threads that added data to it live on.
+	 */
+	public void close()
+	{
+		isClosed = true;
+		thePending.get().remove(this);
+		flushAll();
+		theAllPending.clear();
+	}
+
 	/** @return All TrackConfigs that this track set keeps tracking data for */
 	public TrackConfig [] getConfigs()
 	{
@@ -163,6 +303,7 @@ public class TrackerSet
 		for(int c = 0; c < theConfigs.length; c++)
 			if(theConfigs[c].getKeepTime() == interval)
 			{
+				flushAll();
 				theLock.lock();
 				try
 				{
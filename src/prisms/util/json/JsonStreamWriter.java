@@ -167,26 +167,23 @@ public class JsonStreamWriter implements JsonSerialWriter
 			break;
 		}
 		writeLine();
-		if(isUnicodeEncoded)
-			name = prisms.util.PrismsUtils.encodeUnicode(name);
-		theSB.append(name);
 		boolean quoted = useFormalJson;
-		if(!quoted)
+		for(int c = 0; c < name.length(); c++)
 		{
-			for(int c = 0; c < name.length(); c++)
+			char ch = name.charAt(c);
+			if(!quoted && (SAJParser.isWhiteSpace(ch) || SAJParser.isSyntax(ch)))
+				quoted = true;
+			int esc = needsEscape(ch);
+			if(esc >= 0)
 			{
-				char ch = name.charAt(c);
-				if(SAJParser.isWhiteSpace(ch) || SAJParser.isSyntax(ch))
-					quoted = true;
-				int esc = needsEscape(ch);
-				if(esc >= 0)
-				{
-					theSB.insert(c, '\\');
-					c++;
-					theSB.setCharAt(c, (char) esc);
-				}
+				theSB.append('\\');
+				theSB.append((char) esc);
 			}
+			else
+				theSB.append(ch);
 		}
+		if(isUnicodeEncoded)
+			prisms.util.PrismsUtils.encodeUnicode(theSB);
 		if(quoted)
 		{
 			theSB.insert(0, '"');
@@ -93,7 +93,7 @@ public class GovernedListManager<T> extends PersistingPropertyManager<T []>
 		if(val == null)
 			return false;
 		final boolean [] ret = new boolean [] {true};
-		ArrayUtils.adjust(theGlobalValue, (T []) val, new ArrayUtils.DifferenceListener<T, T>()
+		ArrayUtils.adjust(theGlobalValue, (T []) val, keyed(new ArrayUtils.DifferenceListener<T, T>()
 		{
 			public boolean identity(T o1, T o2)
 			{
@@ -123,7 +123,7 @@ public class GovernedListManager<T> extends PersistingPropertyManager<T []>
 									// see
 				return null;
 			}
-		});
+		}));
 		return ret[0];
 	}
 
@@ -134,7 +134,7 @@ public class GovernedListManager<T> extends PersistingPropertyManager<T []>
 		if(sv == null)
 			sv = (T []) java.lang.reflect.Array.newInstance(getProperty().getType()
 				.getComponentType(), 0);
-		return ArrayUtils.adjust(sv, theGlobalValue, new ArrayUtils.DifferenceListener<T, T>()
+		return ArrayUtils.adjust(sv, theGlobalValue, keyed(new ArrayUtils.DifferenceListener<T, T>()
 		{
 			public boolean identity(T o1, T o2)
 			{
@@ -163,7 +163,68 @@ public class GovernedListManager<T> extends PersistingPropertyManager<T []>
 					return null;
 				return o1;
 			}
-		});
+		}));
+	}
+
+	/**
+	 * @param dl The listener to compare items with
+	 * @return A listener that matches items by their keys from this manager's governor, or the
+	 *         given listener if the governor does not supply keys
+	 */
+	ArrayUtils.DifferenceListener<T, T> keyed(ArrayUtils.DifferenceListener<T, T> dl)
+	{
+		if(theGovernor instanceof KeyedGovernor)
+			return new KeyedDifferenceListener<T>((KeyedGovernor<? super T>) theGovernor, dl);
+		return dl;
+	}
+
+	/**
+	 * Matches items by the keys from a {@link KeyedGovernor}, delegating everything else to another
+	 * listener. Null items are never matched.
+	 * 
+	 * @param <T> The type of item to compare
+	 */
+	static class KeyedDifferenceListener<T> implements ArrayUtils.HashedDifferenceListener<T, T>
+	{
+		private final KeyedGovernor<? super T> theKeys;
+
+		private final ArrayUtils.DifferenceListener<T, T> theListener;
+
+		KeyedDifferenceListener(KeyedGovernor<? super T> keys, ArrayUtils.DifferenceListener<T, T> dl)
+		{
+			theKeys = keys;
+			theListener = dl;
+		}
+
+		public Object getOriginalKey(T o)
+		{
+			return o == null ? null : theKeys.getKey(o);
+		}
+
+		public Object getModifierKey(T o)
+		{
+			return o == null ? null : theKeys.getKey(o);
+		}
+
+		public boolean identity(T o1, T o2)
+		{
+			return theListener.identity(o1, o2);
+		}
+
+		public T added(T o, int mIdx, int retIdx)
+		{
+			return theListener.added(o, mIdx, retIdx);
+		}
+
+		public T removed(T o, int oIdx, int incMod, int retIdx)
+		{
+			return theListener.removed(o, oIdx, incMod, retIdx);
+		}
+
+		public T set(T o1, int idx1, int incMod, T o2, int idx2, int retIdx)
+		{
+			return theListener.set(o1, idx1, incMod, o2, idx2, retIdx);
+		}
 	}
 
 	@Override
@@ -0,0 +1,22 @@
+/*
+ * KeyedGovernor.java Created Oct 16, 2026 by Andrew Butler, PSL
+ */
+package prisms.util.persisters;
+
+/**
+ * A governor that can supply a hashable key for each of its items. A {@link GovernedListManager}
+ * whose governor implements this interface matches items by key in linear time instead of
+ * comparing every pair of items with {@link Object#equals(Object)}.
+ * 
+ * @param <T> The type of item that is governed
+ */
+public interface KeyedGovernor<T> extends Governor<T>
+{
+	/**
+	 * @param item The non-null item to get the key for
+	 * @return A key for the item. Two items' keys must be equal (with a consistent hash code)
+	 *         exactly when the items are equal. May be null if the item should not be matched with
+	 *         any other item.
+	 */
+	Object getKey(T item);
+}